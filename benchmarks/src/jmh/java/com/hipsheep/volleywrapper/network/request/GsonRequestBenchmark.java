@@ -0,0 +1,87 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Benchmarks {@link GsonRequest#parseNetworkResponse(NetworkResponse)} with responses of different sizes, using both the
+ * streaming and {@link String} parse modes.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+@State(Scope.Thread)
+public class GsonRequestBenchmark {
+
+	private static final String URL = "http://jsonplaceholder.typicode.com/posts";
+
+	/**
+	 * Number of elements of the JSON array returned in the response.
+	 */
+	@Param({"10", "1000", "10000"})
+	public int elementCount;
+
+	@Param({"true", "false"})
+	public boolean streamingParse;
+
+	private GsonRequest<Item[]> mRequest;
+
+	private NetworkResponse mResponse;
+
+
+	@Setup
+	public void setUp() {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < elementCount; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+
+			json.append("{\"userId\":").append(i % 10)
+					.append(",\"id\":").append(i)
+					.append(",\"title\":\"Title of the post number ").append(i)
+					.append("\",\"body\":\"Body of the post number ").append(i).append(", with some more text in it\"}");
+		}
+		json.append(']');
+
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Content-Type", "application/json; charset=UTF-8");
+
+		mResponse = new NetworkResponse(200, json.toString().getBytes(Charset.forName("UTF-8")), headers, false);
+
+		mRequest = new GsonRequest<>(Request.Method.GET, URL, Item[].class);
+		mRequest.setStreamingParse(streamingParse);
+	}
+
+	@Benchmark
+	public Response<Item[]> parseNetworkResponse() {
+		return mRequest.parseNetworkResponse(mResponse);
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Model of the elements parsed from the response.
+	 */
+	public static class Item {
+
+		private Integer userId;
+		private Integer id;
+		private String title;
+		private String body;
+
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.model.StreamingResponseCallback;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Benchmarks {@link GsonStreamingRequest#parseNetworkResponse(NetworkResponse)} with responses of different sizes and
+ * batch sizes, to compare it with {@link GsonRequestBenchmark}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+@State(Scope.Thread)
+public class GsonStreamingRequestBenchmark {
+
+	private static final String URL = "http://jsonplaceholder.typicode.com/posts";
+
+	/**
+	 * Number of elements of the JSON array returned in the response.
+	 */
+	@Param({"10", "1000", "10000"})
+	public int elementCount;
+
+	@Param({"1", "100"})
+	public int batchSize;
+
+	private GsonStreamingRequest<GsonRequestBenchmark.Item> mRequest;
+
+	private NetworkResponse mResponse;
+
+	private Blackhole mBlackhole;
+
+
+	@Setup
+	public void setUp(Blackhole blackhole) {
+		mBlackhole = blackhole;
+
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < elementCount; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+
+			json.append("{\"userId\":").append(i % 10)
+					.append(",\"id\":").append(i)
+					.append(",\"title\":\"Title of the post number ").append(i)
+					.append("\",\"body\":\"Body of the post number ").append(i).append(", with some more text in it\"}");
+		}
+		json.append(']');
+
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Content-Type", "application/json; charset=UTF-8");
+
+		mResponse = new NetworkResponse(200, json.toString().getBytes(Charset.forName("UTF-8")), headers, false);
+
+		mRequest = new GsonStreamingRequest<>(Request.Method.GET, URL, GsonRequestBenchmark.Item.class);
+		mRequest.setBatchSize(batchSize);
+
+		// Deliver the batches right away, so the benchmark doesn't measure a thread hop
+		mRequest.setDeliveryExecutor(new Executor() {
+
+			@Override
+			public void execute(Runnable runnable) {
+				runnable.run();
+			}
+
+		});
+
+		mRequest.setResponseCallback(new StreamingResponseCallback<GsonRequestBenchmark.Item>() {
+
+			@Override
+			public void onElements(List<GsonRequestBenchmark.Item> elements) {
+				mBlackhole.consume(elements);
+			}
+
+			@Override
+			public void onSuccess(Integer count) {}
+
+			@Override
+			public void onFailure(VolleyError volleyError) {}
+
+		});
+	}
+
+	@Benchmark
+	public Response<Integer> parseNetworkResponse() {
+		return mRequest.parseNetworkResponse(mResponse);
+	}
+
+}
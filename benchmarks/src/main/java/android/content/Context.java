@@ -0,0 +1,12 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * JVM stub of the Android {@code Context} class, implementing only what the library uses.
+ */
+public abstract class Context {
+
+	public abstract File getCacheDir();
+
+}
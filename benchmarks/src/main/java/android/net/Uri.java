@@ -0,0 +1,88 @@
+package android.net;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * JVM stub of the Android {@code Uri} class, implementing only what the library and Volley use.
+ */
+public class Uri {
+
+	private static final String ALLOWED_CHARS = "_-!.~'()*";
+
+	private final String mUriString;
+
+
+	private Uri(String uriString) {
+		mUriString = uriString;
+	}
+
+	public static Uri parse(String uriString) {
+		return new Uri(uriString);
+	}
+
+	public String getHost() {
+		try {
+			return new URI(mUriString).getHost();
+		} catch (URISyntaxException e) {
+			return null;
+		}
+	}
+
+	public Builder buildUpon() {
+		return new Builder(mUriString);
+	}
+
+	public static String encode(String s) {
+		StringBuilder encoded = new StringBuilder(s.length());
+
+		try {
+			for (byte b : s.getBytes("UTF-8")) {
+				char c = (char) (b & 0xFF);
+
+				if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || ALLOWED_CHARS.indexOf(c) >= 0) {
+					encoded.append(c);
+				} else {
+					encoded.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+							.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+				}
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+
+		return encoded.toString();
+	}
+
+	@Override
+	public String toString() {
+		return mUriString;
+	}
+
+	public static final class Builder {
+
+		private final StringBuilder mUriString;
+
+		private boolean mHasQuery;
+
+
+		Builder(String uriString) {
+			mUriString = new StringBuilder(uriString);
+			mHasQuery = uriString.indexOf('?') >= 0;
+		}
+
+		public Builder appendQueryParameter(String key, String value) {
+			mUriString.append(mHasQuery ? '&' : '?').append(encode(key)).append('=').append(encode(value));
+			mHasQuery = true;
+
+			return this;
+		}
+
+		public Uri build() {
+			return new Uri(mUriString.toString());
+		}
+
+	}
+
+}
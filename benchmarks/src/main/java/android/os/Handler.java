@@ -0,0 +1,25 @@
+package android.os;
+
+/**
+ * JVM stub of the Android {@code Handler} class, that runs the messages posted on the calling thread.
+ */
+public class Handler {
+
+	public Handler() {}
+
+	public Handler(Looper looper) {}
+
+	public final boolean post(Runnable r) {
+		r.run();
+
+		return true;
+	}
+
+	public final boolean postDelayed(Runnable r, long delayMillis) {
+		// Benchmarks don't wait for delayed messages, so they are dropped
+		return true;
+	}
+
+	public final void removeCallbacks(Runnable r) {}
+
+}
@@ -0,0 +1,22 @@
+package android.os;
+
+/**
+ * JVM stub of the Android {@code Looper} class. There's no Main Thread on the JVM, so there's a single looper that runs its
+ * messages right away.
+ */
+public final class Looper {
+
+	private static final Looper MAIN_LOOPER = new Looper();
+
+
+	private Looper() {}
+
+	public static Looper getMainLooper() {
+		return MAIN_LOOPER;
+	}
+
+	public static Looper myLooper() {
+		return MAIN_LOOPER;
+	}
+
+}
@@ -0,0 +1,12 @@
+package android.os;
+
+/**
+ * JVM stub of the Android {@code SystemClock} class, implementing only what Volley uses.
+ */
+public final class SystemClock {
+
+	public static long elapsedRealtime() {
+		return System.nanoTime() / 1000000;
+	}
+
+}
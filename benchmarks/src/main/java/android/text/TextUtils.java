@@ -0,0 +1,12 @@
+package android.text;
+
+/**
+ * JVM stub of the Android {@code TextUtils} class, implementing only what the library and Volley use.
+ */
+public class TextUtils {
+
+	public static boolean isEmpty(CharSequence str) {
+		return str == null || str.length() == 0;
+	}
+
+}
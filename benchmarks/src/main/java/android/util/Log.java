@@ -0,0 +1,46 @@
+package android.util;
+
+/**
+ * JVM stub of the Android {@code Log} class, implementing only what the library and Volley use.
+ */
+public final class Log {
+
+	public static final int VERBOSE = 2;
+
+	public static boolean isLoggable(String tag, int level) {
+		return false;
+	}
+
+	public static int v(String tag, String msg) {
+		return 0;
+	}
+
+	public static int d(String tag, String msg) {
+		return 0;
+	}
+
+	public static int w(String tag, String msg) {
+		return 0;
+	}
+
+	public static int w(String tag, String msg, Throwable tr) {
+		return 0;
+	}
+
+	public static int e(String tag, String msg) {
+		return 0;
+	}
+
+	public static int e(String tag, String msg, Throwable tr) {
+		return 0;
+	}
+
+	public static int wtf(String tag, String msg) {
+		return 0;
+	}
+
+	public static int wtf(String tag, String msg, Throwable tr) {
+		return 0;
+	}
+
+}
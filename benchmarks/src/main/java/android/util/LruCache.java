@@ -0,0 +1,64 @@
+package android.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM stub of the Android {@code LruCache} class, implementing only what the library uses.
+ */
+public class LruCache<K, V> {
+
+	private final LinkedHashMap<K, V> mMap = new LinkedHashMap<>(0, 0.75f, true);
+
+	private final int mMaxSize;
+
+	private int mSize;
+
+
+	public LruCache(int maxSize) {
+		mMaxSize = maxSize;
+	}
+
+	public final synchronized V get(K key) {
+		return mMap.get(key);
+	}
+
+	public final synchronized V put(K key, V value) {
+		mSize += sizeOf(key, value);
+
+		V previous = mMap.put(key, value);
+		if (previous != null) {
+			mSize -= sizeOf(key, previous);
+		}
+
+		trimToSize(mMaxSize);
+
+		return previous;
+	}
+
+	public final synchronized V remove(K key) {
+		V previous = mMap.remove(key);
+		if (previous != null) {
+			mSize -= sizeOf(key, previous);
+		}
+
+		return previous;
+	}
+
+	public final synchronized void evictAll() {
+		trimToSize(-1);
+	}
+
+	private void trimToSize(int maxSize) {
+		while (mSize > maxSize && !mMap.isEmpty()) {
+			Map.Entry<K, V> eldest = mMap.entrySet().iterator().next();
+			mMap.remove(eldest.getKey());
+			mSize -= sizeOf(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	protected int sizeOf(K key, V value) {
+		return 1;
+	}
+
+}
@@ -1,8 +1,29 @@
 package com.hipsheep.volleywrapper;
 
+import com.android.volley.Request;
 import com.android.volley.RetryPolicy;
-
+import com.android.volley.toolbox.HttpStack;
+import com.hipsheep.volleywrapper.network.body.BodyEncoder;
+import com.hipsheep.volleywrapper.network.cache.CachePolicies;
+import com.hipsheep.volleywrapper.network.cache.CachePolicy;
+import com.hipsheep.volleywrapper.network.cache.ParsedResponseCache;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimingsListener;
+import com.hipsheep.volleywrapper.network.retry.BackoffRetryPolicy;
+import com.hipsheep.volleywrapper.network.retry.CircuitBreakers;
+import com.hipsheep.volleywrapper.network.retry.HedgeBudget;
+import com.hipsheep.volleywrapper.network.retry.HedgePolicy;
+import com.hipsheep.volleywrapper.network.route.RouteProfile;
+import com.hipsheep.volleywrapper.network.route.RouteProfiles;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -23,13 +44,167 @@ public class Configuration {
 
 	private Long mSyncTimeout;
 
+	private Boolean mStreamingParse;
+
+	private BodyEncoder mBodyEncoder;
+
+	private Boolean mCoalesceRequests;
+
+	private ParsedResponseCache mParsedResponseCache;
+
+	private HttpStack mHttpStack;
+
+	private Integer mNetworkDispatcherCount;
+
+	private Integer mMaxNetworkDispatcherCount;
+
+	private File mCacheDirectory;
+
+	private Integer mCacheMaxSize;
+
+	private Boolean mJournaledCache;
+
+	private RequestTimingsListener mRequestTimingsListener;
+
+	private Boolean mAcceptGzip;
+
+	private Integer mGzipBodyThreshold;
+
+	private Executor mDeliveryExecutor;
+
+	private Long mTotalTimeout;
+
+	private CachePolicies mCachePolicies;
+
+	private RouteProfiles mRouteProfiles;
+
+	private Set<String> mCacheKeyHeaders;
+
+	private Set<String> mVolatileQueryParams;
+
+	private CircuitBreakers mCircuitBreakers;
+
+	private Request.Priority mPriority;
+
+	/**
+	 * Number of network dispatchers of each traffic class, mapped by name.
+	 */
+	private Map<String, Integer> mTrafficClasses;
+
+	private HedgePolicy mHedgePolicy;
+	private HedgeBudget mHedgeBudget;
+
+	private Integer mMaxConcurrentPrefetches;
+
+	/**
+	 * Whether this configuration is an immutable snapshot (see {@link #snapshot()}).
+	 */
+	private boolean mImmutable;
+	/**
+	 * Number of times this configuration was changed, or the version of the configuration it was copied from if it's a
+	 * snapshot.
+	 */
+	private volatile int mVersion;
+	/**
+	 * Last snapshot taken of this configuration, which is reused while the configuration doesn't change.
+	 */
+	private volatile Configuration mSnapshot;
+
+
+	public Configuration() {}
+
+	/**
+	 * Creates an immutable copy of a configuration.
+	 */
+	private Configuration(Configuration configuration, int version) {
+		mRetryPolicy = configuration.mRetryPolicy;
+		mShouldCache = configuration.mShouldCache;
+		mBodyContentType = configuration.mBodyContentType;
+		mHeaders = configuration.mHeaders != null ? Collections.unmodifiableMap(new HashMap<>(configuration.mHeaders)) : null;
+		mSyncTimeout = configuration.mSyncTimeout;
+		mStreamingParse = configuration.mStreamingParse;
+		mBodyEncoder = configuration.mBodyEncoder;
+		mCoalesceRequests = configuration.mCoalesceRequests;
+		mParsedResponseCache = configuration.mParsedResponseCache;
+		mHttpStack = configuration.mHttpStack;
+		mNetworkDispatcherCount = configuration.mNetworkDispatcherCount;
+		mMaxNetworkDispatcherCount = configuration.mMaxNetworkDispatcherCount;
+		mCacheDirectory = configuration.mCacheDirectory;
+		mCacheMaxSize = configuration.mCacheMaxSize;
+		mJournaledCache = configuration.mJournaledCache;
+		mRequestTimingsListener = configuration.mRequestTimingsListener;
+		mAcceptGzip = configuration.mAcceptGzip;
+		mGzipBodyThreshold = configuration.mGzipBodyThreshold;
+		mDeliveryExecutor = configuration.mDeliveryExecutor;
+		mTotalTimeout = configuration.mTotalTimeout;
+		mCachePolicies = configuration.mCachePolicies != null ? configuration.mCachePolicies.snapshot() : null;
+		mRouteProfiles = configuration.mRouteProfiles != null ? configuration.mRouteProfiles.snapshot() : null;
+		mCacheKeyHeaders = configuration.mCacheKeyHeaders != null
+				? Collections.unmodifiableSet(new TreeSet<>(configuration.mCacheKeyHeaders)) : null;
+		mVolatileQueryParams = configuration.mVolatileQueryParams != null
+				? Collections.unmodifiableSet(new TreeSet<>(configuration.mVolatileQueryParams)) : null;
+		mCircuitBreakers = configuration.mCircuitBreakers;
+		mPriority = configuration.mPriority;
+		mTrafficClasses = configuration.mTrafficClasses != null
+				? Collections.unmodifiableMap(new LinkedHashMap<>(configuration.mTrafficClasses)) : null;
+		mHedgePolicy = configuration.mHedgePolicy;
+		mHedgeBudget = configuration.mHedgeBudget;
+		mMaxConcurrentPrefetches = configuration.mMaxConcurrentPrefetches;
+
+		mImmutable = true;
+		mVersion = version;
+	}
+
+	/**
+	 * Returns an immutable snapshot of this configuration, so the default configuration used by a request can't change
+	 * while it's being created or sent, and its values (e.g. the default headers) can be shared by all the requests. The same
+	 * snapshot is returned until this configuration is changed through its setters.
+	 * <p>
+	 * Its collections (e.g. the headers, route profiles and cache policies) are copied too, so changes made to them after a
+	 * snapshot is taken are only used once the configuration is changed through a setter (e.g. by setting them again).
+	 *
+	 * @return Immutable copy of this configuration, or this same object if it's already immutable.
+	 */
+	public Configuration snapshot() {
+		if (mImmutable) {
+			return this;
+		}
+
+		// Read the version before copying, so a snapshot taken while the configuration changes is not reused
+		int version = mVersion;
+
+		Configuration snapshot = mSnapshot;
+		if (snapshot == null || snapshot.mVersion != version) {
+			snapshot = new Configuration(this, version);
+			mSnapshot = snapshot;
+		}
+
+		return snapshot;
+	}
+
+	private void checkMutable() {
+		if (mImmutable) {
+			throw new UnsupportedOperationException(
+					"A configuration snapshot can't be modified, change the configuration it was taken from instead");
+		}
+	}
+
+	/**
+	 * Lets the next snapshot know that this configuration changed. This is called after the change, so a snapshot taken
+	 * during it isn't reused.
+	 */
+	private synchronized void onChanged() {
+		mVersion++;
+	}
 
 	public RetryPolicy getRetryPolicy() {
 		return mRetryPolicy;
 	}
 
 	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		checkMutable();
 		mRetryPolicy = retryPolicy;
+		onChanged();
 	}
 
 	public Boolean isShouldCache() {
@@ -37,7 +212,9 @@ public class Configuration {
 	}
 
 	public void setShouldCache(Boolean shouldCache) {
+		checkMutable();
 		mShouldCache = shouldCache;
+		onChanged();
 	}
 
 	public String getBodyContentType() {
@@ -45,7 +222,9 @@ public class Configuration {
 	}
 
 	public void setBodyContentType(String bodyContentType) {
+		checkMutable();
 		mBodyContentType = bodyContentType;
+		onChanged();
 	}
 
 	public Map<String, String> getHeaders() {
@@ -53,7 +232,9 @@ public class Configuration {
 	}
 
 	public void setHeaders(Map<String, String> headers) {
+		checkMutable();
 		mHeaders = headers;
+		onChanged();
 	}
 
 	public Long getSyncTimeout() {
@@ -61,7 +242,259 @@ public class Configuration {
 	}
 
 	public void setSyncTimeout(Long syncTimeout) {
+		checkMutable();
 		mSyncTimeout = syncTimeout;
+		onChanged();
+	}
+
+	public Boolean isStreamingParse() {
+		return mStreamingParse;
+	}
+
+	public void setStreamingParse(Boolean streamingParse) {
+		checkMutable();
+		mStreamingParse = streamingParse;
+		onChanged();
+	}
+
+	public BodyEncoder getBodyEncoder() {
+		return mBodyEncoder;
+	}
+
+	public void setBodyEncoder(BodyEncoder bodyEncoder) {
+		checkMutable();
+		mBodyEncoder = bodyEncoder;
+		onChanged();
+	}
+
+	public Boolean isCoalesceRequests() {
+		return mCoalesceRequests;
+	}
+
+	public void setCoalesceRequests(Boolean coalesceRequests) {
+		checkMutable();
+		mCoalesceRequests = coalesceRequests;
+		onChanged();
+	}
+
+	public ParsedResponseCache getParsedResponseCache() {
+		return mParsedResponseCache;
+	}
+
+	public void setParsedResponseCache(ParsedResponseCache parsedResponseCache) {
+		checkMutable();
+		mParsedResponseCache = parsedResponseCache;
+		onChanged();
+	}
+
+	public HttpStack getHttpStack() {
+		return mHttpStack;
+	}
+
+	public void setHttpStack(HttpStack httpStack) {
+		checkMutable();
+		mHttpStack = httpStack;
+		onChanged();
+	}
+
+	public Integer getNetworkDispatcherCount() {
+		return mNetworkDispatcherCount;
+	}
+
+	public void setNetworkDispatcherCount(Integer networkDispatcherCount) {
+		checkMutable();
+		mNetworkDispatcherCount = networkDispatcherCount;
+		onChanged();
+	}
+
+	public Integer getMaxNetworkDispatcherCount() {
+		return mMaxNetworkDispatcherCount;
+	}
+
+	public void setMaxNetworkDispatcherCount(Integer maxNetworkDispatcherCount) {
+		checkMutable();
+		mMaxNetworkDispatcherCount = maxNetworkDispatcherCount;
+		onChanged();
+	}
+
+	public File getCacheDirectory() {
+		return mCacheDirectory;
+	}
+
+	public void setCacheDirectory(File cacheDirectory) {
+		checkMutable();
+		mCacheDirectory = cacheDirectory;
+		onChanged();
+	}
+
+	public Integer getCacheMaxSize() {
+		return mCacheMaxSize;
+	}
+
+	public void setCacheMaxSize(Integer cacheMaxSize) {
+		checkMutable();
+		mCacheMaxSize = cacheMaxSize;
+		onChanged();
+	}
+
+	public Boolean isJournaledCache() {
+		return mJournaledCache;
+	}
+
+	public void setJournaledCache(Boolean journaledCache) {
+		checkMutable();
+		mJournaledCache = journaledCache;
+		onChanged();
+	}
+
+	public RequestTimingsListener getRequestTimingsListener() {
+		return mRequestTimingsListener;
+	}
+
+	public void setRequestTimingsListener(RequestTimingsListener requestTimingsListener) {
+		checkMutable();
+		mRequestTimingsListener = requestTimingsListener;
+		onChanged();
+	}
+
+	public Boolean isAcceptGzip() {
+		return mAcceptGzip;
+	}
+
+	public void setAcceptGzip(Boolean acceptGzip) {
+		checkMutable();
+		mAcceptGzip = acceptGzip;
+		onChanged();
+	}
+
+	public Integer getGzipBodyThreshold() {
+		return mGzipBodyThreshold;
+	}
+
+	public void setGzipBodyThreshold(Integer gzipBodyThreshold) {
+		checkMutable();
+		mGzipBodyThreshold = gzipBodyThreshold;
+		onChanged();
+	}
+
+	public Executor getDeliveryExecutor() {
+		return mDeliveryExecutor;
+	}
+
+	public void setDeliveryExecutor(Executor deliveryExecutor) {
+		checkMutable();
+		mDeliveryExecutor = deliveryExecutor;
+		onChanged();
+	}
+
+	public Long getTotalTimeout() {
+		return mTotalTimeout;
+	}
+
+	public void setTotalTimeout(Long totalTimeout) {
+		checkMutable();
+		mTotalTimeout = totalTimeout;
+		onChanged();
+	}
+
+	public CachePolicies getCachePolicies() {
+		return mCachePolicies;
+	}
+
+	public void setCachePolicies(CachePolicies cachePolicies) {
+		checkMutable();
+		mCachePolicies = cachePolicies;
+		onChanged();
+	}
+
+	public RouteProfiles getRouteProfiles() {
+		return mRouteProfiles;
+	}
+
+	public void setRouteProfiles(RouteProfiles routeProfiles) {
+		checkMutable();
+		mRouteProfiles = routeProfiles;
+		onChanged();
+	}
+
+	public Set<String> getCacheKeyHeaders() {
+		return mCacheKeyHeaders;
+	}
+
+	public void setCacheKeyHeaders(Set<String> cacheKeyHeaders) {
+		checkMutable();
+		mCacheKeyHeaders = cacheKeyHeaders;
+		onChanged();
+	}
+
+	public Set<String> getVolatileQueryParams() {
+		return mVolatileQueryParams;
+	}
+
+	public void setVolatileQueryParams(Set<String> volatileQueryParams) {
+		checkMutable();
+		mVolatileQueryParams = volatileQueryParams;
+		onChanged();
+	}
+
+	public CircuitBreakers getCircuitBreakers() {
+		return mCircuitBreakers;
+	}
+
+	public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+		checkMutable();
+		mCircuitBreakers = circuitBreakers;
+		onChanged();
+	}
+
+	public Request.Priority getPriority() {
+		return mPriority;
+	}
+
+	public void setPriority(Request.Priority priority) {
+		checkMutable();
+		mPriority = priority;
+		onChanged();
+	}
+
+	public Map<String, Integer> getTrafficClasses() {
+		return mTrafficClasses;
+	}
+
+	public void setTrafficClasses(Map<String, Integer> trafficClasses) {
+		checkMutable();
+		mTrafficClasses = trafficClasses;
+		onChanged();
+	}
+
+	public HedgePolicy getHedgePolicy() {
+		return mHedgePolicy;
+	}
+
+	public void setHedgePolicy(HedgePolicy hedgePolicy) {
+		checkMutable();
+		mHedgePolicy = hedgePolicy;
+		onChanged();
+	}
+
+	public HedgeBudget getHedgeBudget() {
+		return mHedgeBudget;
+	}
+
+	public void setHedgeBudget(HedgeBudget hedgeBudget) {
+		checkMutable();
+		mHedgeBudget = hedgeBudget;
+		onChanged();
+	}
+
+	public Integer getMaxConcurrentPrefetches() {
+		return mMaxConcurrentPrefetches;
+	}
+
+	public void setMaxConcurrentPrefetches(Integer maxConcurrentPrefetches) {
+		checkMutable();
+		mMaxConcurrentPrefetches = maxConcurrentPrefetches;
+		onChanged();
 	}
 
 	/*
@@ -131,9 +564,10 @@ public class Configuration {
 		/**
 		 * Sets the timeout value (in seconds) to use for sync requests.
 		 * <p>
-		 * This is the value to use when calling the {@link com.android.volley.toolbox.RequestFuture#get(long, TimeUnit)} method,
-		 * not to be confused with the timeout value that can be set using a {@link RetryPolicy} through the
-		 * {@link #setRetryPolicy(RetryPolicy)} method.
+		 * This is the value to use when calling the
+		 * {@link com.hipsheep.volleywrapper.network.model.ResponseFuture#get(long, TimeUnit)} method, not to be confused with
+		 * the timeout value that can be set using a {@link RetryPolicy} through the {@link #setRetryPolicy(RetryPolicy)} method.
+		 * Requests that time out are cancelled, so they don't keep using the network.
 		 *
 		 * @param syncTimeout
 		 * 		Timeout value (in seconds) to use for sync requests.
@@ -144,6 +578,400 @@ public class Configuration {
 			return this;
 		}
 
+		/**
+		 * Sets whether {@link com.hipsheep.volleywrapper.network.request.GsonRequest}s should parse responses by streaming the
+		 * response bytes straight into Gson (the default), or by decoding them to a {@link String} first.
+		 *
+		 * @param streamingParse
+		 * 		{@code true} to parse responses as a stream, or {@code false} to build an intermediate {@link String}.
+		 */
+		public Builder setStreamingParse(Boolean streamingParse) {
+			mConfiguration.setStreamingParse(streamingParse);
+
+			return this;
+		}
+
+		/**
+		 * Sets the encoder to use as default to serialize the body of all requests (a
+		 * {@link com.hipsheep.volleywrapper.network.body.JsonBodyEncoder} is used if none is set).
+		 *
+		 * @param bodyEncoder
+		 * 		{@link BodyEncoder} to use for all requests.
+		 */
+		public Builder setBodyEncoder(BodyEncoder bodyEncoder) {
+			mConfiguration.setBodyEncoder(bodyEncoder);
+
+			return this;
+		}
+
+		/**
+		 * Sets whether identical GET requests sent while one of them is still in flight should share its response, instead of
+		 * being sent to the server again (see {@link com.hipsheep.volleywrapper.network.request.RequestCoalescer}).
+		 *
+		 * @param coalesceRequests
+		 * 		{@code true} if identical GET requests should be coalesced, or {@code false} otherwise.
+		 */
+		public Builder setCoalesceRequests(Boolean coalesceRequests) {
+			mConfiguration.setCoalesceRequests(coalesceRequests);
+
+			return this;
+		}
+
+		/**
+		 * Sets the in-memory cache where the parsed responses of cacheable requests will be saved, so fresh responses are
+		 * delivered without reading Volley's cache nor parsing them again.
+		 *
+		 * @param parsedResponseCache
+		 * 		{@link ParsedResponseCache} to use for all requests, or {@code null} to not cache parsed responses.
+		 */
+		public Builder setParsedResponseCache(ParsedResponseCache parsedResponseCache) {
+			mConfiguration.setParsedResponseCache(parsedResponseCache);
+
+			return this;
+		}
+
+		/**
+		 * Sets the HTTP stack used by the request queue created on {@link VolleyWrapper#init(android.content.Context)}, e.g. a
+		 * {@link com.hipsheep.volleywrapper.network.stack.PooledHurlStack} or a stack backed by an HTTP/2 client.
+		 * <p>
+		 * This value is only used when the request queue is created, so it has to be set before calling
+		 * {@link VolleyWrapper#init(android.content.Context)}, or passed to
+		 * {@link VolleyWrapper#init(android.content.Context, Configuration)}.
+		 *
+		 * @param httpStack
+		 * 		{@link HttpStack} used to send the requests, or {@code null} to use a
+		 * 		{@link com.hipsheep.volleywrapper.network.stack.PooledHurlStack} with the default settings.
+		 */
+		public Builder setHttpStack(HttpStack httpStack) {
+			mConfiguration.setHttpStack(httpStack);
+
+			return this;
+		}
+
+		/**
+		 * Sets the number of network dispatchers (threads) used by the request queue created on
+		 * {@link VolleyWrapper#init(android.content.Context)} (4 by default).
+		 * <p>
+		 * If {@link #setMaxNetworkDispatcherCount(Integer)} is also set, this is the minimum number of dispatchers used by the
+		 * adaptive mode.
+		 *
+		 * @param networkDispatcherCount
+		 * 		Number of network dispatchers.
+		 */
+		public Builder setNetworkDispatcherCount(Integer networkDispatcherCount) {
+			mConfiguration.setNetworkDispatcherCount(networkDispatcherCount);
+
+			return this;
+		}
+
+		/**
+		 * Enables the adaptive dispatcher mode (see {@link com.hipsheep.volleywrapper.network.stack.AdaptiveNetwork}), where the
+		 * number of network dispatchers used grows up to this value while requests wait for one, and shrinks back to the
+		 * value set through {@link #setNetworkDispatcherCount(Integer)} while they don't. All the dispatchers take requests
+		 * from the queue, so see that class for the limitations this has.
+		 *
+		 * @param maxNetworkDispatcherCount
+		 * 		Maximum number of network dispatchers, or {@code null} to use a fixed number of dispatchers.
+		 */
+		public Builder setMaxNetworkDispatcherCount(Integer maxNetworkDispatcherCount) {
+			mConfiguration.setMaxNetworkDispatcherCount(maxNetworkDispatcherCount);
+
+			return this;
+		}
+
+		/**
+		 * Sets the directory where the request queue created on {@link VolleyWrapper#init(android.content.Context)} caches
+		 * responses (a {@code volley} directory inside the app's cache directory by default).
+		 *
+		 * @param cacheDirectory
+		 * 		Directory where responses are cached.
+		 */
+		public Builder setCacheDirectory(File cacheDirectory) {
+			mConfiguration.setCacheDirectory(cacheDirectory);
+
+			return this;
+		}
+
+		/**
+		 * Sets the maximum size (in bytes) of the cache used by the request queue created on
+		 * {@link VolleyWrapper#init(android.content.Context)} (5MB by default).
+		 *
+		 * @param cacheMaxSize
+		 * 		Maximum size (in bytes) of the cache.
+		 */
+		public Builder setCacheMaxSize(Integer cacheMaxSize) {
+			mConfiguration.setCacheMaxSize(cacheMaxSize);
+
+			return this;
+		}
+
+		/**
+		 * Sets whether the request queue created on {@link VolleyWrapper#init(android.content.Context)} should use a
+		 * {@link com.hipsheep.volleywrapper.network.cache.JournaledDiskCache} instead of Volley's
+		 * {@link com.android.volley.toolbox.DiskBasedCache}. It loads the headers of all its entries from a single journal file,
+		 * so cacheable requests don't wait for every cache file to be read when the app starts.
+		 * <p>
+		 * The files cached by a {@link com.android.volley.toolbox.DiskBasedCache} on the same directory are deleted the first
+		 * time it's initialized.
+		 *
+		 * @param journaledCache
+		 * 		{@code true} to use a journaled cache, or {@code false} to use Volley's cache.
+		 */
+		public Builder setJournaledCache(Boolean journaledCache) {
+			mConfiguration.setJournaledCache(journaledCache);
+
+			return this;
+		}
+
+		/**
+		 * Sets a listener that will receive the timing record of every request once it finishes (the same records are used to
+		 * build the histograms returned by {@link VolleyWrapper#getRequestMetrics()}).
+		 *
+		 * @param requestTimingsListener
+		 * 		{@link RequestTimingsListener} that will receive the timings of all requests.
+		 */
+		public Builder setRequestTimingsListener(RequestTimingsListener requestTimingsListener) {
+			mConfiguration.setRequestTimingsListener(requestTimingsListener);
+
+			return this;
+		}
+
+		/**
+		 * Sets whether requests that decompress their responses (e.g.
+		 * {@link com.hipsheep.volleywrapper.network.request.GsonRequest}) should send an {@code Accept-Encoding: gzip}
+		 * header. Gzip encoded responses are then kept compressed (also on the cache), and decompressed as a stream while they
+		 * are parsed. Other requests only accept them if they are set to (see
+		 * {@link com.hipsheep.volleywrapper.network.request.BaseRequest#setAcceptGzip(boolean)}).
+		 *
+		 * @param acceptGzip
+		 * 		{@code true} if requests should accept gzip encoded responses, or {@code false} otherwise.
+		 */
+		public Builder setAcceptGzip(Boolean acceptGzip) {
+			mConfiguration.setAcceptGzip(acceptGzip);
+
+			return this;
+		}
+
+		/**
+		 * Sets the minimum size (in bytes) of the request bodies that will be compressed using gzip, and sent with a
+		 * {@code Content-Encoding: gzip} header.
+		 *
+		 * @param gzipBodyThreshold
+		 * 		Minimum size (in bytes) of the bodies to compress, or {@code null} to not compress bodies.
+		 */
+		public Builder setGzipBodyThreshold(Integer gzipBodyThreshold) {
+			mConfiguration.setGzipBodyThreshold(gzipBodyThreshold);
+
+			return this;
+		}
+
+		/**
+		 * Sets the {@link Executor} on which the responses and errors of all requests are delivered to their callbacks (the Main
+		 * Thread is used if none is set). Requests that update the UI can still be delivered on the Main Thread through
+		 * {@link com.hipsheep.volleywrapper.network.request.BaseRequest#setDeliveryExecutor(Executor)}.
+		 * <p>
+		 * This is only used by the request queue created on {@link VolleyWrapper#init(android.content.Context)}.
+		 *
+		 * @param deliveryExecutor
+		 * 		{@link Executor} used to deliver the responses of all requests.
+		 */
+		public Builder setDeliveryExecutor(Executor deliveryExecutor) {
+			mConfiguration.setDeliveryExecutor(deliveryExecutor);
+
+			return this;
+		}
+
+		/**
+		 * Sets the total time (in milliseconds) that all requests have to be delivered, counting from when they are added to the
+		 * queue, and including the time they wait on the queue and all their retries. When it runs out the request is cancelled
+		 * and a {@link com.android.volley.TimeoutError} is delivered to its callback.
+		 * <p>
+		 * The timeout of each attempt of the {@link RetryPolicy} is cut to the time left, and retries whose timeout doesn't fit
+		 * in the time left are not started.
+		 *
+		 * @param totalTimeout
+		 * 		Total time (in milliseconds) that all requests have to be delivered, or {@code null} for no limit.
+		 */
+		public Builder setTotalTimeout(Long totalTimeout) {
+			mConfiguration.setTotalTimeout(totalTimeout);
+
+			return this;
+		}
+
+		/**
+		 * Adds a client side cache policy for the requests whose URLs match a pattern, overriding the TTL and soft TTL taken from
+		 * the cache headers of their responses. Patterns are checked in the order they were added (see {@link CachePolicies}).
+		 *
+		 * @param urlPattern
+		 * 		URL pattern, where {@code *} matches any sequence of characters.
+		 * @param cachePolicy
+		 * 		{@link CachePolicy} to use for the requests whose URLs match the pattern.
+		 */
+		public Builder addCachePolicy(String urlPattern, CachePolicy cachePolicy) {
+			if (mConfiguration.getCachePolicies() == null) {
+				mConfiguration.setCachePolicies(new CachePolicies());
+			}
+
+			mConfiguration.getCachePolicies().add(urlPattern, cachePolicy);
+
+			return this;
+		}
+
+		/**
+		 * Adds a profile for the requests sent to a route, whose values (retry policy, timeouts, caching, headers, priority and
+		 * limits) override the ones of this configuration. When several routes match a URL the longest one is used (see
+		 * {@link RouteProfiles}).
+		 *
+		 * @param host
+		 * 		Host of the route, or {@link RouteProfiles#ANY_HOST} to match any host.
+		 * @param pathPattern
+		 * 		Path prefix of the route, where a {@code *} segment matches any single segment.
+		 * @param routeProfile
+		 * 		{@link RouteProfile} to use for the requests sent to the route.
+		 */
+		public Builder addRouteProfile(String host, String pathPattern, RouteProfile routeProfile) {
+			if (mConfiguration.getRouteProfiles() == null) {
+				mConfiguration.setRouteProfiles(new RouteProfiles());
+			}
+
+			mConfiguration.getRouteProfiles().add(host, pathPattern, routeProfile);
+
+			return this;
+		}
+
+		/**
+		 * Adds a header whose value is included in the cache key of all requests, so responses that change with that header
+		 * (like the ones the server marks with {@code Vary}) are cached separately for each of its values.
+		 *
+		 * @param headerName
+		 * 		Name of the header (case insensitive).
+		 */
+		public Builder addCacheKeyHeader(String headerName) {
+			if (mConfiguration.getCacheKeyHeaders() == null) {
+				mConfiguration.setCacheKeyHeaders(new TreeSet<String>());
+			}
+
+			mConfiguration.getCacheKeyHeaders().add(headerName.toLowerCase(Locale.US));
+
+			return this;
+		}
+
+		/**
+		 * Adds a query param that is left out of the cache key of all requests, because its value changes on every request
+		 * without changing the response (e.g. timestamps or cache busters).
+		 *
+		 * @param paramKey
+		 * 		Key of the query param.
+		 */
+		public Builder addVolatileQueryParam(String paramKey) {
+			if (mConfiguration.getVolatileQueryParams() == null) {
+				mConfiguration.setVolatileQueryParams(new TreeSet<String>());
+			}
+
+			mConfiguration.getVolatileQueryParams().add(paramKey);
+
+			return this;
+		}
+
+		/**
+		 * Sets the circuit breakers used to stop sending requests to hosts that are failing: while the breaker of a host is
+		 * open its requests fail fast with a {@link com.hipsheep.volleywrapper.network.retry.CircuitOpenError}, and requests
+		 * using a {@link BackoffRetryPolicy} stop retrying. This is only applied to request queues created after calling
+		 * this method.
+		 *
+		 * @param circuitBreakers
+		 * 		{@link CircuitBreakers} of the hosts requests are sent to.
+		 */
+		public Builder setCircuitBreakers(CircuitBreakers circuitBreakers) {
+			mConfiguration.setCircuitBreakers(circuitBreakers);
+
+			return this;
+		}
+
+		/**
+		 * Sets the priority of all requests, which decides the order in which waiting requests are sent. It can be overridden
+		 * by route profiles (see {@link RouteProfile.Builder#setPriority(Request.Priority)}) and by each request.
+		 *
+		 * @param priority
+		 * 		{@link Request.Priority} of all requests, or {@code null} to use {@link Request.Priority#NORMAL}.
+		 */
+		public Builder setPriority(Request.Priority priority) {
+			mConfiguration.setPriority(priority);
+
+			return this;
+		}
+
+		/**
+		 * Adds a traffic class, with its own request queue and network dispatchers, so the requests of different classes
+		 * don't wait for each other (e.g. a {@code "bulk"} class for uploads and syncs, so they can't take all the network
+		 * threads while a user facing request waits). Requests are assigned to a class through their route profile (see
+		 * {@link RouteProfile.Builder#setTrafficClass(String)}) or {@code BaseRequest.setTrafficClass(String)}, and the ones
+		 * without a class (or with an unknown one) are sent by the default dispatchers.
+		 * <p>
+		 * All the queues share the same cache and HTTP stack. This is only applied to the request queue created on
+		 * {@code VolleyWrapper.init(Context)}.
+		 *
+		 * @param trafficClass
+		 * 		Name of the traffic class.
+		 * @param networkDispatcherCount
+		 * 		Number of network dispatchers (threads) of the traffic class.
+		 */
+		public Builder addTrafficClass(String trafficClass, int networkDispatcherCount) {
+			if (networkDispatcherCount < 1) {
+				throw new IllegalArgumentException("Invalid network dispatcher count: " + networkDispatcherCount);
+			}
+
+			if (mConfiguration.getTrafficClasses() == null) {
+				mConfiguration.setTrafficClasses(new LinkedHashMap<String, Integer>());
+			}
+
+			mConfiguration.getTrafficClasses().put(trafficClass, networkDispatcherCount);
+
+			return this;
+		}
+
+		/**
+		 * Sets the policy used to hedge all idempotent requests (GET and HEAD): when the response of a request doesn't arrive
+		 * after the policy's delay (fixed, or a percentile of its route's latencies) a duplicate is sent, and the first
+		 * response is delivered. It can be overridden by route profiles (see
+		 * {@link RouteProfile.Builder#setHedgePolicy(HedgePolicy)}) and by each request.
+		 *
+		 * @param hedgePolicy
+		 * 		{@link HedgePolicy} of all requests, or {@code null} to not hedge them.
+		 */
+		public Builder setHedgePolicy(HedgePolicy hedgePolicy) {
+			mConfiguration.setHedgePolicy(hedgePolicy);
+
+			return this;
+		}
+
+		/**
+		 * Sets the budget shared by all the hedges sent, which limits the extra load they add (see {@link HedgeBudget}). This
+		 * is only applied to request queues created after calling this method.
+		 *
+		 * @param hedgeBudget
+		 * 		{@link HedgeBudget} of the hedges, or {@code null} to use one with the default settings.
+		 */
+		public Builder setHedgeBudget(HedgeBudget hedgeBudget) {
+			mConfiguration.setHedgeBudget(hedgeBudget);
+
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of prefetches (see {@code VolleyWrapper.prefetch(Collection)}) in flight at the same time.
+		 * This is only applied to request queues set after calling this method.
+		 *
+		 * @param maxConcurrentPrefetches
+		 * 		Maximum number of prefetches in flight, or {@code null} to use
+		 * 		{@link com.hipsheep.volleywrapper.network.request.Prefetcher#DEFAULT_MAX_CONCURRENT_PREFETCHES}.
+		 */
+		public Builder setMaxConcurrentPrefetches(Integer maxConcurrentPrefetches) {
+			mConfiguration.setMaxConcurrentPrefetches(maxConcurrentPrefetches);
+
+			return this;
+		}
+
 		public Configuration build() {
 			return mConfiguration;
 		}
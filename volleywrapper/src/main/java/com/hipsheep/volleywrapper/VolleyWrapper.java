@@ -2,13 +2,39 @@ package com.hipsheep.volleywrapper;
 
 import android.content.Context;
 
+import com.android.volley.Cache;
+import com.android.volley.Network;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.RequestFuture;
+import com.android.volley.Response;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HttpStack;
 import com.android.volley.toolbox.Volley;
+import com.hipsheep.volleywrapper.network.cache.JournaledDiskCache;
+import com.hipsheep.volleywrapper.network.cache.SharedCache;
+import com.hipsheep.volleywrapper.network.metrics.RequestMetrics;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimer;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimings;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimingsListener;
 import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+import com.hipsheep.volleywrapper.network.model.ResponseFuture;
 import com.hipsheep.volleywrapper.network.request.BaseRequest;
+import com.hipsheep.volleywrapper.network.request.Prefetcher;
+import com.hipsheep.volleywrapper.network.request.RequestCoalescer;
+import com.hipsheep.volleywrapper.network.request.RequestDelivery;
+import com.hipsheep.volleywrapper.network.request.RequestThrottle;
+import com.hipsheep.volleywrapper.network.retry.CircuitBreakers;
+import com.hipsheep.volleywrapper.network.retry.HedgeBudget;
+import com.hipsheep.volleywrapper.network.stack.AdaptiveNetwork;
+import com.hipsheep.volleywrapper.network.stack.CircuitBreakerNetwork;
+import com.hipsheep.volleywrapper.network.stack.HedgingNetwork;
+import com.hipsheep.volleywrapper.network.stack.PooledHurlStack;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -20,8 +46,45 @@ import java.util.concurrent.TimeoutException;
  */
 public class VolleyWrapper {
 
+	/**
+	 * Default directory (inside the app's cache directory) where responses are cached, which is the same one Volley uses.
+	 */
+	private static final String DEFAULT_CACHE_DIR = "volley";
+
+	/**
+	 * Default number of network dispatchers, which is the same number Volley uses.
+	 */
+	private static final int DEFAULT_NETWORK_DISPATCHER_COUNT = 4;
+
 	private static RequestQueue sRequestQueue;
 
+	/**
+	 * Throttle used to send requests, which holds back the ones over the limits of their routes.
+	 */
+	private static RequestThrottle sRequestThrottle;
+
+	/**
+	 * Coalescer used to send requests when {@link Configuration#isCoalesceRequests()} is enabled.
+	 */
+	private static RequestCoalescer sRequestCoalescer;
+
+	/**
+	 * Prefetcher used to warm the caches while the queues are idle.
+	 */
+	private static Prefetcher sPrefetcher;
+
+	/**
+	 * Delivery that posts responses on the executor of each request (see {@link BaseRequest#getDeliveryExecutor()}). It's used
+	 * by the request queue created on {@link #init(Context)}, and for responses taken from the
+	 * {@link Configuration#getParsedResponseCache()} without going through the request queue.
+	 */
+	private static final ResponseDelivery sRequestDelivery = new RequestDelivery();
+
+	/**
+	 * Built-in metrics that receive the timings of every request.
+	 */
+	private static final RequestMetrics sRequestMetrics = new RequestMetrics();
+
 	/**
 	 * Default configuration to use for all requests.
 	 */
@@ -31,23 +94,166 @@ public class VolleyWrapper {
 	/**
 	 * Initializes the Volley Wrapper library, and creates the request queue that will be used for queueing the requests to send
 	 * to the server.
+	 * <p>
+	 * The request queue is created using the values set on the default configuration (e.g. its {@link HttpStack}, number of
+	 * network dispatchers and cache), as well as the queues of its traffic classes (see
+	 * {@link Configuration.Builder#addTrafficClass(String, int)}).
 	 *
 	 * @param context
 	 * 		{@link Context} used to create the request queue.
 	 */
 	public static void init(Context context) {
-		sRequestQueue = Volley.newRequestQueue(context);
+		Cache cache = newCache(context);
+
+		HttpStack httpStack = sDefaultConfiguration.getHttpStack();
+		// A pooled stack without any settings works like Volley's default one, and its connections can be aborted by hedges
+		Network network = new BasicNetwork(httpStack != null ? httpStack : new PooledHurlStack.Builder().build());
+
+		// The hedges of all the queues share the same budget
+		HedgeBudget hedgeBudget = sDefaultConfiguration.getHedgeBudget();
+		if (hedgeBudget == null) {
+			hedgeBudget = new HedgeBudget();
+		}
+
+		RequestQueue requestQueue = newRequestQueue(cache, network, hedgeBudget);
+		requestQueue.start();
+
+		init(requestQueue);
+
+		Map<String, Integer> trafficClasses = sDefaultConfiguration.getTrafficClasses();
+		if (trafficClasses != null) {
+			// Each traffic class gets its own dispatchers, but they share the cache and the connections with the default queue
+			Network trafficClassNetwork = withCircuitBreakers(new HedgingNetwork(network, sRequestMetrics, hedgeBudget));
+
+			for (Map.Entry<String, Integer> trafficClass : trafficClasses.entrySet()) {
+				RequestQueue trafficClassQueue =
+						new RequestQueue(cache, trafficClassNetwork, trafficClass.getValue(), sRequestDelivery);
+				trafficClassQueue.start();
+
+				addTrafficClass(trafficClass.getKey(), trafficClassQueue);
+			}
+		}
+	}
+
+	/**
+	 * Sets the default configuration to use for all requests, and then initializes the Volley Wrapper library creating the
+	 * request queue with the values set on that configuration (see {@link #init(Context)}).
+	 *
+	 * @param context
+	 * 		{@link Context} used to create the request queue.
+	 * @param configuration
+	 * 		Default configuration to use for all requests.
+	 */
+	public static void init(Context context, Configuration configuration) {
+		setDefaultConfiguration(configuration);
+
+		init(context);
 	}
 
 	/**
 	 * Initializes the Volley Wrapper library, and sets the request queue that will be used for queueing the requests to send
 	 * to the server.
+	 * <p>
+	 * The responses of this queue are delivered by its own {@link ResponseDelivery}, so the delivery executors set on the
+	 * requests or default configuration are only used if the queue was created with a {@link RequestDelivery}.
 	 *
 	 * @param requestQueue
 	 * 		{@link RequestQueue} that will be used for queueing the requests to send to the server.
 	 */
 	public static void init(RequestQueue requestQueue) {
 		sRequestQueue = requestQueue;
+		sRequestThrottle = new RequestThrottle(requestQueue);
+		sRequestCoalescer = new RequestCoalescer(sRequestThrottle);
+
+		Integer maxConcurrentPrefetches = sDefaultConfiguration.getMaxConcurrentPrefetches();
+		sPrefetcher = new Prefetcher(sRequestThrottle, sRequestCoalescer,
+				maxConcurrentPrefetches != null ? maxConcurrentPrefetches : Prefetcher.DEFAULT_MAX_CONCURRENT_PREFETCHES);
+
+		// Report the timings of each request once it finishes (on any of the queues)
+		sRequestThrottle.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+
+			@Override
+			public void onRequestFinished(Request<Object> request) {
+				if (request instanceof BaseRequest) {
+					reportTimings((BaseRequest<Object>) request);
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Sets the request queue used to send the requests of a traffic class (see {@link BaseRequest#getTrafficClass()}), so they
+	 * have their own dispatchers. This has to be called after {@link #init(RequestQueue)}, and it's called by
+	 * {@link #init(Context)} for the traffic classes set on the default configuration.
+	 *
+	 * @param trafficClass
+	 * 		Name of the traffic class.
+	 * @param requestQueue
+	 * 		{@link RequestQueue} (already started) that will be used for queueing the requests of the traffic class.
+	 */
+	public static void addTrafficClass(String trafficClass, RequestQueue requestQueue) {
+		sRequestThrottle.addRequestQueue(trafficClass, requestQueue);
+	}
+
+	/**
+	 * Creates the cache of the request queues the same way {@link Volley#newRequestQueue(Context)} does, but using the values
+	 * set on the default configuration.
+	 */
+	private static Cache newCache(Context context) {
+		File cacheDirectory = sDefaultConfiguration.getCacheDirectory();
+		if (cacheDirectory == null) {
+			cacheDirectory = new File(context.getCacheDir(), DEFAULT_CACHE_DIR);
+		}
+
+		Integer cacheMaxSize = sDefaultConfiguration.getCacheMaxSize();
+
+		Cache cache;
+		Boolean journaledCache = sDefaultConfiguration.isJournaledCache();
+		if (journaledCache != null && journaledCache) {
+			cache = cacheMaxSize != null
+					? new JournaledDiskCache(cacheDirectory, cacheMaxSize) : new JournaledDiskCache(cacheDirectory);
+		} else {
+			cache = cacheMaxSize != null ? new DiskBasedCache(cacheDirectory, cacheMaxSize) : new DiskBasedCache(cacheDirectory);
+		}
+
+		// The cache is shared by the queues of the traffic classes, so it's only initialized by the first one started
+		return new SharedCache(cache);
+	}
+
+	/**
+	 * Creates the default request queue (without starting it) using the values set on the default configuration.
+	 */
+	private static RequestQueue newRequestQueue(Cache cache, Network network, HedgeBudget hedgeBudget) {
+		Integer networkDispatcherCount = sDefaultConfiguration.getNetworkDispatcherCount();
+		if (networkDispatcherCount == null) {
+			networkDispatcherCount = DEFAULT_NETWORK_DISPATCHER_COUNT;
+		}
+
+		Integer maxNetworkDispatcherCount = sDefaultConfiguration.getMaxNetworkDispatcherCount();
+		if (maxNetworkDispatcherCount != null) {
+			// Start all the dispatchers, and let the adaptive network decide how many of them can use the network
+			network = new AdaptiveNetwork(network, networkDispatcherCount, maxNetworkDispatcherCount);
+			networkDispatcherCount = maxNetworkDispatcherCount;
+		}
+
+		// Hedges go through the adaptive network too, so they count towards its limit
+		network = new HedgingNetwork(network, sRequestMetrics, hedgeBudget);
+
+		return new RequestQueue(cache, withCircuitBreakers(network), networkDispatcherCount, sRequestDelivery);
+	}
+
+	/**
+	 * Wraps a network with the circuit breakers set on the default configuration, if any.
+	 */
+	private static Network withCircuitBreakers(Network network) {
+		CircuitBreakers circuitBreakers = sDefaultConfiguration.getCircuitBreakers();
+		if (circuitBreakers != null) {
+			// Fail requests to open hosts before they take a dispatcher slot on the network
+			network = new CircuitBreakerNetwork(network, circuitBreakers);
+		}
+
+		return network;
 	}
 
 	/**
@@ -63,13 +269,14 @@ public class VolleyWrapper {
 		// constructor method
 		request.setResponseCallback(responseCallback);
 
-		sRequestQueue.add(request);
+		addToQueue(request);
 	}
 
 	/**
 	 * Sends a request to the server synchronously, and returns the response, or throws an {@link Exception} if an error occurred.
 	 * <p>
-	 * IMPORTANT: Don't call this method on the Main Thread or the app will freeze.
+	 * IMPORTANT: Don't call this method on the Main Thread or the app will freeze. Consider using
+	 * {@link #sendRequestAsync(BaseRequest)} instead, which doesn't block any thread.
 	 * <p>
 	 * This method "returns" errors through the {@link Exception}s it throws. The {@link ExecutionException} is the only one of
 	 * the 3 that will contain a {@link com.android.volley.VolleyError} inside, which you can get through the
@@ -83,21 +290,158 @@ public class VolleyWrapper {
 	 * @throws TimeoutException
 	 */
 	public static <T> T sendRequest(BaseRequest<T> request) throws ExecutionException, InterruptedException, TimeoutException {
-		RequestFuture<T> requestFuture = RequestFuture.newFuture();
+		ResponseFuture<T> responseFuture = sendRequestAsync(request);
+
+		try {
+			// If a sync timeout was set, then use it
+			Long syncTimeout = sDefaultConfiguration.getSyncTimeout();
+			if (syncTimeout != null) {
+				// Time out if the response doesn't come back on X seconds
+				return responseFuture.get(syncTimeout, TimeUnit.SECONDS);
+			} else {
+				return responseFuture.get();
+			}
+		} catch (TimeoutException e) {
+			// Nobody will read the response, so cancel the request to free the queue and network
+			responseFuture.cancel(false);
+			throw e;
+		} catch (InterruptedException e) {
+			responseFuture.cancel(false);
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends a request to the server asynchronously, and returns a {@link ResponseFuture} that will be completed with the
+	 * response, or with the {@link com.android.volley.VolleyError} of the request if an error occurred.
+	 * <p>
+	 * Unlike {@link #sendRequest(BaseRequest)}, this method doesn't block the calling thread, and the future can be combined
+	 * with the futures of other requests (e.g. using {@link ResponseFuture#thenApply} or {@link ResponseFuture#allOf}), so
+	 * several requests can be sent at the same time without a blocked thread for each of them. Cancelling the future cancels
+	 * the request.
+	 *
+	 * @param request
+	 * 		{@link Request} to send to the server.
+	 *
+	 * @return Future of the response of the request.
+	 */
+	public static <T> ResponseFuture<T> sendRequestAsync(BaseRequest<T> request) {
+		ResponseFuture<T> responseFuture = new ResponseFuture<>();
+
+		request.setResponseFuture(responseFuture);
+		addToQueue(request);
+
+		return responseFuture;
+	}
+
+	/**
+	 * Prefetches requests in the background, so their responses are in the cache (and, for requests that parse them to
+	 * objects, in the parsed response cache) when they are actually requested. Prefetches are sent with the lowest priority,
+	 * only while no other requests are waiting or in flight, and a few at a time (see {@link Prefetcher}).
+	 *
+	 * @param requests
+	 * 		{@link BaseRequest}s to prefetch, in the order in which they should be sent.
+	 *
+	 * @return {@link Prefetcher.Group} of the prefetches, which can be used to cancel them.
+	 */
+	public static Prefetcher.Group prefetch(Collection<? extends BaseRequest<?>> requests) {
+		return sPrefetcher.prefetch(requests);
+	}
+
+	/**
+	 * Prefetches URLs in the background using GET requests, which only fill Volley's cache (see
+	 * {@link #prefetch(Collection)}).
+	 *
+	 * @param urls
+	 * 		URLs to prefetch, in the order in which they should be sent.
+	 *
+	 * @return {@link Prefetcher.Group} of the prefetches, which can be used to cancel them.
+	 */
+	public static Prefetcher.Group prefetchUrls(Collection<String> urls) {
+		return sPrefetcher.prefetchUrls(urls);
+	}
 
-		request.setRequestFuture(requestFuture);
-		sRequestQueue.add(request);
+	/**
+	 * Adds a request to the request queue, coalescing it with an identical request in flight if that was enabled on the default
+	 * configuration. Requests with a fresh response in the parsed response cache are not added to the queue, and requests with
+	 * a stale one get it delivered before they are added to the queue to refresh it.
+	 */
+	private static <T> void addToQueue(final BaseRequest<T> request) {
+		// If a fresh parsed response is in memory, deliver it right away without reading the cache nor parsing it again
+		T parsedResponse = request.getFreshParsedResponse();
+		if (parsedResponse != null) {
+			request.addMarker(RequestTimer.MARKER_PARSED_CACHE_HIT);
+			sRequestDelivery.postResponse(request, Response.success(parsedResponse, null), new Runnable() {
+
+				@Override
+				public void run() {
+					// The request never reaches the queue, so its timings are reported after it's delivered
+					reportTimings(request);
+				}
 
-		// If a sync timeout was set, then use it
-		Long syncTimeout = sDefaultConfiguration.getSyncTimeout();
-		if (syncTimeout != null) {
-			// Time out if the response doesn't come back on X seconds
-			return requestFuture.get(syncTimeout, TimeUnit.SECONDS);
+			});
+
+			return;
+		}
+
+		// If a stale parsed response is in memory, deliver it right away and then refresh it (stale-while-revalidate)
+		T staleParsedResponse = request.getStaleParsedResponse();
+		if (staleParsedResponse != null) {
+			Response<T> intermediateResponse = Response.success(staleParsedResponse, null);
+			intermediateResponse.intermediate = true;
+
+			request.addMarker(RequestTimer.MARKER_PARSED_CACHE_HIT);
+			sRequestDelivery.postResponse(request, intermediateResponse, new Runnable() {
+
+				@Override
+				public void run() {
+					enqueue(request);
+				}
+
+			});
+
+			return;
+		}
+
+		enqueue(request);
+	}
+
+	/**
+	 * Adds a request to the request queue through the throttle, or to the coalescer if that was enabled on the default
+	 * configuration.
+	 */
+	private static <T> void enqueue(BaseRequest<T> request) {
+		Boolean coalesceRequests = sDefaultConfiguration.isCoalesceRequests();
+		if (coalesceRequests != null && coalesceRequests) {
+			sRequestCoalescer.add(request);
 		} else {
-			return requestFuture.get();
+			sRequestThrottle.add(request);
+		}
+	}
+
+	/**
+	 * Sends the timings of a finished request to the built-in metrics and to the listener set on the default configuration.
+	 */
+	private static void reportTimings(BaseRequest<?> request) {
+		RequestTimings requestTimings = request.createTimings();
+
+		sRequestMetrics.onRequestTimings(requestTimings);
+
+		RequestTimingsListener requestTimingsListener = sDefaultConfiguration.getRequestTimingsListener();
+		if (requestTimingsListener != null) {
+			requestTimingsListener.onRequestTimings(requestTimings);
 		}
 	}
 
+	/**
+	 * Returns the built-in metrics, with rolling histograms of the latencies of all the requests sent.
+	 *
+	 * @return The {@link RequestMetrics} of the requests sent.
+	 */
+	public static RequestMetrics getRequestMetrics() {
+		return sRequestMetrics;
+	}
+
 	/**
 	 * Returns the {@link RequestQueue} used to send requests to the server.
 	 *
@@ -108,7 +452,8 @@ public class VolleyWrapper {
 	}
 
 	/**
-	 * Returns the default configuration to use for all requests.
+	 * Returns the default configuration to use for all requests. Changes made to it through its setters are used by the
+	 * requests created afterwards.
 	 *
 	 * @return Default configuration to use for all requests.
 	 */
@@ -118,6 +463,10 @@ public class VolleyWrapper {
 
 	/**
 	 * Sets a default configuration to use for all requests.
+	 * <p>
+	 * Each request uses an immutable snapshot of the configuration taken when it's created (see
+	 * {@link Configuration#snapshot()}), so changes made to the configuration afterwards are only used by the requests
+	 * created after them.
 	 *
 	 * @param configuration
 	 * 		Default configuration to use for all requests.
@@ -0,0 +1,41 @@
+package com.hipsheep.volleywrapper.network.body;
+
+import java.io.IOException;
+
+/**
+ * Encoder used to serialize the body of a request straight to bytes.
+ * <p>
+ * The body received can be either the {@link java.util.Map} of params added through
+ * {@link com.hipsheep.volleywrapper.network.request.BaseRequest#addBodyParam(String, Object)}, or the object set through
+ * {@link com.hipsheep.volleywrapper.network.request.BaseRequest#setBodyObject(Object)}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public interface BodyEncoder {
+
+	/**
+	 * Serializes the body received as parameter.
+	 *
+	 * @param body
+	 * 		Body to serialize.
+	 * @param charset
+	 * 		Name of the charset to use to encode the body.
+	 *
+	 * @return Bytes to send as the body of the request.
+	 *
+	 * @throws IOException
+	 * 		If the body couldn't be serialized (e.g. the charset is not supported).
+	 */
+	byte[] encode(Object body, String charset) throws IOException;
+
+	/**
+	 * Returns the content type of the bodies serialized by this encoder.
+	 *
+	 * @param charset
+	 * 		Name of the charset used to encode the body.
+	 *
+	 * @return Content type of the bodies serialized by this encoder.
+	 */
+	String getContentType(String charset);
+
+}
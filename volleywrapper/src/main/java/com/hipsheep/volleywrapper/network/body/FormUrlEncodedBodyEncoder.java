@@ -0,0 +1,55 @@
+package com.hipsheep.volleywrapper.network.body;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.Map;
+
+/**
+ * {@link BodyEncoder} that serializes a {@link Map} of params as an {@code application/x-www-form-urlencoded} body.
+ * <p>
+ * Params with {@code null} values are skipped.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class FormUrlEncodedBodyEncoder implements BodyEncoder {
+
+	@Override
+	public byte[] encode(Object body, String charset) throws IOException {
+		if (!(body instanceof Map)) {
+			throw new IllegalArgumentException("Only body params can be form URL encoded, but received: " + body);
+		}
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(outputStream, charset);
+
+		boolean firstParam = true;
+		for (Map.Entry<?, ?> param : ((Map<?, ?>) body).entrySet()) {
+			if (param.getValue() == null) {
+				continue;
+			}
+
+			if (!firstParam) {
+				writer.write('&');
+			}
+
+			writer.write(URLEncoder.encode(String.valueOf(param.getKey()), charset));
+			writer.write('=');
+			writer.write(URLEncoder.encode(param.getValue().toString(), charset));
+
+			firstParam = false;
+		}
+
+		writer.close();
+
+		return outputStream.toByteArray();
+	}
+
+	@Override
+	public String getContentType(String charset) {
+		return "application/x-www-form-urlencoded; charset=" + charset;
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.hipsheep.volleywrapper.network.body;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import com.hipsheep.volleywrapper.util.GsonUtils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+
+/**
+ * {@link BodyEncoder} that serializes bodies as JSON using Gson, writing them straight to bytes without building an
+ * intermediate JSON tree or {@link String}.
+ * <p>
+ * When the body is a {@link Map} of params, each param is written as a field of a JSON object (params with {@code null}
+ * values are written as {@code null} fields). Any other object is serialized by Gson, except for {@link JSONObject} and
+ * {@link JSONArray} values, which are written as the JSON they contain.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class JsonBodyEncoder implements BodyEncoder {
+
+	private final Gson mGson;
+
+
+	/**
+	 * Creates an encoder that uses the {@link Gson} object returned from {@link GsonUtils#getReusableGson()} when encoding,
+	 * so it follows the object set through {@link GsonUtils#setReusableGson(Gson)}.
+	 */
+	public JsonBodyEncoder() {
+		this(null);
+	}
+
+	/**
+	 * Creates an encoder that uses the {@link Gson} object received as parameter.
+	 *
+	 * @param gson
+	 * 		{@link Gson} object used to serialize the bodies, or {@code null} to use the reusable one.
+	 */
+	public JsonBodyEncoder(Gson gson) {
+		mGson = gson;
+	}
+
+	@Override
+	public byte[] encode(Object body, String charset) throws IOException {
+		Gson gson = mGson != null ? mGson : GsonUtils.getReusableGson();
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		JsonWriter jsonWriter = gson.newJsonWriter(new OutputStreamWriter(outputStream, charset));
+
+		try {
+			if (body instanceof Map) {
+				writeParams(gson, (Map<?, ?>) body, jsonWriter);
+			} else {
+				writeValue(gson, body, jsonWriter);
+			}
+		} catch (JsonIOException e) {
+			throw new IOException(e);
+		}
+
+		jsonWriter.close();
+
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Writes the params received as the fields of a JSON object.
+	 */
+	private static void writeParams(Gson gson, Map<?, ?> params, JsonWriter jsonWriter) throws IOException {
+		jsonWriter.setSerializeNulls(true);
+		jsonWriter.beginObject();
+
+		for (Map.Entry<?, ?> param : params.entrySet()) {
+			Object value = param.getValue();
+
+			jsonWriter.name(String.valueOf(param.getKey()));
+			writeValue(gson, value, jsonWriter);
+		}
+
+		jsonWriter.endObject();
+	}
+
+	/**
+	 * Writes a value using Gson, or as it is if it's already JSON.
+	 */
+	private static void writeValue(Gson gson, Object value, JsonWriter jsonWriter) throws IOException {
+		if (value == null || value == JSONObject.NULL) {
+			jsonWriter.nullValue();
+		} else if (value instanceof JSONObject || value instanceof JSONArray) {
+			// Gson would serialize the internal fields of these objects
+			jsonWriter.jsonValue(value.toString());
+		} else {
+			gson.toJson(value, value.getClass(), jsonWriter);
+		}
+	}
+
+	@Override
+	public String getContentType(String charset) {
+		return "application/json; charset=" + charset;
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * {@link CachePolicy}s mapped by URL patterns, where {@code *} matches any sequence of characters (e.g.
+ * {@code "https://api.example.com/posts*"}). Patterns are checked in the order they were added, and the first one that
+ * matches the whole URL is used.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CachePolicies {
+
+	private final List<Entry> mEntries;
+
+	/**
+	 * Whether this is an immutable snapshot (see {@link #snapshot()}).
+	 */
+	private final boolean mImmutable;
+
+
+	public CachePolicies() {
+		mEntries = new ArrayList<>();
+		mImmutable = false;
+	}
+
+	/**
+	 * Creates an immutable copy of a set of policies.
+	 */
+	private CachePolicies(CachePolicies cachePolicies) {
+		// Entries are immutable, so they can be shared
+		mEntries = new ArrayList<>(cachePolicies.mEntries);
+		mImmutable = true;
+	}
+
+	/**
+	 * Returns an immutable snapshot of these policies, so the ones used by the requests of a configuration snapshot can't
+	 * change after it's taken.
+	 *
+	 * @return Immutable copy of these policies, or this same object if it's already immutable.
+	 */
+	public synchronized CachePolicies snapshot() {
+		return mImmutable ? this : new CachePolicies(this);
+	}
+
+	/**
+	 * Adds the cache policy to use for the URLs that match a pattern.
+	 *
+	 * @param urlPattern
+	 * 		URL pattern, where {@code *} matches any sequence of characters.
+	 * @param cachePolicy
+	 * 		{@link CachePolicy} to use for the URLs that match the pattern.
+	 */
+	public synchronized void add(String urlPattern, CachePolicy cachePolicy) {
+		if (mImmutable) {
+			throw new UnsupportedOperationException("Policies can't be added to a snapshot");
+		}
+
+		mEntries.add(new Entry(compile(urlPattern), cachePolicy));
+	}
+
+	/**
+	 * Returns the cache policy to use for a URL.
+	 *
+	 * @param url
+	 * 		URL of a request.
+	 *
+	 * @return The {@link CachePolicy} of the first pattern that matches the URL, or {@code null} if none matches.
+	 */
+	public synchronized CachePolicy find(String url) {
+		for (Entry entry : mEntries) {
+			if (entry.mUrlPattern.matcher(url).matches()) {
+				return entry.mCachePolicy;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Compiles a URL pattern to a regular expression, quoting everything but the wildcards.
+	 */
+	private static Pattern compile(String urlPattern) {
+		StringBuilder regex = new StringBuilder();
+
+		int start = 0;
+		int wildcard;
+		while ((wildcard = urlPattern.indexOf('*', start)) >= 0) {
+			if (wildcard > start) {
+				regex.append(Pattern.quote(urlPattern.substring(start, wildcard)));
+			}
+
+			regex.append(".*");
+			start = wildcard + 1;
+		}
+
+		if (start < urlPattern.length()) {
+			regex.append(Pattern.quote(urlPattern.substring(start)));
+		}
+
+		return Pattern.compile(regex.toString());
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class Entry {
+
+		private final Pattern mUrlPattern;
+		private final CachePolicy mCachePolicy;
+
+
+		Entry(Pattern urlPattern, CachePolicy cachePolicy) {
+			mUrlPattern = urlPattern;
+			mCachePolicy = cachePolicy;
+		}
+
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+/**
+ * Client side cache policy of a response, which overrides the TTL and soft TTL that Volley takes from the response's cache
+ * headers.
+ * <p>
+ * While the soft TTL didn't expire the cached response is delivered without sending the request. After that, and until the
+ * TTL expires, the cached response is delivered right away (stale-while-revalidate) and the request is sent in the
+ * background to refresh it, delivering the new response only if it's different from the cached one.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CachePolicy {
+
+	private final long mSoftTtlMs;
+	private final long mTtlMs;
+
+
+	/**
+	 * Creates a cache policy.
+	 *
+	 * @param softTtlMs
+	 * 		Time (in milliseconds) during which a cached response is used without refreshing it.
+	 * @param ttlMs
+	 * 		Time (in milliseconds) during which a cached response can be used while it's refreshed. Must be greater or equal
+	 * 		than {@code softTtlMs}.
+	 */
+	public CachePolicy(long softTtlMs, long ttlMs) {
+		if (softTtlMs < 0 || ttlMs < softTtlMs) {
+			throw new IllegalArgumentException("TTL must be greater or equal than the soft TTL, and both must be positive");
+		}
+
+		mSoftTtlMs = softTtlMs;
+		mTtlMs = ttlMs;
+	}
+
+	public long getSoftTtlMs() {
+		return mSoftTtlMs;
+	}
+
+	public long getTtlMs() {
+		return mTtlMs;
+	}
+
+}
@@ -0,0 +1,620 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+import android.util.Log;
+
+import com.android.volley.Cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Disk cache that keeps the headers of all its entries on an append-only journal file, so it can be initialized with a single
+ * sequential read of that file, instead of reading the header of every cache file like Volley's
+ * {@link com.android.volley.toolbox.DiskBasedCache} does. The data and response headers of each entry are only read from disk
+ * when the entry is requested.
+ * <p>
+ * The journal is compacted (rewritten with only the current entries) when it has twice as many records as entries, at which
+ * point the files that are not on the journal (e.g. because the app was killed while writing them) are deleted too.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class JournaledDiskCache implements Cache {
+
+	/**
+	 * Default maximum size (in bytes) of the cache, which is the same one Volley uses.
+	 */
+	public static final int DEFAULT_MAX_SIZE_BYTES = 5 * 1024 * 1024;
+
+	/**
+	 * When the cache is full, entries are removed until its size is below this factor of the maximum size.
+	 */
+	private static final float HYSTERESIS_FACTOR = 0.9f;
+
+	/**
+	 * Minimum number of records the journal needs to have to compact it.
+	 */
+	private static final int MIN_COMPACTION_RECORDS = 1000;
+
+	private static final String JOURNAL_FILE_NAME = "journal";
+	private static final String JOURNAL_TEMP_FILE_NAME = "journal.tmp";
+
+	private static final int JOURNAL_MAGIC = 0x56574a31;
+	private static final int ENTRY_MAGIC = 0x56574531;
+
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_REMOVE = 2;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Maximum length (in bytes) of the strings read from the files, so a corrupt length is detected before allocating it.
+	 */
+	private static final int MAX_STRING_BYTES = 1024 * 1024;
+	/**
+	 * Maximum number of entries of the maps read from the files (i.e. response headers), for the same reason.
+	 */
+	private static final int MAX_MAP_SIZE = 4096;
+
+	private final String mLogTag = getClass().getName();
+
+	private final File mRootDirectory;
+
+	private final int mMaxSizeBytes;
+
+	/**
+	 * Headers of the entries on the cache, in least recently used order.
+	 */
+	private final Map<String, EntryHeader> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Total size (in bytes) of the data of all the entries.
+	 */
+	private long mTotalSizeBytes;
+
+	/**
+	 * Writer used to append records to the journal, or {@code null} if the journal can't be written.
+	 */
+	private DataOutputStream mJournalWriter;
+
+	/**
+	 * Number of records on the journal.
+	 */
+	private int mJournalRecordCount;
+
+
+	/**
+	 * Creates a cache with the default maximum size ({@value #DEFAULT_MAX_SIZE_BYTES} bytes).
+	 *
+	 * @param rootDirectory
+	 * 		Directory where the cache files are saved. It shouldn't be used by another cache.
+	 */
+	public JournaledDiskCache(File rootDirectory) {
+		this(rootDirectory, DEFAULT_MAX_SIZE_BYTES);
+	}
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param rootDirectory
+	 * 		Directory where the cache files are saved. It shouldn't be used by another cache.
+	 * @param maxSizeBytes
+	 * 		Maximum size (in bytes) of the data of all the entries of the cache.
+	 */
+	public JournaledDiskCache(File rootDirectory, int maxSizeBytes) {
+		mRootDirectory = rootDirectory;
+		mMaxSizeBytes = maxSizeBytes;
+	}
+
+	@Override
+	public synchronized void initialize() {
+		// The cache can be shared by several request queues, and each of them initializes it
+		if (mJournalWriter != null) {
+			return;
+		}
+
+		if (!mRootDirectory.exists() && !mRootDirectory.mkdirs()) {
+			Log.e(mLogTag, "Cache directory couldn't be created: " + mRootDirectory.getAbsolutePath());
+			return;
+		}
+
+		boolean journalComplete = readJournal();
+
+		if (!journalComplete || needsCompaction()) {
+			rewriteJournal();
+		} else {
+			openJournalWriter();
+		}
+	}
+
+	/**
+	 * Reads all the records of the journal, to load the headers of the entries.
+	 *
+	 * @return {@code true} if the whole journal was read, or {@code false} if it's missing or corrupt (in which case the
+	 * records before the corrupt one are kept).
+	 */
+	private boolean readJournal() {
+		File journalFile = new File(mRootDirectory, JOURNAL_FILE_NAME);
+		if (!journalFile.exists()) {
+			return false;
+		}
+
+		DataInputStream journalReader = null;
+		try {
+			journalReader = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), BUFFER_SIZE));
+
+			if (journalReader.readInt() != JOURNAL_MAGIC) {
+				return false;
+			}
+
+			int recordType;
+			while ((recordType = journalReader.read()) != -1) {
+				if (recordType == RECORD_PUT) {
+					putHeader(EntryHeader.read(journalReader));
+				} else if (recordType == RECORD_REMOVE) {
+					removeHeader(readString(journalReader));
+				} else {
+					return false;
+				}
+
+				mJournalRecordCount++;
+			}
+
+			return true;
+		} catch (EOFException e) {
+			// The last record was not completely written (e.g. the app was killed while writing it)
+			return false;
+		} catch (IOException e) {
+			Log.e(mLogTag, "Cache journal couldn't be read", e);
+			return false;
+		} finally {
+			closeQuietly(journalReader);
+		}
+	}
+
+	@Override
+	public synchronized Entry get(String key) {
+		EntryHeader entryHeader = mEntries.get(key);
+		if (entryHeader == null) {
+			return null;
+		}
+
+		DataInputStream entryReader = null;
+		try {
+			entryReader = new DataInputStream(new BufferedInputStream(new FileInputStream(getFileForKey(key)), BUFFER_SIZE));
+
+			if (entryReader.readInt() != ENTRY_MAGIC || !key.equals(readString(entryReader))) {
+				// The file is corrupt, or it belongs to another key with the same file name
+				removeHeader(key);
+				appendRemoveRecord(key);
+				return null;
+			}
+
+			Map<String, String> responseHeaders = readStringMap(entryReader);
+
+			int dataLength = entryReader.readInt();
+			if (dataLength != entryHeader.mSizeBytes) {
+				throw new IOException("Cache entry size doesn't match the journal: " + dataLength);
+			}
+
+			byte[] data = new byte[dataLength];
+			entryReader.readFully(data);
+
+			return entryHeader.toEntry(data, responseHeaders);
+		} catch (IOException e) {
+			remove(key);
+			return null;
+		} finally {
+			closeQuietly(entryReader);
+		}
+	}
+
+	@Override
+	public synchronized void put(String key, Entry entry) {
+		if (entry.data.length > mMaxSizeBytes) {
+			return;
+		}
+
+		pruneIfNeeded(entry.data.length);
+
+		File file = getFileForKey(key);
+
+		DataOutputStream entryWriter = null;
+		try {
+			entryWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+
+			entryWriter.writeInt(ENTRY_MAGIC);
+			writeString(entryWriter, key);
+			writeStringMap(entryWriter, entry.responseHeaders);
+			entryWriter.writeInt(entry.data.length);
+			entryWriter.write(entry.data);
+
+			entryWriter.close();
+			entryWriter = null;
+		} catch (IOException e) {
+			Log.e(mLogTag, "Cache entry couldn't be written: " + file.getAbsolutePath(), e);
+
+			closeQuietly(entryWriter);
+			file.delete();
+
+			// Any previous entry for the key was overwritten
+			removeHeader(key);
+			appendRemoveRecord(key);
+			return;
+		}
+
+		EntryHeader entryHeader = new EntryHeader(key, entry);
+		putHeader(entryHeader);
+		appendPutRecord(entryHeader);
+	}
+
+	@Override
+	public synchronized void invalidate(String key, boolean fullExpire) {
+		EntryHeader entryHeader = mEntries.get(key);
+		if (entryHeader == null) {
+			return;
+		}
+
+		entryHeader.mSoftTtl = 0;
+		if (fullExpire) {
+			entryHeader.mTtl = 0;
+		}
+
+		// Only the journal is updated, since the expiration times are not saved on the entry file
+		appendPutRecord(entryHeader);
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		getFileForKey(key).delete();
+
+		if (removeHeader(key) != null) {
+			appendRemoveRecord(key);
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		mEntries.clear();
+		mTotalSizeBytes = 0;
+
+		// Rewriting the empty journal deletes all the entry files
+		rewriteJournal();
+	}
+
+	/**
+	 * Removes the least recently used entries until the data received as parameter fits in the cache.
+	 */
+	private void pruneIfNeeded(int neededSizeBytes) {
+		if (mTotalSizeBytes + neededSizeBytes < mMaxSizeBytes) {
+			return;
+		}
+
+		Iterator<EntryHeader> iterator = mEntries.values().iterator();
+		while (iterator.hasNext() && mTotalSizeBytes + neededSizeBytes >= mMaxSizeBytes * HYSTERESIS_FACTOR) {
+			EntryHeader entryHeader = iterator.next();
+
+			getFileForKey(entryHeader.mKey).delete();
+
+			iterator.remove();
+			mTotalSizeBytes -= entryHeader.mSizeBytes;
+
+			appendRemoveRecord(entryHeader.mKey);
+		}
+	}
+
+	private void putHeader(EntryHeader entryHeader) {
+		EntryHeader previousEntryHeader = mEntries.put(entryHeader.mKey, entryHeader);
+		if (previousEntryHeader != null) {
+			mTotalSizeBytes -= previousEntryHeader.mSizeBytes;
+		}
+
+		mTotalSizeBytes += entryHeader.mSizeBytes;
+	}
+
+	private EntryHeader removeHeader(String key) {
+		EntryHeader entryHeader = mEntries.remove(key);
+		if (entryHeader != null) {
+			mTotalSizeBytes -= entryHeader.mSizeBytes;
+		}
+
+		return entryHeader;
+	}
+
+	/*
+	 * Journal
+	 */
+
+	private void appendPutRecord(EntryHeader entryHeader) {
+		if (mJournalWriter == null) {
+			return;
+		}
+
+		try {
+			mJournalWriter.writeByte(RECORD_PUT);
+			entryHeader.write(mJournalWriter);
+			mJournalWriter.flush();
+		} catch (IOException e) {
+			onJournalWriteError(e);
+			return;
+		}
+
+		onRecordAppended();
+	}
+
+	private void appendRemoveRecord(String key) {
+		if (mJournalWriter == null) {
+			return;
+		}
+
+		try {
+			mJournalWriter.writeByte(RECORD_REMOVE);
+			writeString(mJournalWriter, key);
+			mJournalWriter.flush();
+		} catch (IOException e) {
+			onJournalWriteError(e);
+			return;
+		}
+
+		onRecordAppended();
+	}
+
+	private void onRecordAppended() {
+		mJournalRecordCount++;
+
+		if (needsCompaction()) {
+			rewriteJournal();
+		}
+	}
+
+	private void onJournalWriteError(IOException e) {
+		Log.e(mLogTag, "Cache journal couldn't be written, changes will be lost when the app restarts", e);
+
+		closeQuietly(mJournalWriter);
+		mJournalWriter = null;
+	}
+
+	private boolean needsCompaction() {
+		return mJournalRecordCount >= MIN_COMPACTION_RECORDS && mJournalRecordCount >= 2 * mEntries.size();
+	}
+
+	private void openJournalWriter() {
+		try {
+			File journalFile = new File(mRootDirectory, JOURNAL_FILE_NAME);
+			mJournalWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true), BUFFER_SIZE));
+		} catch (IOException e) {
+			onJournalWriteError(e);
+		}
+	}
+
+	/**
+	 * Rewrites the journal with a record for each entry of the cache, and deletes the files that don't belong to any entry.
+	 */
+	private void rewriteJournal() {
+		closeQuietly(mJournalWriter);
+		mJournalWriter = null;
+
+		File journalFile = new File(mRootDirectory, JOURNAL_FILE_NAME);
+		File journalTempFile = new File(mRootDirectory, JOURNAL_TEMP_FILE_NAME);
+
+		DataOutputStream journalTempWriter = null;
+		try {
+			journalTempWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalTempFile), BUFFER_SIZE));
+
+			journalTempWriter.writeInt(JOURNAL_MAGIC);
+			for (EntryHeader entryHeader : mEntries.values()) {
+				journalTempWriter.writeByte(RECORD_PUT);
+				entryHeader.write(journalTempWriter);
+			}
+
+			journalTempWriter.close();
+			journalTempWriter = null;
+
+			if (!journalTempFile.renameTo(journalFile)) {
+				throw new IOException("Journal couldn't be renamed");
+			}
+		} catch (IOException e) {
+			closeQuietly(journalTempWriter);
+			onJournalWriteError(e);
+			return;
+		}
+
+		mJournalRecordCount = mEntries.size();
+
+		deleteUnknownFiles();
+
+		openJournalWriter();
+	}
+
+	/**
+	 * Deletes the files of the root directory that don't belong to any entry.
+	 */
+	private void deleteUnknownFiles() {
+		File[] files = mRootDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		Set<String> fileNames = new HashSet<>();
+		for (String key : mEntries.keySet()) {
+			fileNames.add(getFilenameForKey(key));
+		}
+
+		for (File file : files) {
+			String fileName = file.getName();
+			if (!fileName.equals(JOURNAL_FILE_NAME) && !fileNames.contains(fileName)) {
+				file.delete();
+			}
+		}
+	}
+
+	/*
+	 * Files
+	 */
+
+	/**
+	 * Returns the file where the entry of a key is saved.
+	 *
+	 * @param key
+	 * 		Key of the entry.
+	 *
+	 * @return File of the entry.
+	 */
+	public File getFileForKey(String key) {
+		return new File(mRootDirectory, getFilenameForKey(key));
+	}
+
+	/**
+	 * Creates a pseudo-unique file name for a key, the same way {@link com.android.volley.toolbox.DiskBasedCache} does.
+	 */
+	private static String getFilenameForKey(String key) {
+		int firstHalfLength = key.length() / 2;
+
+		return String.valueOf(key.substring(0, firstHalfLength).hashCode())
+				+ String.valueOf(key.substring(firstHalfLength).hashCode());
+	}
+
+	private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+
+		outputStream.writeInt(bytes.length);
+		outputStream.write(bytes);
+	}
+
+	private static String readString(DataInputStream inputStream) throws IOException {
+		int length = inputStream.readInt();
+		if (length < 0 || length > MAX_STRING_BYTES) {
+			throw new IOException("Invalid string length: " + length);
+		}
+
+		byte[] bytes = new byte[length];
+		inputStream.readFully(bytes);
+
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeStringMap(DataOutputStream outputStream, Map<String, String> map) throws IOException {
+		if (map == null) {
+			outputStream.writeInt(0);
+			return;
+		}
+
+		outputStream.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(outputStream, entry.getKey());
+			writeString(outputStream, entry.getValue() != null ? entry.getValue() : "");
+		}
+	}
+
+	private static Map<String, String> readStringMap(DataInputStream inputStream) throws IOException {
+		int size = inputStream.readInt();
+		if (size < 0 || size > MAX_MAP_SIZE) {
+			throw new IOException("Invalid map size: " + size);
+		}
+
+		Map<String, String> map = new HashMap<>(size * 2);
+		for (int i = 0; i < size; i++) {
+			map.put(readString(inputStream), readString(inputStream));
+		}
+
+		return map;
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable == null) {
+			return;
+		}
+
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// Nothing else to do, the stream is not used anymore
+		}
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Fields of a cache entry that are kept in memory and saved on the journal.
+	 */
+	private static class EntryHeader {
+
+		private final String mKey;
+		private final long mSizeBytes;
+
+		private final String mEtag;
+		private final long mServerDate;
+		private final long mLastModified;
+		private long mTtl;
+		private long mSoftTtl;
+
+
+		EntryHeader(String key, Entry entry) {
+			this(key, entry.data.length, entry.etag, entry.serverDate, entry.lastModified, entry.ttl, entry.softTtl);
+		}
+
+		EntryHeader(String key, long sizeBytes, String etag, long serverDate, long lastModified, long ttl, long softTtl) {
+			mKey = key;
+			mSizeBytes = sizeBytes;
+			mEtag = etag;
+			mServerDate = serverDate;
+			mLastModified = lastModified;
+			mTtl = ttl;
+			mSoftTtl = softTtl;
+		}
+
+		static EntryHeader read(DataInputStream inputStream) throws IOException {
+			String key = readString(inputStream);
+			long sizeBytes = inputStream.readLong();
+			String etag = inputStream.readBoolean() ? readString(inputStream) : null;
+
+			return new EntryHeader(key, sizeBytes, etag, inputStream.readLong(), inputStream.readLong(), inputStream.readLong(),
+					inputStream.readLong());
+		}
+
+		void write(DataOutputStream outputStream) throws IOException {
+			writeString(outputStream, mKey);
+			outputStream.writeLong(mSizeBytes);
+
+			outputStream.writeBoolean(mEtag != null);
+			if (mEtag != null) {
+				writeString(outputStream, mEtag);
+			}
+
+			outputStream.writeLong(mServerDate);
+			outputStream.writeLong(mLastModified);
+			outputStream.writeLong(mTtl);
+			outputStream.writeLong(mSoftTtl);
+		}
+
+		Entry toEntry(byte[] data, Map<String, String> responseHeaders) {
+			Entry entry = new Entry();
+			entry.data = data;
+			entry.etag = mEtag;
+			entry.serverDate = mServerDate;
+			entry.lastModified = mLastModified;
+			entry.ttl = mTtl;
+			entry.softTtl = mSoftTtl;
+			entry.responseHeaders = responseHeaders;
+
+			return entry;
+		}
+
+	}
+
+}
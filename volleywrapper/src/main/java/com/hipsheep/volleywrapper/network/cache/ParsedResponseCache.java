@@ -0,0 +1,189 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+import android.util.LruCache;
+
+import com.android.volley.Cache;
+
+/**
+ * In-memory LRU cache of parsed response objects, that sits in front of Volley's byte cache.
+ * <p>
+ * Entries keep the TTL and soft TTL of the {@link Cache.Entry} created for the response they were parsed from, so a fresh
+ * entry can be delivered without reading the Volley cache nor parsing the response again. The size of the cache is bounded
+ * by the estimated size (in bytes) of its entries, which is the size of the responses they were parsed from.
+ * <p>
+ * Note that cached objects are shared by all the requests that get them from this cache, so they shouldn't be modified.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class ParsedResponseCache {
+
+	private final LruCache<String, CachedResponse> mLruCache;
+
+
+	/**
+	 * Creates a parsed response cache.
+	 *
+	 * @param maxSizeBytes
+	 * 		Maximum estimated size (in bytes) of all the entries of the cache.
+	 */
+	public ParsedResponseCache(int maxSizeBytes) {
+		mLruCache = new LruCache<String, CachedResponse>(maxSizeBytes) {
+
+			@Override
+			protected int sizeOf(String key, CachedResponse cachedResponse) {
+				return cachedResponse.mSizeBytes;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the parsed response saved for a key, but only if it doesn't need to be refreshed yet (i.e. its soft TTL didn't
+	 * expire).
+	 *
+	 * @param key
+	 * 		Key of the response.
+	 *
+	 * @return Parsed response, or {@code null} if there's no fresh response for the key.
+	 */
+	public Object getFresh(String key) {
+		CachedResponse cachedResponse = get(key);
+		return cachedResponse != null && !cachedResponse.refreshNeeded() ? cachedResponse.mResult : null;
+	}
+
+	/**
+	 * Returns the parsed response saved for a key, but only if it needs to be refreshed (i.e. its soft TTL expired but its TTL
+	 * didn't), so it can be delivered while a new response is requested.
+	 *
+	 * @param key
+	 * 		Key of the response.
+	 *
+	 * @return Parsed response, or {@code null} if there's no stale response for the key.
+	 */
+	public Object getStale(String key) {
+		CachedResponse cachedResponse = get(key);
+		return cachedResponse != null && cachedResponse.refreshNeeded() ? cachedResponse.mResult : null;
+	}
+
+	/**
+	 * Returns the parsed response saved for a key, but only if it was parsed from the same response as the Volley cache entry
+	 * received as parameter.
+	 *
+	 * @param key
+	 * 		Key of the response.
+	 * @param cacheEntry
+	 * 		Volley cache entry read for the response.
+	 *
+	 * @return Parsed response, or {@code null} if there's no response for the key parsed from {@code cacheEntry}.
+	 */
+	public Object get(String key, Cache.Entry cacheEntry) {
+		CachedResponse cachedResponse = get(key);
+		return cachedResponse != null && cachedResponse.isParsedFrom(cacheEntry) ? cachedResponse.mResult : null;
+	}
+
+	/**
+	 * Returns the entry saved for a key, removing it if it expired.
+	 */
+	private CachedResponse get(String key) {
+		CachedResponse cachedResponse = mLruCache.get(key);
+
+		if (cachedResponse != null && cachedResponse.isExpired()) {
+			mLruCache.remove(key);
+			return null;
+		}
+
+		return cachedResponse;
+	}
+
+	/**
+	 * Saves a parsed response.
+	 *
+	 * @param key
+	 * 		Key of the response.
+	 * @param result
+	 * 		Parsed response.
+	 * @param cacheEntry
+	 * 		Volley cache entry created for the response, from which the TTL and soft TTL are taken.
+	 * @param sizeBytes
+	 * 		Estimated size (in bytes) of the parsed response.
+	 */
+	public void put(String key, Object result, Cache.Entry cacheEntry, int sizeBytes) {
+		if (result == null || cacheEntry.isExpired()) {
+			// Remove any previous response, so it's not used instead of the new one
+			mLruCache.remove(key);
+			return;
+		}
+
+		mLruCache.put(key, new CachedResponse(result, cacheEntry, Math.max(sizeBytes, 1)));
+	}
+
+	/**
+	 * Removes the parsed response saved for a key.
+	 *
+	 * @param key
+	 * 		Key of the response.
+	 */
+	public void remove(String key) {
+		mLruCache.remove(key);
+	}
+
+	/**
+	 * Removes all the parsed responses from the cache.
+	 */
+	public void clear() {
+		mLruCache.evictAll();
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Parsed response saved on the cache.
+	 */
+	private static class CachedResponse {
+
+		private final Object mResult;
+
+		private final long mTtl;
+		private final long mSoftTtl;
+
+		/**
+		 * Fields of the Volley cache entry used to know if it contains the response this object was parsed from.
+		 */
+		private final long mServerDate;
+		private final String mEtag;
+		private final int mDataLength;
+
+		private final int mSizeBytes;
+
+
+		CachedResponse(Object result, Cache.Entry cacheEntry, int sizeBytes) {
+			mResult = result;
+			mTtl = cacheEntry.ttl;
+			mSoftTtl = cacheEntry.softTtl;
+			mServerDate = cacheEntry.serverDate;
+			mEtag = cacheEntry.etag;
+			mDataLength = cacheEntry.data == null ? 0 : cacheEntry.data.length;
+			mSizeBytes = sizeBytes;
+		}
+
+		boolean isExpired() {
+			return mTtl < System.currentTimeMillis();
+		}
+
+		boolean refreshNeeded() {
+			return mSoftTtl < System.currentTimeMillis();
+		}
+
+		boolean isParsedFrom(Cache.Entry cacheEntry) {
+			int dataLength = cacheEntry.data == null ? 0 : cacheEntry.data.length;
+
+			return mServerDate == cacheEntry.serverDate
+					&& mDataLength == dataLength
+					&& (mEtag == null ? cacheEntry.etag == null : mEtag.equals(cacheEntry.etag));
+		}
+
+	}
+
+}
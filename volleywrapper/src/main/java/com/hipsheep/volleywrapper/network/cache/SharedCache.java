@@ -0,0 +1,92 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+import com.android.volley.Cache;
+
+/**
+ * {@link Cache} shared by several request queues, which only initializes the cache it wraps once.
+ * <p>
+ * The cache dispatcher of each request queue initializes its cache when the queue is started, and some caches (e.g. Volley's
+ * {@link com.android.volley.toolbox.DiskBasedCache}) read all their files from disk every time they are initialized. The
+ * first dispatcher initializes the cache, and the others wait for it to finish, since they can't use the cache before that.
+ * <p>
+ * It also remembers the last entry read on each thread, since Volley's cache dispatcher parses a cache hit before setting the
+ * entry on the request, so the request can know the expiration times of the response it's parsing (see
+ * {@link #getEntryRead(byte[])}).
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class SharedCache implements Cache {
+
+	/**
+	 * Last entry read from any shared cache on each thread.
+	 */
+	private static final ThreadLocal<Entry> sEntryRead = new ThreadLocal<>();
+
+	private final Cache mCache;
+
+	private boolean mInitialized;
+
+
+	/**
+	 * Creates a shared cache.
+	 *
+	 * @param cache
+	 * 		{@link Cache} shared by the request queues.
+	 */
+	public SharedCache(Cache cache) {
+		mCache = cache;
+	}
+
+	@Override
+	public synchronized void initialize() {
+		if (mInitialized) {
+			return;
+		}
+
+		mCache.initialize();
+		mInitialized = true;
+	}
+
+	@Override
+	public Entry get(String key) {
+		Entry entry = mCache.get(key);
+		sEntryRead.set(entry);
+
+		return entry;
+	}
+
+	@Override
+	public void put(String key, Entry entry) {
+		mCache.put(key, entry);
+	}
+
+	@Override
+	public void invalidate(String key, boolean fullExpire) {
+		mCache.invalidate(key, fullExpire);
+	}
+
+	@Override
+	public void remove(String key) {
+		mCache.remove(key);
+	}
+
+	@Override
+	public void clear() {
+		mCache.clear();
+	}
+
+	/**
+	 * Returns the last entry read from a shared cache on the current thread, if it's the one that contains the data received
+	 * as parameter.
+	 *
+	 * @param data
+	 * 		Data of a response read from the cache.
+	 *
+	 * @return {@link Entry} that contains {@code data}, or {@code null} if it wasn't the last one read on this thread.
+	 */
+	public static Entry getEntryRead(byte[] data) {
+		Entry entry = sEntryRead.get();
+		return entry != null && data != null && entry.data == data ? entry : null;
+	}
+
+}
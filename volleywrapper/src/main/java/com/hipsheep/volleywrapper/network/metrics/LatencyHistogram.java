@@ -0,0 +1,156 @@
+package com.hipsheep.volleywrapper.network.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Rolling histogram of latencies, that keeps the last samples recorded and calculates percentiles over them.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Default number of samples kept by the histogram.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 512;
+
+	private final long[] mSamples;
+
+	/**
+	 * Position where the next sample will be saved.
+	 */
+	private int mNextIndex;
+	/**
+	 * Total number of samples recorded (including the ones that already left the window).
+	 */
+	private long mCount;
+
+
+	public LatencyHistogram() {
+		this(DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates a histogram.
+	 *
+	 * @param windowSize
+	 * 		Number of samples kept by the histogram.
+	 */
+	public LatencyHistogram(int windowSize) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be at least 1");
+		}
+
+		mSamples = new long[windowSize];
+	}
+
+	/**
+	 * Records a latency sample, replacing the oldest one if the window is full.
+	 *
+	 * @param latencyMs
+	 * 		Latency (in milliseconds) to record.
+	 */
+	public synchronized void record(long latencyMs) {
+		mSamples[mNextIndex] = latencyMs;
+		mNextIndex = (mNextIndex + 1) % mSamples.length;
+		mCount++;
+	}
+
+	/**
+	 * Returns the total number of samples recorded.
+	 *
+	 * @return Number of samples recorded.
+	 */
+	public synchronized long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns a percentile of the samples in the window.
+	 *
+	 * @param percentile
+	 * 		Percentile to return, between {@code 0} and {@code 1} (e.g. {@code 0.95} for p95).
+	 *
+	 * @return Latency (in milliseconds) of the percentile, or {@code -1} if no samples were recorded.
+	 */
+	public long getPercentile(double percentile) {
+		return getSnapshot().getPercentile(percentile);
+	}
+
+	/**
+	 * Returns a snapshot of the samples currently in the window, which can be used to calculate several percentiles without
+	 * sorting the samples again.
+	 *
+	 * @return Snapshot of the histogram.
+	 */
+	public Snapshot getSnapshot() {
+		long[] samples;
+		synchronized (this) {
+			samples = Arrays.copyOf(mSamples, (int) Math.min(mCount, mSamples.length));
+		}
+
+		Arrays.sort(samples);
+
+		return new Snapshot(samples);
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Sorted samples of a {@link LatencyHistogram} at a point in time.
+	 */
+	public static class Snapshot {
+
+		private final long[] mSortedSamples;
+
+
+		Snapshot(long[] sortedSamples) {
+			mSortedSamples = sortedSamples;
+		}
+
+		/**
+		 * Returns the number of samples in the snapshot.
+		 */
+		public int size() {
+			return mSortedSamples.length;
+		}
+
+		/**
+		 * Returns a percentile of the samples.
+		 *
+		 * @param percentile
+		 * 		Percentile to return, between {@code 0} and {@code 1} (e.g. {@code 0.95} for p95).
+		 *
+		 * @return Latency (in milliseconds) of the percentile, or {@code -1} if there are no samples.
+		 */
+		public long getPercentile(double percentile) {
+			if (mSortedSamples.length == 0) {
+				return -1;
+			}
+
+			int index = (int) Math.ceil(percentile * mSortedSamples.length) - 1;
+			return mSortedSamples[Math.min(Math.max(index, 0), mSortedSamples.length - 1)];
+		}
+
+		public long getP50() {
+			return getPercentile(0.50);
+		}
+
+		public long getP95() {
+			return getPercentile(0.95);
+		}
+
+		public long getP99() {
+			return getPercentile(0.99);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("p50 %dms, p95 %dms, p99 %dms (%d samples)", getP50(), getP95(), getP99(), size());
+		}
+
+	}
+
+}
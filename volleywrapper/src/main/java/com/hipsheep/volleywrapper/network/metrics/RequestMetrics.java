@@ -0,0 +1,141 @@
+package com.hipsheep.volleywrapper.network.metrics;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Built-in {@link RequestTimingsListener} that keeps rolling {@link LatencyHistogram}s of the total and network times of
+ * the requests, both for all requests and for each route (URL without the query), so slow endpoints can be found.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestMetrics implements RequestTimingsListener {
+
+	/**
+	 * Maximum number of routes that get their own histograms, so URLs with unique paths don't make this object grow forever.
+	 */
+	private static final int MAX_ROUTES = 256;
+
+	private final LatencyHistogram mTotalTimeHistogram = new LatencyHistogram();
+	private final LatencyHistogram mNetworkTimeHistogram = new LatencyHistogram();
+
+	private final ConcurrentMap<String, LatencyHistogram> mRouteTotalTimeHistograms = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LatencyHistogram> mRouteNetworkTimeHistograms = new ConcurrentHashMap<>();
+
+
+	@Override
+	public void onRequestTimings(RequestTimings requestTimings) {
+		if (requestTimings.getOutcome() == RequestTimings.Outcome.CANCELLED) {
+			return;
+		}
+
+		String route = requestTimings.getRoute();
+
+		long totalTimeMs = requestTimings.getTotalTimeMs();
+		if (totalTimeMs >= 0) {
+			mTotalTimeHistogram.record(totalTimeMs);
+			recordRoute(mRouteTotalTimeHistograms, route, totalTimeMs);
+		}
+
+		long networkTimeMs = requestTimings.getNetworkTimeMs();
+		if (networkTimeMs >= 0) {
+			mNetworkTimeHistogram.record(networkTimeMs);
+			recordRoute(mRouteNetworkTimeHistograms, route, networkTimeMs);
+		}
+	}
+
+	private void recordRoute(ConcurrentMap<String, LatencyHistogram> routeHistograms, String route, long latencyMs) {
+		LatencyHistogram histogram = routeHistograms.get(route);
+
+		if (histogram == null) {
+			if (routeHistograms.size() >= MAX_ROUTES) {
+				return;
+			}
+
+			LatencyHistogram newHistogram = new LatencyHistogram();
+			histogram = routeHistograms.putIfAbsent(route, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+
+		histogram.record(latencyMs);
+	}
+
+	/**
+	 * Returns the histogram of the total times of all requests.
+	 */
+	public LatencyHistogram getTotalTimeHistogram() {
+		return mTotalTimeHistogram;
+	}
+
+	/**
+	 * Returns the histogram of the network times of all requests.
+	 */
+	public LatencyHistogram getNetworkTimeHistogram() {
+		return mNetworkTimeHistogram;
+	}
+
+	/**
+	 * Returns the histogram of the total times of the requests sent to a route.
+	 *
+	 * @param route
+	 * 		Route of the requests (see {@link #getRoute(String)}).
+	 *
+	 * @return The histogram of the route, or {@code null} if no request was recorded for it.
+	 */
+	public LatencyHistogram getTotalTimeHistogram(String route) {
+		return mRouteTotalTimeHistograms.get(route);
+	}
+
+	/**
+	 * Returns the histogram of the network times of the requests sent to a route.
+	 *
+	 * @param route
+	 * 		Route of the requests (see {@link #getRoute(String)}).
+	 *
+	 * @return The histogram of the route, or {@code null} if no request was recorded for it.
+	 */
+	public LatencyHistogram getNetworkTimeHistogram(String route) {
+		return mRouteNetworkTimeHistograms.get(route);
+	}
+
+	/**
+	 * Returns the routes that have histograms.
+	 */
+	public Set<String> getRoutes() {
+		return Collections.unmodifiableSet(new HashSet<>(mRouteTotalTimeHistograms.keySet()));
+	}
+
+	/**
+	 * Returns the route of a URL, which is the URL without its query and fragment.
+	 *
+	 * @param url
+	 * 		URL of a request.
+	 *
+	 * @return Route of the URL.
+	 */
+	public static String getRoute(String url) {
+		if (url == null) {
+			return null;
+		}
+
+		int end = url.length();
+
+		int queryStart = url.indexOf('?');
+		if (queryStart >= 0) {
+			end = queryStart;
+		}
+
+		int fragmentStart = url.indexOf('#');
+		if (fragmentStart >= 0 && fragmentStart < end) {
+			end = fragmentStart;
+		}
+
+		return url.substring(0, end);
+	}
+
+}
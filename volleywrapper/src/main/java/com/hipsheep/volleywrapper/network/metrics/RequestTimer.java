@@ -0,0 +1,237 @@
+package com.hipsheep.volleywrapper.network.metrics;
+
+import com.android.volley.VolleyError;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time at which a request goes through each stage of its life cycle, from the markers Volley adds to it (see
+ * {@link com.android.volley.Request#addMarker(String)}), to build its {@link RequestTimings} once it finishes.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestTimer {
+
+	/**
+	 * Marker added when a request's response is taken from the parsed response cache, without adding it to the queue.
+	 */
+	public static final String MARKER_PARSED_CACHE_HIT = "parsed-cache-hit";
+	/**
+	 * Marker added when a request is held back by the limits of its route, before adding it to the queue.
+	 */
+	public static final String MARKER_THROTTLED = "throttled";
+	/**
+	 * Marker added when a duplicate of a request is sent because its response was too slow (see
+	 * {@link com.hipsheep.volleywrapper.network.retry.HedgePolicy}).
+	 */
+	public static final String MARKER_HEDGED = "hedged";
+
+	private static final long NOT_SET = -1;
+
+	private volatile long mEnqueueTimeMs = NOT_SET;
+
+	/*
+	 * Times (as returned by System.nanoTime()) of each stage
+	 */
+	private volatile long mEnqueueNs = NOT_SET;
+	private volatile long mCacheStartNs = NOT_SET;
+	private volatile long mCacheEndNs = NOT_SET;
+	private volatile long mNetworkStartNs = NOT_SET;
+	private volatile long mNetworkEndNs = NOT_SET;
+	private volatile long mParseStartNs = NOT_SET;
+	private volatile long mParseEndNs = NOT_SET;
+	private volatile long mPostNs = NOT_SET;
+	private volatile long mDeliveryNs = NOT_SET;
+
+	private volatile long mBytesIn;
+	private volatile long mBytesOut;
+
+	private volatile boolean mFromCache;
+
+	private volatile VolleyError mError;
+
+
+	/**
+	 * Records the time of the marker added to the request.
+	 *
+	 * @param marker
+	 * 		Marker added to the request.
+	 */
+	public void onMarker(String marker) {
+		long nowNs = System.nanoTime();
+
+		switch (marker) {
+			case "add-to-queue":
+			case "coalesced":
+			case MARKER_THROTTLED:
+				onEnqueued(nowNs);
+				break;
+			case MARKER_PARSED_CACHE_HIT:
+				onEnqueued(nowNs);
+				mFromCache = true;
+				break;
+			case "cache-queue-take":
+				mCacheStartNs = nowNs;
+				break;
+			case "cache-miss":
+			case "cache-hit-expired":
+				mCacheEndNs = nowNs;
+				break;
+			case "cache-hit":
+				mCacheEndNs = nowNs;
+				mParseStartNs = nowNs;
+				mFromCache = true;
+				break;
+			case "cache-hit-parsed":
+				mParseEndNs = nowNs;
+				break;
+			case "network-queue-take":
+				mNetworkStartNs = nowNs;
+				break;
+			case "network-http-complete":
+				mNetworkEndNs = nowNs;
+				mParseStartNs = nowNs;
+				mFromCache = false;
+				break;
+			case "network-parse-complete":
+				mParseEndNs = nowNs;
+				break;
+			case "post-response":
+			case "post-error":
+				mPostNs = nowNs;
+				break;
+		}
+	}
+
+	private void onEnqueued(long nowNs) {
+		if (mEnqueueNs == NOT_SET) {
+			mEnqueueNs = nowNs;
+			mEnqueueTimeMs = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Records the number of bytes received from the network.
+	 *
+	 * @param bytesIn
+	 * 		Number of bytes received.
+	 */
+	public void onBytesIn(long bytesIn) {
+		mBytesIn = bytesIn;
+	}
+
+	/**
+	 * Records the number of bytes sent as the request body.
+	 *
+	 * @param bytesOut
+	 * 		Number of bytes sent.
+	 */
+	public void onBytesOut(long bytesOut) {
+		mBytesOut = bytesOut;
+	}
+
+	/**
+	 * Records the time when the response (or error) is delivered to the callback.
+	 *
+	 * @param error
+	 * 		Error delivered, or {@code null} if a response was delivered.
+	 */
+	public void onDelivery(VolleyError error) {
+		mDeliveryNs = System.nanoTime();
+		mError = error;
+	}
+
+	/**
+	 * Creates the timing record of the request, once it finished.
+	 *
+	 * @param url
+	 * 		URL of the request.
+	 * @param method
+	 * 		Method of the request.
+	 * @param retryCount
+	 * 		Number of times the request was retried.
+	 * @param cancelled
+	 * 		Whether the request was cancelled.
+	 *
+	 * @return Timing record of the request.
+	 */
+	public RequestTimings createTimings(String url, int method, int retryCount, boolean cancelled) {
+		RequestTimings.Outcome outcome;
+		if (mDeliveryNs == NOT_SET && cancelled) {
+			outcome = RequestTimings.Outcome.CANCELLED;
+		} else {
+			outcome = mError != null ? RequestTimings.Outcome.ERROR : RequestTimings.Outcome.SUCCESS;
+		}
+
+		return new RequestTimings(this, url, method, retryCount, outcome);
+	}
+
+	long getEnqueueTimeMs() {
+		return mEnqueueTimeMs;
+	}
+
+	long getQueueTimeMs() {
+		if (mEnqueueNs == NOT_SET) {
+			return NOT_SET;
+		}
+
+		long queueTimeNs;
+		if (mCacheStartNs == NOT_SET) {
+			// The request skipped the cache
+			queueTimeNs = mNetworkStartNs != NOT_SET ? mNetworkStartNs - mEnqueueNs : 0;
+		} else {
+			queueTimeNs = mCacheStartNs - mEnqueueNs;
+
+			if (mNetworkStartNs != NOT_SET && mCacheEndNs != NOT_SET) {
+				queueTimeNs += mNetworkStartNs - mCacheEndNs;
+			}
+		}
+
+		return toMs(queueTimeNs);
+	}
+
+	long getCacheLookupTimeMs() {
+		return between(mCacheStartNs, mCacheEndNs);
+	}
+
+	long getNetworkTimeMs() {
+		return between(mNetworkStartNs, mNetworkEndNs);
+	}
+
+	long getParseTimeMs() {
+		return between(mParseStartNs, mParseEndNs);
+	}
+
+	long getDeliveryLatencyMs() {
+		return between(mPostNs, mDeliveryNs);
+	}
+
+	long getTotalTimeMs() {
+		return between(mEnqueueNs, mDeliveryNs != NOT_SET ? mDeliveryNs : System.nanoTime());
+	}
+
+	long getBytesIn() {
+		return mBytesIn;
+	}
+
+	long getBytesOut() {
+		return mBytesOut;
+	}
+
+	boolean isFromCache() {
+		return mFromCache;
+	}
+
+	VolleyError getError() {
+		return mError;
+	}
+
+	private static long between(long startNs, long endNs) {
+		return startNs == NOT_SET || endNs == NOT_SET ? NOT_SET : toMs(endNs - startNs);
+	}
+
+	private static long toMs(long durationNs) {
+		return TimeUnit.NANOSECONDS.toMillis(Math.max(durationNs, 0));
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.hipsheep.volleywrapper.network.metrics;
+
+import com.android.volley.VolleyError;
+
+/**
+ * Timing record of a request, sent to the {@link RequestTimingsListener} set on the configuration once the request finishes.
+ * <p>
+ * All durations are in milliseconds, and are {@code -1} if the request didn't go through that stage (e.g. the network time
+ * of a request whose response was taken from the cache).
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestTimings {
+
+	private final String mUrl;
+	private final String mRoute;
+	private final int mMethod;
+
+	private final long mEnqueueTimeMs;
+
+	private final long mQueueTimeMs;
+	private final long mCacheLookupTimeMs;
+	private final long mNetworkTimeMs;
+	private final long mParseTimeMs;
+	private final long mDeliveryLatencyMs;
+	private final long mTotalTimeMs;
+
+	private final long mBytesIn;
+	private final long mBytesOut;
+
+	private final int mRetryCount;
+
+	private final boolean mFromCache;
+
+	private final Outcome mOutcome;
+	private final VolleyError mError;
+
+
+	RequestTimings(RequestTimer timer, String url, int method, int retryCount, Outcome outcome) {
+		mUrl = url;
+		mRoute = RequestMetrics.getRoute(url);
+		mMethod = method;
+		mEnqueueTimeMs = timer.getEnqueueTimeMs();
+		mQueueTimeMs = timer.getQueueTimeMs();
+		mCacheLookupTimeMs = timer.getCacheLookupTimeMs();
+		mNetworkTimeMs = timer.getNetworkTimeMs();
+		mParseTimeMs = timer.getParseTimeMs();
+		mDeliveryLatencyMs = timer.getDeliveryLatencyMs();
+		mTotalTimeMs = timer.getTotalTimeMs();
+		mBytesIn = timer.getBytesIn();
+		mBytesOut = timer.getBytesOut();
+		mRetryCount = retryCount;
+		mFromCache = timer.isFromCache();
+		mOutcome = outcome;
+		mError = timer.getError();
+	}
+
+	/**
+	 * Returns the URL of the request.
+	 */
+	public String getUrl() {
+		return mUrl;
+	}
+
+	/**
+	 * Returns the route of the request, which is its URL without the query (used to group the timings of an endpoint).
+	 */
+	public String getRoute() {
+		return mRoute;
+	}
+
+	/**
+	 * Returns the method of the request (see {@link com.android.volley.Request.Method}).
+	 */
+	public int getMethod() {
+		return mMethod;
+	}
+
+	/**
+	 * Returns the time (as returned by {@link System#currentTimeMillis()}) when the request was added to the queue.
+	 */
+	public long getEnqueueTimeMs() {
+		return mEnqueueTimeMs;
+	}
+
+	/**
+	 * Returns the time the request waited on the queues, before being taken by a network dispatcher (or until its cached
+	 * response was found).
+	 */
+	public long getQueueTimeMs() {
+		return mQueueTimeMs;
+	}
+
+	/**
+	 * Returns the time it took to look up the response of the request on the cache.
+	 */
+	public long getCacheLookupTimeMs() {
+		return mCacheLookupTimeMs;
+	}
+
+	/**
+	 * Returns the time it took to get the response from the network, including retries.
+	 */
+	public long getNetworkTimeMs() {
+		return mNetworkTimeMs;
+	}
+
+	/**
+	 * Returns the time spent in {@link com.android.volley.Request#parseNetworkResponse}.
+	 */
+	public long getParseTimeMs() {
+		return mParseTimeMs;
+	}
+
+	/**
+	 * Returns the time between the response being posted by the dispatcher and it being delivered to the callback.
+	 */
+	public long getDeliveryLatencyMs() {
+		return mDeliveryLatencyMs;
+	}
+
+	/**
+	 * Returns the time between the request being added to the queue and its response being delivered.
+	 */
+	public long getTotalTimeMs() {
+		return mTotalTimeMs;
+	}
+
+	/**
+	 * Returns the number of bytes received from the network as the response body.
+	 */
+	public long getBytesIn() {
+		return mBytesIn;
+	}
+
+	/**
+	 * Returns the number of bytes sent as the request body.
+	 */
+	public long getBytesOut() {
+		return mBytesOut;
+	}
+
+	/**
+	 * Returns the number of times the request was retried.
+	 */
+	public int getRetryCount() {
+		return mRetryCount;
+	}
+
+	/**
+	 * Returns whether the response delivered was taken from a cache.
+	 */
+	public boolean isFromCache() {
+		return mFromCache;
+	}
+
+	/**
+	 * Returns the final outcome of the request.
+	 */
+	public Outcome getOutcome() {
+		return mOutcome;
+	}
+
+	/**
+	 * Returns the error delivered, if the outcome of the request is {@link Outcome#ERROR}.
+	 */
+	public VolleyError getError() {
+		return mError;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s: total %dms (queue %dms, cache %dms, network %dms, parse %dms, delivery %dms), in %d bytes, "
+						+ "out %d bytes, %d retries%s", mOutcome, mUrl, mTotalTimeMs, mQueueTimeMs, mCacheLookupTimeMs, mNetworkTimeMs,
+				mParseTimeMs, mDeliveryLatencyMs, mBytesIn, mBytesOut, mRetryCount, mFromCache ? ", from cache" : "");
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Final outcome of a request.
+	 */
+	public enum Outcome {
+		SUCCESS,
+		ERROR,
+		CANCELLED
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.hipsheep.volleywrapper.network.metrics;
+
+/**
+ * Listener that receives the {@link RequestTimings} of every request once it finishes.
+ * <p>
+ * This listener is called on the thread where responses are delivered (the Main Thread by default), so it should return
+ * quickly.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public interface RequestTimingsListener {
+
+	/**
+	 * This callback will be called after a request finishes.
+	 *
+	 * @param requestTimings
+	 * 		Timing record of the request.
+	 */
+	void onRequestTimings(RequestTimings requestTimings);
+
+}
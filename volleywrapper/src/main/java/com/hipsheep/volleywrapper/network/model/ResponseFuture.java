@@ -0,0 +1,545 @@
+package com.hipsheep.volleywrapper.network.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link Future} of a request's response that can be combined with other futures without blocking any thread, similar to
+ * Java 8's {@code CompletableFuture} (which is not available on older Android versions).
+ * <p>
+ * Listeners and functions added to the future run on the thread that completes it (i.e. the thread where the request's
+ * response is delivered, see {@link com.hipsheep.volleywrapper.network.request.BaseRequest#getDeliveryExecutor()}), or right
+ * away if the future is already completed. Cancelling a future also cancels the futures it was created from, and through
+ * them the requests they belong to.
+ *
+ * @param <T>
+ * 		Type of the result of the future.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class ResponseFuture<T> implements Future<T> {
+
+	private final Object mLock = new Object();
+
+	private boolean mDone;
+	private T mResult;
+	private Throwable mFailure;
+
+	/**
+	 * Listeners waiting for the future to complete, or {@code null} once it completed.
+	 */
+	private List<Listener<? super T>> mListeners = new ArrayList<>();
+
+	/**
+	 * Action run when the future is cancelled (e.g. cancel the request it belongs to).
+	 */
+	private volatile Runnable mCancelAction;
+
+
+	/**
+	 * Creates a future that is not completed yet.
+	 */
+	public ResponseFuture() {}
+
+	/**
+	 * Creates a future that is already completed with the result received as parameter.
+	 *
+	 * @param result
+	 * 		Result of the future.
+	 *
+	 * @return Completed future.
+	 */
+	public static <T> ResponseFuture<T> completed(T result) {
+		ResponseFuture<T> future = new ResponseFuture<>();
+		future.complete(result);
+
+		return future;
+	}
+
+	/**
+	 * Completes the future with a result, unless it was already completed.
+	 *
+	 * @param result
+	 * 		Result of the future.
+	 *
+	 * @return {@code true} if the future was completed by this call, or {@code false} otherwise.
+	 */
+	public boolean complete(T result) {
+		return finish(result, null);
+	}
+
+	/**
+	 * Completes the future with a failure, unless it was already completed.
+	 *
+	 * @param failure
+	 * 		Cause of the failure (e.g. the {@link com.android.volley.VolleyError} of the request).
+	 *
+	 * @return {@code true} if the future was completed by this call, or {@code false} otherwise.
+	 */
+	public boolean completeExceptionally(Throwable failure) {
+		if (failure == null) {
+			throw new NullPointerException("Failure can't be null");
+		}
+
+		return finish(null, failure);
+	}
+
+	/**
+	 * Cancels the future, and runs its cancel action (see {@link #setCancelAction(Runnable)}).
+	 *
+	 * @param mayInterruptIfRunning
+	 * 		Ignored, since the future doesn't run any task.
+	 *
+	 * @return {@code true} if the future was cancelled, or {@code false} if it was already completed.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (!finish(null, new CancellationException("Future was cancelled"))) {
+			return false;
+		}
+
+		Runnable cancelAction = mCancelAction;
+		if (cancelAction != null) {
+			cancelAction.run();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Sets the action to run when the future is cancelled (e.g. cancel the request it belongs to).
+	 *
+	 * @param cancelAction
+	 * 		Action to run when the future is cancelled.
+	 */
+	public void setCancelAction(Runnable cancelAction) {
+		mCancelAction = cancelAction;
+	}
+
+	private boolean finish(T result, Throwable failure) {
+		List<Listener<? super T>> listeners;
+
+		synchronized (mLock) {
+			if (mDone) {
+				return false;
+			}
+
+			mDone = true;
+			mResult = result;
+			mFailure = failure;
+
+			listeners = mListeners;
+			mListeners = null;
+
+			mLock.notifyAll();
+		}
+
+		for (Listener<? super T> listener : listeners) {
+			notifyListener(listener);
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		synchronized (mLock) {
+			return mFailure instanceof CancellationException;
+		}
+	}
+
+	@Override
+	public boolean isDone() {
+		synchronized (mLock) {
+			return mDone;
+		}
+	}
+
+	/**
+	 * Blocks the current thread until the future is completed, and returns its result.
+	 * <p>
+	 * IMPORTANT: Don't call this method on the Main Thread or the app will freeze. Prefer adding a {@link Listener} instead.
+	 */
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		synchronized (mLock) {
+			while (!mDone) {
+				mLock.wait();
+			}
+
+			return getResult();
+		}
+	}
+
+	/**
+	 * Blocks the current thread until the future is completed or the timeout expires, and returns its result.
+	 * <p>
+	 * IMPORTANT: Don't call this method on the Main Thread or the app will freeze. Prefer adding a {@link Listener} instead.
+	 */
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		long deadlineNs = System.nanoTime() + unit.toNanos(timeout);
+
+		synchronized (mLock) {
+			while (!mDone) {
+				long remainingNs = deadlineNs - System.nanoTime();
+				if (remainingNs <= 0) {
+					throw new TimeoutException();
+				}
+
+				TimeUnit.NANOSECONDS.timedWait(mLock, remainingNs);
+			}
+
+			return getResult();
+		}
+	}
+
+	private T getResult() throws ExecutionException {
+		if (mFailure instanceof CancellationException) {
+			throw (CancellationException) mFailure;
+		} else if (mFailure != null) {
+			throw new ExecutionException(mFailure);
+		}
+
+		return mResult;
+	}
+
+	/**
+	 * Adds a listener that will be notified when the future completes, or right away if it's already completed.
+	 *
+	 * @param listener
+	 * 		{@link Listener} to notify.
+	 *
+	 * @return This future, so more calls can be chained.
+	 */
+	public ResponseFuture<T> addListener(Listener<? super T> listener) {
+		synchronized (mLock) {
+			if (!mDone) {
+				mListeners.add(listener);
+				return this;
+			}
+		}
+
+		notifyListener(listener);
+
+		return this;
+	}
+
+	private void notifyListener(Listener<? super T> listener) {
+		// The result fields are not modified after the future is done
+		if (mFailure == null) {
+			listener.onSuccess(mResult);
+		} else {
+			listener.onFailure(mFailure);
+		}
+	}
+
+	/**
+	 * Returns a future that completes with the result of applying a function to the result of this one. If this future fails
+	 * (or the function throws an exception), then the returned future fails with the same cause.
+	 *
+	 * @param function
+	 * 		{@link Function} to apply to the result of this future.
+	 *
+	 * @return Future with the result of the function.
+	 */
+	public <R> ResponseFuture<R> thenApply(final Function<? super T, ? extends R> function) {
+		final ResponseFuture<R> future = newDependentFuture();
+
+		addListener(new Listener<T>() {
+
+			@Override
+			public void onSuccess(T result) {
+				R functionResult;
+				try {
+					functionResult = function.apply(result);
+				} catch (Exception e) {
+					future.completeExceptionally(e);
+					return;
+				}
+
+				future.complete(functionResult);
+			}
+
+			@Override
+			public void onFailure(Throwable failure) {
+				future.completeExceptionally(failure);
+			}
+
+		});
+
+		return future;
+	}
+
+	/**
+	 * Returns a future that completes with the result of the future returned by a function applied to the result of this one
+	 * (e.g. to send a request that depends on the response of this one). Cancelling the returned future cancels both futures.
+	 *
+	 * @param function
+	 * 		{@link Function} that returns the next future from the result of this one.
+	 *
+	 * @return Future with the result of the future returned by the function.
+	 */
+	public <R> ResponseFuture<R> thenCompose(final Function<? super T, ResponseFuture<R>> function) {
+		final AtomicReference<ResponseFuture<R>> nextFuture = new AtomicReference<>();
+
+		final ResponseFuture<R> future = new ResponseFuture<>();
+		future.setCancelAction(new Runnable() {
+
+			@Override
+			public void run() {
+				cancel(false);
+
+				ResponseFuture<R> next = nextFuture.get();
+				if (next != null) {
+					next.cancel(false);
+				}
+			}
+
+		});
+
+		addListener(new Listener<T>() {
+
+			@Override
+			public void onSuccess(T result) {
+				ResponseFuture<R> next;
+				try {
+					next = function.apply(result);
+				} catch (Exception e) {
+					future.completeExceptionally(e);
+					return;
+				}
+
+				nextFuture.set(next);
+
+				if (future.isCancelled()) {
+					next.cancel(false);
+					return;
+				}
+
+				next.addListener(new Listener<R>() {
+
+					@Override
+					public void onSuccess(R nextResult) {
+						future.complete(nextResult);
+					}
+
+					@Override
+					public void onFailure(Throwable failure) {
+						future.completeExceptionally(failure);
+					}
+
+				});
+			}
+
+			@Override
+			public void onFailure(Throwable failure) {
+				future.completeExceptionally(failure);
+			}
+
+		});
+
+		return future;
+	}
+
+	/**
+	 * Returns a future that completes with the result of this one, or with the value returned by a function applied to the
+	 * cause of its failure (e.g. to fall back to a default value).
+	 *
+	 * @param function
+	 * 		{@link Function} that returns the result to use if this future fails.
+	 *
+	 * @return Future with the result of this future or of the function.
+	 */
+	public ResponseFuture<T> exceptionally(final Function<Throwable, ? extends T> function) {
+		final ResponseFuture<T> future = newDependentFuture();
+
+		addListener(new Listener<T>() {
+
+			@Override
+			public void onSuccess(T result) {
+				future.complete(result);
+			}
+
+			@Override
+			public void onFailure(Throwable failure) {
+				T functionResult;
+				try {
+					functionResult = function.apply(failure);
+				} catch (Exception e) {
+					future.completeExceptionally(e);
+					return;
+				}
+
+				future.complete(functionResult);
+			}
+
+		});
+
+		return future;
+	}
+
+	/**
+	 * Creates a future whose cancellation cancels this one.
+	 */
+	private <R> ResponseFuture<R> newDependentFuture() {
+		ResponseFuture<R> future = new ResponseFuture<>();
+		future.setCancelAction(new Runnable() {
+
+			@Override
+			public void run() {
+				cancel(false);
+			}
+
+		});
+
+		return future;
+	}
+
+	/**
+	 * Returns a future that completes when all the futures received as parameter complete successfully, or fails as soon as
+	 * one of them fails (in which case the rest are not cancelled). Cancelling the returned future cancels all of them.
+	 *
+	 * @param futures
+	 * 		Futures to wait for.
+	 *
+	 * @return Future that completes when all the futures complete.
+	 */
+	public static ResponseFuture<Void> allOf(ResponseFuture<?>... futures) {
+		return allAsList(Arrays.<ResponseFuture<?>>asList(futures)).thenApply(new Function<List<Object>, Void>() {
+
+			@Override
+			public Void apply(List<Object> results) {
+				return null;
+			}
+
+		});
+	}
+
+	/**
+	 * Returns a future that completes with the results of all the futures received as parameter (in the same order), or
+	 * fails as soon as one of them fails (in which case the rest are not cancelled). Cancelling the returned future cancels
+	 * all of them.
+	 *
+	 * @param futures
+	 * 		Futures to wait for.
+	 *
+	 * @return Future with the results of all the futures.
+	 */
+	public static <T> ResponseFuture<List<T>> allAsList(final List<? extends ResponseFuture<? extends T>> futures) {
+		final ResponseFuture<List<T>> future = new ResponseFuture<>();
+		future.setCancelAction(new Runnable() {
+
+			@Override
+			public void run() {
+				for (ResponseFuture<? extends T> responseFuture : futures) {
+					responseFuture.cancel(false);
+				}
+			}
+
+		});
+
+		if (futures.isEmpty()) {
+			future.complete(Collections.<T>emptyList());
+			return future;
+		}
+
+		final AtomicReferenceArray<T> results = new AtomicReferenceArray<>(futures.size());
+		final AtomicInteger remaining = new AtomicInteger(futures.size());
+
+		for (int i = 0; i < futures.size(); i++) {
+			final int index = i;
+
+			futures.get(i).addListener(new Listener<T>() {
+
+				@Override
+				public void onSuccess(T result) {
+					results.set(index, result);
+
+					if (remaining.decrementAndGet() == 0) {
+						List<T> resultList = new ArrayList<>(results.length());
+						for (int j = 0; j < results.length(); j++) {
+							resultList.add(results.get(j));
+						}
+
+						future.complete(resultList);
+					}
+				}
+
+				@Override
+				public void onFailure(Throwable failure) {
+					future.completeExceptionally(failure);
+				}
+
+			});
+		}
+
+		return future;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Listener notified when a {@link ResponseFuture} completes.
+	 *
+	 * @param <T>
+	 * 		Type of the result of the future.
+	 */
+	public interface Listener<T> {
+
+		/**
+		 * Called when the future completes successfully.
+		 *
+		 * @param result
+		 * 		Result of the future.
+		 */
+		void onSuccess(T result);
+
+		/**
+		 * Called when the future fails or is cancelled (in which case the failure is a {@link CancellationException}).
+		 *
+		 * @param failure
+		 * 		Cause of the failure.
+		 */
+		void onFailure(Throwable failure);
+
+	}
+
+	/**
+	 * Function applied to the result of a {@link ResponseFuture}.
+	 *
+	 * @param <T>
+	 * 		Type of the input of the function.
+	 * @param <R>
+	 * 		Type of the result of the function.
+	 */
+	public interface Function<T, R> {
+
+		/**
+		 * Applies the function to its input.
+		 *
+		 * @param input
+		 * 		Input of the function.
+		 *
+		 * @return Result of the function.
+		 *
+		 * @throws Exception
+		 * 		If the function failed, in which case the future it returns fails with this exception.
+		 */
+		R apply(T input) throws Exception;
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.hipsheep.volleywrapper.network.model;
+
+import java.util.List;
+
+/**
+ * Response callback for requests that parse a JSON array element by element (see
+ * {@link com.hipsheep.volleywrapper.network.request.GsonStreamingRequest}).
+ * <p>
+ * The elements are delivered in batches while the response is parsed, and then {@link #onSuccess(Object)} is called with the
+ * total number of elements received.
+ *
+ * @param <E>
+ * 		Expected type of the elements of the array.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public abstract class StreamingResponseCallback<E> extends ResponseCallback<Integer> {
+
+	/**
+	 * This callback will be called each time a batch of elements is parsed.
+	 * <p>
+	 * If the request fails after some batches were delivered, then {@link #onFailure(com.android.volley.VolleyError)} is
+	 * called after them.
+	 *
+	 * @param elements
+	 * 		Elements parsed, in the same order they have on the array.
+	 */
+	public abstract void onElements(List<E> elements);
+
+}
@@ -1,24 +1,55 @@
 package com.hipsheep.volleywrapper.network.request;
 
-import android.net.Uri;
 import android.util.Log;
 
 import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
 import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
 import com.android.volley.Response;
 import com.android.volley.RetryPolicy;
+import com.android.volley.TimeoutError;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.HttpHeaderParser;
 import com.android.volley.toolbox.RequestFuture;
 import com.hipsheep.volleywrapper.Configuration;
 import com.hipsheep.volleywrapper.VolleyWrapper;
+import com.hipsheep.volleywrapper.network.body.BodyEncoder;
+import com.hipsheep.volleywrapper.network.body.JsonBodyEncoder;
+import com.hipsheep.volleywrapper.network.cache.CachePolicies;
+import com.hipsheep.volleywrapper.network.cache.CachePolicy;
+import com.hipsheep.volleywrapper.network.cache.ParsedResponseCache;
+import com.hipsheep.volleywrapper.network.cache.SharedCache;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimer;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimings;
 import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+import com.hipsheep.volleywrapper.network.model.ResponseFuture;
+import com.hipsheep.volleywrapper.network.retry.BackoffRetryPolicy;
+import com.hipsheep.volleywrapper.network.retry.CircuitBreakers;
+import com.hipsheep.volleywrapper.network.retry.DeadlineRetryPolicy;
+import com.hipsheep.volleywrapper.network.retry.HedgePolicy;
+import com.hipsheep.volleywrapper.network.route.RequestLimiter;
+import com.hipsheep.volleywrapper.network.route.RouteProfile;
+import com.hipsheep.volleywrapper.network.route.RouteProfiles;
+import com.hipsheep.volleywrapper.util.GzipUtils;
+import com.hipsheep.volleywrapper.util.LayeredMap;
+import com.hipsheep.volleywrapper.util.MainThreadExecutor;
+import com.hipsheep.volleywrapper.util.UrlUtils;
 
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for any request that is sent to the server.
@@ -27,6 +58,11 @@ import java.util.Map;
  */
 public class BaseRequest<T> extends Request<T> {
 
+	/**
+	 * Encoder used when none was set on the request or on the default configuration.
+	 */
+	private static final BodyEncoder DEFAULT_BODY_ENCODER = new JsonBodyEncoder();
+
 	/**
 	 * Tag used to log errors, warnings, etc. on standard output, with the name of the class that extends {@link BaseRequest}.
 	 */
@@ -39,14 +75,37 @@ public class BaseRequest<T> extends Request<T> {
 	private String mUrl;
 
 	/**
-	 * Headers used on the request.
+	 * Default configuration that was set when the request was created.
+	 */
+	private final Configuration mConfiguration;
+	/**
+	 * Profile of the route the request is sent to, or {@code null} if no profile matches its URL.
+	 */
+	private final RouteProfile mRouteProfile;
+
+	/**
+	 * Headers used on the request, on top of the default ones, which are shared by all requests.
 	 */
-	private Map<String, String> mHeaders = new HashMap<>();
+	private final Map<String, String> mHeaders;
 
 	/**
-	 * Query parameters used on the request.
+	 * Query parameters used on the request, sorted by key so the URL doesn't depend on the order in which they were added.
+	 */
+	private Map<String, String> mQueryParams = new TreeMap<>();
+	/**
+	 * Cache key of the request, needed as a local variable since it's generated from the URL and headers. It's cleared when
+	 * anything it's generated from changes.
+	 */
+	private String mCacheKey;
+	/**
+	 * Headers (lower case) whose values are included in the cache key, on top of the ones of the default configuration.
+	 */
+	private Set<String> mCacheKeyHeaders;
+	/**
+	 * Query params left out of the cache key, on top of the ones of the default configuration.
 	 */
-	private Map<String, String> mQueryParams = new HashMap<>();
+	private Set<String> mVolatileQueryParams;
+
 	/**
 	 * Body parameters used on the request.
 	 */
@@ -56,6 +115,73 @@ public class BaseRequest<T> extends Request<T> {
 	 * Body of the request.
 	 */
 	private String mBody;
+	/**
+	 * Object to serialize as the body of the request.
+	 */
+	private Object mBodyObject;
+
+	/**
+	 * Encoder used to serialize the body params or object, or {@code null} to use the default one.
+	 */
+	private BodyEncoder mBodyEncoder;
+	/**
+	 * Content type of the body, saved so it's only generated once.
+	 */
+	private String mBodyContentType;
+	/**
+	 * Serialized body of the request, saved so it's only generated once (Volley calls {@link #getBody()} again on retries).
+	 */
+	private byte[] mBodyBytes;
+	/**
+	 * Whether {@link #mBodyBytes} were compressed using gzip.
+	 */
+	private boolean mBodyGzipped;
+
+	/**
+	 * Whether the request should accept gzip encoded responses, or {@code null} to use the default configuration.
+	 */
+	private Boolean mAcceptGzip;
+	/**
+	 * Minimum size (in bytes) of the body to compress it using gzip, or {@code null} to use the default configuration.
+	 */
+	private Integer mGzipBodyThreshold;
+
+	/**
+	 * Total time (in milliseconds) the request has to be delivered, or {@code null} to use the default configuration.
+	 */
+	private Long mTotalTimeout;
+	/**
+	 * Task that cancels the request when its total timeout runs out, or {@code null} if the timeout didn't start.
+	 */
+	private volatile Runnable mDeadlineTask;
+	/**
+	 * Whether a response or error was delivered to the request.
+	 */
+	private volatile boolean mDelivered;
+
+	/**
+	 * Client side cache policy of the request, or {@code null} to use the default configuration.
+	 */
+	private CachePolicy mCachePolicy;
+	/**
+	 * Whether the response received from the network has the same data as the cached response that was already delivered.
+	 */
+	private volatile boolean mResponseUnchanged;
+	/**
+	 * Whether the response being parsed was read from Volley's cache. The cache dispatcher only sets the cache entry on the
+	 * request after parsing it, so this is tracked through the markers it adds.
+	 */
+	private volatile boolean mParsingCachedResponse;
+	/**
+	 * Whether the cache hit being delivered needs to be refreshed, which means that it's an intermediate response and the
+	 * network response will be delivered after it.
+	 */
+	private volatile boolean mRefreshNeeded;
+	/**
+	 * Whether a response was delivered to the request, and which one.
+	 */
+	private volatile boolean mResponseDelivered;
+	private volatile T mDeliveredResponse;
 
 	/**
 	 * Callback to use for asynchronous calls.
@@ -65,6 +191,70 @@ public class BaseRequest<T> extends Request<T> {
 	 * Callback to use for synchronous calls.
 	 */
 	private RequestFuture<T> mRequestFuture;
+	/**
+	 * Future to use for non-blocking calls.
+	 */
+	private ResponseFuture<T> mResponseFuture;
+
+	/**
+	 * Executor on which the response is delivered, or {@code null} to use the default configuration.
+	 */
+	private Executor mDeliveryExecutor;
+
+	/**
+	 * Priority of the request, or {@code null} to use the one of its route profile or of the default configuration. It can be
+	 * raised while the request is in flight, when a request with a higher priority is coalesced to it.
+	 */
+	private volatile Priority mPriority;
+	/**
+	 * Traffic class of the request, or {@code null} to use the one of its route profile.
+	 */
+	private String mTrafficClass;
+
+	/**
+	 * Policy used to hedge the request, or {@code null} to use the one of its route profile or of the default configuration.
+	 */
+	private HedgePolicy mHedgePolicy;
+
+	/**
+	 * Identical requests that were attached to this one by a {@link RequestCoalescer}, and that will receive its response.
+	 */
+	private List<BaseRequest<T>> mCoalescedRequests;
+	/**
+	 * Whether this request stopped accepting coalesced requests, because its response was delivered or it finished.
+	 */
+	private boolean mCoalescingClosed;
+	/**
+	 * Lock used to access {@link #mCoalescedRequests} and {@link #mCoalescingClosed}.
+	 */
+	private final Object mCoalescingLock = new Object();
+	/**
+	 * Limiter of the request's route that let it start, and that must be released when it finishes.
+	 */
+	private volatile RequestLimiter mRequestLimiter;
+
+	/**
+	 * Coalescing key under which this request is in flight on a {@link RequestCoalescer}, or {@code null} if it isn't.
+	 */
+	private volatile String mInFlightKey;
+	/**
+	 * {@link RequestCoalescer} on which this request is in flight, or {@code null} if it isn't.
+	 */
+	private volatile RequestCoalescer mRequestCoalescer;
+
+	/**
+	 * Whether the request was sent by a {@link Prefetcher}, so it doesn't keep the queue from being idle.
+	 */
+	private volatile boolean mPrefetch;
+	/**
+	 * Whether the request finished on its queue.
+	 */
+	private volatile boolean mFinished;
+
+	/**
+	 * Timer that records the time spent on each stage of the request.
+	 */
+	private final RequestTimer mRequestTimer = new RequestTimer();
 
 
 	/**
@@ -78,7 +268,8 @@ public class BaseRequest<T> extends Request<T> {
 	public BaseRequest(int method, String url) {
 		super(method, url, null);
 
-		Configuration defaultConfiguration = VolleyWrapper.getDefaultConfiguration();
+		Configuration defaultConfiguration = VolleyWrapper.getDefaultConfiguration().snapshot();
+		mConfiguration = defaultConfiguration;
 
 		// Set whether to cache responses or not (if it was set)
 		Boolean defaultIsShouldCache = defaultConfiguration.isShouldCache();
@@ -88,15 +279,56 @@ public class BaseRequest<T> extends Request<T> {
 
 		// Set the default retry policy (if it was set)
 		RetryPolicy defaultRetryPolicy = defaultConfiguration.getRetryPolicy();
-		if (defaultRetryPolicy != null) {
+		if (defaultRetryPolicy instanceof BackoffRetryPolicy) {
+			// This policy keeps the state of each request, so it can't be shared
+			setRetryPolicy(((BackoffRetryPolicy) defaultRetryPolicy).copy());
+		} else if (defaultRetryPolicy != null) {
 			setRetryPolicy(defaultRetryPolicy);
 		}
 
-		// Add the default headers (if any)
+		// Find the profile of the route once, so its values don't need to be looked up again
+		RouteProfiles routeProfiles = defaultConfiguration.getRouteProfiles();
+		mRouteProfile = routeProfiles != null ? routeProfiles.find(url) : null;
+
 		Map<String, String> defaultHeaders = defaultConfiguration.getHeaders();
-		if (defaultHeaders != null) {
-			mHeaders.putAll(defaultHeaders);
+		if (mRouteProfile != null) {
+			Boolean routeIsShouldCache = mRouteProfile.isShouldCache();
+			if (routeIsShouldCache != null) {
+				setShouldCache(routeIsShouldCache);
+			}
+
+			setRetryPolicy(mRouteProfile.createRetryPolicy(getRetryPolicy()));
+
+			defaultHeaders = mRouteProfile.getHeaders(defaultHeaders);
+		}
+
+		// Stop retrying as soon as the circuit breaker of the host opens
+		CircuitBreakers circuitBreakers = defaultConfiguration.getCircuitBreakers();
+		if (circuitBreakers != null && getRetryPolicy() instanceof BackoffRetryPolicy) {
+			((BackoffRetryPolicy) getRetryPolicy()).setCircuitBreaker(circuitBreakers.get(UrlUtils.getHost(url)));
 		}
+
+		// Show the default headers (if any) below the ones added to this request, without copying them
+		mHeaders = new LayeredMap<>(defaultHeaders);
+	}
+
+	/**
+	 * Returns the default configuration that was set when the request was created, which is the one used by the request.
+	 *
+	 * @return Default configuration of the request.
+	 */
+	protected Configuration getConfiguration() {
+		return mConfiguration;
+	}
+
+	/**
+	 * Returns the profile of the route the request is sent to (see
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#addRouteProfile(String, String, RouteProfile)}).
+	 *
+	 * @return {@link RouteProfile} that matches the URL of the request, or {@code null} if none matches.
+	 */
+	public RouteProfile getRouteProfile() {
+		return mRouteProfile;
 	}
 
 	@Override
@@ -109,13 +341,7 @@ public class BaseRequest<T> extends Request<T> {
 		String url = super.getUrl();
 
 		if (!mQueryParams.isEmpty()) {
-			Uri.Builder urlBuilder = Uri.parse(url).buildUpon();
-
-			for (Map.Entry<String, String> param : mQueryParams.entrySet()) {
-				urlBuilder.appendQueryParameter(param.getKey(), param.getValue());
-			}
-
-			url = urlBuilder.build().toString();
+			url = appendQueryParams(url);
 		}
 
 		// Save URL so it doesn't need to be regenerated every time this method is called
@@ -124,14 +350,184 @@ public class BaseRequest<T> extends Request<T> {
 		return url;
 	}
 
+	/**
+	 * Returns the key under which the response of this request is cached, which is its canonical URL (with the query params
+	 * sorted and the volatile ones left out, see {@link #addVolatileQueryParam(String)}), followed by the values of the
+	 * headers added through {@link #addCacheKeyHeader(String)}. Identical requests get the same key no matter the order in
+	 * which their params were added, so they share cached responses and are coalesced while in flight.
+	 *
+	 * @return Cache key of the request.
+	 */
+	@Override
+	public String getCacheKey() {
+		if (mCacheKey != null) {
+			return mCacheKey;
+		}
+
+		String cacheKey = getUrl();
+
+		// The params added to this request are already sorted, so the URL only needs to be parsed if the base URL had a query
+		Set<String> volatileQueryParams = merge(mConfiguration.getVolatileQueryParams(), mVolatileQueryParams);
+		String baseUrl = super.getUrl();
+		if (volatileQueryParams != null || baseUrl.indexOf('?') >= 0 || baseUrl.indexOf('#') >= 0) {
+			cacheKey = UrlUtils.canonicalize(cacheKey, volatileQueryParams);
+		}
+
+		Set<String> cacheKeyHeaders = merge(mConfiguration.getCacheKeyHeaders(), mCacheKeyHeaders);
+		if (cacheKeyHeaders != null) {
+			cacheKey = appendCacheKeyHeaders(cacheKey, cacheKeyHeaders);
+		}
+
+		mCacheKey = cacheKey;
+
+		return cacheKey;
+	}
+
+	/**
+	 * Appends the names and values of the headers of the request that are included in the cache key.
+	 */
+	private String appendCacheKeyHeaders(String cacheKey, Set<String> cacheKeyHeaders) {
+		StringBuilder cacheKeyBuilder = new StringBuilder(cacheKey);
+		for (String headerName : cacheKeyHeaders) {
+			// Header names are case insensitive. The headers are read directly, since getHeaders() also encodes the body
+			for (Map.Entry<String, String> header : mHeaders.entrySet()) {
+				if (headerName.equalsIgnoreCase(header.getKey())) {
+					cacheKeyBuilder.append('\n').append(headerName).append(':').append(header.getValue());
+					break;
+				}
+			}
+		}
+
+		return cacheKeyBuilder.toString();
+	}
+
+	/**
+	 * Returns the union of two sets, without creating a new set if one of them is {@code null} or empty.
+	 */
+	private static Set<String> merge(Set<String> set1, Set<String> set2) {
+		if (set1 == null || set1.isEmpty()) {
+			return set2 == null || set2.isEmpty() ? null : set2;
+		}
+
+		if (set2 == null || set2.isEmpty()) {
+			return set1;
+		}
+
+		Set<String> union = new TreeSet<>(set1);
+		union.addAll(set2);
+
+		return union;
+	}
+
+	/**
+	 * Includes the value of a header in the cache key of this request (on top of the ones set through
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#addCacheKeyHeader(String)}), so responses that change with that
+	 * header are cached separately for each of its values. The value is taken from the headers added to this request or to
+	 * the default configuration.
+	 *
+	 * @param headerName
+	 * 		Name of the header (case insensitive).
+	 */
+	protected void addCacheKeyHeader(String headerName) {
+		if (mCacheKeyHeaders == null) {
+			mCacheKeyHeaders = new TreeSet<>();
+		}
+
+		mCacheKeyHeaders.add(headerName.toLowerCase(Locale.US));
+		mCacheKey = null;
+	}
+
+	/**
+	 * Leaves a query param out of the cache key of this request (on top of the ones set through
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#addVolatileQueryParam(String)}), because its value doesn't
+	 * change the response (e.g. timestamps).
+	 *
+	 * @param paramKey
+	 * 		Key of the query param.
+	 */
+	protected void addVolatileQueryParam(String paramKey) {
+		if (mVolatileQueryParams == null) {
+			mVolatileQueryParams = new TreeSet<>();
+		}
+
+		mVolatileQueryParams.add(paramKey);
+		mCacheKey = null;
+	}
+
+	/**
+	 * Appends the encoded query params to a URL on a single builder, sized so it doesn't need to grow in most cases, instead
+	 * of parsing the URL.
+	 */
+	private String appendQueryParams(String url) {
+		// The query goes before the fragment (if any)
+		int fragmentStart = url.indexOf('#');
+		int queryEnd = fragmentStart >= 0 ? fragmentStart : url.length();
+
+		int length = url.length() + 16;
+		for (Map.Entry<String, String> param : mQueryParams.entrySet()) {
+			length += param.getKey().length() + param.getValue().length() + 2;
+		}
+
+		StringBuilder urlBuilder = new StringBuilder(length);
+		urlBuilder.append(url, 0, queryEnd);
+
+		int queryStart = url.indexOf('?');
+		if (queryStart < 0 || queryStart >= queryEnd) {
+			urlBuilder.append('?');
+		} else if (queryStart < queryEnd - 1) {
+			// The URL already has a query
+			urlBuilder.append('&');
+		}
+
+		boolean first = true;
+		for (Map.Entry<String, String> param : mQueryParams.entrySet()) {
+			if (!first) {
+				urlBuilder.append('&');
+			}
+
+			UrlUtils.appendEncoded(urlBuilder, param.getKey());
+			urlBuilder.append('=');
+			UrlUtils.appendEncoded(urlBuilder, param.getValue());
+
+			first = false;
+		}
+
+		urlBuilder.append(url, queryEnd, url.length());
+
+		return urlBuilder.toString();
+	}
+
 	@Override
 	public String getBodyContentType() {
-		String defaultBodyContentType = VolleyWrapper.getDefaultConfiguration().getBodyContentType();
-		return defaultBodyContentType != null ? defaultBodyContentType : super.getBodyContentType();
+		if (mBodyContentType != null) {
+			return mBodyContentType;
+		}
+
+		if (mBodyEncoder != null) {
+			// An encoder set on this request overrides the default content type
+			mBodyContentType = mBodyEncoder.getContentType(getParamsEncoding());
+		} else {
+			String defaultBodyContentType = mConfiguration.getBodyContentType();
+			mBodyContentType = defaultBodyContentType != null
+					? defaultBodyContentType : getBodyEncoder().getContentType(getParamsEncoding());
+		}
+
+		return mBodyContentType;
 	}
 
 	@Override
 	public Map<String, String> getHeaders() throws AuthFailureError {
+		// Only write the headers the first time, so later calls (e.g. from the attempts of a hedged request) just read them
+		if (isAcceptGzip() && !GzipUtils.ENCODING_GZIP.equals(mHeaders.get(GzipUtils.HEADER_ACCEPT_ENCODING))) {
+			mHeaders.put(GzipUtils.HEADER_ACCEPT_ENCODING, GzipUtils.ENCODING_GZIP);
+		}
+
+		// The body is encoded before sending the headers, to know whether it will be compressed
+		if (getBody() != null && mBodyGzipped
+				&& !GzipUtils.ENCODING_GZIP.equals(mHeaders.get(GzipUtils.HEADER_CONTENT_ENCODING))) {
+			mHeaders.put(GzipUtils.HEADER_CONTENT_ENCODING, GzipUtils.ENCODING_GZIP);
+		}
+
 		return mHeaders;
 	}
 
@@ -146,6 +542,7 @@ public class BaseRequest<T> extends Request<T> {
 	protected void addHeader(String key, String value) {
 		if (value != null) {
 			mHeaders.put(key, value);
+			mCacheKey = null;
 		}
 	}
 
@@ -160,6 +557,8 @@ public class BaseRequest<T> extends Request<T> {
 	protected void addQueryParam(String key, Object value) {
 		if (value != null) {
 			mQueryParams.put(key, value.toString());
+			mUrl = null;
+			mCacheKey = null;
 		}
 	}
 
@@ -173,17 +572,58 @@ public class BaseRequest<T> extends Request<T> {
 	 */
 	protected void addBodyParam(String key, Object value) {
 		mBodyParams.put(key, value);
+		mBodyBytes = null;
 	}
 
 	/**
 	 * Sets the body of the request. If this method is called, then any params set using {@link #addBodyParam(String, Object)}
-	 * will be ignored.
+	 * or object set using {@link #setBodyObject(Object)} will be ignored.
 	 *
 	 * @param requestBody
 	 * 		Body of the request.
 	 */
 	protected void setBody(String requestBody) {
 		mBody = requestBody;
+		mBodyBytes = null;
+	}
+
+	/**
+	 * Sets an object that will be serialized by the request's {@link BodyEncoder} as the body of the request. If this method is
+	 * called, then any params set using {@link #addBodyParam(String, Object)} will be ignored.
+	 *
+	 * @param bodyObject
+	 * 		Object to serialize as the body of the request.
+	 */
+	protected void setBodyObject(Object bodyObject) {
+		mBodyObject = bodyObject;
+		mBodyBytes = null;
+	}
+
+	/**
+	 * Returns the encoder used to serialize the body params or object of the request.
+	 *
+	 * @return The {@link BodyEncoder} set on this request, or the default one if none was set.
+	 */
+	public BodyEncoder getBodyEncoder() {
+		if (mBodyEncoder != null) {
+			return mBodyEncoder;
+		}
+
+		BodyEncoder defaultBodyEncoder = mConfiguration.getBodyEncoder();
+		return defaultBodyEncoder != null ? defaultBodyEncoder : DEFAULT_BODY_ENCODER;
+	}
+
+	/**
+	 * Sets the encoder used to serialize the body params or object of the request, overriding the default one. The content
+	 * type of the request will be the one returned by the encoder.
+	 *
+	 * @param bodyEncoder
+	 * 		{@link BodyEncoder} used to serialize the body of the request.
+	 */
+	protected void setBodyEncoder(BodyEncoder bodyEncoder) {
+		mBodyEncoder = bodyEncoder;
+		mBodyBytes = null;
+		mBodyContentType = null;
 	}
 
 	@Override
@@ -193,68 +633,828 @@ public class BaseRequest<T> extends Request<T> {
 
 	@Override
 	public byte[] getBody() {
-		// If a body is not set, and parameters are set, then add the params into a JSON object
-		// to send them on the request body
-		if (mBody == null && !mBodyParams.isEmpty()) {
-			mBody = (new JSONObject(mBodyParams)).toString();
+		if (mBodyBytes != null) {
+			// If the body was serialized once, return it from its saved variable, instead of serializing it again
+			return mBodyBytes;
+		}
+
+		String charset = getParamsEncoding();
+
+		try {
+			if (mBody != null) {
+				mBodyBytes = mBody.getBytes(charset);
+			} else if (mBodyObject != null) {
+				mBodyBytes = getBodyEncoder().encode(mBodyObject, charset);
+			} else if (!mBodyParams.isEmpty()) {
+				// If a body is not set, and parameters are set, then encode the params to send them on the request body
+				mBodyBytes = getBodyEncoder().encode(mBodyParams, charset);
+			}
+
+			mBodyGzipped = false;
+
+			Integer gzipBodyThreshold = getGzipBodyThreshold();
+			if (mBodyBytes != null && gzipBodyThreshold != null && mBodyBytes.length >= gzipBodyThreshold) {
+				mBodyBytes = GzipUtils.compress(mBodyBytes);
+				mBodyGzipped = true;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Request body couldn't be encoded (charset: " + charset + ")", e);
 		}
 
-		return mBody == null ? null : mBody.getBytes();
+		mRequestTimer.onBytesOut(mBodyBytes == null ? 0 : mBodyBytes.length);
+
+		return mBodyBytes;
 	}
 
-	@Override
-	protected Response<T> parseNetworkResponse(NetworkResponse response) {
-		return createSuccessResponse(response, null);
+	/**
+	 * Returns whether the request accepts gzip encoded responses.
+	 *
+	 * @return The value set on this request, or the one set on the default configuration if none was set and the request
+	 * decompresses its responses (see {@link #isDecompressingResponse()}).
+	 */
+	public boolean isAcceptGzip() {
+		if (mAcceptGzip != null) {
+			return mAcceptGzip;
+		}
+
+		Boolean defaultAcceptGzip = mConfiguration.isAcceptGzip();
+		return defaultAcceptGzip != null && defaultAcceptGzip && isDecompressingResponse();
 	}
 
-	protected Response<T> createSuccessResponse(NetworkResponse response, T result) {
-		return Response.success(result, HttpHeaderParser.parseCacheHeaders(response));
+	/**
+	 * Returns whether the request reads its responses through {@link #openResponseStream(NetworkResponse)}, so it can
+	 * receive gzip encoded responses. Only these requests accept them by default when
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#setAcceptGzip(Boolean)} is set, since other requests would
+	 * read the compressed bytes from {@link NetworkResponse#data}.
+	 *
+	 * @return {@code true} if the request decompresses its responses, or {@code false} otherwise.
+	 */
+	protected boolean isDecompressingResponse() {
+		return false;
 	}
 
-	@Override
-	protected void deliverResponse(T response) {
-		if (mResponseCallback != null) {
-			// This is called for asynchronous calls
-			mResponseCallback.onSuccess(response);
-		} else if (mRequestFuture != null) {
-			// This is called for synchronous calls
-			mRequestFuture.onResponse(response);
-		}
+	/**
+	 * Sets whether the request should send an {@code Accept-Encoding: gzip} header, in which case gzip encoded responses are
+	 * kept compressed (also on the cache) and decompressed while they are parsed (see {@link #openResponseStream}), so it
+	 * should only be set on requests that read their responses through that method. This overrides the value set through
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#setAcceptGzip(Boolean)}.
+	 *
+	 * @param acceptGzip
+	 * 		{@code true} if the request should accept gzip encoded responses, or {@code false} otherwise.
+	 */
+	public void setAcceptGzip(boolean acceptGzip) {
+		mAcceptGzip = acceptGzip;
 	}
 
-	@Override
-	public void deliverError(VolleyError volleyError) {
-		if (mResponseCallback != null) {
-			// This is called for asynchronous calls
-			mResponseCallback.onFailure(volleyError);
-		} else if (mRequestFuture != null) {
-			// This is called for synchronous calls
-			mRequestFuture.onErrorResponse(volleyError);
-		} else {
-			NetworkResponse networkResponse = volleyError.networkResponse;
-			Log.w(mLogTag, String.format("Request failed with error \"%s\", and no callback set for it",
-					networkResponse == null ? "null" : networkResponse.statusCode));
-		}
+	/**
+	 * Returns the minimum size (in bytes) of the body to compress it using gzip.
+	 *
+	 * @return The value set on this request, or the one set on the default configuration if none was set.
+	 */
+	public Integer getGzipBodyThreshold() {
+		return mGzipBodyThreshold != null ? mGzipBodyThreshold : mConfiguration.getGzipBodyThreshold();
 	}
 
 	/**
-	 * Sets the {@link ResponseCallback} that will be used to return the response for this request, on an asynchronous call.
+	 * Sets the minimum size (in bytes) of the body to compress it using gzip and send it with a
+	 * {@code Content-Encoding: gzip} header. This overrides the value set through
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#setGzipBodyThreshold(Integer)}.
 	 *
-	 * @param responseCallback
-	 * 		{@link ResponseCallback} that will be used to return the response for this request, on an asynchronous call.
+	 * @param gzipBodyThreshold
+	 * 		Minimum size (in bytes) of the body to compress it.
 	 */
-	public void setResponseCallback(ResponseCallback<T> responseCallback) {
-		mResponseCallback = responseCallback;
+	public void setGzipBodyThreshold(int gzipBodyThreshold) {
+		mGzipBodyThreshold = gzipBodyThreshold;
+		mBodyBytes = null;
 	}
 
 	/**
-	 * Sets the {@link RequestFuture} that will be used to return the response for this request, on a synchronous call.
+	 * Returns a stream that reads the data of the response received as parameter, decompressing it while it's read if it's
+	 * gzip encoded.
 	 *
-	 * @param requestFuture
-	 * 		{@link RequestFuture} that will be used to return the response for this request, on a synchronous call.
+	 * @param response
+	 * 		Response to read.
+	 *
+	 * @return Stream that reads the (decompressed) response data.
+	 *
+	 * @throws IOException
+	 * 		If the response is gzip encoded but its data is not valid.
 	 */
-	public void setRequestFuture(RequestFuture<T> requestFuture) {
-		mRequestFuture = requestFuture;
+	protected InputStream openResponseStream(NetworkResponse response) throws IOException {
+		return GzipUtils.openStream(response.data, response.headers);
+	}
+
+	@Override
+	public void addMarker(String tag) {
+		super.addMarker(tag);
+
+		mRequestTimer.onMarker(tag);
+
+		if ("add-to-queue".equals(tag) || "coalesced".equals(tag) || RequestTimer.MARKER_THROTTLED.equals(tag)) {
+			startDeadline();
+		}
+
+		if ("cache-hit".equals(tag)) {
+			mParsingCachedResponse = true;
+		} else if ("cache-hit-parsed".equals(tag) || "network-queue-take".equals(tag)) {
+			mParsingCachedResponse = false;
+		} else if ("cache-hit-refresh-needed".equals(tag)) {
+			// Added by the cache dispatcher right before it posts the cache hit as an intermediate response
+			mRefreshNeeded = true;
+		}
+	}
+
+	@Override
+	protected Response<T> parseNetworkResponse(NetworkResponse response) {
+		return createSuccessResponse(response, null);
+	}
+
+	protected Response<T> createSuccessResponse(NetworkResponse response, T result) {
+		onNetworkResponse(response);
+
+		return Response.success(result, createCacheEntry(response));
+	}
+
+	/**
+	 * Creates the cache entry of a response, with the TTL and soft TTL of the request's {@link CachePolicy} (if it has one).
+	 */
+	private Cache.Entry createCacheEntry(NetworkResponse response) {
+		Cache.Entry cacheEntry = getCacheEntry();
+		if (hasHadResponseDelivered()
+				&& (mParsingCachedResponse || (cacheEntry != null && Arrays.equals(response.data, cacheEntry.data)))) {
+			// The cached response was already delivered (e.g. as a stale parsed response), and this one has the same data
+			mResponseUnchanged = true;
+		}
+
+		if (!response.notModified && (mParsingCachedResponse || (cacheEntry != null && response.data == cacheEntry.data))) {
+			// The response was read from the cache, so keep the expiration times it was saved with. If the entry it was read from
+			// isn't known, don't create a new one, so the response isn't saved as fresh on the parsed response cache
+			return getCacheEntryReadFrom(response);
+		}
+
+		Cache.Entry responseCacheEntry = HttpHeaderParser.parseCacheHeaders(response);
+
+		CachePolicy cachePolicy = getCachePolicy();
+		if (cachePolicy != null) {
+			if (responseCacheEntry == null) {
+				// The response headers don't allow caching it, but the client side policy overrides them
+				responseCacheEntry = new Cache.Entry();
+				responseCacheEntry.data = response.data;
+				responseCacheEntry.responseHeaders = response.headers;
+			}
+
+			long now = System.currentTimeMillis();
+			responseCacheEntry.softTtl = now + cachePolicy.getSoftTtlMs();
+			responseCacheEntry.ttl = now + cachePolicy.getTtlMs();
+		}
+
+		return responseCacheEntry;
+	}
+
+	/**
+	 * Returns the Volley cache entry a response was read from.
+	 *
+	 * @param response
+	 * 		Response being parsed.
+	 *
+	 * @return {@link Cache.Entry} that contains the data of the response, or {@code null} if it wasn't read from the cache (or
+	 * the entry isn't known, e.g. on a cache hit of a cache that is not a {@link SharedCache}).
+	 */
+	protected Cache.Entry getCacheEntryReadFrom(NetworkResponse response) {
+		Cache.Entry cacheEntry = getCacheEntry();
+		if (cacheEntry != null && response.data == cacheEntry.data) {
+			return cacheEntry;
+		}
+
+		// Volley's cache dispatcher parses a cache hit before setting its entry on the request
+		return mParsingCachedResponse ? SharedCache.getEntryRead(response.data) : null;
+	}
+
+	@Override
+	protected VolleyError parseNetworkError(VolleyError volleyError) {
+		if (volleyError.networkResponse != null) {
+			onNetworkResponse(volleyError.networkResponse);
+		}
+
+		return super.parseNetworkError(volleyError);
+	}
+
+	/**
+	 * Records the size of a response received, unless it was read from the cache.
+	 */
+	private void onNetworkResponse(NetworkResponse response) {
+		Cache.Entry cacheEntry = getCacheEntry();
+		if (response.data != null && (cacheEntry == null || response.data != cacheEntry.data)) {
+			mRequestTimer.onBytesIn(response.data.length);
+		}
+	}
+
+	@Override
+	protected void deliverResponse(final T response) {
+		mRequestTimer.onDelivery(null);
+		onDelivered();
+
+		// The network response is only requested after the intermediate response is delivered, so this can't race with it
+		final boolean intermediate = mRefreshNeeded;
+		mRefreshNeeded = false;
+
+		// Don't deliver the same response again (e.g. a stale response that was refreshed without changes)
+		final boolean responseChanged = !mResponseDelivered || (response != mDeliveredResponse && !mResponseUnchanged);
+		mResponseDelivered = true;
+		mDeliveredResponse = response;
+		mResponseUnchanged = false;
+
+		if (!responseChanged) {
+			addMarker("response-unchanged");
+		} else if (mResponseCallback != null) {
+			// This is called for asynchronous calls
+			mResponseCallback.onSuccess(response);
+		} else if (mRequestFuture != null) {
+			// This is called for synchronous calls
+			mRequestFuture.onResponse(response);
+		} else if (mResponseFuture != null) {
+			// This is called for future based calls
+			mResponseFuture.complete(response);
+		}
+
+		// Share the response with the requests coalesced to this one, which stay attached until the final response is delivered
+		List<BaseRequest<T>> coalescedRequests = intermediate ? getCoalescedRequests() : closeCoalescing();
+		for (final BaseRequest<T> coalescedRequest : coalescedRequests) {
+			runOnDeliveryExecutor(coalescedRequest, new Runnable() {
+
+				@Override
+				public void run() {
+					if (!coalescedRequest.isCanceled()) {
+						if (!responseChanged) {
+							// Only skipped if the coalesced request already received the previous response
+							coalescedRequest.mResponseUnchanged = true;
+						}
+
+						coalescedRequest.deliverResponse(response);
+					}
+
+					if (!intermediate) {
+						finishCoalescedRequest(coalescedRequest);
+					}
+				}
+
+			});
+		}
+	}
+
+	@Override
+	public void deliverError(final VolleyError volleyError) {
+		// Share the error with the requests coalesced to this one
+		for (final BaseRequest<T> coalescedRequest : closeCoalescing()) {
+			runOnDeliveryExecutor(coalescedRequest, new Runnable() {
+
+				@Override
+				public void run() {
+					if (!coalescedRequest.isCanceled()) {
+						coalescedRequest.deliverError(volleyError);
+					}
+
+					finishCoalescedRequest(coalescedRequest);
+				}
+
+			});
+		}
+
+		deliverOwnError(volleyError);
+	}
+
+	/**
+	 * Delivers an error to the callback of this request only.
+	 */
+	private void deliverOwnError(VolleyError volleyError) {
+		mRequestTimer.onDelivery(volleyError);
+		onDelivered();
+
+		if (mResponseCallback != null) {
+			// This is called for asynchronous calls
+			mResponseCallback.onFailure(volleyError);
+		} else if (mRequestFuture != null) {
+			// This is called for synchronous calls
+			mRequestFuture.onErrorResponse(volleyError);
+		} else if (mResponseFuture != null) {
+			// This is called for future based calls
+			mResponseFuture.completeExceptionally(volleyError);
+		} else {
+			NetworkResponse networkResponse = volleyError.networkResponse;
+			Log.w(mLogTag, String.format("Request failed with error \"%s\", and no callback set for it",
+					networkResponse == null ? "null" : networkResponse.statusCode));
+		}
+	}
+
+	/**
+	 * Returns the {@link ResponseCallback} that will be used to return the response for this request, on an asynchronous call.
+	 *
+	 * @return The {@link ResponseCallback} of this request, or {@code null} if it's a synchronous call.
+	 */
+	protected ResponseCallback<T> getResponseCallback() {
+		return mResponseCallback;
+	}
+
+	/**
+	 * Sets the {@link ResponseCallback} that will be used to return the response for this request, on an asynchronous call.
+	 *
+	 * @param responseCallback
+	 * 		{@link ResponseCallback} that will be used to return the response for this request, on an asynchronous call.
+	 */
+	public void setResponseCallback(ResponseCallback<T> responseCallback) {
+		mResponseCallback = responseCallback;
+	}
+
+	/**
+	 * Sets the {@link RequestFuture} that will be used to return the response for this request, on a synchronous call.
+	 *
+	 * @param requestFuture
+	 * 		{@link RequestFuture} that will be used to return the response for this request, on a synchronous call.
+	 */
+	public void setRequestFuture(RequestFuture<T> requestFuture) {
+		mRequestFuture = requestFuture;
+	}
+
+	/**
+	 * Sets the {@link ResponseFuture} that will be completed with the response for this request, on a future based call.
+	 * Cancelling the future cancels this request, and cancelling this request cancels the future.
+	 *
+	 * @param responseFuture
+	 * 		{@link ResponseFuture} that will be completed with the response for this request.
+	 */
+	public void setResponseFuture(ResponseFuture<T> responseFuture) {
+		mResponseFuture = responseFuture;
+
+		responseFuture.setCancelAction(new Runnable() {
+
+			@Override
+			public void run() {
+				cancel();
+			}
+
+		});
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		stopDeadline();
+
+		// Cancelled requests are not delivered, so the future has to be cancelled here for its listeners to be notified
+		if (mResponseFuture != null) {
+			mResponseFuture.cancel(false);
+		}
+	}
+
+	/**
+	 * Returns the executor on which the response of this request is delivered.
+	 *
+	 * @return The {@link Executor} set on this request, or the one set on the default configuration if none was set
+	 * ({@code null} means the response is delivered on the Main Thread).
+	 */
+	public Executor getDeliveryExecutor() {
+		return mDeliveryExecutor != null ? mDeliveryExecutor : mConfiguration.getDeliveryExecutor();
+	}
+
+	/**
+	 * Sets the executor on which the response (or error) of this request is delivered to its callback, overriding the one set
+	 * through {@link com.hipsheep.volleywrapper.Configuration.Builder#setDeliveryExecutor(Executor)}. Use
+	 * {@link com.hipsheep.volleywrapper.util.MainThreadExecutor#getInstance()} for callbacks that update the UI when the
+	 * default configuration delivers responses on a background thread.
+	 *
+	 * @param deliveryExecutor
+	 * 		{@link Executor} used to deliver the response of this request.
+	 */
+	public void setDeliveryExecutor(Executor deliveryExecutor) {
+		mDeliveryExecutor = deliveryExecutor;
+	}
+
+	/**
+	 * Returns the total time the request has to be delivered.
+	 *
+	 * @return The value (in milliseconds) set on this request, or the one set on its route profile or on the default
+	 * configuration if none was set.
+	 */
+	public Long getTotalTimeout() {
+		if (mTotalTimeout != null) {
+			return mTotalTimeout;
+		}
+
+		Long routeTotalTimeout = mRouteProfile != null ? mRouteProfile.getTotalTimeout() : null;
+		return routeTotalTimeout != null ? routeTotalTimeout : mConfiguration.getTotalTimeout();
+	}
+
+	/**
+	 * Sets the total time the request has to be delivered, counting from when it's added to the queue and including all its
+	 * retries. When it runs out the request is cancelled and a {@link TimeoutError} is delivered to its callback. This
+	 * overrides the value set through {@link com.hipsheep.volleywrapper.Configuration.Builder#setTotalTimeout(Long)}, and has
+	 * to be called before sending the request.
+	 *
+	 * @param totalTimeout
+	 * 		Total time (in milliseconds) the request has to be delivered.
+	 */
+	public void setTotalTimeout(long totalTimeout) {
+		mTotalTimeout = totalTimeout;
+	}
+
+	/**
+	 * Starts counting the total timeout of the request (if it has one), limiting its retry policy to it.
+	 */
+	private void startDeadline() {
+		Long totalTimeout = getTotalTimeout();
+		if (totalTimeout == null || mDeadlineTask != null) {
+			return;
+		}
+
+		setRetryPolicy(new DeadlineRetryPolicy(getRetryPolicy(), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(totalTimeout)));
+
+		mDeadlineTask = new Runnable() {
+
+			@Override
+			public void run() {
+				// Check and deliver the error on the delivery executor, so it doesn't race with the delivery of a response
+				RequestDelivery.getDeliveryExecutor(BaseRequest.this).execute(new Runnable() {
+
+					@Override
+					public void run() {
+						onDeadlineExceeded();
+					}
+
+				});
+			}
+
+		};
+
+		MainThreadExecutor.getInstance().executeDelayed(mDeadlineTask, totalTimeout);
+	}
+
+	private void stopDeadline() {
+		Runnable deadlineTask = mDeadlineTask;
+		if (deadlineTask != null) {
+			MainThreadExecutor.getInstance().remove(deadlineTask);
+		}
+	}
+
+	private void onDelivered() {
+		mDelivered = true;
+		stopDeadline();
+	}
+
+	/**
+	 * Delivers a {@link TimeoutError} and cancels the request (so it stops using the queue, network and parse time), unless
+	 * it was already delivered. The timeout is only this request's, so the requests coalesced to it are sent again instead of
+	 * failing with it.
+	 */
+	private void onDeadlineExceeded() {
+		if (mDelivered || isCanceled()) {
+			return;
+		}
+
+		addMarker("deadline-exceeded");
+
+		deliverOwnError(new TimeoutError());
+
+		RequestCoalescer requestCoalescer = mRequestCoalescer;
+		if (requestCoalescer != null) {
+			requestCoalescer.detach(this);
+		}
+
+		cancel();
+	}
+
+	/**
+	 * Finishes a request coalesced to this one once its final response (or error) was delivered, since it never reaches a
+	 * queue that finishes it.
+	 */
+	private void finishCoalescedRequest(BaseRequest<T> coalescedRequest) {
+		RequestCoalescer requestCoalescer = mRequestCoalescer;
+		if (requestCoalescer != null) {
+			requestCoalescer.finish(coalescedRequest);
+		}
+	}
+
+	/**
+	 * Runs a task that delivers a response to a coalesced request on that request's executor, or right away if it's the same
+	 * one on which this request's response is being delivered.
+	 */
+	private void runOnDeliveryExecutor(BaseRequest<T> coalescedRequest, Runnable deliveryTask) {
+		Executor executor = RequestDelivery.getDeliveryExecutor(coalescedRequest);
+
+		if (executor == RequestDelivery.getDeliveryExecutor(this)) {
+			deliveryTask.run();
+		} else {
+			executor.execute(deliveryTask);
+		}
+	}
+
+	/**
+	 * Creates the timing record of this request, with the time spent on each stage of its life cycle.
+	 *
+	 * @return Timing record of the request.
+	 */
+	public RequestTimings createTimings() {
+		RetryPolicy retryPolicy = getRetryPolicy();
+
+		return mRequestTimer.createTimings(getUrl(), getMethod(), retryPolicy == null ? 0 : retryPolicy.getCurrentRetryCount(),
+				isCanceled());
+	}
+
+	/**
+	 * Returns the key under which the parsed response of this request is saved on the {@link ParsedResponseCache}.
+	 * <p>
+	 * Requests don't save their parsed responses by default. Subclasses that parse responses to objects can override this
+	 * method to return a key that includes both the cache key and the type of the response.
+	 *
+	 * @return Key of the parsed response, or {@code null} if the parsed response shouldn't be cached.
+	 */
+	protected String getParsedCacheKey() {
+		return null;
+	}
+
+	/**
+	 * Returns the {@link ParsedResponseCache} set on the default configuration, but only if this request should cache its
+	 * parsed response.
+	 *
+	 * @return The {@link ParsedResponseCache} to use, or {@code null} if the parsed response shouldn't be cached.
+	 */
+	protected ParsedResponseCache getParsedResponseCache() {
+		if (!shouldCache() || getParsedCacheKey() == null) {
+			return null;
+		}
+
+		return mConfiguration.getParsedResponseCache();
+	}
+
+	/**
+	 * Returns the parsed response saved on the {@link ParsedResponseCache} for this request, if it doesn't need to be
+	 * refreshed yet.
+	 *
+	 * @return Fresh parsed response, or {@code null} if there's none.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFreshParsedResponse() {
+		ParsedResponseCache parsedResponseCache = getParsedResponseCache();
+		return parsedResponseCache != null ? (T) parsedResponseCache.getFresh(getParsedCacheKey()) : null;
+	}
+
+	/**
+	 * Returns the parsed response saved on the {@link ParsedResponseCache} for this request, if it has to be refreshed but can
+	 * still be delivered while that happens.
+	 *
+	 * @return Stale parsed response, or {@code null} if there's none.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getStaleParsedResponse() {
+		ParsedResponseCache parsedResponseCache = getParsedResponseCache();
+		return parsedResponseCache != null ? (T) parsedResponseCache.getStale(getParsedCacheKey()) : null;
+	}
+
+	/**
+	 * Returns the client side cache policy of the request.
+	 *
+	 * @return The {@link CachePolicy} set on this request or on its route profile, or the one that matches its URL on the
+	 * default configuration (see {@link com.hipsheep.volleywrapper.Configuration.Builder#addCachePolicy(String, CachePolicy)}),
+	 * or {@code null} if the cache headers of the response should be used.
+	 */
+	public CachePolicy getCachePolicy() {
+		if (mCachePolicy != null) {
+			return mCachePolicy;
+		}
+
+		if (mRouteProfile != null && mRouteProfile.getCachePolicy() != null) {
+			return mRouteProfile.getCachePolicy();
+		}
+
+		CachePolicies cachePolicies = mConfiguration.getCachePolicies();
+		return cachePolicies != null ? cachePolicies.find(getUrl()) : null;
+	}
+
+	/**
+	 * Sets the client side cache policy of the request, which overrides the TTL and soft TTL taken from the cache headers of
+	 * its response, and the policies set on the default configuration.
+	 *
+	 * @param cachePolicy
+	 * 		{@link CachePolicy} of the request.
+	 */
+	public void setCachePolicy(CachePolicy cachePolicy) {
+		mCachePolicy = cachePolicy;
+	}
+
+	/**
+	 * Returns the priority of the request, used by the queue to pick which request is sent first.
+	 *
+	 * @return The {@link Priority} set on this request, or the one set on its route profile or on the default configuration,
+	 * or {@link Priority#NORMAL} if none was set.
+	 */
+	@Override
+	public Priority getPriority() {
+		if (mPriority != null) {
+			return mPriority;
+		}
+
+		Priority routePriority = mRouteProfile != null ? mRouteProfile.getPriority() : null;
+		if (routePriority != null) {
+			return routePriority;
+		}
+
+		Priority defaultPriority = mConfiguration.getPriority();
+		return defaultPriority != null ? defaultPriority : super.getPriority();
+	}
+
+	/**
+	 * Sets the priority of the request, overriding the one of its route profile. This has to be called before sending the
+	 * request.
+	 *
+	 * @param priority
+	 * 		{@link Priority} of the request.
+	 */
+	public void setPriority(Priority priority) {
+		mPriority = priority;
+	}
+
+	/**
+	 * Returns the traffic class of the request, which decides the dispatchers that send it (see
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#addTrafficClass(String, int)}).
+	 *
+	 * @return The traffic class set on this request, or the one set on its route profile, or {@code null} if the request
+	 * is sent by the default dispatchers.
+	 */
+	public String getTrafficClass() {
+		if (mTrafficClass != null) {
+			return mTrafficClass;
+		}
+
+		return mRouteProfile != null ? mRouteProfile.getTrafficClass() : null;
+	}
+
+	/**
+	 * Sets the traffic class of the request, overriding the one of its route profile. This has to be called before sending
+	 * the request.
+	 *
+	 * @param trafficClass
+	 * 		Name of the traffic class of the request.
+	 */
+	public void setTrafficClass(String trafficClass) {
+		mTrafficClass = trafficClass;
+	}
+
+	/**
+	 * Returns the policy used to hedge the request (see {@link HedgePolicy}). Only idempotent requests (GET and HEAD) are
+	 * hedged, since the server may receive them twice.
+	 *
+	 * @return The {@link HedgePolicy} set on this request, or the one set on its route profile or on the default
+	 * configuration, or {@code null} if the request shouldn't be hedged.
+	 */
+	public HedgePolicy getHedgePolicy() {
+		int method = getMethod();
+		if (method != Method.GET && method != Method.HEAD) {
+			return null;
+		}
+
+		if (mHedgePolicy != null) {
+			return mHedgePolicy;
+		}
+
+		HedgePolicy routeHedgePolicy = mRouteProfile != null ? mRouteProfile.getHedgePolicy() : null;
+		return routeHedgePolicy != null ? routeHedgePolicy : mConfiguration.getHedgePolicy();
+	}
+
+	/**
+	 * Sets the policy used to hedge the request, which sends a duplicate of it when its response is slower than the policy's
+	 * delay, and delivers the first response that arrives. This overrides the value set through
+	 * {@link com.hipsheep.volleywrapper.Configuration.Builder#setHedgePolicy(HedgePolicy)}, and it's ignored unless the
+	 * request is a GET or HEAD.
+	 *
+	 * @param hedgePolicy
+	 * 		{@link HedgePolicy} of the request.
+	 */
+	public void setHedgePolicy(HedgePolicy hedgePolicy) {
+		mHedgePolicy = hedgePolicy;
+	}
+
+	/**
+	 * Returns the key used by {@link RequestCoalescer} to find identical requests in flight, which includes the method, class,
+	 * cache key (see {@link #getCacheKey()}) and headers of the request.
+	 * <p>
+	 * Only GET requests are coalesced by default. Subclasses can override this method to return {@code null} if the request
+	 * should never be coalesced, or to add anything else that changes the response to the key.
+	 *
+	 * @return Key of the request, or {@code null} if the request shouldn't be coalesced.
+	 */
+	protected String getCoalescingKey() {
+		if (getMethod() != Method.GET) {
+			return null;
+		}
+
+		Map<String, String> headers;
+		try {
+			headers = getHeaders();
+		} catch (AuthFailureError e) {
+			return null;
+		}
+
+		StringBuilder coalescingKey = new StringBuilder();
+		coalescingKey.append(getMethod()).append(' ').append(getClass().getName()).append(' ').append(getCacheKey());
+
+		// Sort the headers so the key doesn't depend on the order in which they were added
+		for (Map.Entry<String, String> header : new TreeMap<>(headers).entrySet()) {
+			coalescingKey.append('\n').append(header.getKey()).append(':').append(header.getValue());
+		}
+
+		return coalescingKey.toString();
+	}
+
+	/**
+	 * Sets the limiter that let this request start (see {@link RequestThrottle}).
+	 */
+	void setRequestLimiter(RequestLimiter requestLimiter) {
+		mRequestLimiter = requestLimiter;
+	}
+
+	/**
+	 * Gives back the place this request took on the limiter of its route (if any), once it finishes.
+	 */
+	void releaseRequestLimiter() {
+		RequestLimiter requestLimiter = mRequestLimiter;
+		if (requestLimiter != null) {
+			mRequestLimiter = null;
+			requestLimiter.release();
+		}
+	}
+
+	/**
+	 * Attaches an identical request to this one, so it receives this request's response.
+	 *
+	 * @return {@code true} if the request was attached, or {@code false} if this request doesn't accept coalesced requests
+	 * anymore.
+	 */
+	boolean addCoalescedRequest(BaseRequest<T> request) {
+		synchronized (mCoalescingLock) {
+			if (mCoalescingClosed) {
+				return false;
+			}
+
+			if (mCoalescedRequests == null) {
+				mCoalescedRequests = new ArrayList<>();
+			}
+
+			mCoalescedRequests.add(request);
+
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the requests coalesced to this one, without stopping to accept them.
+	 *
+	 * @return Copy of the requests that were coalesced to this one so far.
+	 */
+	List<BaseRequest<T>> getCoalescedRequests() {
+		synchronized (mCoalescingLock) {
+			return mCoalescedRequests != null
+					? new ArrayList<>(mCoalescedRequests) : Collections.<BaseRequest<T>>emptyList();
+		}
+	}
+
+	/**
+	 * Stops accepting coalesced requests.
+	 *
+	 * @return The requests that were coalesced to this one.
+	 */
+	List<BaseRequest<T>> closeCoalescing() {
+		synchronized (mCoalescingLock) {
+			mCoalescingClosed = true;
+
+			List<BaseRequest<T>> coalescedRequests = mCoalescedRequests;
+			mCoalescedRequests = null;
+
+			return coalescedRequests != null ? coalescedRequests : Collections.<BaseRequest<T>>emptyList();
+		}
+	}
+
+	String getInFlightKey() {
+		return mInFlightKey;
+	}
+
+	void setInFlight(RequestCoalescer requestCoalescer, String inFlightKey) {
+		mRequestCoalescer = requestCoalescer;
+		mInFlightKey = inFlightKey;
+	}
+
+	boolean isPrefetch() {
+		return mPrefetch;
+	}
+
+	void setPrefetch(boolean prefetch) {
+		mPrefetch = prefetch;
+	}
+
+	boolean isFinished() {
+		return mFinished;
+	}
+
+	void setFinished() {
+		mFinished = true;
 	}
 
 }
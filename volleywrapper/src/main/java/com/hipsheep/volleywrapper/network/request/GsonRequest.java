@@ -1,14 +1,28 @@
 package com.hipsheep.volleywrapper.network.request;
 
+import com.android.volley.Cache;
 import com.android.volley.NetworkResponse;
 import com.android.volley.ParseError;
 import com.android.volley.Response;
+import com.android.volley.VolleyError;
 import com.android.volley.toolbox.HttpHeaderParser;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.hipsheep.volleywrapper.network.cache.ParsedResponseCache;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimer;
 import com.hipsheep.volleywrapper.util.GsonUtils;
+import com.hipsheep.volleywrapper.util.GzipUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Request that receives a JSON response, and uses the Gson library to parse it to an object.
@@ -17,10 +31,25 @@ import java.io.UnsupportedEncodingException;
  */
 public class GsonRequest<T> extends BaseRequest<T> {
 
-	private final Class<T> mResponseClass;
+	/**
+	 * Type of the object that will be returned as a response to the request, and its name (used on the cache keys).
+	 */
+	private final Type mResponseType;
+	private final String mResponseTypeName;
 
 	private Gson mGson;
 
+	/**
+	 * Whether the response should be streamed into Gson ({@code true}) or decoded to a {@link String} before parsing it
+	 * ({@code false}).
+	 */
+	private boolean mStreamingParse = true;
+
+	/**
+	 * Time (in nanoseconds) it took to parse the last response received, or {@code -1} if no response was parsed yet.
+	 */
+	private volatile long mParseTimeNs = -1;
+
 
 	/**
 	 * Constructor method for requests that return JSON responses.
@@ -53,24 +82,228 @@ public class GsonRequest<T> extends BaseRequest<T> {
 	 * 		{@link Gson} object that will be used to parse the response.
 	 */
 	public GsonRequest(int method, String url, Class<T> responseClass, Gson gson) {
+		this(method, url, TypeToken.get(responseClass), gson);
+	}
+
+	/**
+	 * Constructor method for requests that return JSON responses of generic types (e.g.
+	 * {@code new TypeToken<List<Post>>() {}}), which uses the {@link Gson} object returned from
+	 * {@link GsonUtils#getReusableGson()}.
+	 *
+	 * @param method
+	 * 		Request method to use (see {@link com.android.volley.Request.Method} to see the possible options).
+	 * @param url
+	 * 		URL of the request.
+	 * @param responseType
+	 * 		{@link TypeToken} of the object that will be returned as a response to the request.
+	 */
+	public GsonRequest(int method, String url, TypeToken<T> responseType) {
+		this(method, url, responseType, GsonUtils.getReusableGson());
+	}
+
+	/**
+	 * Constructor method for requests that return JSON responses of generic types.
+	 *
+	 * @param method
+	 * 		Request method to use (see {@link com.android.volley.Request.Method} to see the possible options).
+	 * @param url
+	 * 		URL of the request.
+	 * @param responseType
+	 * 		{@link TypeToken} of the object that will be returned as a response to the request.
+	 * @param gson
+	 * 		{@link Gson} object that will be used to parse the response.
+	 */
+	public GsonRequest(int method, String url, TypeToken<T> responseType, Gson gson) {
+		this(method, url, responseType.getType(), gson);
+	}
+
+	/**
+	 * Constructor method for requests whose response type is only known at runtime (e.g. when it's read from another
+	 * request's type parameter). The caller is responsible for {@code responseType} matching {@code T}.
+	 *
+	 * @param method
+	 * 		Request method to use (see {@link com.android.volley.Request.Method} to see the possible options).
+	 * @param url
+	 * 		URL of the request.
+	 * @param responseType
+	 * 		{@link Type} of the object that will be returned as a response to the request.
+	 * @param gson
+	 * 		{@link Gson} object that will be used to parse the response.
+	 */
+	public GsonRequest(int method, String url, Type responseType, Gson gson) {
 		super(method, url);
 
-		mResponseClass = responseClass;
+		mResponseType = responseType;
+		mResponseTypeName = TypeToken.get(responseType).toString();
 
 		mGson = gson;
+
+		// Set whether to stream the response into Gson or not (if it was set)
+		Boolean defaultIsStreamingParse = getConfiguration().isStreamingParse();
+		if (defaultIsStreamingParse != null) {
+			mStreamingParse = defaultIsStreamingParse;
+		}
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	protected Response<T> parseNetworkResponse(NetworkResponse response) {
+		if (isCanceled()) {
+			// Nobody will receive the response (e.g. its total timeout ran out), so don't spend time parsing it
+			return Response.error(new VolleyError("Request was cancelled before parsing its response"));
+		}
+
+		ParsedResponseCache parsedResponseCache = getParsedResponseCache();
+
+		Cache.Entry cacheEntry = getCacheEntryReadFrom(response);
+		if (parsedResponseCache != null && cacheEntry != null) {
+			// The response comes from Volley's cache, so reuse the object parsed from it if it's still in memory
+			T cachedResult = (T) parsedResponseCache.get(getParsedCacheKey(), cacheEntry);
+			if (cachedResult != null) {
+				addMarker(RequestTimer.MARKER_PARSED_CACHE_HIT);
+
+				Response<T> successResponse = createSuccessResponse(response, cachedResult);
+
+				if (successResponse.cacheEntry != null && successResponse.cacheEntry != cacheEntry) {
+					// The response was revalidated (e.g. the server returned a 304), so save its new expiration times
+					parsedResponseCache.put(getParsedCacheKey(), cachedResult, successResponse.cacheEntry,
+							getResponseLength(response));
+				}
+
+				return successResponse;
+			}
+		}
+
+		long startTimeNs = System.nanoTime();
+
 		try {
-			String json = new String(response.data, HttpHeaderParser.parseCharset(response.headers));
+			String charset = HttpHeaderParser.parseCharset(response.headers);
 
-			return createSuccessResponse(response, mGson.fromJson(json, mResponseClass));
+			T result;
+			if (mStreamingParse) {
+				// Decompress and decode the bytes while Gson reads them, so the whole response is never copied into a String
+				Reader reader = new InputStreamReader(openResponseStream(response), charset);
+				try {
+					result = mGson.fromJson(reader, mResponseType);
+				} finally {
+					// Releases the inflater of gzip encoded responses
+					reader.close();
+				}
+			} else {
+				byte[] data = GzipUtils.isGzipEncoded(response.headers) ? readFully(response) : response.data;
+
+				String json = new String(data, charset);
+				result = mGson.fromJson(json, mResponseType);
+			}
+
+			Response<T> successResponse = createSuccessResponse(response, result);
+
+			if (parsedResponseCache != null && successResponse.cacheEntry != null) {
+				parsedResponseCache.put(getParsedCacheKey(), result, successResponse.cacheEntry, getResponseLength(response));
+			}
+
+			return successResponse;
 		} catch (UnsupportedEncodingException e) {
 			return Response.error(new ParseError(e));
 		} catch (JsonSyntaxException e) {
 			return Response.error(new ParseError(e));
+		} catch (JsonIOException e) {
+			return Response.error(new ParseError(e));
+		} catch (IOException e) {
+			return Response.error(new ParseError(e));
+		} finally {
+			mParseTimeNs = System.nanoTime() - startTimeNs;
+
+			addMarker(mStreamingParse ? "parse-streaming" : "parse-string");
 		}
 	}
 
+	/**
+	 * Reads all the (decompressed) data of the response received as parameter.
+	 */
+	private byte[] readFully(NetworkResponse response) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		InputStream inputStream = openResponseStream(response);
+		try {
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = inputStream.read(buffer)) != -1) {
+				outputStream.write(buffer, 0, count);
+			}
+		} finally {
+			inputStream.close();
+		}
+
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Returns the length of the (decompressed) response, which is used as the estimated size of the object parsed from it.
+	 */
+	private static int getResponseLength(NetworkResponse response) {
+		return GzipUtils.getDecompressedLength(response.data, response.headers);
+	}
+
+	@Override
+	protected boolean isDecompressingResponse() {
+		return true;
+	}
+
+	@Override
+	protected String getParsedCacheKey() {
+		return getCacheKey() + '\n' + mResponseTypeName;
+	}
+
+	@Override
+	protected String getCoalescingKey() {
+		String coalescingKey = super.getCoalescingKey();
+
+		// Requests parsing the same URL to different types can't share responses
+		return coalescingKey != null ? coalescingKey + '\n' + mResponseTypeName : null;
+	}
+
+	/**
+	 * Returns the type of the object that will be returned as a response to the request.
+	 *
+	 * @return {@link Type} of the response.
+	 */
+	public Type getResponseType() {
+		return mResponseType;
+	}
+
+	/**
+	 * Returns whether the response will be streamed into Gson, instead of being decoded to a {@link String} before parsing it.
+	 *
+	 * @return {@code true} if the response will be parsed as a stream, or {@code false} otherwise.
+	 */
+	public boolean isStreamingParse() {
+		return mStreamingParse;
+	}
+
+	/**
+	 * Sets whether the response should be streamed into Gson, instead of being decoded to a {@link String} before parsing
+	 * it. This overrides the value set through {@link com.hipsheep.volleywrapper.Configuration.Builder#setStreamingParse(Boolean)}.
+	 *
+	 * @param streamingParse
+	 * 		{@code true} to parse the response as a stream, or {@code false} to build an intermediate {@link String}.
+	 */
+	public void setStreamingParse(boolean streamingParse) {
+		mStreamingParse = streamingParse;
+	}
+
+	/**
+	 * Returns the time it took to parse the last response received by this request, which can be used to compare the
+	 * streaming and {@link String} parse modes.
+	 *
+	 * @param timeUnit
+	 * 		{@link TimeUnit} in which to return the parse time.
+	 *
+	 * @return Time it took to parse the response, or {@code -1} if no response was parsed yet.
+	 */
+	public long getParseTime(TimeUnit timeUnit) {
+		long parseTimeNs = mParseTimeNs;
+		return parseTimeNs < 0 ? -1 : timeUnit.convert(parseTimeNs, TimeUnit.NANOSECONDS);
+	}
+
 }
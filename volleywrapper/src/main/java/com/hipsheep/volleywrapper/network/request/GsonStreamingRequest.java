@@ -0,0 +1,271 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+import com.hipsheep.volleywrapper.network.model.StreamingResponseCallback;
+import com.hipsheep.volleywrapper.util.GsonUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Request that receives a JSON array (or an object with an array field), and uses the Gson library to parse it element by
+ * element, delivering the elements in batches to a {@link StreamingResponseCallback} while the response is parsed. This way
+ * the first elements are received before the whole array is parsed, and neither the response {@link String} nor the whole
+ * array of results are ever kept in memory.
+ * <p>
+ * The response of the request is the total number of elements parsed. The batches are posted on the same executor as the
+ * response (see {@link #getDeliveryExecutor()}), so they are received in order as long as that executor runs its tasks
+ * serially (e.g. the Main Thread).
+ * <p>
+ * Cached responses of these requests are not delivered while they are refreshed (i.e. stale-while-revalidate is not used),
+ * since the callback would receive the elements twice, or the cached elements followed by the new ones, without knowing
+ * which set is which. Their cache entries expire as soon as they need to be refreshed, so they are revalidated with the
+ * server before the elements are delivered.
+ *
+ * @param <E>
+ * 		Type of the elements of the array.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class GsonStreamingRequest<E> extends BaseRequest<Integer> {
+
+	/**
+	 * Default number of elements delivered on each batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	private final Class<E> mElementClass;
+
+	private final Gson mGson;
+
+	private int mBatchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Name of the field of the response object that contains the array, or {@code null} if the response is the array itself.
+	 */
+	private String mArrayFieldName;
+
+
+	/**
+	 * Constructor method for requests that return JSON arrays.
+	 * <p>
+	 * This constructor will call {@link #GsonStreamingRequest(int, String, Class, Gson)} passing the parameters received for
+	 * the first three ones, and the {@link Gson} object returned from {@link GsonUtils#getReusableGson()} as the last one.
+	 *
+	 * @param method
+	 * 		Request method to use (see {@link com.android.volley.Request.Method} to see the possible options).
+	 * @param url
+	 * 		URL of the request.
+	 * @param elementClass
+	 * 		Class type of the elements of the array returned as a response to the request.
+	 */
+	public GsonStreamingRequest(int method, String url, Class<E> elementClass) {
+		this(method, url, elementClass, GsonUtils.getReusableGson());
+	}
+
+	/**
+	 * Constructor method for requests that return JSON arrays.
+	 *
+	 * @param method
+	 * 		Request method to use (see {@link com.android.volley.Request.Method} to see the possible options).
+	 * @param url
+	 * 		URL of the request.
+	 * @param elementClass
+	 * 		Class type of the elements of the array returned as a response to the request.
+	 * @param gson
+	 * 		{@link Gson} object that will be used to parse the elements.
+	 */
+	public GsonStreamingRequest(int method, String url, Class<E> elementClass, Gson gson) {
+		super(method, url);
+
+		mElementClass = elementClass;
+
+		mGson = gson;
+	}
+
+	@Override
+	protected Response<Integer> parseNetworkResponse(NetworkResponse response) {
+		JsonReader reader = null;
+
+		try {
+			String charset = HttpHeaderParser.parseCharset(response.headers);
+			reader = mGson.newJsonReader(new InputStreamReader(openResponseStream(response), charset));
+
+			if (mArrayFieldName != null && !moveToArrayField(reader)) {
+				return Response.error(new ParseError(new JsonParseException("Array field \"" + mArrayFieldName + "\" not found")));
+			}
+
+			int count = 0;
+
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+			} else {
+				TypeAdapter<E> elementAdapter = mGson.getAdapter(mElementClass);
+
+				List<E> batch = new ArrayList<>(mBatchSize);
+
+				reader.beginArray();
+				while (reader.hasNext() && !isCanceled()) {
+					batch.add(elementAdapter.read(reader));
+					count++;
+
+					if (batch.size() == mBatchSize) {
+						postElements(batch);
+						batch = new ArrayList<>(mBatchSize);
+					}
+				}
+
+				if (!batch.isEmpty()) {
+					postElements(batch);
+				}
+			}
+
+			return createSuccessResponse(response, count);
+		} catch (IOException e) {
+			return Response.error(new ParseError(e));
+		} catch (JsonParseException e) {
+			return Response.error(new ParseError(e));
+		} catch (IllegalStateException e) {
+			// Thrown by the reader when the JSON doesn't have the expected structure
+			return Response.error(new ParseError(e));
+		} finally {
+			addMarker("parse-streaming-array");
+
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// The response is read from memory, so closing it (which releases the inflater of gzip responses) can't fail
+				}
+			}
+		}
+	}
+
+	@Override
+	protected Response<Integer> createSuccessResponse(NetworkResponse response, Integer count) {
+		Response<Integer> successResponse = super.createSuccessResponse(response, count);
+
+		Cache.Entry cacheEntry = successResponse.cacheEntry;
+		if (cacheEntry != null && cacheEntry != getCacheEntryReadFrom(response) && cacheEntry.ttl > cacheEntry.softTtl) {
+			// Expired entries still let Volley revalidate the response (e.g. with its ETag) before parsing it again
+			cacheEntry.ttl = cacheEntry.softTtl;
+		}
+
+		return successResponse;
+	}
+
+	/**
+	 * Moves the reader to the value of the array field of the response object.
+	 *
+	 * @return {@code true} if the field was found, or {@code false} otherwise.
+	 */
+	private boolean moveToArrayField(JsonReader reader) throws IOException {
+		reader.beginObject();
+
+		while (reader.hasNext()) {
+			if (mArrayFieldName.equals(reader.nextName())) {
+				return true;
+			}
+
+			reader.skipValue();
+		}
+
+		return false;
+	}
+
+	/**
+	 * Posts a batch of elements to the {@link StreamingResponseCallback} of the request (if it has one), on the executor where
+	 * its response will be delivered.
+	 */
+	@SuppressWarnings("unchecked")
+	private void postElements(final List<E> elements) {
+		ResponseCallback<Integer> responseCallback = getResponseCallback();
+		if (!(responseCallback instanceof StreamingResponseCallback)) {
+			return;
+		}
+
+		final StreamingResponseCallback<E> streamingResponseCallback = (StreamingResponseCallback<E>) responseCallback;
+
+		Executor executor = RequestDelivery.getDeliveryExecutor(this);
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				if (!isCanceled()) {
+					streamingResponseCallback.onElements(elements);
+				}
+			}
+
+		});
+	}
+
+	@Override
+	protected boolean isDecompressingResponse() {
+		return true;
+	}
+
+	@Override
+	protected String getCoalescingKey() {
+		// Coalesced requests would only receive the number of elements, so they are never coalesced
+		return null;
+	}
+
+	/**
+	 * Returns the number of elements delivered on each batch.
+	 *
+	 * @return Number of elements on each batch.
+	 */
+	public int getBatchSize() {
+		return mBatchSize;
+	}
+
+	/**
+	 * Sets the number of elements delivered on each batch ({@value #DEFAULT_BATCH_SIZE} by default). Use {@code 1} to receive
+	 * each element as soon as it's parsed.
+	 *
+	 * @param batchSize
+	 * 		Number of elements on each batch.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		}
+
+		mBatchSize = batchSize;
+	}
+
+	/**
+	 * Returns the name of the field of the response object that contains the array.
+	 *
+	 * @return Name of the array field, or {@code null} if the response is the array itself.
+	 */
+	public String getArrayFieldName() {
+		return mArrayFieldName;
+	}
+
+	/**
+	 * Sets the name of the field of the response object that contains the array, when the response is not the array itself
+	 * (e.g. {@code "posts"} for a response like <code>{"count": 2, "posts": [...]}</code>). The fields after the array are not
+	 * read.
+	 *
+	 * @param arrayFieldName
+	 * 		Name of the array field, or {@code null} if the response is the array itself.
+	 */
+	public void setArrayFieldName(String arrayFieldName) {
+		mArrayFieldName = arrayFieldName;
+	}
+
+}
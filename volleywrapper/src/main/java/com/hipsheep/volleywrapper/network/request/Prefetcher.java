@@ -0,0 +1,299 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends requests in the background to fill the caches with the responses the user is likely to need next (e.g. the detail
+ * pages of the items on a list), so they are delivered without network latency when they are actually requested.
+ * <p>
+ * Prefetches are sent with {@link Request.Priority#LOW} priority, and only while the queues are idle (see
+ * {@link RequestThrottle#isIdle()}), with a limited number of them in flight at the same time. They fill Volley's cache and,
+ * for requests that parse their responses to objects (e.g. {@link GsonRequest}), the parsed response cache. They go through
+ * the {@link RequestCoalescer}, so identical requests sent while a prefetch is in flight wait for its response.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class Prefetcher {
+
+	/**
+	 * Default number of prefetches that can be in flight at the same time.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_PREFETCHES = 2;
+
+	private final RequestThrottle mRequestThrottle;
+	private final RequestCoalescer mRequestCoalescer;
+
+	private final int mMaxConcurrentPrefetches;
+
+	/**
+	 * Prefetches waiting for the queues to be idle, in the order they were added.
+	 */
+	private final Deque<Entry> mPendingPrefetches = new ArrayDeque<>();
+	/**
+	 * Prefetches in flight, mapped to their group.
+	 */
+	private final Map<BaseRequest<?>, Group> mInFlightPrefetches = new IdentityHashMap<>();
+
+	/**
+	 * Lock used to access the pending and in flight prefetches.
+	 */
+	private final Object mLock = new Object();
+
+
+	/**
+	 * Creates a prefetcher.
+	 *
+	 * @param requestThrottle
+	 * 		{@link RequestThrottle} used to know when the queues are idle.
+	 * @param requestCoalescer
+	 * 		{@link RequestCoalescer} used to send the prefetches (which must use the same throttle).
+	 * @param maxConcurrentPrefetches
+	 * 		Maximum number of prefetches in flight at the same time.
+	 */
+	public Prefetcher(RequestThrottle requestThrottle, RequestCoalescer requestCoalescer, int maxConcurrentPrefetches) {
+		if (maxConcurrentPrefetches < 1) {
+			throw new IllegalArgumentException("Max concurrent prefetches must be at least 1");
+		}
+
+		mRequestThrottle = requestThrottle;
+		mRequestCoalescer = requestCoalescer;
+		mMaxConcurrentPrefetches = maxConcurrentPrefetches;
+
+		// Each request that finishes may leave the queues idle, or free a place for another prefetch
+		mRequestThrottle.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+
+			@Override
+			public void onRequestFinished(Request<Object> request) {
+				if (request instanceof BaseRequest && ((BaseRequest<Object>) request).isPrefetch()) {
+					onPrefetchFinished((BaseRequest<Object>) request);
+				} else {
+					startPrefetches();
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Adds requests to prefetch. The callbacks set on the requests (if any) are still called, but synchronous and future
+	 * based calls are not supported.
+	 *
+	 * @param requests
+	 * 		{@link BaseRequest}s to prefetch, in the order in which they should be sent.
+	 *
+	 * @return {@link Group} of the prefetches, which can be used to cancel them.
+	 */
+	public Group prefetch(Collection<? extends BaseRequest<?>> requests) {
+		Group group = new Group(new ArrayList<BaseRequest<?>>(requests));
+
+		for (BaseRequest<?> request : group.mRequests) {
+			preparePrefetch(request, group);
+		}
+
+		synchronized (mLock) {
+			for (BaseRequest<?> request : group.mRequests) {
+				mPendingPrefetches.add(new Entry(request, group));
+			}
+		}
+
+		startPrefetches();
+
+		return group;
+	}
+
+	/**
+	 * Adds URLs to prefetch using GET requests, which only fill Volley's cache (use {@link #prefetch(Collection)} with requests
+	 * that parse their responses to also fill the parsed response cache).
+	 *
+	 * @param urls
+	 * 		URLs to prefetch, in the order in which they should be sent.
+	 *
+	 * @return {@link Group} of the prefetches, which can be used to cancel them.
+	 */
+	public Group prefetchUrls(Collection<String> urls) {
+		List<BaseRequest<?>> requests = new ArrayList<>(urls.size());
+		for (String url : urls) {
+			requests.add(new BaseRequest<Void>(Request.Method.GET, url));
+		}
+
+		return prefetch(requests);
+	}
+
+	/**
+	 * Marks a request as a prefetch, lowering its priority and wrapping its callback to know when it finishes. The callback
+	 * of the request isn't called once its group is cancelled.
+	 */
+	private <T> void preparePrefetch(final BaseRequest<T> request, final Group group) {
+		request.setPrefetch(true);
+		request.setPriority(Request.Priority.LOW);
+
+		final ResponseCallback<T> responseCallback = request.getResponseCallback();
+		request.setResponseCallback(new ResponseCallback<T>() {
+
+			@Override
+			public void onSuccess(T data) {
+				// Requests coalesced to another one never finish on the queue, so they are released when they are delivered
+				onPrefetchFinished(request);
+
+				if (responseCallback != null && !group.mCancelled) {
+					responseCallback.onSuccess(data);
+				}
+			}
+
+			@Override
+			public void onFailure(VolleyError volleyError) {
+				onPrefetchFinished(request);
+
+				if (responseCallback != null && !group.mCancelled) {
+					responseCallback.onFailure(volleyError);
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Sends the pending prefetches while the queues are idle and there are free places for them.
+	 */
+	private void startPrefetches() {
+		while (true) {
+			BaseRequest<?> request;
+
+			synchronized (mLock) {
+				if (mPendingPrefetches.isEmpty() || mInFlightPrefetches.size() >= mMaxConcurrentPrefetches
+						|| !mRequestThrottle.isIdle()) {
+					return;
+				}
+
+				Entry entry = mPendingPrefetches.poll();
+				request = entry.mRequest;
+
+				if (request.isCanceled() || request.getFreshParsedResponse() != null) {
+					// There's nothing to prefetch
+					continue;
+				}
+
+				mInFlightPrefetches.put(request, entry.mGroup);
+			}
+
+			request.addMarker("prefetch");
+			mRequestCoalescer.add(request);
+		}
+	}
+
+	/**
+	 * Frees the place of a prefetch that finished, and sends the next one.
+	 */
+	private void onPrefetchFinished(BaseRequest<?> request) {
+		synchronized (mLock) {
+			if (mInFlightPrefetches.remove(request) == null) {
+				return;
+			}
+		}
+
+		startPrefetches();
+	}
+
+	/**
+	 * Removes the pending prefetches of a group, and cancels the ones in flight unless other requests were coalesced to them
+	 * (which also promoted them). Those keep running for the requests that wait for them, and only stop calling the callback
+	 * of the prefetch.
+	 */
+	private void cancel(Group group) {
+		List<BaseRequest<?>> inFlightRequests = new ArrayList<>();
+
+		synchronized (mLock) {
+			if (group.mCancelled) {
+				return;
+			}
+
+			group.mCancelled = true;
+
+			Iterator<Entry> iterator = mPendingPrefetches.iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().mGroup == group) {
+					iterator.remove();
+				}
+			}
+
+			for (BaseRequest<?> request : group.mRequests) {
+				if (mInFlightPrefetches.remove(request) != null) {
+					inFlightRequests.add(request);
+				}
+			}
+		}
+
+		for (BaseRequest<?> request : inFlightRequests) {
+			if (request.getCoalescedRequests().isEmpty()) {
+				request.cancel();
+			}
+		}
+
+		// Let the prefetches of other groups take the places that were freed
+		startPrefetches();
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Group of prefetches added together, which can be cancelled at once (e.g. when the user leaves the screen that needed
+	 * them).
+	 */
+	public class Group {
+
+		private final List<BaseRequest<?>> mRequests;
+
+		private volatile boolean mCancelled;
+
+
+		Group(List<BaseRequest<?>> requests) {
+			mRequests = Collections.unmodifiableList(requests);
+		}
+
+		/**
+		 * Cancels the prefetches of the group that didn't finish yet, and stops calling their callbacks. Prefetches that other
+		 * requests were coalesced to keep running, so those requests still receive their responses.
+		 */
+		public void cancel() {
+			Prefetcher.this.cancel(this);
+		}
+
+		public boolean isCancelled() {
+			return mCancelled;
+		}
+
+		public List<BaseRequest<?>> getRequests() {
+			return mRequests;
+		}
+
+	}
+
+	private static class Entry {
+
+		private final BaseRequest<?> mRequest;
+		private final Group mGroup;
+
+
+		Entry(BaseRequest<?> request, Group group) {
+			mRequest = request;
+			mGroup = group;
+		}
+
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds requests to a {@link RequestQueue}, attaching requests that are identical to one already in flight to that one instead
+ * of sending them again. All the coalesced requests receive the response (or error) of the request in flight, so they share
+ * a single network call and a single parse of the response. When the request in flight delivers a cached response that
+ * needs to be refreshed, the requests coalesced to it receive that intermediate response too, and then the refreshed one.
+ * <p>
+ * Coalesced requests never reach a queue, so they are finished here once their final response is delivered, which lets
+ * the request finished listeners (e.g. the one that reports the timings of the requests) know about them too.
+ * <p>
+ * Which requests are identical is decided by {@link BaseRequest#getCoalescingKey()}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestCoalescer {
+
+	private final RequestThrottle mRequestThrottle;
+
+	/**
+	 * Requests in flight, mapped by their coalescing key.
+	 */
+	private final Map<String, BaseRequest<?>> mInFlightRequests = new HashMap<>();
+
+
+	/**
+	 * Creates a coalescer that adds the requests to the {@link RequestQueue} received as parameter.
+	 *
+	 * @param requestQueue
+	 * 		{@link RequestQueue} used to send the requests.
+	 */
+	public RequestCoalescer(RequestQueue requestQueue) {
+		this(new RequestThrottle(requestQueue));
+	}
+
+	/**
+	 * Creates a coalescer that adds the requests to the queue through the {@link RequestThrottle} received as parameter, so
+	 * only the requests that are actually sent count towards the limits of their routes.
+	 *
+	 * @param requestThrottle
+	 * 		{@link RequestThrottle} used to send the requests.
+	 */
+	public RequestCoalescer(RequestThrottle requestThrottle) {
+		mRequestThrottle = requestThrottle;
+
+		mRequestThrottle.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+
+			@Override
+			public void onRequestFinished(Request<Object> request) {
+				if (request instanceof BaseRequest) {
+					detach((BaseRequest<Object>) request);
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Adds a request to the queue, or attaches it to an identical request that is already in flight.
+	 *
+	 * @param request
+	 * 		{@link BaseRequest} to send.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void add(BaseRequest<T> request) {
+		String coalescingKey = request.getCoalescingKey();
+
+		if (coalescingKey != null) {
+			synchronized (mInFlightRequests) {
+				BaseRequest<T> inFlightRequest = (BaseRequest<T>) mInFlightRequests.get(coalescingKey);
+				if (inFlightRequest != null && inFlightRequest.addCoalescedRequest(request)) {
+					request.addMarker("coalesced");
+
+					if (inFlightRequest.isPrefetch() && !request.isPrefetch()) {
+						mRequestThrottle.promote(inFlightRequest, request.getPriority());
+					}
+
+					return;
+				}
+
+				// There is no request in flight for this key (or its response was already delivered), so this one takes its place
+				mInFlightRequests.put(coalescingKey, request);
+				request.setInFlight(this, coalescingKey);
+			}
+		}
+
+		mRequestThrottle.add(request);
+	}
+
+	/**
+	 * Removes a request from the in flight requests, and sends again the requests coalesced to it if it didn't deliver a
+	 * response to them. This is called when the request finishes (e.g. because it was cancelled), or when it's about to be
+	 * cancelled because its own total timeout ran out, which shouldn't fail the requests coalesced to it.
+	 *
+	 * @param request
+	 * 		{@link BaseRequest} to remove.
+	 */
+	<T> void detach(BaseRequest<T> request) {
+		String inFlightKey = request.getInFlightKey();
+		if (inFlightKey == null) {
+			return;
+		}
+
+		synchronized (mInFlightRequests) {
+			if (mInFlightRequests.get(inFlightKey) == request) {
+				mInFlightRequests.remove(inFlightKey);
+			}
+		}
+
+		List<BaseRequest<T>> orphanRequests = request.closeCoalescing();
+		for (BaseRequest<T> orphanRequest : orphanRequests) {
+			if (!orphanRequest.isCanceled()) {
+				add(orphanRequest);
+			} else {
+				finish(orphanRequest);
+			}
+		}
+	}
+
+	/**
+	 * Finishes a request that was coalesced to another one, once its final response (or error) was delivered.
+	 *
+	 * @param request
+	 * 		{@link BaseRequest} that finished.
+	 */
+	<T> void finish(BaseRequest<T> request) {
+		mRequestThrottle.finish(request);
+	}
+
+}
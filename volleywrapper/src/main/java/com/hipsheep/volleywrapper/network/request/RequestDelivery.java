@@ -0,0 +1,97 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.util.MainThreadExecutor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * {@link ResponseDelivery} that delivers the response of each request on the {@link Executor} returned by its
+ * {@link BaseRequest#getDeliveryExecutor()} method, or on the Main Thread if it doesn't have one (or is not a
+ * {@link BaseRequest}).
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestDelivery implements ResponseDelivery {
+
+	private final Executor mMainThreadExecutor = MainThreadExecutor.getInstance();
+	/**
+	 * Delivery on the Main Thread, used by the requests that don't have an executor.
+	 */
+	private final ResponseDelivery mMainThreadDelivery = new ExecutorDelivery(mMainThreadExecutor);
+	/**
+	 * Delivery of the last executor used (other than the Main Thread one). Only one is kept, so executors used by a few
+	 * requests (e.g. the ones of a screen that was closed) aren't retained forever, while the common case of a single executor
+	 * set on the default configuration doesn't create a delivery for each response.
+	 */
+	private volatile ExecutorDeliveryEntry mLastExecutorDelivery;
+
+
+	@Override
+	public void postResponse(Request<?> request, Response<?> response) {
+		getDelivery(request).postResponse(request, response);
+	}
+
+	@Override
+	public void postResponse(Request<?> request, Response<?> response, Runnable runnable) {
+		getDelivery(request).postResponse(request, response, runnable);
+	}
+
+	@Override
+	public void postError(Request<?> request, VolleyError error) {
+		getDelivery(request).postError(request, error);
+	}
+
+	private ResponseDelivery getDelivery(Request<?> request) {
+		Executor executor = getDeliveryExecutor(request);
+		if (executor == mMainThreadExecutor) {
+			return mMainThreadDelivery;
+		}
+
+		ExecutorDeliveryEntry lastExecutorDelivery = mLastExecutorDelivery;
+		if (lastExecutorDelivery == null || lastExecutorDelivery.mExecutor != executor) {
+			lastExecutorDelivery = new ExecutorDeliveryEntry(executor);
+			mLastExecutorDelivery = lastExecutorDelivery;
+		}
+
+		return lastExecutorDelivery.mDelivery;
+	}
+
+	/**
+	 * Returns the executor on which the response of a request has to be delivered.
+	 *
+	 * @param request
+	 * 		Request whose response will be delivered.
+	 *
+	 * @return The executor of the request, or an executor that runs on the Main Thread if the request doesn't have one.
+	 */
+	static Executor getDeliveryExecutor(Request<?> request) {
+		Executor executor = request instanceof BaseRequest ? ((BaseRequest<?>) request).getDeliveryExecutor() : null;
+		return executor != null ? executor : MainThreadExecutor.getInstance();
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Executor and the delivery that uses it, kept together so they are always read as a pair.
+	 */
+	private static class ExecutorDeliveryEntry {
+
+		private final Executor mExecutor;
+		private final ResponseDelivery mDelivery;
+
+
+		ExecutorDeliveryEntry(Executor executor) {
+			mExecutor = executor;
+			mDelivery = new ExecutorDelivery(executor);
+		}
+
+	}
+
+}
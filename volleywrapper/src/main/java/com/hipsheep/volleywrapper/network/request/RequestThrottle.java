@@ -0,0 +1,219 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimer;
+import com.hipsheep.volleywrapper.network.route.RequestLimiter;
+import com.hipsheep.volleywrapper.network.route.RouteProfile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adds requests to a {@link RequestQueue}, holding back the requests whose route is over the limits set on its
+ * {@link RouteProfile} (see {@link RequestLimiter}) until they are within them. Requests that are held back don't take a
+ * dispatcher nor block any thread, and their total timeout (if any) starts counting while they wait.
+ * <p>
+ * Requests with a traffic class (see {@link BaseRequest#getTrafficClass()}) are added to the queue of that class, if one
+ * was added through {@link #addRequestQueue(String, RequestQueue)}, or to the default queue otherwise.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestThrottle {
+
+	private final RequestQueue mRequestQueue;
+
+	/**
+	 * Queues of each traffic class, mapped by name. It's replaced (instead of modified) when a queue is added, so requests
+	 * can be added without locking.
+	 */
+	private volatile Map<String, RequestQueue> mTrafficClassQueues = new HashMap<>();
+
+	/**
+	 * Listeners added to all the queues, so they can also be added to the queues added later.
+	 */
+	private final List<RequestQueue.RequestFinishedListener<Object>> mRequestFinishedListeners = new ArrayList<>();
+
+	/**
+	 * Requests (other than prefetches) that were added and didn't finish yet, used to know when the queues are idle.
+	 */
+	private final Set<BaseRequest<?>> mForegroundRequests =
+			Collections.newSetFromMap(new ConcurrentHashMap<BaseRequest<?>, Boolean>());
+
+
+	/**
+	 * Creates a throttle that adds the requests to the {@link RequestQueue} received as parameter.
+	 *
+	 * @param requestQueue
+	 * 		Default {@link RequestQueue} used to send the requests.
+	 */
+	public RequestThrottle(RequestQueue requestQueue) {
+		mRequestQueue = requestQueue;
+
+		addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+
+			@Override
+			public void onRequestFinished(Request<Object> request) {
+				if (request instanceof BaseRequest) {
+					BaseRequest<Object> baseRequest = (BaseRequest<Object>) request;
+					baseRequest.releaseRequestLimiter();
+
+					// Marked before it's removed, so a request promoted at the same time isn't left behind (see promote())
+					baseRequest.setFinished();
+					mForegroundRequests.remove(baseRequest);
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Adds the queue used to send the requests of a traffic class.
+	 *
+	 * @param trafficClass
+	 * 		Name of the traffic class.
+	 * @param requestQueue
+	 * 		{@link RequestQueue} used to send the requests of the traffic class.
+	 */
+	public synchronized void addRequestQueue(String trafficClass, RequestQueue requestQueue) {
+		Map<String, RequestQueue> trafficClassQueues = new HashMap<>(mTrafficClassQueues);
+		trafficClassQueues.put(trafficClass, requestQueue);
+		mTrafficClassQueues = trafficClassQueues;
+
+		for (RequestQueue.RequestFinishedListener<Object> requestFinishedListener : mRequestFinishedListeners) {
+			requestQueue.addRequestFinishedListener(requestFinishedListener);
+		}
+	}
+
+	/**
+	 * Adds a listener that is notified when the requests of any of the queues finish.
+	 *
+	 * @param requestFinishedListener
+	 * 		Listener to add to all the queues.
+	 */
+	public synchronized void addRequestFinishedListener(RequestQueue.RequestFinishedListener<Object> requestFinishedListener) {
+		mRequestFinishedListeners.add(requestFinishedListener);
+
+		mRequestQueue.addRequestFinishedListener(requestFinishedListener);
+		for (RequestQueue requestQueue : mTrafficClassQueues.values()) {
+			requestQueue.addRequestFinishedListener(requestFinishedListener);
+		}
+	}
+
+	/**
+	 * Notifies the request finished listeners that a request finished without reaching a queue (e.g. because it was
+	 * coalesced to another request).
+	 *
+	 * @param request
+	 * 		{@link BaseRequest} that finished.
+	 */
+	@SuppressWarnings("unchecked")
+	void finish(BaseRequest<?> request) {
+		List<RequestQueue.RequestFinishedListener<Object>> requestFinishedListeners;
+		synchronized (this) {
+			requestFinishedListeners = new ArrayList<>(mRequestFinishedListeners);
+		}
+
+		for (RequestQueue.RequestFinishedListener<Object> requestFinishedListener : requestFinishedListeners) {
+			requestFinishedListener.onRequestFinished((Request<Object>) request);
+		}
+	}
+
+	/**
+	 * Adds a request to the queue of its traffic class, right away if its route is within its limits, or when it is.
+	 *
+	 * @param request
+	 * 		{@link BaseRequest} to send.
+	 */
+	public <T> void add(final BaseRequest<T> request) {
+		if (!request.isPrefetch()) {
+			mForegroundRequests.add(request);
+		}
+
+		final RequestQueue requestQueue = getRequestQueue(request.getTrafficClass());
+
+		RouteProfile routeProfile = request.getRouteProfile();
+		final RequestLimiter requestLimiter = routeProfile != null ? routeProfile.getRequestLimiter() : null;
+		if (requestLimiter == null) {
+			requestQueue.add(request);
+			return;
+		}
+
+		boolean started = requestLimiter.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				// Requests cancelled while they waited are added too, since the queue discards them and finishes them, which
+				// releases their place on the limiter and lets the coalescer send the requests attached to them
+				request.setRequestLimiter(requestLimiter);
+				requestQueue.add(request);
+			}
+
+		});
+
+		if (!started) {
+			request.addMarker(RequestTimer.MARKER_THROTTLED);
+		}
+	}
+
+	/**
+	 * Promotes a prefetch that a foreground request was coalesced to, since that request now waits for it: its priority is
+	 * raised to the one of the foreground request (which only reorders it if it didn't reach its queue yet), and it keeps the
+	 * queues from being idle until it finishes.
+	 *
+	 * @param prefetch
+	 * 		Prefetch in flight.
+	 * @param priority
+	 * 		Priority of the request coalesced to the prefetch.
+	 */
+	void promote(BaseRequest<?> prefetch, Request.Priority priority) {
+		if (priority.ordinal() > prefetch.getPriority().ordinal()) {
+			prefetch.setPriority(priority);
+		}
+
+		mForegroundRequests.add(prefetch);
+
+		// The prefetch may have finished before it was added
+		if (prefetch.isFinished()) {
+			mForegroundRequests.remove(prefetch);
+		}
+	}
+
+	/**
+	 * Returns whether the queues are idle, which means that all the requests added to them (other than the ones sent by a
+	 * {@link Prefetcher}, unless another request is waiting for them) finished.
+	 *
+	 * @return {@code true} if no requests are waiting or in flight, or {@code false} otherwise.
+	 */
+	public boolean isIdle() {
+		return mForegroundRequests.isEmpty();
+	}
+
+	/**
+	 * Returns the default queue the requests are added to.
+	 *
+	 * @return Default {@link RequestQueue} used to send the requests.
+	 */
+	public RequestQueue getRequestQueue() {
+		return mRequestQueue;
+	}
+
+	/**
+	 * Returns the queue the requests of a traffic class are added to.
+	 *
+	 * @param trafficClass
+	 * 		Name of the traffic class, or {@code null} for requests without one.
+	 *
+	 * @return {@link RequestQueue} of the traffic class, or the default one if the class has no queue.
+	 */
+	public RequestQueue getRequestQueue(String trafficClass) {
+		RequestQueue requestQueue = trafficClass != null ? mTrafficClassQueues.get(trafficClass) : null;
+		return requestQueue != null ? requestQueue : mRequestQueue;
+	}
+
+}
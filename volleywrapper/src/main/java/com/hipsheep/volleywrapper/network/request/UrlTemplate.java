@@ -0,0 +1,215 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.hipsheep.volleywrapper.util.UrlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * URL with path params, like {@code "http://jsonplaceholder.typicode.com/users/{id}/posts"}, that is parsed once and then
+ * expanded for each request, encoding the values of the params, e.g.:
+ * <pre>
+ * private static final UrlTemplate USER_POSTS = UrlTemplate.compile("http://jsonplaceholder.typicode.com/users/{id}/posts");
+ *
+ * public UserPostsRequest(int userId) {
+ *     super(Method.GET, USER_POSTS.expand(userId), Post[].class);
+ * }
+ * </pre>
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class UrlTemplate {
+
+	/**
+	 * Templates parsed by {@link #compile(String)}, so the same template is never parsed twice.
+	 */
+	private static final ConcurrentMap<String, UrlTemplate> sTemplates = new ConcurrentHashMap<>();
+
+	private final String mTemplate;
+
+	/**
+	 * Literal parts of the template, where {@code mLiterals[i]} goes before the param {@code mParamIndexes[i]}, and the last
+	 * literal goes at the end.
+	 */
+	private final String[] mLiterals;
+	/**
+	 * Index (on {@link #mParamNames}) of the param of each placeholder of the template.
+	 */
+	private final int[] mParamIndexes;
+	/**
+	 * Names of the params of the template, in the order they first appear.
+	 */
+	private final String[] mParamNames;
+
+	/**
+	 * Length of all the literal parts of the template, used to size the builder of the expanded URLs.
+	 */
+	private final int mLiteralsLength;
+
+
+	private UrlTemplate(String template) {
+		mTemplate = template;
+
+		List<String> literals = new ArrayList<>();
+		List<Integer> paramIndexes = new ArrayList<>();
+		List<String> paramNames = new ArrayList<>();
+
+		int literalsLength = 0;
+		int start = 0;
+		int open;
+		while ((open = template.indexOf('{', start)) >= 0) {
+			int close = template.indexOf('}', open + 1);
+			if (close < 0) {
+				throw new IllegalArgumentException("Unclosed param on URL template: " + template);
+			}
+
+			String paramName = template.substring(open + 1, close);
+			if (paramName.isEmpty()) {
+				throw new IllegalArgumentException("Param without name on URL template: " + template);
+			}
+
+			int paramIndex = paramNames.indexOf(paramName);
+			if (paramIndex < 0) {
+				paramIndex = paramNames.size();
+				paramNames.add(paramName);
+			}
+
+			literals.add(template.substring(start, open));
+			literalsLength += open - start;
+			paramIndexes.add(paramIndex);
+
+			start = close + 1;
+		}
+
+		literals.add(template.substring(start));
+		literalsLength += template.length() - start;
+
+		mLiterals = literals.toArray(new String[literals.size()]);
+		mParamNames = paramNames.toArray(new String[paramNames.size()]);
+		mParamIndexes = new int[paramIndexes.size()];
+		for (int i = 0; i < mParamIndexes.length; i++) {
+			mParamIndexes[i] = paramIndexes.get(i);
+		}
+
+		mLiteralsLength = literalsLength;
+	}
+
+	/**
+	 * Returns the parsed version of a URL template, parsing it only the first time it's used.
+	 *
+	 * @param template
+	 * 		URL with params between braces (e.g. {@code "http://example.com/users/{id}/posts"}).
+	 *
+	 * @return Parsed {@link UrlTemplate}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If a param is not closed or has no name.
+	 */
+	public static UrlTemplate compile(String template) {
+		UrlTemplate urlTemplate = sTemplates.get(template);
+		if (urlTemplate == null) {
+			urlTemplate = new UrlTemplate(template);
+
+			UrlTemplate previousUrlTemplate = sTemplates.putIfAbsent(template, urlTemplate);
+			if (previousUrlTemplate != null) {
+				urlTemplate = previousUrlTemplate;
+			}
+		}
+
+		return urlTemplate;
+	}
+
+	/**
+	 * Expands the template, replacing each param by its encoded value.
+	 *
+	 * @param paramValues
+	 * 		Values of the params, in the order the params first appear on the template (a param used more than once takes a
+	 * 		single value).
+	 *
+	 * @return Expanded URL.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the number of values doesn't match the number of params, or a value is {@code null}.
+	 */
+	public String expand(Object... paramValues) {
+		if (paramValues.length != mParamNames.length) {
+			throw new IllegalArgumentException("URL template " + mTemplate + " expects " + mParamNames.length
+					+ " params, but got " + paramValues.length);
+		}
+
+		String[] values = new String[paramValues.length];
+		for (int i = 0; i < paramValues.length; i++) {
+			values[i] = getParamValue(mParamNames[i], paramValues[i]);
+		}
+
+		return expand(values);
+	}
+
+	/**
+	 * Expands the template, replacing each param by the encoded value mapped to its name.
+	 *
+	 * @param paramValues
+	 * 		Values of the params, mapped by their names.
+	 *
+	 * @return Expanded URL.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the value of a param is missing or {@code null}.
+	 */
+	public String expand(Map<String, ?> paramValues) {
+		String[] values = new String[mParamNames.length];
+		for (int i = 0; i < mParamNames.length; i++) {
+			values[i] = getParamValue(mParamNames[i], paramValues.get(mParamNames[i]));
+		}
+
+		return expand(values);
+	}
+
+	private String expand(String[] values) {
+		if (values.length == 0) {
+			return mTemplate;
+		}
+
+		int length = mLiteralsLength;
+		for (int paramIndex : mParamIndexes) {
+			length += values[paramIndex].length();
+		}
+
+		// Leave some room for the encoded characters, so the builder doesn't need to grow in most cases
+		StringBuilder url = new StringBuilder(length + 16);
+		for (int i = 0; i < mParamIndexes.length; i++) {
+			url.append(mLiterals[i]);
+			UrlUtils.appendEncoded(url, values[mParamIndexes[i]]);
+		}
+
+		url.append(mLiterals[mLiterals.length - 1]);
+
+		return url.toString();
+	}
+
+	private String getParamValue(String paramName, Object value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Missing value for param " + paramName + " of URL template " + mTemplate);
+		}
+
+		return value.toString();
+	}
+
+	/**
+	 * Returns the names of the params of the template, in the order they first appear.
+	 *
+	 * @return Names of the params.
+	 */
+	public String[] getParamNames() {
+		return mParamNames.clone();
+	}
+
+	@Override
+	public String toString() {
+		return mTemplate;
+	}
+
+}
@@ -0,0 +1,197 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.RetryPolicy;
+import com.android.volley.VolleyError;
+
+import java.util.Random;
+
+/**
+ * {@link RetryPolicy} that waits before each retry, using exponential backoff with full jitter: the wait before retry
+ * {@code n} is a random time between 0 and {@code min(maxDelayMs, baseDelayMs * 2^(n - 1))}, so clients that failed
+ * together don't retry together. The timeout of each attempt grows by the backoff multiplier, like on
+ * {@link DefaultRetryPolicy}.
+ * <p>
+ * Volley calls {@link #retry(VolleyError)} on the network dispatcher thread, so the waits block that dispatcher, which can't
+ * take other requests meanwhile. To bound that, the total time a request waits to retry is capped at the timeout of its
+ * first attempt: once the waits add up to that timeout, the remaining retries are sent right away.
+ * <p>
+ * If a {@link CircuitBreaker} is set, requests stop retrying as soon as it opens, failing with a {@link CircuitOpenError}.
+ * <p>
+ * Retry policies keep the state of a single request, so the policy set on the default configuration is copied (see
+ * {@link #copy()}) for each request.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class BackoffRetryPolicy implements RetryPolicy {
+
+	/**
+	 * Default maximum wait before the first retry.
+	 */
+	public static final long DEFAULT_BASE_DELAY_MS = 100;
+	/**
+	 * Default maximum wait before any retry.
+	 */
+	public static final long DEFAULT_MAX_DELAY_MS = 2000;
+
+	private static final Random sRandom = new Random();
+
+	private final int mInitialTimeoutMs;
+	private final int mMaxRetries;
+	private final float mBackoffMultiplier;
+	private final long mBaseDelayMs;
+	private final long mMaxDelayMs;
+
+	private int mCurrentTimeoutMs;
+	private int mCurrentRetryCount;
+	/**
+	 * Total time waited before the retries so far.
+	 */
+	private long mTotalDelayMs;
+
+	private CircuitBreaker mCircuitBreaker;
+
+
+	/**
+	 * Creates a retry policy with Volley's default timeout, retries and backoff multiplier, and the default delays.
+	 */
+	public BackoffRetryPolicy() {
+		this(DefaultRetryPolicy.DEFAULT_TIMEOUT_MS, DefaultRetryPolicy.DEFAULT_MAX_RETRIES,
+				DefaultRetryPolicy.DEFAULT_BACKOFF_MULT, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+	}
+
+	/**
+	 * Creates a retry policy.
+	 *
+	 * @param initialTimeoutMs
+	 * 		Timeout (in milliseconds) of the first attempt.
+	 * @param maxRetries
+	 * 		Maximum number of retries.
+	 * @param backoffMultiplier
+	 * 		Multiplier applied to the timeout on each retry.
+	 * @param baseDelayMs
+	 * 		Maximum wait (in milliseconds) before the first retry, which doubles on each retry.
+	 * @param maxDelayMs
+	 * 		Maximum wait (in milliseconds) before any retry.
+	 */
+	public BackoffRetryPolicy(int initialTimeoutMs, int maxRetries, float backoffMultiplier, long baseDelayMs,
+			long maxDelayMs) {
+		if (baseDelayMs < 0 || maxDelayMs < baseDelayMs) {
+			throw new IllegalArgumentException(String.format("Invalid delays: base %d ms, max %d ms", baseDelayMs, maxDelayMs));
+		}
+
+		mInitialTimeoutMs = initialTimeoutMs;
+		mMaxRetries = maxRetries;
+		mBackoffMultiplier = backoffMultiplier;
+		mBaseDelayMs = baseDelayMs;
+		mMaxDelayMs = maxDelayMs;
+
+		mCurrentTimeoutMs = initialTimeoutMs;
+	}
+
+	/**
+	 * Creates a new policy with the same settings as this one, which hasn't retried yet and has no circuit breaker.
+	 *
+	 * @return Copy of this policy.
+	 */
+	public BackoffRetryPolicy copy() {
+		return new BackoffRetryPolicy(mInitialTimeoutMs, mMaxRetries, mBackoffMultiplier, mBaseDelayMs, mMaxDelayMs);
+	}
+
+	/**
+	 * Creates a new policy with the same delays as this one but different retry values, which hasn't retried yet and has no
+	 * circuit breaker.
+	 *
+	 * @param initialTimeoutMs
+	 * 		Timeout (in milliseconds) of the first attempt.
+	 * @param maxRetries
+	 * 		Maximum number of retries.
+	 * @param backoffMultiplier
+	 * 		Multiplier applied to the timeout on each retry.
+	 *
+	 * @return Copy of this policy with the values received.
+	 */
+	public BackoffRetryPolicy copy(int initialTimeoutMs, int maxRetries, float backoffMultiplier) {
+		return new BackoffRetryPolicy(initialTimeoutMs, maxRetries, backoffMultiplier, mBaseDelayMs, mMaxDelayMs);
+	}
+
+	@Override
+	public int getCurrentTimeout() {
+		return mCurrentTimeoutMs;
+	}
+
+	@Override
+	public int getCurrentRetryCount() {
+		return mCurrentRetryCount;
+	}
+
+	@Override
+	public void retry(VolleyError error) throws VolleyError {
+		if (mCircuitBreaker != null && mCircuitBreaker.isOpen()) {
+			// The host is failing for other requests too, so don't add more load to it
+			throw new CircuitOpenError(mCircuitBreaker.getHost(), 0);
+		}
+
+		mCurrentRetryCount++;
+		if (mCurrentRetryCount > mMaxRetries) {
+			throw error;
+		}
+
+		mCurrentTimeoutMs += (int) (mCurrentTimeoutMs * mBackoffMultiplier);
+
+		// The waits block the dispatcher, so they never add up to more than the timeout of the first attempt
+		long delayMs = Math.min(getDelayMs(mCurrentRetryCount), mInitialTimeoutMs - mTotalDelayMs);
+		if (delayMs > 0) {
+			mTotalDelayMs += delayMs;
+
+			try {
+				Thread.sleep(delayMs);
+			} catch (InterruptedException e) {
+				// The dispatcher is quitting, so don't retry
+				Thread.currentThread().interrupt();
+				throw error;
+			}
+		}
+	}
+
+	/**
+	 * Returns a random wait before a retry.
+	 *
+	 * @param retryCount
+	 * 		Number of the retry (starting from 1).
+	 *
+	 * @return Wait (in milliseconds) between 0 and the maximum for the retry.
+	 */
+	long getDelayMs(int retryCount) {
+		// Avoid overflows on the shift, the max delay is reached way before
+		long maxDelayMs = retryCount > 30 ? mMaxDelayMs : Math.min(mMaxDelayMs, mBaseDelayMs << (retryCount - 1));
+		return maxDelayMs > 0 ? (long) (sRandom.nextDouble() * (maxDelayMs + 1)) : 0;
+	}
+
+	public int getInitialTimeoutMs() {
+		return mInitialTimeoutMs;
+	}
+
+	public int getMaxRetries() {
+		return mMaxRetries;
+	}
+
+	public float getBackoffMultiplier() {
+		return mBackoffMultiplier;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return mCircuitBreaker;
+	}
+
+	/**
+	 * Sets the circuit breaker of the host the request is sent to, which stops the retries while it's open.
+	 *
+	 * @param circuitBreaker
+	 * 		{@link CircuitBreaker} of the request's host.
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		mCircuitBreaker = circuitBreaker;
+	}
+
+}
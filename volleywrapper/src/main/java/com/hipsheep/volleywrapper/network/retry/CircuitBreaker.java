@@ -0,0 +1,193 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.NoConnectionError;
+import com.android.volley.VolleyError;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker of a single host, which stops sending requests to it while it's failing:
+ * <ul>
+ * <li><b>Closed</b>: requests are sent, and consecutive failures are counted. When they reach the failure threshold the
+ * breaker opens.</li>
+ * <li><b>Open</b>: requests fail with a {@link CircuitOpenError} without using the network, until the open duration runs
+ * out.</li>
+ * <li><b>Half open</b>: a limited number of probe requests are sent. If one of them succeeds the breaker closes, and if one
+ * of them fails it opens again.</li>
+ * </ul>
+ * Only timeouts and server errors (5xx) count as failures, since any other response means the host is up. Requests that
+ * fail without a connection ({@link NoConnectionError}) don't count either way, since Volley also reports that error when
+ * the device is offline, which says nothing about the host.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String mHost;
+
+	private final int mFailureThreshold;
+	private final long mOpenDurationNs;
+	private final int mMaxProbeCount;
+
+	private State mState = State.CLOSED;
+	/**
+	 * Consecutive failures while closed.
+	 */
+	private int mFailureCount;
+	/**
+	 * Time when the breaker stops being open, as returned by {@link System#nanoTime()}.
+	 */
+	private long mOpenUntilNs;
+	/**
+	 * Probe requests in flight while half open.
+	 */
+	private int mProbeCount;
+
+
+	/**
+	 * Creates a closed circuit breaker.
+	 *
+	 * @param host
+	 * 		Host the breaker belongs to.
+	 * @param failureThreshold
+	 * 		Number of consecutive failures that open the breaker.
+	 * @param openDurationMs
+	 * 		Time (in milliseconds) the breaker stays open before letting probe requests through.
+	 * @param maxProbeCount
+	 * 		Maximum number of probe requests in flight while half open.
+	 */
+	public CircuitBreaker(String host, int failureThreshold, long openDurationMs, int maxProbeCount) {
+		checkSettings(failureThreshold, openDurationMs, maxProbeCount);
+
+		mHost = host;
+		mFailureThreshold = failureThreshold;
+		mOpenDurationNs = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+		mMaxProbeCount = maxProbeCount;
+	}
+
+	static void checkSettings(int failureThreshold, long openDurationMs, int maxProbeCount) {
+		if (failureThreshold < 1 || openDurationMs < 0 || maxProbeCount < 1) {
+			throw new IllegalArgumentException(String.format("Invalid circuit breaker settings: failure threshold %d, "
+					+ "open duration %d ms, max probe count %d", failureThreshold, openDurationMs, maxProbeCount));
+		}
+	}
+
+	/**
+	 * Checks whether a request can be sent, which counts it as a probe if the breaker is half open. Each allowed request
+	 * must report its result through {@link #onSuccess()} or {@link #onFailure()}, or call {@link #releaseProbe()} if it ended
+	 * without a result.
+	 *
+	 * @throws CircuitOpenError
+	 * 		If the breaker is open, or half open with all its probes in flight.
+	 */
+	public synchronized void acquire() throws CircuitOpenError {
+		if (mState == State.OPEN) {
+			long remainingNs = mOpenUntilNs - System.nanoTime();
+			if (remainingNs > 0) {
+				throw new CircuitOpenError(mHost, TimeUnit.NANOSECONDS.toMillis(remainingNs));
+			}
+
+			mState = State.HALF_OPEN;
+			mProbeCount = 0;
+		}
+
+		if (mState == State.HALF_OPEN) {
+			if (mProbeCount >= mMaxProbeCount) {
+				throw new CircuitOpenError(mHost, 0);
+			}
+
+			mProbeCount++;
+		}
+	}
+
+	/**
+	 * Reports a request that received a response, which closes the breaker if it was half open.
+	 */
+	public synchronized void onSuccess() {
+		mFailureCount = 0;
+
+		if (mState == State.HALF_OPEN) {
+			mState = State.CLOSED;
+			mProbeCount = 0;
+		}
+	}
+
+	/**
+	 * Reports a request that failed, which opens the breaker if it was half open or if the failure threshold was reached.
+	 */
+	public synchronized void onFailure() {
+		if (mState == State.HALF_OPEN || (mState == State.CLOSED && ++mFailureCount >= mFailureThreshold)) {
+			mState = State.OPEN;
+			mOpenUntilNs = System.nanoTime() + mOpenDurationNs;
+			mFailureCount = 0;
+			mProbeCount = 0;
+		}
+	}
+
+	/**
+	 * Reports a request that ended without a result that says anything about the host (e.g. an unexpected error), which
+	 * only gives back its place among the probes if the breaker is half open.
+	 */
+	public synchronized void releaseProbe() {
+		if (mState == State.HALF_OPEN && mProbeCount > 0) {
+			mProbeCount--;
+		}
+	}
+
+	/**
+	 * Reports the result of a request, based on the error it received (if any).
+	 *
+	 * @param error
+	 * 		Error received by the request, or {@code null} if it succeeded.
+	 */
+	public void onResult(VolleyError error) {
+		if (error instanceof NoConnectionError) {
+			releaseProbe();
+		} else if (error != null && isFailure(error)) {
+			onFailure();
+		} else {
+			onSuccess();
+		}
+	}
+
+	/**
+	 * Returns whether the breaker is open and its open duration didn't run out, so requests would fail without using the
+	 * network.
+	 */
+	public synchronized boolean isOpen() {
+		return mState == State.OPEN && mOpenUntilNs - System.nanoTime() > 0;
+	}
+
+	public synchronized State getState() {
+		return mState;
+	}
+
+	public String getHost() {
+		return mHost;
+	}
+
+	/**
+	 * Returns whether an error means the host is failing (as opposed to the request being wrong).
+	 *
+	 * @param error
+	 * 		Error received by a request.
+	 *
+	 * @return {@code true} for timeouts and server errors (5xx), or {@code false} otherwise (e.g. for a
+	 * {@link NoConnectionError}, which doesn't tell whether the device is offline or the host is down).
+	 */
+	public static boolean isFailure(VolleyError error) {
+		if (error instanceof CircuitOpenError || error instanceof AuthFailureError || error instanceof NoConnectionError) {
+			return false;
+		}
+
+		NetworkResponse networkResponse = error.networkResponse;
+		return networkResponse == null || networkResponse.statusCode >= 500;
+	}
+
+}
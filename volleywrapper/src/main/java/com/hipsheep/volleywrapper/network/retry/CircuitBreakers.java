@@ -0,0 +1,88 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link CircuitBreaker}s of each host, which are created with the same settings the first time a request is sent to the
+ * host.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CircuitBreakers {
+
+	/**
+	 * Default number of consecutive failures that open a breaker.
+	 */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	/**
+	 * Default time a breaker stays open before letting probe requests through.
+	 */
+	public static final long DEFAULT_OPEN_DURATION_MS = 10000;
+	/**
+	 * Default number of probe requests in flight while a breaker is half open.
+	 */
+	public static final int DEFAULT_MAX_PROBE_COUNT = 1;
+
+	private final int mFailureThreshold;
+	private final long mOpenDurationMs;
+	private final int mMaxProbeCount;
+
+	private final ConcurrentMap<String, CircuitBreaker> mCircuitBreakers = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Creates circuit breakers with the default settings.
+	 */
+	public CircuitBreakers() {
+		this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION_MS, DEFAULT_MAX_PROBE_COUNT);
+	}
+
+	/**
+	 * Creates circuit breakers with the settings received (see {@link CircuitBreaker}).
+	 *
+	 * @param failureThreshold
+	 * 		Number of consecutive failures that open a breaker.
+	 * @param openDurationMs
+	 * 		Time (in milliseconds) a breaker stays open before letting probe requests through.
+	 * @param maxProbeCount
+	 * 		Maximum number of probe requests in flight while a breaker is half open.
+	 */
+	public CircuitBreakers(int failureThreshold, long openDurationMs, int maxProbeCount) {
+		// Check the settings now, instead of when the first breaker is created
+		CircuitBreaker.checkSettings(failureThreshold, openDurationMs, maxProbeCount);
+
+		mFailureThreshold = failureThreshold;
+		mOpenDurationMs = openDurationMs;
+		mMaxProbeCount = maxProbeCount;
+	}
+
+	/**
+	 * Returns the circuit breaker of a host, creating it if needed.
+	 *
+	 * @param host
+	 * 		Host of a request (case insensitive).
+	 *
+	 * @return {@link CircuitBreaker} of the host, or {@code null} if the host is {@code null}.
+	 */
+	public CircuitBreaker get(String host) {
+		if (host == null) {
+			return null;
+		}
+
+		String hostKey = host.toLowerCase(Locale.US);
+		CircuitBreaker circuitBreaker = mCircuitBreakers.get(hostKey);
+		if (circuitBreaker == null) {
+			circuitBreaker = new CircuitBreaker(hostKey, mFailureThreshold, mOpenDurationMs, mMaxProbeCount);
+
+			CircuitBreaker previousCircuitBreaker = mCircuitBreakers.putIfAbsent(hostKey, circuitBreaker);
+			if (previousCircuitBreaker != null) {
+				circuitBreaker = previousCircuitBreaker;
+			}
+		}
+
+		return circuitBreaker;
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.android.volley.VolleyError;
+
+/**
+ * Error delivered to the requests sent to a host whose {@link CircuitBreaker} is open, which fail without using the
+ * network.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CircuitOpenError extends VolleyError {
+
+	private final String mHost;
+
+	private final long mRetryAfterMs;
+
+
+	public CircuitOpenError(String host, long retryAfterMs) {
+		super(String.format("Circuit breaker of host %s is open, retry after %d ms", host, retryAfterMs));
+
+		mHost = host;
+		mRetryAfterMs = retryAfterMs;
+	}
+
+	/**
+	 * Returns the host whose circuit breaker is open.
+	 */
+	public String getHost() {
+		return mHost;
+	}
+
+	/**
+	 * Returns the time (in milliseconds) left until the circuit breaker lets probe requests through.
+	 */
+	public long getRetryAfterMs() {
+		return mRetryAfterMs;
+	}
+
+}
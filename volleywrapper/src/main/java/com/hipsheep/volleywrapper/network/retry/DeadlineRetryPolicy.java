@@ -0,0 +1,73 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.android.volley.RetryPolicy;
+import com.android.volley.VolleyError;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RetryPolicy} that limits the attempts of another policy to a deadline: the timeout of each attempt is cut to the time
+ * left until the deadline, and a retry is only allowed if the whole timeout of the next attempt fits before it.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class DeadlineRetryPolicy implements RetryPolicy {
+
+	private final RetryPolicy mRetryPolicy;
+
+	/**
+	 * Deadline, as returned by {@link System#nanoTime()}.
+	 */
+	private final long mDeadlineNs;
+
+
+	/**
+	 * Creates a retry policy limited to a deadline.
+	 *
+	 * @param retryPolicy
+	 * 		{@link RetryPolicy} whose attempts will be limited.
+	 * @param deadlineNs
+	 * 		Deadline of the attempts, as returned by {@link System#nanoTime()}.
+	 */
+	public DeadlineRetryPolicy(RetryPolicy retryPolicy, long deadlineNs) {
+		mRetryPolicy = retryPolicy;
+		mDeadlineNs = deadlineNs;
+	}
+
+	@Override
+	public int getCurrentTimeout() {
+		return (int) Math.max(Math.min(mRetryPolicy.getCurrentTimeout(), getRemainingTimeMs()), 1);
+	}
+
+	@Override
+	public int getCurrentRetryCount() {
+		return mRetryPolicy.getCurrentRetryCount();
+	}
+
+	@Override
+	public void retry(VolleyError error) throws VolleyError {
+		mRetryPolicy.retry(error);
+
+		// Don't start an attempt that would time out after the deadline
+		if (mRetryPolicy.getCurrentTimeout() > getRemainingTimeMs()) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Returns the time left until the deadline.
+	 *
+	 * @return Time (in milliseconds) left until the deadline, which is negative if it already passed.
+	 */
+	public long getRemainingTimeMs() {
+		return TimeUnit.NANOSECONDS.toMillis(mDeadlineNs - System.nanoTime());
+	}
+
+	/**
+	 * Returns the retry policy whose attempts are limited by this one.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return mRetryPolicy;
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+/**
+ * Global budget of hedges (see {@link HedgePolicy}), so they can't make the load run away when the server slows down and
+ * every request goes over its hedge delay.
+ * <p>
+ * Each request that can be hedged adds {@code hedgeRatio} to the budget, and each hedge takes {@code 1} from it, so at most
+ * that ratio of extra requests is sent (e.g. {@code 0.05} allows 1 hedge for every 20 requests). The number of hedges in
+ * flight is limited as well, and the budget never saves more hedges than that limit.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class HedgeBudget {
+
+	/**
+	 * Default ratio of extra requests that can be sent as hedges.
+	 */
+	public static final double DEFAULT_HEDGE_RATIO = 0.05;
+	/**
+	 * Default number of hedges that can be in flight at the same time.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_HEDGES = 2;
+
+	private final double mHedgeRatio;
+	private final int mMaxConcurrentHedges;
+
+	private double mTokens;
+	private int mHedgesInFlight;
+
+
+	/**
+	 * Creates a budget with the default settings.
+	 */
+	public HedgeBudget() {
+		this(DEFAULT_HEDGE_RATIO, DEFAULT_MAX_CONCURRENT_HEDGES);
+	}
+
+	/**
+	 * Creates a budget.
+	 *
+	 * @param hedgeRatio
+	 * 		Ratio of extra requests that can be sent as hedges, between {@code 0} and {@code 1}.
+	 * @param maxConcurrentHedges
+	 * 		Maximum number of hedges in flight at the same time.
+	 */
+	public HedgeBudget(double hedgeRatio, int maxConcurrentHedges) {
+		if (hedgeRatio < 0 || hedgeRatio > 1) {
+			throw new IllegalArgumentException("Hedge ratio must be between 0 and 1");
+		}
+
+		if (maxConcurrentHedges < 1) {
+			throw new IllegalArgumentException("Max concurrent hedges must be at least 1");
+		}
+
+		mHedgeRatio = hedgeRatio;
+		mMaxConcurrentHedges = maxConcurrentHedges;
+	}
+
+	/**
+	 * Adds the share of a request that can be hedged to the budget.
+	 */
+	public synchronized void onRequest() {
+		mTokens = Math.min(mTokens + mHedgeRatio, mMaxConcurrentHedges);
+	}
+
+	/**
+	 * Takes a hedge from the budget, if there's one available.
+	 *
+	 * @return {@code true} if the hedge can be sent (in which case {@link #release()} must be called when it finishes), or
+	 * {@code false} otherwise.
+	 */
+	public synchronized boolean tryAcquire() {
+		if (mTokens < 1 || mHedgesInFlight >= mMaxConcurrentHedges) {
+			return false;
+		}
+
+		mTokens--;
+		mHedgesInFlight++;
+
+		return true;
+	}
+
+	/**
+	 * Releases a hedge that finished.
+	 */
+	public synchronized void release() {
+		if (mHedgesInFlight > 0) {
+			mHedgesInFlight--;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of hedges that can be in flight at the same time.
+	 *
+	 * @return Maximum number of hedges in flight.
+	 */
+	public int getMaxConcurrentHedges() {
+		return mMaxConcurrentHedges;
+	}
+
+	/**
+	 * Returns the number of hedges in flight.
+	 *
+	 * @return Number of hedges in flight.
+	 */
+	public synchronized int getHedgesInFlight() {
+		return mHedgesInFlight;
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.hipsheep.volleywrapper.network.metrics.LatencyHistogram;
+import com.hipsheep.volleywrapper.network.metrics.RequestMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Policy that decides how long to wait for the response of an idempotent request before sending a duplicate of it (a
+ * hedge), so a few slow connections don't dominate the tail latency. The first response that arrives is used, and the other
+ * one is discarded.
+ * <p>
+ * The delay is either fixed, or a percentile of the network times recorded for the route of the request (e.g. its p95), so
+ * only the requests slower than most are hedged. Hedges are limited by a {@link HedgeBudget}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class HedgePolicy {
+
+	/**
+	 * Minimum number of samples a route needs before its percentile is used instead of the default delay.
+	 */
+	private static final int MIN_SAMPLES = 20;
+	/**
+	 * Number of new samples after which the percentile of a route is calculated again.
+	 */
+	private static final int REFRESH_SAMPLES = 16;
+
+	private final long mDelayMs;
+
+	/**
+	 * Percentile of the route's network times to use as the delay, or {@code 0} to always use {@link #mDelayMs}.
+	 */
+	private final double mPercentile;
+
+	/**
+	 * Last percentile calculated for each route, so the histograms are not sorted for every request.
+	 */
+	private final ConcurrentMap<String, Estimate> mEstimates = new ConcurrentHashMap<>();
+
+
+	private HedgePolicy(long delayMs, double percentile) {
+		if (delayMs < 0) {
+			throw new IllegalArgumentException("Delay must be positive");
+		}
+
+		if (percentile < 0 || percentile > 1) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 1");
+		}
+
+		mDelayMs = delayMs;
+		mPercentile = percentile;
+	}
+
+	/**
+	 * Creates a policy that sends a hedge when the response doesn't arrive after a fixed delay.
+	 *
+	 * @param delayMs
+	 * 		Time (in milliseconds) to wait for the response before sending the hedge.
+	 *
+	 * @return The new {@link HedgePolicy}.
+	 */
+	public static HedgePolicy fixedDelay(long delayMs) {
+		return new HedgePolicy(delayMs, 0);
+	}
+
+	/**
+	 * Creates a policy that sends a hedge when the response takes longer than a percentile of the network times of its route
+	 * (see {@link RequestMetrics#getNetworkTimeHistogram(String)}).
+	 *
+	 * @param percentile
+	 * 		Percentile to wait for, between {@code 0} and {@code 1} (e.g. {@code 0.95} for p95).
+	 * @param defaultDelayMs
+	 * 		Time (in milliseconds) to wait while the route doesn't have enough samples.
+	 *
+	 * @return The new {@link HedgePolicy}.
+	 */
+	public static HedgePolicy routePercentile(double percentile, long defaultDelayMs) {
+		return new HedgePolicy(defaultDelayMs, percentile);
+	}
+
+	/**
+	 * Returns the time to wait for the response of a request before sending a hedge.
+	 *
+	 * @param url
+	 * 		URL of the request.
+	 * @param requestMetrics
+	 * 		{@link RequestMetrics} with the network times of each route, or {@code null} to use the default delay.
+	 *
+	 * @return Time (in milliseconds) to wait before sending the hedge.
+	 */
+	public long getDelayMs(String url, RequestMetrics requestMetrics) {
+		if (mPercentile == 0 || requestMetrics == null) {
+			return mDelayMs;
+		}
+
+		String route = RequestMetrics.getRoute(url);
+
+		LatencyHistogram histogram = requestMetrics.getNetworkTimeHistogram(route);
+		long count = histogram != null ? histogram.getCount() : 0;
+		if (count < MIN_SAMPLES) {
+			return mDelayMs;
+		}
+
+		Estimate estimate = mEstimates.get(route);
+		if (estimate == null || count - estimate.mCount >= REFRESH_SAMPLES) {
+			estimate = new Estimate(count, histogram.getPercentile(mPercentile));
+			mEstimates.put(route, estimate);
+		}
+
+		return estimate.mDelayMs;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class Estimate {
+
+		private final long mCount;
+		private final long mDelayMs;
+
+
+		Estimate(long count, long delayMs) {
+			mCount = count;
+			mDelayMs = delayMs;
+		}
+
+	}
+
+}
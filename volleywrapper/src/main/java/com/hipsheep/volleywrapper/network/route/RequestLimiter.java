@@ -0,0 +1,238 @@
+package com.hipsheep.volleywrapper.network.route;
+
+import com.hipsheep.volleywrapper.util.MainThreadExecutor;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the requests sent to a route, both the number of requests in flight at the same time and the number of requests
+ * started per second (using a token bucket, which allows bursts of up to its capacity).
+ * <p>
+ * Requests over the limits wait on a queue, without blocking any thread, and are started in order as requests finish
+ * (see {@link #release()}) or as the bucket is refilled (which is checked on the main thread).
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestLimiter {
+
+	/**
+	 * Maximum number of requests in flight, or {@code 0} for no limit.
+	 */
+	private final int mMaxConcurrentRequests;
+	/**
+	 * Tokens added to the bucket per nanosecond, or {@code 0} for no rate limit.
+	 */
+	private final double mTokensPerNs;
+	/**
+	 * Maximum number of tokens in the bucket.
+	 */
+	private final int mBurst;
+
+	private double mTokens;
+	private long mLastRefillNs;
+
+	private int mInFlightCount;
+
+	private final ArrayDeque<Runnable> mWaitingTasks = new ArrayDeque<>();
+
+	/**
+	 * Whether a thread is running the waiting tasks, so tasks that release their place while they run don't drain the queue
+	 * recursively.
+	 */
+	private boolean mDraining;
+
+	/**
+	 * Whether {@link #mDrainTask} is scheduled to run when the next token is available.
+	 */
+	private boolean mDrainScheduled;
+
+	private final Runnable mDrainTask = new Runnable() {
+
+		@Override
+		public void run() {
+			synchronized (RequestLimiter.this) {
+				mDrainScheduled = false;
+			}
+
+			drain();
+		}
+
+	};
+
+
+	/**
+	 * Creates a limiter.
+	 *
+	 * @param maxConcurrentRequests
+	 * 		Maximum number of requests in flight at the same time, or {@code 0} for no limit.
+	 * @param requestsPerSecond
+	 * 		Number of requests that can be started per second, or {@code 0} for no limit.
+	 * @param burst
+	 * 		Maximum number of requests that can be started at once after the route was idle (at least 1).
+	 */
+	public RequestLimiter(int maxConcurrentRequests, double requestsPerSecond, int burst) {
+		if (maxConcurrentRequests < 0 || requestsPerSecond < 0 || burst < 1) {
+			throw new IllegalArgumentException(String.format("Invalid limits: max concurrent requests %d, "
+					+ "requests per second %f, burst %d", maxConcurrentRequests, requestsPerSecond, burst));
+		}
+
+		mMaxConcurrentRequests = maxConcurrentRequests;
+		mTokensPerNs = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		mBurst = burst;
+
+		mTokens = burst;
+		mLastRefillNs = nanoTime();
+	}
+
+	/**
+	 * Runs a task that starts a request, right away if the request is within the limits, or when it is. Each task that runs
+	 * takes a place among the requests in flight, which must be given back through {@link #release()}.
+	 *
+	 * @param task
+	 * 		Task that starts the request.
+	 *
+	 * @return {@code true} if the task ran right away, or {@code false} if it's waiting.
+	 */
+	public boolean submit(Runnable task) {
+		synchronized (this) {
+			// Requests that are already waiting go first
+			if (!mWaitingTasks.isEmpty() || !tryAcquire()) {
+				mWaitingTasks.add(task);
+				scheduleDrain();
+
+				return false;
+			}
+		}
+
+		task.run();
+
+		return true;
+	}
+
+	/**
+	 * Gives back the place of a request that finished, which lets the next waiting request start.
+	 */
+	public void release() {
+		synchronized (this) {
+			mInFlightCount--;
+		}
+
+		drain();
+	}
+
+	/**
+	 * Runs the waiting tasks while they are within the limits. If another call is already running them, that one checks the
+	 * limits again after each task, so this call returns right away.
+	 */
+	private void drain() {
+		synchronized (this) {
+			if (mDraining) {
+				return;
+			}
+
+			mDraining = true;
+		}
+
+		boolean drained = false;
+		try {
+			while (true) {
+				Runnable task;
+				synchronized (this) {
+					if (mWaitingTasks.isEmpty()) {
+						mDraining = false;
+						drained = true;
+						return;
+					}
+
+					if (!tryAcquire()) {
+						scheduleDrain();
+						mDraining = false;
+						drained = true;
+						return;
+					}
+
+					task = mWaitingTasks.poll();
+				}
+
+				task.run();
+			}
+		} finally {
+			if (!drained) {
+				// A task threw an exception, so let the next call keep draining
+				synchronized (this) {
+					mDraining = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes a place among the requests in flight, and a token from the bucket, if both are available.
+	 */
+	private boolean tryAcquire() {
+		if (mMaxConcurrentRequests > 0 && mInFlightCount >= mMaxConcurrentRequests) {
+			return false;
+		}
+
+		if (mTokensPerNs > 0) {
+			long nowNs = nanoTime();
+			mTokens = Math.min(mBurst, mTokens + (nowNs - mLastRefillNs) * mTokensPerNs);
+			mLastRefillNs = nowNs;
+
+			if (mTokens < 1) {
+				return false;
+			}
+
+			mTokens--;
+		}
+
+		mInFlightCount++;
+
+		return true;
+	}
+
+	/**
+	 * Schedules the waiting tasks to be checked again when the next token is available, if they are waiting for tokens
+	 * (the ones waiting for requests to finish are checked on {@link #release()}).
+	 */
+	private void scheduleDrain() {
+		if (mDrainScheduled || mTokensPerNs <= 0 || mTokens >= 1) {
+			return;
+		}
+
+		mDrainScheduled = true;
+
+		long delayMs = TimeUnit.NANOSECONDS.toMillis((long) Math.ceil((1 - mTokens) / mTokensPerNs)) + 1;
+		schedule(mDrainTask, delayMs);
+	}
+
+	/**
+	 * Runs a task after a delay, on the main thread.
+	 */
+	protected void schedule(Runnable task, long delayMs) {
+		MainThreadExecutor.getInstance().executeDelayed(task, delayMs);
+	}
+
+	/**
+	 * Returns the current time, as returned by {@link System#nanoTime()}.
+	 */
+	protected long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of requests in flight.
+	 */
+	public synchronized int getInFlightCount() {
+		return mInFlightCount;
+	}
+
+	/**
+	 * Returns the number of requests waiting to start.
+	 */
+	public synchronized int getWaitingCount() {
+		return mWaitingTasks.size();
+	}
+
+}
@@ -0,0 +1,413 @@
+package com.hipsheep.volleywrapper.network.route;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.Request;
+import com.android.volley.RetryPolicy;
+import com.hipsheep.volleywrapper.network.cache.CachePolicy;
+import com.hipsheep.volleywrapper.network.retry.BackoffRetryPolicy;
+import com.hipsheep.volleywrapper.network.retry.HedgePolicy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings used by the requests sent to a route (see {@link RouteProfiles}), which override the ones of the default
+ * configuration, so each endpoint can be tuned on its own (e.g. longer timeouts for slow bulk endpoints, and a higher
+ * priority for latency critical ones).
+ * <p>
+ * Objects of this class are created through {@link RouteProfile.Builder}, and can't be modified.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RouteProfile {
+
+	private Integer mTimeoutMs;
+	private Integer mMaxRetries;
+	private Float mBackoffMultiplier;
+
+	private Long mTotalTimeout;
+
+	private Boolean mShouldCache;
+
+	private CachePolicy mCachePolicy;
+
+	private Map<String, String> mHeaders;
+
+	private Request.Priority mPriority;
+
+	private String mTrafficClass;
+
+	private HedgePolicy mHedgePolicy;
+
+	private Integer mMaxConcurrentRequests;
+	private Double mRequestsPerSecond;
+	private Integer mBurst;
+
+	/**
+	 * Limiter shared by all the requests sent to the route, or {@code null} if the route has no limits.
+	 */
+	private RequestLimiter mRequestLimiter;
+
+	/**
+	 * Default headers the headers of this profile were last merged with, and the result of that merge.
+	 */
+	private volatile MergedHeaders mMergedHeaders;
+
+
+	// Use RouteProfile.Builder to create objects of this class
+	private RouteProfile() {}
+
+	/**
+	 * Creates a new retry policy with the timeout and retries set on this profile, since retry policies keep the state of
+	 * each request and can't be shared.
+	 *
+	 * @param defaultRetryPolicy
+	 * 		Retry policy the request would use otherwise, from which the timeout and backoff multiplier are taken if they
+	 * 		weren't set on this profile (the Volley defaults are used for anything it doesn't expose). If it's a
+	 * 		{@link BackoffRetryPolicy}, the new policy is a copy of it, so it keeps its delays.
+	 *
+	 * @return New {@link RetryPolicy} for a request, or {@code defaultRetryPolicy} if no retry values were set on this profile.
+	 */
+	public RetryPolicy createRetryPolicy(RetryPolicy defaultRetryPolicy) {
+		if (mTimeoutMs == null && mMaxRetries == null && mBackoffMultiplier == null) {
+			return defaultRetryPolicy;
+		}
+
+		if (defaultRetryPolicy instanceof BackoffRetryPolicy) {
+			BackoffRetryPolicy backoffRetryPolicy = (BackoffRetryPolicy) defaultRetryPolicy;
+
+			return backoffRetryPolicy.copy(mTimeoutMs != null ? mTimeoutMs : backoffRetryPolicy.getInitialTimeoutMs(),
+					mMaxRetries != null ? mMaxRetries : backoffRetryPolicy.getMaxRetries(),
+					mBackoffMultiplier != null ? mBackoffMultiplier : backoffRetryPolicy.getBackoffMultiplier());
+		}
+
+		int timeoutMs;
+		if (mTimeoutMs != null) {
+			timeoutMs = mTimeoutMs;
+		} else {
+			timeoutMs = defaultRetryPolicy != null ? defaultRetryPolicy.getCurrentTimeout() : DefaultRetryPolicy.DEFAULT_TIMEOUT_MS;
+		}
+
+		float backoffMultiplier;
+		if (mBackoffMultiplier != null) {
+			backoffMultiplier = mBackoffMultiplier;
+		} else if (defaultRetryPolicy instanceof DefaultRetryPolicy) {
+			backoffMultiplier = ((DefaultRetryPolicy) defaultRetryPolicy).getBackoffMultiplier();
+		} else {
+			backoffMultiplier = DefaultRetryPolicy.DEFAULT_BACKOFF_MULT;
+		}
+
+		int maxRetries = mMaxRetries != null ? mMaxRetries : DefaultRetryPolicy.DEFAULT_MAX_RETRIES;
+
+		return new DefaultRetryPolicy(timeoutMs, maxRetries, backoffMultiplier);
+	}
+
+	/**
+	 * Returns the default headers merged with the headers of this profile, which replace the default ones with the same name.
+	 * The result is saved, so the headers are only merged again if the default headers change.
+	 *
+	 * @param defaultHeaders
+	 * 		Headers of the default configuration (can be {@code null}).
+	 *
+	 * @return Unmodifiable map with the headers of the requests sent to the route.
+	 */
+	public Map<String, String> getHeaders(Map<String, String> defaultHeaders) {
+		if (mHeaders == null) {
+			return defaultHeaders;
+		}
+
+		MergedHeaders mergedHeaders = mMergedHeaders;
+		if (mergedHeaders == null || mergedHeaders.mDefaultHeaders != defaultHeaders) {
+			Map<String, String> headers = defaultHeaders != null ? new HashMap<>(defaultHeaders) : new HashMap<String, String>();
+			headers.putAll(mHeaders);
+
+			mergedHeaders = new MergedHeaders(defaultHeaders, Collections.unmodifiableMap(headers));
+			mMergedHeaders = mergedHeaders;
+		}
+
+		return mergedHeaders.mHeaders;
+	}
+
+	public Integer getTimeoutMs() {
+		return mTimeoutMs;
+	}
+
+	public Integer getMaxRetries() {
+		return mMaxRetries;
+	}
+
+	public Float getBackoffMultiplier() {
+		return mBackoffMultiplier;
+	}
+
+	public Long getTotalTimeout() {
+		return mTotalTimeout;
+	}
+
+	public Boolean isShouldCache() {
+		return mShouldCache;
+	}
+
+	public CachePolicy getCachePolicy() {
+		return mCachePolicy;
+	}
+
+	public Map<String, String> getHeaders() {
+		return mHeaders;
+	}
+
+	public Request.Priority getPriority() {
+		return mPriority;
+	}
+
+	public String getTrafficClass() {
+		return mTrafficClass;
+	}
+
+	public HedgePolicy getHedgePolicy() {
+		return mHedgePolicy;
+	}
+
+	public Integer getMaxConcurrentRequests() {
+		return mMaxConcurrentRequests;
+	}
+
+	public Double getRequestsPerSecond() {
+		return mRequestsPerSecond;
+	}
+
+	public Integer getBurst() {
+		return mBurst;
+	}
+
+	/**
+	 * Returns the limiter shared by all the requests sent to the route, which holds back the requests over its limits
+	 * before they are added to the request queue.
+	 *
+	 * @return {@link RequestLimiter} of the route, or {@code null} if the route has no limits.
+	 */
+	public RequestLimiter getRequestLimiter() {
+		return mRequestLimiter;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class MergedHeaders {
+
+		private final Map<String, String> mDefaultHeaders;
+		private final Map<String, String> mHeaders;
+
+
+		MergedHeaders(Map<String, String> defaultHeaders, Map<String, String> headers) {
+			mDefaultHeaders = defaultHeaders;
+			mHeaders = headers;
+		}
+
+	}
+
+	/**
+	 * Builder class used to create {@link RouteProfile} objects. The values that are not set are taken from the default
+	 * configuration.
+	 */
+	public static class Builder {
+
+		private RouteProfile mRouteProfile;
+
+
+		public Builder() {
+			mRouteProfile = new RouteProfile();
+		}
+
+		/**
+		 * Sets the timeout (in milliseconds) of the first attempt of the requests.
+		 *
+		 * @param timeoutMs
+		 * 		Timeout (in milliseconds) of the first attempt.
+		 */
+		public Builder setTimeoutMs(Integer timeoutMs) {
+			mRouteProfile.mTimeoutMs = timeoutMs;
+
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of times the requests are retried.
+		 *
+		 * @param maxRetries
+		 * 		Maximum number of retries.
+		 */
+		public Builder setMaxRetries(Integer maxRetries) {
+			mRouteProfile.mMaxRetries = maxRetries;
+
+			return this;
+		}
+
+		/**
+		 * Sets the multiplier applied to the timeout on each retry.
+		 *
+		 * @param backoffMultiplier
+		 * 		Backoff multiplier of the timeout.
+		 */
+		public Builder setBackoffMultiplier(Float backoffMultiplier) {
+			mRouteProfile.mBackoffMultiplier = backoffMultiplier;
+
+			return this;
+		}
+
+		/**
+		 * Sets the total time (in milliseconds) that the requests have to be delivered (see
+		 * {@link com.hipsheep.volleywrapper.Configuration.Builder#setTotalTimeout(Long)}).
+		 *
+		 * @param totalTimeout
+		 * 		Total time (in milliseconds) that the requests have to be delivered.
+		 */
+		public Builder setTotalTimeout(Long totalTimeout) {
+			mRouteProfile.mTotalTimeout = totalTimeout;
+
+			return this;
+		}
+
+		/**
+		 * Sets whether the requests should cache responses or not.
+		 *
+		 * @param shouldCache
+		 * 		{@code true} if the requests should cache responses, or {@code false} otherwise.
+		 */
+		public Builder setShouldCache(Boolean shouldCache) {
+			mRouteProfile.mShouldCache = shouldCache;
+
+			return this;
+		}
+
+		/**
+		 * Sets the client side cache policy of the requests.
+		 *
+		 * @param cachePolicy
+		 * 		{@link CachePolicy} of the requests.
+		 */
+		public Builder setCachePolicy(CachePolicy cachePolicy) {
+			mRouteProfile.mCachePolicy = cachePolicy;
+
+			return this;
+		}
+
+		/**
+		 * Sets headers that are added to the default headers of the requests, replacing the default ones with the same name.
+		 *
+		 * @param headers
+		 * 		Headers of the requests.
+		 */
+		public Builder setHeaders(Map<String, String> headers) {
+			mRouteProfile.mHeaders = headers != null ? Collections.unmodifiableMap(new HashMap<>(headers)) : null;
+
+			return this;
+		}
+
+		/**
+		 * Sets the priority of the requests.
+		 *
+		 * @param priority
+		 * 		{@link Request.Priority} of the requests.
+		 */
+		public Builder setPriority(Request.Priority priority) {
+			mRouteProfile.mPriority = priority;
+
+			return this;
+		}
+
+		/**
+		 * Sets the traffic class of the requests, which decides the dispatchers that send them (see
+		 * {@link com.hipsheep.volleywrapper.Configuration.Builder#addTrafficClass(String, int)}).
+		 *
+		 * @param trafficClass
+		 * 		Name of the traffic class of the requests.
+		 */
+		public Builder setTrafficClass(String trafficClass) {
+			mRouteProfile.mTrafficClass = trafficClass;
+
+			return this;
+		}
+
+		/**
+		 * Sets the policy used to hedge the idempotent requests (GET and HEAD) sent to the route, which sends a duplicate of
+		 * each request when its response is slower than the policy's delay.
+		 *
+		 * @param hedgePolicy
+		 * 		{@link HedgePolicy} of the requests, or {@code null} to use the one of the default configuration.
+		 */
+		public Builder setHedgePolicy(HedgePolicy hedgePolicy) {
+			mRouteProfile.mHedgePolicy = hedgePolicy;
+
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of requests to the route that can be in flight at the same time. Requests over the limit
+		 * wait until others finish before being added to the request queue, so they don't take a dispatcher.
+		 *
+		 * @param maxConcurrentRequests
+		 * 		Maximum number of requests in flight, or {@code null} for no limit.
+		 */
+		public Builder setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+			mRouteProfile.mMaxConcurrentRequests = maxConcurrentRequests;
+
+			return this;
+		}
+
+		/**
+		 * Sets the number of requests to the route that can be started per second, e.g. to stay below the rate limits of an
+		 * API gateway. Requests over the limit wait before being added to the request queue.
+		 *
+		 * @param requestsPerSecond
+		 * 		Number of requests that can be started per second, or {@code null} for no limit.
+		 * @param burst
+		 * 		Maximum number of requests that can be started at once after the route was idle.
+		 */
+		public Builder setRateLimit(Double requestsPerSecond, Integer burst) {
+			mRouteProfile.mRequestsPerSecond = requestsPerSecond;
+			mRouteProfile.mBurst = burst;
+
+			return this;
+		}
+
+		public RouteProfile build() {
+			RouteProfile routeProfile = mRouteProfile;
+
+			if (routeProfile.mMaxConcurrentRequests != null || routeProfile.mRequestsPerSecond != null) {
+				routeProfile.mRequestLimiter = new RequestLimiter(
+						routeProfile.mMaxConcurrentRequests != null ? routeProfile.mMaxConcurrentRequests : 0,
+						routeProfile.mRequestsPerSecond != null ? routeProfile.mRequestsPerSecond : 0,
+						routeProfile.mBurst != null ? routeProfile.mBurst : 1);
+			}
+
+			// Don't let the builder modify the profile once it's built (profiles built later get their own limiter)
+			mRouteProfile = copy(routeProfile);
+
+			return routeProfile;
+		}
+
+		private static RouteProfile copy(RouteProfile routeProfile) {
+			RouteProfile copy = new RouteProfile();
+			copy.mTimeoutMs = routeProfile.mTimeoutMs;
+			copy.mMaxRetries = routeProfile.mMaxRetries;
+			copy.mBackoffMultiplier = routeProfile.mBackoffMultiplier;
+			copy.mTotalTimeout = routeProfile.mTotalTimeout;
+			copy.mShouldCache = routeProfile.mShouldCache;
+			copy.mCachePolicy = routeProfile.mCachePolicy;
+			copy.mHeaders = routeProfile.mHeaders;
+			copy.mPriority = routeProfile.mPriority;
+			copy.mTrafficClass = routeProfile.mTrafficClass;
+			copy.mHedgePolicy = routeProfile.mHedgePolicy;
+			copy.mMaxConcurrentRequests = routeProfile.mMaxConcurrentRequests;
+			copy.mRequestsPerSecond = routeProfile.mRequestsPerSecond;
+			copy.mBurst = routeProfile.mBurst;
+
+			return copy;
+		}
+
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.hipsheep.volleywrapper.network.route;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link RouteProfile}s mapped by host and path pattern, compiled into a trie of path segments per host so finding the
+ * profile of a request only walks the segments of its URL.
+ * <p>
+ * Path patterns are prefixes made of whole segments, where a {@code *} segment matches any single segment (e.g. a pattern
+ * made of the segments {@code users}, {@code *} and {@code posts} matches {@code "/users/1/posts"} and
+ * {@code "/users/1/posts/2"}, but not {@code "/users/1/postsx"}). When several patterns match a URL the longest one is
+ * used, preferring literal segments over wildcards on ties, and profiles of the URL's host are preferred over the ones
+ * added for any host.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RouteProfiles {
+
+	/**
+	 * Host used to add profiles that apply to any host.
+	 */
+	public static final String ANY_HOST = "*";
+
+	private static final String WILDCARD_SEGMENT = "*";
+
+	private final ConcurrentMap<String, Node> mHostRoots = new ConcurrentHashMap<>();
+
+	private final Node mAnyHostRoot;
+
+	/**
+	 * Whether this is an immutable snapshot (see {@link #snapshot()}).
+	 */
+	private final boolean mImmutable;
+
+
+	public RouteProfiles() {
+		mAnyHostRoot = new Node();
+		mImmutable = false;
+	}
+
+	/**
+	 * Creates an immutable deep copy of a set of profiles.
+	 */
+	private RouteProfiles(RouteProfiles routeProfiles) {
+		for (Map.Entry<String, Node> hostRoot : routeProfiles.mHostRoots.entrySet()) {
+			mHostRoots.put(hostRoot.getKey(), hostRoot.getValue().copy());
+		}
+
+		mAnyHostRoot = routeProfiles.mAnyHostRoot.copy();
+		mImmutable = true;
+	}
+
+	/**
+	 * Returns an immutable snapshot of these profiles, so the ones used by the requests of a configuration snapshot can't
+	 * change after it's taken.
+	 *
+	 * @return Immutable copy of these profiles, or this same object if it's already immutable.
+	 */
+	public synchronized RouteProfiles snapshot() {
+		return mImmutable ? this : new RouteProfiles(this);
+	}
+
+	/**
+	 * Adds the profile to use for the requests sent to a route.
+	 *
+	 * @param host
+	 * 		Host of the route (case insensitive), or {@link #ANY_HOST} (or {@code null}) to match any host.
+	 * @param pathPattern
+	 * 		Path prefix of the route, where a {@code *} segment matches any single segment ({@code null}, {@code ""} and
+	 * 		{@code "/"} match any path).
+	 * @param routeProfile
+	 * 		{@link RouteProfile} to use for the requests sent to the route.
+	 */
+	public synchronized void add(String host, String pathPattern, RouteProfile routeProfile) {
+		if (mImmutable) {
+			throw new UnsupportedOperationException("Profiles can't be added to a snapshot");
+		}
+
+		Node node;
+		if (host == null || ANY_HOST.equals(host)) {
+			node = mAnyHostRoot;
+		} else {
+			String hostKey = host.toLowerCase(Locale.US);
+			node = mHostRoots.get(hostKey);
+			if (node == null) {
+				node = new Node();
+				mHostRoots.put(hostKey, node);
+			}
+		}
+
+		if (pathPattern != null) {
+			int start = 0;
+			int end;
+			while ((end = nextSegmentEnd(pathPattern, start, pathPattern.length())) >= 0) {
+				if (end > start) {
+					node = node.getOrCreateChild(pathPattern.substring(start, end));
+				}
+
+				start = end + 1;
+			}
+		}
+
+		node.mRouteProfile = routeProfile;
+	}
+
+	/**
+	 * Returns the profile to use for a URL. This method doesn't block, so it can be called while profiles are being added.
+	 *
+	 * @param url
+	 * 		URL of a request.
+	 *
+	 * @return {@link RouteProfile} of the longest route that matches the URL, or {@code null} if none matches.
+	 */
+	public RouteProfile find(String url) {
+		if (url == null) {
+			return null;
+		}
+
+		// Parse the URL by hand, since it only needs the host and the path and this runs for every request
+		int schemeEnd = url.indexOf("://");
+		int hostStart = schemeEnd >= 0 ? schemeEnd + 3 : 0;
+		int urlEnd = indexOfAny(url, "?#", hostStart, url.length());
+		int pathStart = indexOfAny(url, "/", hostStart, urlEnd);
+
+		Match match = new Match();
+		if (!mHostRoots.isEmpty()) {
+			// The user info is never part of the host
+			int userInfoEnd = url.lastIndexOf('@', pathStart - 1);
+			if (userInfoEnd >= hostStart) {
+				hostStart = userInfoEnd + 1;
+			}
+
+			int hostEnd = indexOfAny(url, ":", hostStart, pathStart);
+
+			Node hostRoot = mHostRoots.get(url.substring(hostStart, hostEnd).toLowerCase(Locale.US));
+			if (hostRoot != null) {
+				find(hostRoot, url, pathStart + 1, urlEnd, 0, match);
+			}
+		}
+
+		if (match.mRouteProfile == null) {
+			find(mAnyHostRoot, url, pathStart + 1, urlEnd, 0, match);
+		}
+
+		return match.mRouteProfile;
+	}
+
+	/**
+	 * Walks the trie from a node at {@code depth}, matching the path segments in {@code [start, end)}, and keeps the profile
+	 * of the deepest node reached on {@code match}. Literal segments are walked first, so they win over wildcards on ties.
+	 */
+	private static void find(Node node, String url, int start, int end, int depth, Match match) {
+		RouteProfile routeProfile = node.mRouteProfile;
+		if (routeProfile != null && (match.mRouteProfile == null || depth > match.mDepth)) {
+			match.mRouteProfile = routeProfile;
+			match.mDepth = depth;
+		}
+
+		// Skip empty segments (e.g. "//" or a trailing "/")
+		int segmentEnd;
+		while ((segmentEnd = nextSegmentEnd(url, start, end)) == start) {
+			start++;
+		}
+
+		if (segmentEnd < 0 || node.mChildren.isEmpty()) {
+			return;
+		}
+
+		Node child = node.mChildren.get(url.substring(start, segmentEnd));
+		if (child != null) {
+			find(child, url, segmentEnd + 1, end, depth + 1, match);
+		}
+
+		child = node.mChildren.get(WILDCARD_SEGMENT);
+		if (child != null) {
+			find(child, url, segmentEnd + 1, end, depth + 1, match);
+		}
+	}
+
+	/**
+	 * Returns the end (exclusive) of the path segment that starts at {@code start}, or {@code -1} if there are no more
+	 * segments before {@code end}.
+	 */
+	private static int nextSegmentEnd(String path, int start, int end) {
+		if (start >= end) {
+			return -1;
+		}
+
+		return indexOfAny(path, "/", start, end);
+	}
+
+	/**
+	 * Returns the index of the first of the characters received as parameter found in {@code [start, end)}, or {@code end}
+	 * if none is found.
+	 */
+	private static int indexOfAny(String string, String chars, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (chars.indexOf(string.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+
+		return end;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class Match {
+
+		private RouteProfile mRouteProfile;
+		private int mDepth;
+
+	}
+
+	private static class Node {
+
+		private final ConcurrentMap<String, Node> mChildren = new ConcurrentHashMap<>(4);
+
+		private volatile RouteProfile mRouteProfile;
+
+
+		Node getOrCreateChild(String segment) {
+			Node child = mChildren.get(segment);
+			if (child == null) {
+				child = new Node();
+				mChildren.put(segment, child);
+			}
+
+			return child;
+		}
+
+		/**
+		 * Returns a deep copy of this node and its children.
+		 */
+		Node copy() {
+			Node node = new Node();
+			node.mRouteProfile = mRouteProfile;
+
+			for (Map.Entry<String, Node> child : mChildren.entrySet()) {
+				node.mChildren.put(child.getKey(), child.getValue().copy());
+			}
+
+			return node;
+		}
+
+	}
+
+}
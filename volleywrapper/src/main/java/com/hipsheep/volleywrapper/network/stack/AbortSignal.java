@@ -0,0 +1,90 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+/**
+ * Lets a network call that runs on one thread be aborted from another one, since blocking I/O (e.g. reading the response of
+ * an {@link java.net.HttpURLConnection}) doesn't stop when its thread is interrupted.
+ * <p>
+ * While the call runs, the stack registers the action that stops it (e.g. disconnecting its connection) through
+ * {@link #onAbort(Runnable)}. Calls made by stacks that don't register any action can't be aborted, so they run until they
+ * finish or time out.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class AbortSignal {
+
+	/**
+	 * Signal of the call running on each thread, if it can be aborted.
+	 */
+	private static final ThreadLocal<AbortSignal> sCurrentSignal = new ThreadLocal<>();
+
+	private Runnable mAbortAction;
+
+	private boolean mAborted;
+
+	private boolean mFinished;
+
+
+	/**
+	 * Sets this signal as the one of the call that runs on the current thread, until {@link #finish()} is called. The signal
+	 * can be aborted before the call starts, in which case the first action registered runs right away.
+	 */
+	void start() {
+		sCurrentSignal.set(this);
+	}
+
+	/**
+	 * Removes this signal from the current thread once the call finished, so aborting it doesn't have any effect anymore.
+	 */
+	void finish() {
+		synchronized (this) {
+			mFinished = true;
+			mAbortAction = null;
+		}
+
+		sCurrentSignal.remove();
+	}
+
+	/**
+	 * Aborts the call, running the last action registered for it (if it didn't finish yet).
+	 */
+	void abort() {
+		Runnable abortAction;
+		synchronized (this) {
+			if (mAborted || mFinished) {
+				return;
+			}
+
+			mAborted = true;
+			abortAction = mAbortAction;
+		}
+
+		if (abortAction != null) {
+			abortAction.run();
+		}
+	}
+
+	/**
+	 * Registers the action that aborts the network call running on the current thread (if it can be aborted), replacing the
+	 * one registered before (e.g. by a previous attempt of the call). If the call was already aborted, the action runs right
+	 * away.
+	 *
+	 * @param abortAction
+	 * 		Action that stops the call, making it fail (e.g. by disconnecting its connection).
+	 */
+	public static void onAbort(Runnable abortAction) {
+		AbortSignal abortSignal = sCurrentSignal.get();
+		if (abortSignal == null) {
+			return;
+		}
+
+		synchronized (abortSignal) {
+			if (!abortSignal.mAborted) {
+				abortSignal.mAbortAction = abortAction;
+				return;
+			}
+		}
+
+		abortAction.run();
+	}
+
+}
@@ -0,0 +1,221 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Network} that adapts the number of network dispatchers that can send requests at the same time, based on how long
+ * requests wait for a dispatcher and on how many of them are in flight.
+ * <p>
+ * Volley's {@link com.android.volley.RequestQueue} can't add or remove dispatcher threads once it's started, so the queue is
+ * created with the maximum number of dispatchers, and this class only lets a variable number of them (between the minimum and
+ * maximum received) use the network. While requests wait longer than the target wait time, and all the active dispatchers are
+ * busy, one more dispatcher is activated. While requests don't wait, and less than half of the active dispatchers are busy,
+ * one dispatcher is deactivated.
+ * <p>
+ * This has two limitations, since the dispatchers that are not active still take requests from the queue:
+ * <ul>
+ * <li>A request taken by a dispatcher that is not active waits (holding that dispatcher) until an active one is free, so it
+ * can be sent after a request of higher priority that was added to the queue later. To reduce that, waiting requests are
+ * let through in priority order, and requests below {@link Request.Priority#NORMAL} (e.g. prefetches) only go when no
+ * request of higher priority is waiting.</li>
+ * <li>The wait time measured is the time requests wait for an active dispatcher after being taken from the queue, not the
+ * time they spent in the queue. Requests below {@link Request.Priority#NORMAL} are expected to wait, so their wait time
+ * doesn't make the number of active dispatchers grow.</li>
+ * </ul>
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class AdaptiveNetwork implements Network {
+
+	/**
+	 * Default time requests can wait for a dispatcher before the number of active dispatchers is increased.
+	 */
+	public static final long DEFAULT_TARGET_WAIT_MS = 50;
+
+	/**
+	 * Minimum time between two changes to the number of active dispatchers.
+	 */
+	private static final long ADJUST_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	/**
+	 * Weight given to the last wait time measured on the moving average of wait times.
+	 */
+	private static final double WAIT_TIME_WEIGHT = 0.2;
+
+	private final Network mNetwork;
+
+	private final int mMinDispatcherCount;
+	private final int mMaxDispatcherCount;
+
+	private final long mTargetWaitNs;
+
+	/**
+	 * Number of dispatchers that can currently use the network.
+	 */
+	private int mActiveDispatcherCount;
+	/**
+	 * Number of requests currently using the network.
+	 */
+	private int mInFlightCount;
+	/**
+	 * Number of requests waiting for an active dispatcher, by the ordinal of their priority.
+	 */
+	private final int[] mWaitingCounts = new int[Request.Priority.values().length];
+	/**
+	 * Moving average of the time requests waited for a dispatcher.
+	 */
+	private double mAverageWaitNs;
+	/**
+	 * Time when the number of active dispatchers was last changed.
+	 */
+	private long mLastAdjustTimeNs = System.nanoTime();
+
+
+	/**
+	 * Creates an adaptive network using {@link #DEFAULT_TARGET_WAIT_MS} as the target wait time.
+	 *
+	 * @see #AdaptiveNetwork(Network, int, int, long)
+	 */
+	public AdaptiveNetwork(Network network, int minDispatcherCount, int maxDispatcherCount) {
+		this(network, minDispatcherCount, maxDispatcherCount, DEFAULT_TARGET_WAIT_MS);
+	}
+
+	/**
+	 * Creates an adaptive network.
+	 *
+	 * @param network
+	 * 		{@link Network} used to send the requests.
+	 * @param minDispatcherCount
+	 * 		Minimum (and initial) number of dispatchers that can use the network at the same time.
+	 * @param maxDispatcherCount
+	 * 		Maximum number of dispatchers that can use the network at the same time, which should be the number of dispatchers
+	 * 		of the request queue.
+	 * @param targetWaitMs
+	 * 		Time (in milliseconds) requests can wait for a dispatcher before the number of active dispatchers is increased.
+	 */
+	public AdaptiveNetwork(Network network, int minDispatcherCount, int maxDispatcherCount, long targetWaitMs) {
+		if (minDispatcherCount < 1 || maxDispatcherCount < minDispatcherCount) {
+			throw new IllegalArgumentException(String.format("Invalid dispatcher counts: min %d, max %d", minDispatcherCount,
+					maxDispatcherCount));
+		}
+
+		mNetwork = network;
+		mMinDispatcherCount = minDispatcherCount;
+		mMaxDispatcherCount = maxDispatcherCount;
+		mTargetWaitNs = TimeUnit.MILLISECONDS.toNanos(targetWaitMs);
+
+		mActiveDispatcherCount = minDispatcherCount;
+	}
+
+	@Override
+	public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+		try {
+			onRequestStarted(request.getPriority());
+		} catch (InterruptedException e) {
+			// The dispatcher is quitting
+			Thread.currentThread().interrupt();
+			throw new VolleyError(e);
+		}
+
+		try {
+			return mNetwork.performRequest(request);
+		} finally {
+			onRequestFinished();
+		}
+	}
+
+	/**
+	 * Waits until an active dispatcher is free and no request of higher priority is waiting for one, and takes it.
+	 */
+	private synchronized void onRequestStarted(Request.Priority priority) throws InterruptedException {
+		long waitStartTimeNs = System.nanoTime();
+
+		mWaitingCounts[priority.ordinal()]++;
+		try {
+			while (mInFlightCount >= mActiveDispatcherCount || isHigherPriorityWaiting(priority)) {
+				wait();
+			}
+		} finally {
+			mWaitingCounts[priority.ordinal()]--;
+
+			// Requests of lower priority may be waiting for this one to take a dispatcher (or to stop waiting)
+			notifyAll();
+		}
+
+		mInFlightCount++;
+
+		if (priority.ordinal() >= Request.Priority.NORMAL.ordinal()) {
+			long waitTimeNs = System.nanoTime() - waitStartTimeNs;
+			mAverageWaitNs = WAIT_TIME_WEIGHT * waitTimeNs + (1 - WAIT_TIME_WEIGHT) * mAverageWaitNs;
+		}
+	}
+
+	private boolean isHigherPriorityWaiting(Request.Priority priority) {
+		for (int i = priority.ordinal() + 1; i < mWaitingCounts.length; i++) {
+			if (mWaitingCounts[i] > 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private synchronized void onRequestFinished() {
+		mInFlightCount--;
+
+		long nowNs = System.nanoTime();
+		if (nowNs - mLastAdjustTimeNs >= ADJUST_INTERVAL_NS) {
+			if (mAverageWaitNs > mTargetWaitNs && mInFlightCount + 1 >= mActiveDispatcherCount
+					&& mActiveDispatcherCount < mMaxDispatcherCount) {
+				// Requests are waiting for busy dispatchers, so let one more dispatcher use the network
+				mActiveDispatcherCount++;
+				mLastAdjustTimeNs = nowNs;
+			} else if (mAverageWaitNs < mTargetWaitNs / 2 && mInFlightCount < mActiveDispatcherCount / 2
+					&& mActiveDispatcherCount > mMinDispatcherCount) {
+				// Most dispatchers are idle, so stop letting one of them use the network
+				mActiveDispatcherCount--;
+				mLastAdjustTimeNs = nowNs;
+			}
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * Returns the number of dispatchers that can currently use the network.
+	 *
+	 * @return Number of active dispatchers.
+	 */
+	public synchronized int getActiveDispatcherCount() {
+		return mActiveDispatcherCount;
+	}
+
+	/**
+	 * Returns the number of requests currently using the network.
+	 *
+	 * @return Number of requests in flight.
+	 */
+	public synchronized int getInFlightCount() {
+		return mInFlightCount;
+	}
+
+	/**
+	 * Returns the number of requests waiting for an active dispatcher.
+	 *
+	 * @return Number of requests waiting.
+	 */
+	public synchronized int getWaitingCount() {
+		int waitingCount = 0;
+		for (int count : mWaitingCounts) {
+			waitingCount += count;
+		}
+
+		return waitingCount;
+	}
+
+}
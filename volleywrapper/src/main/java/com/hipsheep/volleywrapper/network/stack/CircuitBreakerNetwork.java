@@ -0,0 +1,65 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.retry.CircuitBreaker;
+import com.hipsheep.volleywrapper.network.retry.CircuitBreakers;
+import com.hipsheep.volleywrapper.network.retry.CircuitOpenError;
+import com.hipsheep.volleywrapper.util.UrlUtils;
+
+/**
+ * {@link Network} that checks the {@link CircuitBreaker} of the host of each request before sending it, so requests to a
+ * failing host fail fast with a {@link CircuitOpenError}, without taking a connection or waiting for a timeout. The result
+ * of each request (after all its retries) is reported to the breaker.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CircuitBreakerNetwork implements Network {
+
+	private final Network mNetwork;
+
+	private final CircuitBreakers mCircuitBreakers;
+
+
+	/**
+	 * Creates a network that checks circuit breakers.
+	 *
+	 * @param network
+	 * 		{@link Network} used to send the requests.
+	 * @param circuitBreakers
+	 * 		{@link CircuitBreakers} of the hosts the requests are sent to.
+	 */
+	public CircuitBreakerNetwork(Network network, CircuitBreakers circuitBreakers) {
+		mNetwork = network;
+		mCircuitBreakers = circuitBreakers;
+	}
+
+	@Override
+	public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+		CircuitBreaker circuitBreaker = mCircuitBreakers.get(UrlUtils.getHost(request.getUrl()));
+		if (circuitBreaker == null) {
+			return mNetwork.performRequest(request);
+		}
+
+		circuitBreaker.acquire();
+
+		NetworkResponse networkResponse;
+		try {
+			networkResponse = mNetwork.performRequest(request);
+		} catch (VolleyError e) {
+			circuitBreaker.onResult(e);
+			throw e;
+		} catch (RuntimeException e) {
+			// Unexpected errors don't say anything about the host, but a probe must always give back its place
+			circuitBreaker.releaseProbe();
+			throw e;
+		}
+
+		circuitBreaker.onResult(null);
+
+		return networkResponse;
+	}
+
+}
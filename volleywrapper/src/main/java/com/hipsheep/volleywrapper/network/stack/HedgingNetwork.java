@@ -0,0 +1,340 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RetryPolicy;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.metrics.RequestMetrics;
+import com.hipsheep.volleywrapper.network.metrics.RequestTimer;
+import com.hipsheep.volleywrapper.network.request.BaseRequest;
+import com.hipsheep.volleywrapper.network.retry.HedgeBudget;
+import com.hipsheep.volleywrapper.network.retry.HedgePolicy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Network} that sends a duplicate (a hedge) of the requests that have a {@link HedgePolicy} when their response
+ * doesn't arrive after the policy's delay, and returns the first successful response of the two, so the request is parsed
+ * and delivered only once.
+ * <p>
+ * The first attempt runs on the dispatcher thread, and only the hedge runs on a background thread, from a pool that is
+ * bounded by the number of hedges the {@link HedgeBudget} allows in flight. The attempt that loses is aborted through its
+ * {@link AbortSignal}, which disconnects its connection when the stack supports it (e.g. {@link PooledHurlStack}, the
+ * default one). With other stacks the attempt that loses keeps running until it finishes or times out, and if it's the first
+ * one the dispatcher waits for it before returning the response of the hedge.
+ * <p>
+ * The first attempt uses the retry policy of the request, while the hedge gets its own policy without retries (with the same
+ * timeout), so the attempts never update the same retry state. Hedges are only sent while the {@link HedgeBudget} allows it.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class HedgingNetwork implements Network {
+
+	private static final long KEEP_ALIVE_TIME_SECONDS = 60;
+
+	private final Network mNetwork;
+
+	private final RequestMetrics mRequestMetrics;
+
+	private final HedgeBudget mHedgeBudget;
+
+	private final ScheduledThreadPoolExecutor mExecutorService;
+
+
+	/**
+	 * Creates a network that hedges requests.
+	 *
+	 * @param network
+	 * 		{@link Network} used to send the requests and their hedges.
+	 * @param requestMetrics
+	 * 		{@link RequestMetrics} used by policies that wait for a percentile of the network times of each route.
+	 * @param hedgeBudget
+	 * 		{@link HedgeBudget} that limits the hedges sent.
+	 */
+	public HedgingNetwork(Network network, RequestMetrics requestMetrics, HedgeBudget hedgeBudget) {
+		mNetwork = network;
+		mRequestMetrics = requestMetrics;
+		mHedgeBudget = hedgeBudget;
+
+		// The budget limits the hedges running on the pool, and the extra thread checks the delays of the other requests on
+		// time while they run (only to find out that they can't be hedged). Threads are stopped after a minute without use
+		mExecutorService = new ScheduledThreadPoolExecutor(hedgeBudget.getMaxConcurrentHedges() + 1, new HedgeThreadFactory());
+		mExecutorService.setKeepAliveTime(KEEP_ALIVE_TIME_SECONDS, TimeUnit.SECONDS);
+		mExecutorService.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+		HedgePolicy hedgePolicy = request instanceof BaseRequest ? ((BaseRequest<?>) request).getHedgePolicy() : null;
+		if (hedgePolicy == null) {
+			return mNetwork.performRequest(request);
+		}
+
+		mHedgeBudget.onRequest();
+
+		// The headers (and the body) are built here, once, since building them can update the request, and the attempts read
+		// them at the same time
+		request.getHeaders();
+
+		AttemptRetryPolicy attemptRetryPolicy = AttemptRetryPolicy.install(request);
+		RetryPolicy hedgeRetryPolicy = new DefaultRetryPolicy(request.getTimeoutMs(), 0, 1);
+
+		long delayMs = hedgePolicy.getDelayMs(request.getUrl(), mRequestMetrics);
+
+		Attempt primary = new Attempt(request, attemptRetryPolicy, null);
+		HedgeTask hedgeTask = new HedgeTask(request, primary, new Attempt(request, attemptRetryPolicy, hedgeRetryPolicy));
+		ScheduledFuture<?> hedgeFuture = mExecutorService.schedule(hedgeTask, delayMs, TimeUnit.MILLISECONDS);
+
+		// The first attempt is aborted if the hedge responds first
+		primary.run();
+
+		hedgeFuture.cancel(false);
+		Attempt hedge = hedgeTask.onPrimaryFinished();
+
+		if (primary.mNetworkResponse != null) {
+			if (hedge != null) {
+				hedge.abort();
+			}
+
+			return primary.mNetworkResponse;
+		}
+
+		if (hedge == null) {
+			return primary.getResult();
+		}
+
+		try {
+			hedge.await();
+		} catch (InterruptedException e) {
+			// The dispatcher is quitting
+			hedge.abort();
+			Thread.currentThread().interrupt();
+			throw new VolleyError(e);
+		}
+
+		if (hedge.mNetworkResponse != null) {
+			request.addMarker("hedge-won");
+		}
+
+		// If both attempts failed, the error of the hedge is thrown, since the first one may have failed because it was aborted
+		return hedge.getResult();
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Attempt to send a request, which keeps its result.
+	 */
+	private class Attempt implements Runnable {
+
+		private final Request<?> mRequest;
+		private final AttemptRetryPolicy mAttemptRetryPolicy;
+		/**
+		 * Retry policy used by this attempt, or {@code null} to use the one of the request (for the first attempt).
+		 */
+		private final RetryPolicy mRetryPolicy;
+		private final boolean mHedge;
+
+		private final AbortSignal mAbortSignal = new AbortSignal();
+		private final CountDownLatch mFinishedLatch = new CountDownLatch(1);
+
+		private volatile NetworkResponse mNetworkResponse;
+		private volatile VolleyError mVolleyError;
+		private volatile RuntimeException mRuntimeException;
+
+
+		Attempt(Request<?> request, AttemptRetryPolicy attemptRetryPolicy, RetryPolicy retryPolicy) {
+			mRequest = request;
+			mAttemptRetryPolicy = attemptRetryPolicy;
+			mRetryPolicy = retryPolicy;
+			mHedge = retryPolicy != null;
+		}
+
+		@Override
+		public void run() {
+			mAttemptRetryPolicy.setCurrent(mRetryPolicy);
+			mAbortSignal.start();
+
+			try {
+				mNetworkResponse = mNetwork.performRequest(mRequest);
+			} catch (VolleyError e) {
+				mVolleyError = e;
+			} catch (RuntimeException e) {
+				mRuntimeException = e;
+			} finally {
+				mAbortSignal.finish();
+				mAttemptRetryPolicy.setCurrent(null);
+
+				if (mHedge) {
+					mHedgeBudget.release();
+				}
+
+				mFinishedLatch.countDown();
+			}
+		}
+
+		void abort() {
+			mAbortSignal.abort();
+		}
+
+		void await() throws InterruptedException {
+			mFinishedLatch.await();
+		}
+
+		/**
+		 * Returns the response of this attempt, or throws its error.
+		 */
+		NetworkResponse getResult() throws VolleyError {
+			if (mRuntimeException != null) {
+				throw mRuntimeException;
+			}
+
+			if (mVolleyError != null) {
+				throw mVolleyError;
+			}
+
+			return mNetworkResponse;
+		}
+
+	}
+
+	/**
+	 * Task that sends the hedge of a request once its delay passes, unless the first attempt finished before that (or the
+	 * budget doesn't allow it), and aborts the first attempt if the hedge responds first.
+	 */
+	private class HedgeTask implements Runnable {
+
+		private final Request<?> mRequest;
+		private final Attempt mPrimary;
+		private final Attempt mHedge;
+
+		private boolean mPrimaryFinished;
+		private boolean mHedgeStarted;
+
+
+		HedgeTask(Request<?> request, Attempt primary, Attempt hedge) {
+			mRequest = request;
+			mPrimary = primary;
+			mHedge = hedge;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (mPrimaryFinished || mRequest.isCanceled() || !mHedgeBudget.tryAcquire()) {
+					return;
+				}
+
+				mHedgeStarted = true;
+			}
+
+			mRequest.addMarker(RequestTimer.MARKER_HEDGED);
+
+			mHedge.run();
+
+			if (mHedge.mNetworkResponse != null) {
+				mPrimary.abort();
+			}
+		}
+
+		/**
+		 * Lets the task know that the first attempt finished, so it doesn't send the hedge if it didn't start yet.
+		 *
+		 * @return The hedge, if it was sent, or {@code null} otherwise.
+		 */
+		synchronized Attempt onPrimaryFinished() {
+			mPrimaryFinished = true;
+
+			return mHedgeStarted ? mHedge : null;
+		}
+
+	}
+
+	/**
+	 * {@link RetryPolicy} set on hedged requests, which delegates to the policy of the attempt running on the current thread,
+	 * or to the original policy of the request on any other thread (e.g. the first attempt, or the dispatcher).
+	 */
+	private static class AttemptRetryPolicy implements RetryPolicy {
+
+		private final RetryPolicy mRetryPolicy;
+
+		private final ThreadLocal<RetryPolicy> mCurrentRetryPolicy = new ThreadLocal<>();
+
+
+		private AttemptRetryPolicy(RetryPolicy retryPolicy) {
+			mRetryPolicy = retryPolicy;
+		}
+
+		/**
+		 * Sets an {@link AttemptRetryPolicy} on a request, unless it already has one (i.e. it's sent again).
+		 */
+		static AttemptRetryPolicy install(Request<?> request) {
+			RetryPolicy retryPolicy = request.getRetryPolicy();
+			if (retryPolicy instanceof AttemptRetryPolicy) {
+				return (AttemptRetryPolicy) retryPolicy;
+			}
+
+			AttemptRetryPolicy attemptRetryPolicy = new AttemptRetryPolicy(retryPolicy);
+			request.setRetryPolicy(attemptRetryPolicy);
+
+			return attemptRetryPolicy;
+		}
+
+		/**
+		 * Sets the policy used on the current thread, or {@code null} to use the original policy of the request.
+		 */
+		void setCurrent(RetryPolicy retryPolicy) {
+			if (retryPolicy != null) {
+				mCurrentRetryPolicy.set(retryPolicy);
+			} else {
+				mCurrentRetryPolicy.remove();
+			}
+		}
+
+		private RetryPolicy getCurrent() {
+			RetryPolicy retryPolicy = mCurrentRetryPolicy.get();
+			return retryPolicy != null ? retryPolicy : mRetryPolicy;
+		}
+
+		@Override
+		public int getCurrentTimeout() {
+			return getCurrent().getCurrentTimeout();
+		}
+
+		@Override
+		public int getCurrentRetryCount() {
+			return getCurrent().getCurrentRetryCount();
+		}
+
+		@Override
+		public void retry(VolleyError error) throws VolleyError {
+			getCurrent().retry(error);
+		}
+
+	}
+
+	private static class HedgeThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger mThreadCount = new AtomicInteger();
+
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "VolleyHedge-" + mThreadCount.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,251 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HurlStack;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * {@link HurlStack} that tunes the connection pool used by {@link java.net.HttpURLConnection}, so connections to the same
+ * host are reused instead of paying the TCP/TLS setup on every request.
+ * <p>
+ * The pool size and keep-alive duration are applied through the {@code http.keepAlive}, {@code http.maxConnections} and
+ * {@code http.keepAliveDuration} system properties, which are read by the platform's connection pool, so they affect all the
+ * {@link java.net.HttpURLConnection}s created by the app. The maximum number of connections per host is enforced by this
+ * stack, holding each connection until its response body is consumed.
+ * <p>
+ * Its connections are disconnected when the call that uses them is aborted (see {@link AbortSignal}), e.g. when a hedge
+ * wins over the first attempt of a request.
+ * <p>
+ * {@link java.net.HttpURLConnection} doesn't support HTTP/2, so a stack backed by an HTTP/2 client (e.g. OkHttp) has to be
+ * set through {@link com.hipsheep.volleywrapper.Configuration.Builder#setHttpStack(com.android.volley.toolbox.HttpStack)}
+ * to multiplex requests.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class PooledHurlStack extends HurlStack {
+
+	/**
+	 * Maximum number of connections per host, or {@code null} if there's no limit.
+	 */
+	private final Integer mMaxConnectionsPerHost;
+
+	/**
+	 * Permits for the connections to each host, mapped by host name.
+	 */
+	private final ConcurrentMap<String, Semaphore> mHostPermits = new ConcurrentHashMap<>();
+
+
+	private PooledHurlStack(Builder builder) {
+		super(null, builder.mSslSocketFactory);
+
+		mMaxConnectionsPerHost = builder.mMaxConnectionsPerHost;
+
+		// Configure the platform's connection pool
+		if (builder.mKeepAlive != null) {
+			System.setProperty("http.keepAlive", String.valueOf(builder.mKeepAlive));
+		}
+
+		if (builder.mMaxIdleConnections != null) {
+			System.setProperty("http.maxConnections", String.valueOf(builder.mMaxIdleConnections));
+		}
+
+		if (builder.mKeepAliveDurationMs != null) {
+			System.setProperty("http.keepAliveDuration", String.valueOf(builder.mKeepAliveDurationMs));
+		}
+	}
+
+	@Override
+	public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders)
+			throws IOException, AuthFailureError {
+		if (mMaxConnectionsPerHost == null) {
+			return super.performRequest(request, additionalHeaders);
+		}
+
+		final Semaphore hostPermits = getHostPermits(new URL(request.getUrl()).getHost());
+		try {
+			hostPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection");
+		}
+
+		HttpResponse response = null;
+		try {
+			response = super.performRequest(request, additionalHeaders);
+		} finally {
+			if (response == null) {
+				// The request failed, so release the connection right away
+				hostPermits.release();
+			}
+		}
+
+		HttpEntity entity = response.getEntity();
+		if (entity == null) {
+			hostPermits.release();
+		} else {
+			// Hold the connection until the response body is consumed by the network
+			response.setEntity(new HttpEntityWrapper(entity) {
+
+				private final AtomicBoolean mReleased = new AtomicBoolean();
+
+				@Override
+				public void consumeContent() throws IOException {
+					try {
+						super.consumeContent();
+					} finally {
+						if (mReleased.compareAndSet(false, true)) {
+							hostPermits.release();
+						}
+					}
+				}
+
+			});
+		}
+
+		return response;
+	}
+
+	@Override
+	protected HttpURLConnection createConnection(URL url) throws IOException {
+		final HttpURLConnection connection = super.createConnection(url);
+
+		AbortSignal.onAbort(new Runnable() {
+
+			@Override
+			public void run() {
+				// Closes the socket, so a read blocked on it fails right away
+				connection.disconnect();
+			}
+
+		});
+
+		return connection;
+	}
+
+	private Semaphore getHostPermits(String host) {
+		Semaphore hostPermits = mHostPermits.get(host);
+
+		if (hostPermits == null) {
+			Semaphore newHostPermits = new Semaphore(mMaxConnectionsPerHost, true);
+
+			hostPermits = mHostPermits.putIfAbsent(host, newHostPermits);
+			if (hostPermits == null) {
+				hostPermits = newHostPermits;
+			}
+		}
+
+		return hostPermits;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Builder class used to create {@link PooledHurlStack} objects.
+	 */
+	public static class Builder {
+
+		private Boolean mKeepAlive;
+
+		private Integer mMaxIdleConnections;
+
+		private Long mKeepAliveDurationMs;
+
+		private Integer mMaxConnectionsPerHost;
+
+		private SSLSocketFactory mSslSocketFactory;
+
+
+		/**
+		 * Sets whether connections should be kept alive to be reused by other requests.
+		 *
+		 * @param keepAlive
+		 * 		{@code true} if connections should be kept alive, or {@code false} otherwise.
+		 */
+		public Builder setKeepAlive(boolean keepAlive) {
+			mKeepAlive = keepAlive;
+
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of idle connections kept in the pool.
+		 *
+		 * @param maxIdleConnections
+		 * 		Maximum number of idle connections kept in the pool.
+		 */
+		public Builder setPoolSize(int maxIdleConnections) {
+			mMaxIdleConnections = maxIdleConnections;
+
+			return this;
+		}
+
+		/**
+		 * Sets how long an idle connection is kept in the pool before being closed.
+		 *
+		 * @param keepAliveDuration
+		 * 		Time an idle connection is kept in the pool.
+		 * @param timeUnit
+		 * 		{@link TimeUnit} of {@code keepAliveDuration}.
+		 */
+		public Builder setKeepAliveDuration(long keepAliveDuration, TimeUnit timeUnit) {
+			mKeepAliveDurationMs = timeUnit.toMillis(keepAliveDuration);
+
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of connections open at the same time to a single host. Requests over this limit wait until
+		 * a connection to the host is released.
+		 *
+		 * @param maxConnectionsPerHost
+		 * 		Maximum number of connections per host.
+		 */
+		public Builder setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+			if (maxConnectionsPerHost < 1) {
+				throw new IllegalArgumentException("Max connections per host must be at least 1");
+			}
+
+			mMaxConnectionsPerHost = maxConnectionsPerHost;
+
+			return this;
+		}
+
+		/**
+		 * Sets the {@link SSLSocketFactory} used for HTTPS connections. Using the same factory for all connections lets TLS
+		 * sessions be resumed through its session cache.
+		 *
+		 * @param sslSocketFactory
+		 * 		{@link SSLSocketFactory} used for HTTPS connections.
+		 */
+		public Builder setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+			mSslSocketFactory = sslSocketFactory;
+
+			return this;
+		}
+
+		public PooledHurlStack build() {
+			return new PooledHurlStack(this);
+		}
+
+	}
+
+}
@@ -2,6 +2,13 @@ package com.hipsheep.volleywrapper.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.hipsheep.volleywrapper.network.model.ResponseFuture;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Utility class used for {@link Gson} related actions.
@@ -10,24 +17,108 @@ import com.google.gson.GsonBuilder;
  */
 public class GsonUtils {
 
-	private static Gson sGson;
+	private static volatile Gson sGson;
 
 
 	// Don't allow object creations for this class
 	private GsonUtils() {}
 
 	/**
-	 * Returns a {@link Gson} object that is only created the first time this method is called. Subsequent calls to
-	 * this method will return always the same object, which is saved in {@link #sGson}.
+	 * Returns a {@link Gson} object that is only created the first time this method is called (unless one was set through
+	 * {@link #setReusableGson(Gson)}). Subsequent calls to this method will return always the same object, which is saved in
+	 * {@link #sGson}.
 	 *
 	 * @return A reusable {@link Gson} object.
 	 */
 	public static Gson getReusableGson() {
-		if (sGson == null) {
-			sGson = (new GsonBuilder()).create();
+		Gson gson = sGson;
+		if (gson == null) {
+			synchronized (GsonUtils.class) {
+				gson = sGson;
+				if (gson == null) {
+					gson = new GsonBuilder().create();
+					sGson = gson;
+				}
+			}
+		}
+
+		return gson;
+	}
+
+	/**
+	 * Sets the {@link Gson} object shared by all the requests and body encoders that don't receive one, e.g. to register
+	 * type adapters or a field naming policy. This should be called before sending any request, since requests that were
+	 * already created keep the previous object.
+	 *
+	 * @param gson
+	 * 		{@link Gson} object to share, or {@code null} to go back to the default one.
+	 */
+	public static void setReusableGson(Gson gson) {
+		synchronized (GsonUtils.class) {
+			sGson = gson;
+		}
+	}
+
+	/**
+	 * Builds the type adapters of the reusable {@link Gson} object for the types received as parameter on a background
+	 * thread, so the first request of each type doesn't pay the reflection cost on a network thread. This is meant to be
+	 * called at startup, with the types of the responses the app receives.
+	 *
+	 * @param types
+	 * 		Types to build the adapters for (e.g. {@code Post[].class}, or {@code new TypeToken<List<Post>>() {}.getType()}).
+	 *
+	 * @return Future that completes when all the adapters were built, or fails with the first error found.
+	 */
+	public static ResponseFuture<Void> warmUp(Type... types) {
+		return warmUp(Arrays.asList(types), null);
+	}
+
+	/**
+	 * Builds the type adapters of the reusable {@link Gson} object for the types received as parameter on an executor (see
+	 * {@link #warmUp(Type...)}).
+	 *
+	 * @param types
+	 * 		Types to build the adapters for.
+	 * @param executor
+	 * 		{@link Executor} on which the adapters are built, or {@code null} to use a new low priority thread.
+	 *
+	 * @return Future that completes when all the adapters were built, or fails with the first error found.
+	 */
+	public static ResponseFuture<Void> warmUp(final List<? extends Type> types, Executor executor) {
+		final ResponseFuture<Void> future = new ResponseFuture<>();
+
+		Runnable warmUpTask = new Runnable() {
+			@Override
+			public void run() {
+				// Gson caches the adapters it builds, so later calls to fromJson() get them from memory
+				Gson gson = getReusableGson();
+				try {
+					for (Type type : types) {
+						if (future.isCancelled()) {
+							return;
+						}
+
+						gson.getAdapter(TypeToken.get(type));
+					}
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+					return;
+				}
+
+				future.complete(null);
+			}
+		};
+
+		if (executor != null) {
+			executor.execute(warmUpTask);
+		} else {
+			Thread thread = new Thread(warmUpTask, "GsonWarmUp");
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			thread.start();
 		}
 
-		return sGson;
+		return future;
 	}
 
 }
@@ -0,0 +1,124 @@
+package com.hipsheep.volleywrapper.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Utility class used for gzip content encoding related actions.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class GzipUtils {
+
+	public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+	public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+
+	public static final String ENCODING_GZIP = "gzip";
+
+	/**
+	 * Length (in bytes) of the header and trailer of gzip encoded data.
+	 */
+	private static final int GZIP_MIN_LENGTH = 18;
+
+
+	// Don't allow object creations for this class
+	private GzipUtils() {}
+
+	/**
+	 * Compresses the data received as parameter using gzip.
+	 *
+	 * @param data
+	 * 		Data to compress.
+	 *
+	 * @return Compressed data.
+	 *
+	 * @throws IOException
+	 * 		If the data couldn't be compressed.
+	 */
+	public static byte[] compress(byte[] data) throws IOException {
+		// Compressed JSON is usually much smaller than the original data
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(data.length / 4, 32));
+
+		GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+		gzipOutputStream.write(data);
+		gzipOutputStream.close();
+
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Returns a stream that reads the data received as parameter, decompressing it while it's read if the headers say it's
+	 * gzip encoded.
+	 *
+	 * @param data
+	 * 		Data to read.
+	 * @param headers
+	 * 		Headers of the response the data belongs to.
+	 *
+	 * @return Stream that reads the (decompressed) data.
+	 *
+	 * @throws IOException
+	 * 		If the data is gzip encoded but its header is not valid.
+	 */
+	public static InputStream openStream(byte[] data, Map<String, String> headers) throws IOException {
+		InputStream inputStream = new ByteArrayInputStream(data);
+		return isGzipEncoded(headers) ? new GZIPInputStream(inputStream) : inputStream;
+	}
+
+	/**
+	 * Returns the length of the data received as parameter once it's decompressed, which is read from the trailer of gzip
+	 * encoded data (so it's only exact for data smaller than 4 GB).
+	 *
+	 * @param data
+	 * 		Data of a response.
+	 * @param headers
+	 * 		Headers of the response the data belongs to.
+	 *
+	 * @return Length (in bytes) of the decompressed data.
+	 */
+	public static int getDecompressedLength(byte[] data, Map<String, String> headers) {
+		if (data == null) {
+			return 0;
+		}
+
+		if (!isGzipEncoded(headers) || data.length < GZIP_MIN_LENGTH) {
+			return data.length;
+		}
+
+		// The last 4 bytes of the data are the decompressed length, in little endian
+		int end = data.length;
+		long length = (data[end - 4] & 0xff) | (data[end - 3] & 0xff) << 8 | (data[end - 2] & 0xff) << 16
+				| ((long) data[end - 1] & 0xff) << 24;
+
+		return (int) Math.min(length, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns whether the {@code Content-Encoding} of the headers received as parameter is gzip.
+	 *
+	 * @param headers
+	 * 		Headers of a response.
+	 *
+	 * @return {@code true} if the content is gzip encoded, or {@code false} otherwise.
+	 */
+	public static boolean isGzipEncoded(Map<String, String> headers) {
+		if (headers == null) {
+			return false;
+		}
+
+		// Header names are case insensitive
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			if (HEADER_CONTENT_ENCODING.equalsIgnoreCase(header.getKey())) {
+				return header.getValue() != null && header.getValue().trim().equalsIgnoreCase(ENCODING_GZIP);
+			}
+		}
+
+		return false;
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.hipsheep.volleywrapper.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map that shows a small overlay of entries on top of a shared base map, without copying the base map. The overlay entries
+ * replace the base entries with the same keys, and all the changes made to this map are saved on the overlay, so the base map
+ * is never modified.
+ * <p>
+ * This is used to share the default headers of all requests, while each request can still add its own headers.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class LayeredMap<K, V> extends AbstractMap<K, V> {
+
+	private final Map<K, V> mBase;
+
+	/**
+	 * Entries added to this map, or {@code null} if none was added yet.
+	 */
+	private Map<K, V> mOverlay;
+
+	private Set<Entry<K, V>> mEntrySet;
+
+
+	/**
+	 * Creates a layered map.
+	 *
+	 * @param base
+	 * 		Map shown below the entries added to this one, or {@code null} if there's none. It's not copied, so it shouldn't be
+	 * 		modified while this map is used.
+	 */
+	public LayeredMap(Map<K, V> base) {
+		mBase = base != null ? base : Collections.<K, V>emptyMap();
+	}
+
+	@Override
+	public V get(Object key) {
+		if (mOverlay != null && mOverlay.containsKey(key)) {
+			return mOverlay.get(key);
+		}
+
+		return mBase.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return (mOverlay != null && mOverlay.containsKey(key)) || mBase.containsKey(key);
+	}
+
+	@Override
+	public V put(K key, V value) {
+		V previousValue = get(key);
+
+		if (mOverlay == null) {
+			mOverlay = new HashMap<>(4);
+		}
+		mOverlay.put(key, value);
+
+		return previousValue;
+	}
+
+	/**
+	 * Removes an entry that was added to this map.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 		If the entry belongs to the base map, which can't be modified.
+	 */
+	@Override
+	public V remove(Object key) {
+		if (mBase.containsKey(key)) {
+			throw new UnsupportedOperationException("Entries of the base map can't be removed");
+		}
+
+		return mOverlay != null ? mOverlay.remove(key) : null;
+	}
+
+	@Override
+	public int size() {
+		if (mOverlay == null) {
+			return mBase.size();
+		}
+
+		int size = mOverlay.size();
+		for (K key : mBase.keySet()) {
+			if (!mOverlay.containsKey(key)) {
+				size++;
+			}
+		}
+
+		return size;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		if (mEntrySet == null) {
+			mEntrySet = new AbstractSet<Entry<K, V>>() {
+
+				@Override
+				public Iterator<Entry<K, V>> iterator() {
+					return new LayeredIterator();
+				}
+
+				@Override
+				public int size() {
+					return LayeredMap.this.size();
+				}
+
+			};
+		}
+
+		return mEntrySet;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Iterates the overlay entries, and then the base entries whose keys are not on the overlay.
+	 */
+	private class LayeredIterator implements Iterator<Entry<K, V>> {
+
+		private final Iterator<Entry<K, V>> mOverlayIterator;
+		private final Iterator<Entry<K, V>> mBaseIterator = mBase.entrySet().iterator();
+
+		private Entry<K, V> mNextBaseEntry;
+
+
+		LayeredIterator() {
+			mOverlayIterator = mOverlay != null ? mOverlay.entrySet().iterator() : null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (mOverlayIterator != null && mOverlayIterator.hasNext()) {
+				return true;
+			}
+
+			while (mNextBaseEntry == null && mBaseIterator.hasNext()) {
+				Entry<K, V> baseEntry = mBaseIterator.next();
+				if (mOverlay == null || !mOverlay.containsKey(baseEntry.getKey())) {
+					mNextBaseEntry = baseEntry;
+				}
+			}
+
+			return mNextBaseEntry != null;
+		}
+
+		@Override
+		public Entry<K, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			if (mOverlayIterator != null && mOverlayIterator.hasNext()) {
+				return mOverlayIterator.next();
+			}
+
+			Entry<K, V> nextBaseEntry = mNextBaseEntry;
+			mNextBaseEntry = null;
+
+			return nextBaseEntry;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.hipsheep.volleywrapper.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Executor} that runs the tasks it receives on the Main Thread.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class MainThreadExecutor implements Executor {
+
+	private static MainThreadExecutor sInstance;
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+
+	// Use getInstance() to get objects of this class
+	private MainThreadExecutor() {}
+
+	/**
+	 * Returns a {@link MainThreadExecutor} object that is only created the first time this method is called.
+	 *
+	 * @return A reusable {@link MainThreadExecutor} object.
+	 */
+	public static synchronized MainThreadExecutor getInstance() {
+		if (sInstance == null) {
+			sInstance = new MainThreadExecutor();
+		}
+
+		return sInstance;
+	}
+
+	@Override
+	public void execute(Runnable runnable) {
+		mHandler.post(runnable);
+	}
+
+	/**
+	 * Runs a task on the Main Thread after a delay.
+	 *
+	 * @param runnable
+	 * 		Task to run.
+	 * @param delayMs
+	 * 		Delay (in milliseconds) after which the task will be run.
+	 */
+	public void executeDelayed(Runnable runnable, long delayMs) {
+		mHandler.postDelayed(runnable, delayMs);
+	}
+
+	/**
+	 * Removes a task that is waiting to be run.
+	 *
+	 * @param runnable
+	 * 		Task to remove.
+	 */
+	public void remove(Runnable runnable) {
+		mHandler.removeCallbacks(runnable);
+	}
+
+}
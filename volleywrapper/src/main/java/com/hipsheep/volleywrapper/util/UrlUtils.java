@@ -0,0 +1,265 @@
+package com.hipsheep.volleywrapper.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Utility class used to build URLs, with a percent-encoder that produces the same output as {@code Uri.encode()} but
+ * appends to an existing builder and doesn't allocate anything when no characters need to be encoded.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class UrlUtils {
+
+	/**
+	 * Characters (besides letters and digits) that are not encoded, same as on {@code Uri.encode()}.
+	 */
+	private static final String ALLOWED_CHARS = "_-!.~'()*";
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Sorts query params by key, and then by value (params without value first).
+	 */
+	private static final Comparator<String[]> QUERY_PARAM_COMPARATOR = new Comparator<String[]>() {
+		@Override
+		public int compare(String[] param1, String[] param2) {
+			int result = param1[0].compareTo(param2[0]);
+			if (result != 0) {
+				return result;
+			}
+
+			if (param1[1] == null || param2[1] == null) {
+				return param1[1] == null ? (param2[1] == null ? 0 : -1) : 1;
+			}
+
+			return param1[1].compareTo(param2[1]);
+		}
+	};
+
+
+	// Don't allow object creations for this class
+	private UrlUtils() {}
+
+	/**
+	 * Percent-encodes a string using UTF-8, so it can be used as a path segment or as a query param key or value.
+	 *
+	 * @param value
+	 * 		String to encode.
+	 *
+	 * @return Encoded string, or the same string if no characters needed to be encoded.
+	 */
+	public static String encode(String value) {
+		int length = value.length();
+		int i = 0;
+		while (i < length && isAllowed(value.charAt(i))) {
+			i++;
+		}
+
+		if (i == length) {
+			return value;
+		}
+
+		StringBuilder encoded = new StringBuilder(length + 16);
+		appendEncoded(encoded, value);
+
+		return encoded.toString();
+	}
+
+	/**
+	 * Percent-encodes a string using UTF-8 and appends it to a builder.
+	 *
+	 * @param builder
+	 * 		Builder to append the encoded string to.
+	 * @param value
+	 * 		String to encode.
+	 */
+	public static void appendEncoded(StringBuilder builder, String value) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+
+			if (isAllowed(c)) {
+				builder.append(c);
+			} else if (c < 0x80) {
+				appendEscaped(builder, c);
+			} else if (c < 0x800) {
+				appendEscaped(builder, 0xC0 | (c >> 6));
+				appendEscaped(builder, 0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				appendEscaped(builder, 0xF0 | (codePoint >> 18));
+				appendEscaped(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+				appendEscaped(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+				appendEscaped(builder, 0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// Unpaired surrogates can't be encoded as UTF-8, and are replaced by "?" like String.getBytes() does
+				appendEscaped(builder, '?');
+			} else {
+				appendEscaped(builder, 0xE0 | (c >> 12));
+				appendEscaped(builder, 0x80 | ((c >> 6) & 0x3F));
+				appendEscaped(builder, 0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Decodes a percent-encoded string using UTF-8, where {@code +} is decoded as a space. Invalid escapes are left as they
+	 * are.
+	 *
+	 * @param value
+	 * 		String to decode.
+	 *
+	 * @return Decoded string, or the same string if it had nothing to decode.
+	 */
+	public static String decode(String value) {
+		if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+			return value;
+		}
+
+		int length = value.length();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(length);
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+
+			int high;
+			int low;
+			if (c == '%' && i + 2 < length && (high = Character.digit(value.charAt(i + 1), 16)) >= 0
+					&& (low = Character.digit(value.charAt(i + 2), 16)) >= 0) {
+				bytes.write((high << 4) | low);
+				i += 2;
+			} else if (c == '+') {
+				bytes.write(' ');
+			} else if (c < 0x80) {
+				bytes.write(c);
+			} else {
+				// Characters that weren't encoded are written back as UTF-8, keeping surrogate pairs together
+				int charEnd = Character.isHighSurrogate(c) && i + 1 < length ? i + 2 : i + 1;
+				byte[] charBytes = getUtf8Bytes(value.substring(i, charEnd));
+				i = charEnd - 1;
+				bytes.write(charBytes, 0, charBytes.length);
+			}
+		}
+
+		try {
+			return bytes.toString("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Returns the canonical version of a URL, so URLs that only differ on the order or the encoding of their query params
+	 * are the same: the query params are sorted by key and value and re-encoded, and the fragment is removed.
+	 *
+	 * @param url
+	 * 		URL to canonicalize.
+	 * @param excludedParams
+	 * 		Keys of the query params to leave out of the canonical URL (e.g. timestamps), or {@code null} to keep all of them.
+	 *
+	 * @return Canonical URL.
+	 */
+	public static String canonicalize(String url, Collection<String> excludedParams) {
+		int fragmentStart = url.indexOf('#');
+		int queryEnd = fragmentStart >= 0 ? fragmentStart : url.length();
+
+		int queryStart = url.indexOf('?');
+		if (queryStart < 0 || queryStart >= queryEnd) {
+			return queryEnd == url.length() ? url : url.substring(0, queryEnd);
+		}
+
+		List<String[]> params = new ArrayList<>();
+		int paramStart = queryStart + 1;
+		while (paramStart < queryEnd) {
+			int paramEnd = url.indexOf('&', paramStart);
+			if (paramEnd < 0 || paramEnd > queryEnd) {
+				paramEnd = queryEnd;
+			}
+
+			if (paramEnd > paramStart) {
+				int equals = url.indexOf('=', paramStart);
+				boolean hasValue = equals >= 0 && equals < paramEnd;
+
+				String key = decode(url.substring(paramStart, hasValue ? equals : paramEnd));
+				if (excludedParams == null || !excludedParams.contains(key)) {
+					params.add(new String[] {key, hasValue ? decode(url.substring(equals + 1, paramEnd)) : null});
+				}
+			}
+
+			paramStart = paramEnd + 1;
+		}
+
+		Collections.sort(params, QUERY_PARAM_COMPARATOR);
+
+		StringBuilder canonicalUrl = new StringBuilder(queryEnd);
+		canonicalUrl.append(url, 0, queryStart);
+		for (int i = 0; i < params.size(); i++) {
+			canonicalUrl.append(i == 0 ? '?' : '&');
+			appendEncoded(canonicalUrl, params.get(i)[0]);
+
+			if (params.get(i)[1] != null) {
+				canonicalUrl.append('=');
+				appendEncoded(canonicalUrl, params.get(i)[1]);
+			}
+		}
+
+		return canonicalUrl.toString();
+	}
+
+	/**
+	 * Returns the host of a URL, without parsing the rest of it.
+	 *
+	 * @param url
+	 * 		URL of a request.
+	 *
+	 * @return Host of the URL (as it appears on it), or {@code null} if the URL is {@code null} or has no host.
+	 */
+	public static String getHost(String url) {
+		if (url == null) {
+			return null;
+		}
+
+		int schemeEnd = url.indexOf("://");
+		int hostStart = schemeEnd >= 0 ? schemeEnd + 3 : 0;
+
+		int hostEnd = hostStart;
+		while (hostEnd < url.length() && "/?#".indexOf(url.charAt(hostEnd)) < 0) {
+			hostEnd++;
+		}
+
+		// The user info and port are never part of the host
+		int userInfoEnd = url.lastIndexOf('@', hostEnd - 1);
+		if (userInfoEnd >= hostStart) {
+			hostStart = userInfoEnd + 1;
+		}
+
+		int portStart = url.indexOf(':', hostStart);
+		if (portStart >= 0 && portStart < hostEnd) {
+			hostEnd = portStart;
+		}
+
+		return hostEnd > hostStart ? url.substring(hostStart, hostEnd) : null;
+	}
+
+	private static byte[] getUtf8Bytes(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static boolean isAllowed(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || ALLOWED_CHARS.indexOf(c) >= 0;
+	}
+
+	private static void appendEscaped(StringBuilder builder, int b) {
+		builder.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+	}
+
+}
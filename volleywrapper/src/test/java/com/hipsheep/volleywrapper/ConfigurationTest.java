@@ -0,0 +1,92 @@
+package com.hipsheep.volleywrapper;
+
+import com.hipsheep.volleywrapper.network.cache.CachePolicy;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link Configuration}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class ConfigurationTest {
+
+	@Test
+	public void snapshot_IsNotAffectedByChanges() {
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Accept", "application/json");
+
+		Configuration configuration = new Configuration.Builder().setHeaders(headers).setShouldCache(true).build();
+		Configuration snapshot = configuration.snapshot();
+
+		headers.put("Authorization", "token");
+		configuration.setShouldCache(false);
+
+		assertEquals(1, snapshot.getHeaders().size());
+		assertEquals(true, snapshot.isShouldCache());
+		assertFalse(snapshot.getHeaders().containsKey("Authorization"));
+		assertSame(snapshot, snapshot.snapshot());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void snapshot_CantBeModified() {
+		new Configuration().snapshot().setShouldCache(false);
+	}
+
+	@Test
+	public void snapshot_IsReusedUntilChanged() {
+		Configuration configuration = new Configuration();
+		Configuration snapshot = configuration.snapshot();
+
+		assertSame(snapshot, configuration.snapshot());
+
+		configuration.setShouldCache(false);
+
+		Configuration newSnapshot = configuration.snapshot();
+		assertNotSame(snapshot, newSnapshot);
+		assertFalse(newSnapshot.isShouldCache());
+	}
+
+	@Test
+	public void snapshot_CopiesCachePolicies() {
+		CachePolicy cachePolicy = new CachePolicy(1000, 2000);
+		Configuration configuration = new Configuration.Builder()
+				.addCachePolicy("https://example.com/posts*", cachePolicy)
+				.build();
+		Configuration snapshot = configuration.snapshot();
+
+		configuration.getCachePolicies().add("https://example.com/users*", cachePolicy);
+
+		assertSame(cachePolicy, snapshot.getCachePolicies().find("https://example.com/posts/1"));
+		assertNull(snapshot.getCachePolicies().find("https://example.com/users/1"));
+	}
+
+	@Test
+	public void snapshot_CopiesTrafficClasses() {
+		Configuration configuration = new Configuration.Builder()
+				.addTrafficClass("interactive", 2)
+				.addTrafficClass("bulk", 1)
+				.build();
+		Configuration snapshot = configuration.snapshot();
+
+		configuration.getTrafficClasses().put("bulk", 3);
+
+		assertEquals(Integer.valueOf(2), snapshot.getTrafficClasses().get("interactive"));
+		assertEquals(Integer.valueOf(1), snapshot.getTrafficClasses().get("bulk"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addTrafficClass_WithoutDispatchers() {
+		new Configuration.Builder().addTrafficClass("bulk", 0);
+	}
+
+}
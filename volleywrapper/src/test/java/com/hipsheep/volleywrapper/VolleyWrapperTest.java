@@ -0,0 +1,323 @@
+package com.hipsheep.volleywrapper;
+
+import com.android.volley.Cache;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.ServerError;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.cache.CachePolicy;
+import com.hipsheep.volleywrapper.network.cache.ParsedResponseCache;
+import com.hipsheep.volleywrapper.network.cache.SharedCache;
+import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+import com.hipsheep.volleywrapper.network.request.GsonRequest;
+import com.hipsheep.volleywrapper.network.request.RequestDelivery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the stale-while-revalidate delivery of {@link VolleyWrapper}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class VolleyWrapperTest {
+
+	private static final String URL = "https://example.com/posts/1";
+
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+
+	};
+
+	/**
+	 * Policy whose responses have to be refreshed right away, but can be delivered for a minute while that happens.
+	 */
+	private static final CachePolicy STALE_CACHE_POLICY = new CachePolicy(0, 60000);
+
+	private final Configuration mOriginalConfiguration = VolleyWrapper.getDefaultConfiguration();
+
+	private final TestNetwork mNetwork = new TestNetwork();
+	private final TestCache mCache = new TestCache();
+
+	private RequestQueue mRequestQueue;
+
+
+	@Before
+	public void setUp() {
+		VolleyWrapper.setDefaultConfiguration(new Configuration.Builder()
+				.setDeliveryExecutor(DIRECT_EXECUTOR)
+				.setParsedResponseCache(new TestParsedResponseCache())
+				.build());
+
+		mRequestQueue = new RequestQueue(new SharedCache(mCache), mNetwork, 1, new RequestDelivery());
+		mRequestQueue.start();
+
+		VolleyWrapper.init(mRequestQueue);
+	}
+
+	@After
+	public void tearDown() {
+		mRequestQueue.stop();
+		VolleyWrapper.setDefaultConfiguration(mOriginalConfiguration);
+	}
+
+	@Test
+	public void sendRequest_StaleParsedResponse_DeliversItAndRefreshes() throws Exception {
+		mNetwork.mBody = "{\"id\": 1}";
+		Post stalePost = sendRequest().mResponses.get(0);
+
+		// The cached response is delivered right away, and then replaced by the one the network returns
+		Thread.sleep(5);
+		mNetwork.mBody = "{\"id\": 2}";
+		RecordingCallback callback = sendRequest();
+
+		assertEquals(2, callback.mResponses.size());
+		assertSame(stalePost, callback.mResponses.get(0));
+		assertEquals(2, callback.mResponses.get(1).id);
+		assertEquals(2, mNetwork.mCallCount.get());
+	}
+
+	@Test
+	public void sendRequest_RefreshedResponseUnchanged_IsNotDeliveredAgain() throws Exception {
+		mNetwork.mBody = "{\"id\": 1}";
+		Post stalePost = sendRequest().mResponses.get(0);
+
+		// The network returns the same data, so only the stale response is delivered
+		Thread.sleep(5);
+		RecordingCallback callback = sendRequest();
+
+		assertEquals(1, callback.mResponses.size());
+		assertSame(stalePost, callback.mResponses.get(0));
+		assertEquals(2, mNetwork.mCallCount.get());
+	}
+
+	@Test
+	public void sendRequest_SoftExpiredCacheHit_IsNotSavedAsFreshParsedResponse() throws Exception {
+		// The cached response needs to be refreshed, and the refresh fails
+		long now = System.currentTimeMillis();
+		Cache.Entry cacheEntry = new Cache.Entry();
+		cacheEntry.data = "{\"id\": 1}".getBytes(Charset.forName("UTF-8"));
+		cacheEntry.responseHeaders = Collections.emptyMap();
+		cacheEntry.softTtl = now - 1000;
+		cacheEntry.ttl = now + 60000;
+		mCache.put(new GsonRequest<>(Request.Method.GET, URL, Post.class).getCacheKey(), cacheEntry);
+
+		// The policy of the request would make a response received now fresh for a minute
+		RecordingCallback callback = sendRequest(new CachePolicy(60000, 120000));
+
+		assertEquals(1, callback.mResponses.size());
+		assertEquals(1, callback.mResponses.get(0).id);
+		assertEquals(1, callback.mErrors.size());
+
+		// The response parsed from the cache keeps the expiration times it was saved with, so it's still stale
+		GsonRequest<Post> request = new GsonRequest<>(Request.Method.GET, URL, Post.class);
+		assertNull(request.getFreshParsedResponse());
+		assertSame(callback.mResponses.get(0), request.getStaleParsedResponse());
+	}
+
+	/**
+	 * Sends a request for a post, and waits for it to finish successfully.
+	 */
+	private RecordingCallback sendRequest() throws InterruptedException {
+		RecordingCallback callback = sendRequest(STALE_CACHE_POLICY);
+		assertTrue(callback.mErrors.isEmpty());
+
+		return callback;
+	}
+
+	/**
+	 * Sends a request for a post with a cache policy, and waits for it to finish.
+	 */
+	private RecordingCallback sendRequest(CachePolicy cachePolicy) throws InterruptedException {
+		final GsonRequest<Post> request = new GsonRequest<>(Request.Method.GET, URL, Post.class);
+		request.setCachePolicy(cachePolicy);
+
+		final CountDownLatch finishedLatch = new CountDownLatch(1);
+		mRequestQueue.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+
+			@Override
+			public void onRequestFinished(Request<Object> finishedRequest) {
+				if (finishedRequest == (Request<?>) request) {
+					finishedLatch.countDown();
+				}
+			}
+
+		});
+
+		RecordingCallback callback = new RecordingCallback();
+		VolleyWrapper.sendRequest(request, callback);
+
+		assertTrue(finishedLatch.await(5, TimeUnit.SECONDS));
+
+		return callback;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class Post {
+
+		private int id;
+
+	}
+
+	private static class RecordingCallback extends ResponseCallback<Post> {
+
+		private final List<Post> mResponses = Collections.synchronizedList(new ArrayList<Post>());
+		private final List<VolleyError> mErrors = Collections.synchronizedList(new ArrayList<VolleyError>());
+
+
+		@Override
+		public void onSuccess(Post post) {
+			mResponses.add(post);
+		}
+
+		@Override
+		public void onFailure(VolleyError volleyError) {
+			mErrors.add(volleyError);
+		}
+
+	}
+
+	private static class TestNetwork implements Network {
+
+		private volatile String mBody;
+
+		private final AtomicInteger mCallCount = new AtomicInteger();
+
+
+		@Override
+		public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+			mCallCount.incrementAndGet();
+
+			if (mBody == null) {
+				throw new ServerError();
+			}
+
+			return new NetworkResponse(200, mBody.getBytes(Charset.forName("UTF-8")), Collections.<String, String>emptyMap(),
+					false);
+		}
+
+	}
+
+	/**
+	 * Volley cache that keeps its entries in memory.
+	 */
+	private static class TestCache implements Cache {
+
+		private final Map<String, Entry> mEntries = new HashMap<>();
+
+
+		@Override
+		public synchronized Entry get(String key) {
+			return mEntries.get(key);
+		}
+
+		@Override
+		public synchronized void put(String key, Entry entry) {
+			mEntries.put(key, entry);
+		}
+
+		@Override
+		public void initialize() {}
+
+		@Override
+		public synchronized void invalidate(String key, boolean fullExpire) {
+			Entry entry = mEntries.get(key);
+			if (entry != null) {
+				entry.softTtl = 0;
+				if (fullExpire) {
+					entry.ttl = 0;
+				}
+			}
+		}
+
+		@Override
+		public synchronized void remove(String key) {
+			mEntries.remove(key);
+		}
+
+		@Override
+		public synchronized void clear() {
+			mEntries.clear();
+		}
+
+	}
+
+	/**
+	 * Parsed response cache backed by a map, since {@link android.util.LruCache} isn't available on unit tests.
+	 */
+	private static class TestParsedResponseCache extends ParsedResponseCache {
+
+		private final Map<String, Object> mResults = new HashMap<>();
+		private final Map<String, Cache.Entry> mCacheEntries = new HashMap<>();
+
+
+		TestParsedResponseCache() {
+			super(1024 * 1024);
+		}
+
+		@Override
+		public synchronized Object getFresh(String key) {
+			Cache.Entry cacheEntry = mCacheEntries.get(key);
+			return cacheEntry != null && !cacheEntry.refreshNeeded() ? mResults.get(key) : null;
+		}
+
+		@Override
+		public synchronized Object getStale(String key) {
+			Cache.Entry cacheEntry = mCacheEntries.get(key);
+			return cacheEntry != null && cacheEntry.refreshNeeded() && !cacheEntry.isExpired() ? mResults.get(key) : null;
+		}
+
+		@Override
+		public synchronized Object get(String key, Cache.Entry cacheEntry) {
+			Cache.Entry savedCacheEntry = mCacheEntries.get(key);
+			return savedCacheEntry != null && Arrays.equals(savedCacheEntry.data, cacheEntry.data) ? mResults.get(key) : null;
+		}
+
+		@Override
+		public synchronized void put(String key, Object result, Cache.Entry cacheEntry, int sizeBytes) {
+			mResults.put(key, result);
+			mCacheEntries.put(key, cacheEntry);
+		}
+
+		@Override
+		public synchronized void remove(String key) {
+			mResults.remove(key);
+			mCacheEntries.remove(key);
+		}
+
+		@Override
+		public synchronized void clear() {
+			mResults.clear();
+			mCacheEntries.clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.hipsheep.volleywrapper.network.body;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the {@link BodyEncoder} implementations.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class BodyEncoderTest {
+
+	private static final String CHARSET = "UTF-8";
+
+
+	@Test
+	public void jsonEncoder_Params() throws Exception {
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("userId", 2);
+		params.put("title", "test t\u00edtulo");
+		params.put("body", null);
+
+		byte[] body = new JsonBodyEncoder().encode(params, CHARSET);
+
+		assertEquals("{\"userId\":2,\"title\":\"test t\u00edtulo\",\"body\":null}", new String(body, CHARSET));
+	}
+
+	@Test
+	public void jsonEncoder_JsonValues() throws Exception {
+		JSONObject author = new JSONObject();
+		author.put("name", "Franco");
+
+		JSONArray tags = new JSONArray();
+		tags.put("a");
+		tags.put(1);
+
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("author", author);
+		params.put("tags", tags);
+		params.put("list", Arrays.asList(1, 2));
+		params.put("map", Collections.singletonMap("id", 3));
+		params.put("body", JSONObject.NULL);
+
+		byte[] body = new JsonBodyEncoder().encode(params, CHARSET);
+
+		// The same JSON the params were encoded to when the body was built using a JSONObject
+		assertEquals("{\"author\":{\"name\":\"Franco\"},\"tags\":[\"a\",1],\"list\":[1,2],\"map\":{\"id\":3},\"body\":null}",
+				new String(body, CHARSET));
+		assertEquals("{\"name\":\"Franco\"}", new String(new JsonBodyEncoder().encode(author, CHARSET), CHARSET));
+	}
+
+	@Test
+	public void jsonEncoder_Object() throws Exception {
+		byte[] body = new JsonBodyEncoder().encode(new TestBody(1, "title"), CHARSET);
+
+		assertEquals("{\"id\":1,\"title\":\"title\"}", new String(body, CHARSET));
+	}
+
+	@Test
+	public void formUrlEncoder_Params() throws Exception {
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("userId", 2);
+		params.put("title", "a b&c");
+		params.put("body", null);
+
+		byte[] body = new FormUrlEncodedBodyEncoder().encode(params, CHARSET);
+
+		assertEquals("userId=2&title=a+b%26c", new String(body, CHARSET));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void formUrlEncoder_Object() throws Exception {
+		new FormUrlEncodedBodyEncoder().encode(new TestBody(1, "title"), CHARSET);
+	}
+
+	private static class TestBody {
+
+		private final int id;
+		private final String title;
+
+
+		TestBody(int id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link CachePolicies}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CachePoliciesTest {
+
+	@Test
+	public void find_FirstMatchingPattern() {
+		CachePolicy postPolicy = new CachePolicy(1000, 5000);
+		CachePolicy postsPolicy = new CachePolicy(2000, 10000);
+
+		CachePolicies cachePolicies = new CachePolicies();
+		cachePolicies.add("http://jsonplaceholder.typicode.com/posts/*", postPolicy);
+		cachePolicies.add("http://jsonplaceholder.typicode.com/posts*", postsPolicy);
+
+		assertSame(postPolicy, cachePolicies.find("http://jsonplaceholder.typicode.com/posts/1"));
+		assertSame(postsPolicy, cachePolicies.find("http://jsonplaceholder.typicode.com/posts?userId=1"));
+		assertNull(cachePolicies.find("http://jsonplaceholder.typicode.com/comments"));
+	}
+
+	@Test
+	public void find_QuotesPattern() {
+		CachePolicies cachePolicies = new CachePolicies();
+		cachePolicies.add("http://example.com/posts?id=*", new CachePolicy(0, 0));
+
+		// The "?" and "." of the pattern are not regular expression operators
+		assertNull(cachePolicies.find("http://exampleXcom/posts?id=1"));
+		assertNull(cachePolicies.find("http://example.com/postsid=1"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void cachePolicy_SoftTtlGreaterThanTtl() {
+		new CachePolicy(5000, 1000);
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+import com.android.volley.Cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link JournaledDiskCache}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class JournaledDiskCacheTest {
+
+	@Rule
+	public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+
+	@Test
+	public void initialize_LoadsEntriesFromJournal() throws Exception {
+		File directory = mTemporaryFolder.newFolder();
+
+		JournaledDiskCache cache = newCache(directory, 1024);
+		cache.put("first", newEntry("first data", "etag"));
+		cache.put("second", newEntry("second data", null));
+		cache.remove("second");
+		cache.invalidate("first", false);
+
+		JournaledDiskCache reopenedCache = newCache(directory, 1024);
+
+		Cache.Entry entry = reopenedCache.get("first");
+		assertNotNull(entry);
+		assertArrayEquals("first data".getBytes("UTF-8"), entry.data);
+		assertEquals("etag", entry.etag);
+		assertEquals(0, entry.softTtl);
+		assertEquals(Long.MAX_VALUE, entry.ttl);
+		assertEquals("value", entry.responseHeaders.get("header"));
+
+		assertNull(reopenedCache.get("second"));
+	}
+
+	@Test
+	public void initialize_IgnoresIncompleteRecord() throws Exception {
+		File directory = mTemporaryFolder.newFolder();
+
+		JournaledDiskCache cache = newCache(directory, 1024);
+		cache.put("first", newEntry("first data", null));
+		cache.put("second", newEntry("second data", null));
+
+		// Cut the last record in half, as if the app was killed while writing it
+		RandomAccessFile journal = new RandomAccessFile(new File(directory, "journal"), "rw");
+		journal.setLength(journal.length() - 10);
+		journal.close();
+
+		JournaledDiskCache reopenedCache = newCache(directory, 1024);
+
+		assertNotNull(reopenedCache.get("first"));
+		assertNull(reopenedCache.get("second"));
+
+		// The unknown file of the second entry is deleted when the journal is rewritten
+		assertEquals(2, directory.listFiles().length);
+	}
+
+	@Test
+	public void get_CorruptHeaderCount_RemovesEntry() throws Exception {
+		JournaledDiskCache cache = newCache(mTemporaryFolder.newFolder(), 1024);
+		cache.put("first", newEntry("first data", null));
+
+		// Overwrite the number of response headers, which follows the magic number and the key
+		RandomAccessFile entryFile = new RandomAccessFile(cache.getFileForKey("first"), "rw");
+		entryFile.seek(4 + 4 + "first".length());
+		entryFile.writeInt(Integer.MAX_VALUE);
+		entryFile.close();
+
+		assertNull(cache.get("first"));
+		assertNull(newCache(cache.getFileForKey("first").getParentFile(), 1024).get("first"));
+	}
+
+	@Test
+	public void put_RemovesLeastRecentlyUsedEntries() throws Exception {
+		JournaledDiskCache cache = newCache(mTemporaryFolder.newFolder(), 100);
+		cache.put("first", newEntry(new String(new char[40]), null));
+		cache.put("second", newEntry(new String(new char[40]), null));
+
+		// Use the first entry, so the second one is the least recently used
+		cache.get("first");
+		cache.put("third", newEntry(new String(new char[40]), null));
+
+		assertNotNull(cache.get("first"));
+		assertNull(cache.get("second"));
+		assertNotNull(cache.get("third"));
+	}
+
+	private static JournaledDiskCache newCache(File directory, int maxSizeBytes) {
+		JournaledDiskCache cache = new JournaledDiskCache(directory, maxSizeBytes);
+		cache.initialize();
+
+		return cache;
+	}
+
+	private static Cache.Entry newEntry(String data, String etag) throws Exception {
+		Cache.Entry entry = new Cache.Entry();
+		entry.data = data.getBytes("UTF-8");
+		entry.etag = etag;
+		entry.ttl = Long.MAX_VALUE;
+		entry.softTtl = Long.MAX_VALUE;
+		entry.responseHeaders = Collections.singletonMap("header", "value");
+
+		return entry;
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.hipsheep.volleywrapper.network.cache;
+
+import com.android.volley.toolbox.NoCache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SharedCache}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class SharedCacheTest {
+
+	@Test
+	public void initialize_SeveralQueues_InitializesCacheOnce() throws Exception {
+		final CountingCache countingCache = new CountingCache();
+		final SharedCache sharedCache = new SharedCache(countingCache);
+
+		// Initialize the cache from several threads at the same time, like the cache dispatchers of several queues do
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch finishedLatch = new CountDownLatch(4);
+		for (int i = 0; i < 4; i++) {
+			new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+						sharedCache.initialize();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						finishedLatch.countDown();
+					}
+				}
+
+			}).start();
+		}
+
+		startLatch.countDown();
+
+		assertTrue(finishedLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, countingCache.mInitializeCount.get());
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Cache that counts how many times it's initialized, and takes a while to do it.
+	 */
+	private static class CountingCache extends NoCache {
+
+		private final AtomicInteger mInitializeCount = new AtomicInteger();
+
+
+		@Override
+		public void initialize() {
+			mInitializeCount.incrementAndGet();
+
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.hipsheep.volleywrapper.network.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void getPercentile_Empty() {
+		assertEquals(-1, new LatencyHistogram().getPercentile(0.5));
+	}
+
+	@Test
+	public void getPercentile() {
+		LatencyHistogram histogram = new LatencyHistogram(100);
+		for (int i = 100; i >= 1; i--) {
+			histogram.record(i);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+
+		assertEquals(50, snapshot.getP50());
+		assertEquals(95, snapshot.getP95());
+		assertEquals(99, snapshot.getP99());
+		assertEquals(100, snapshot.getPercentile(1));
+	}
+
+	@Test
+	public void record_RollsOldSamplesOut() {
+		LatencyHistogram histogram = new LatencyHistogram(10);
+		for (int i = 0; i < 10; i++) {
+			histogram.record(1000);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(10);
+		}
+
+		assertEquals(20, histogram.getCount());
+		assertEquals(10, histogram.getPercentile(0.99));
+	}
+
+	@Test
+	public void getRoute() {
+		assertEquals("http://host/posts", RequestMetrics.getRoute("http://host/posts?userId=1#top"));
+		assertEquals("http://host/posts", RequestMetrics.getRoute("http://host/posts"));
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.hipsheep.volleywrapper.network.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link ResponseFuture}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class ResponseFutureTest {
+
+	@Test
+	public void thenApply_Success() throws Exception {
+		ResponseFuture<Integer> future = new ResponseFuture<>();
+
+		ResponseFuture<String> mappedFuture = future.thenApply(new ResponseFuture.Function<Integer, String>() {
+
+			@Override
+			public String apply(Integer input) {
+				return "value " + input;
+			}
+
+		});
+
+		assertFalse(mappedFuture.isDone());
+
+		future.complete(2);
+
+		assertEquals("value 2", mappedFuture.get());
+	}
+
+	@Test
+	public void thenApply_Failure() throws Exception {
+		ResponseFuture<Integer> future = new ResponseFuture<>();
+		ResponseFuture<String> mappedFuture = future.thenApply(new ResponseFuture.Function<Integer, String>() {
+
+			@Override
+			public String apply(Integer input) {
+				return "value " + input;
+			}
+
+		});
+
+		Exception failure = new Exception("failure");
+		future.completeExceptionally(failure);
+
+		try {
+			mappedFuture.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void allAsList_KeepsOrder() throws Exception {
+		ResponseFuture<Integer> first = new ResponseFuture<>();
+		ResponseFuture<Integer> second = new ResponseFuture<>();
+
+		ResponseFuture<List<Integer>> allFuture = ResponseFuture.allAsList(Arrays.asList(first, second));
+
+		second.complete(2);
+		assertFalse(allFuture.isDone());
+
+		first.complete(1);
+		assertEquals(Arrays.asList(1, 2), allFuture.get());
+	}
+
+	@Test
+	public void allOf_CancelCancelsAll() throws Exception {
+		final AtomicBoolean cancelActionRun = new AtomicBoolean();
+
+		ResponseFuture<Integer> first = new ResponseFuture<>();
+		first.setCancelAction(new Runnable() {
+
+			@Override
+			public void run() {
+				cancelActionRun.set(true);
+			}
+
+		});
+		ResponseFuture<Integer> second = ResponseFuture.completed(2);
+
+		ResponseFuture<Void> allFuture = ResponseFuture.allOf(first, second);
+		assertTrue(allFuture.cancel(false));
+
+		assertTrue(first.isCancelled());
+		assertTrue(cancelActionRun.get());
+		assertFalse(second.isCancelled());
+
+		try {
+			allFuture.get();
+			fail();
+		} catch (CancellationException e) {
+			// Expected
+		}
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void get_Timeout() throws Exception {
+		new ResponseFuture<Integer>().get(10, TimeUnit.MILLISECONDS);
+	}
+
+}
@@ -0,0 +1,177 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.Request;
+import com.android.volley.RetryPolicy;
+import com.hipsheep.volleywrapper.Configuration;
+import com.hipsheep.volleywrapper.VolleyWrapper;
+import com.hipsheep.volleywrapper.network.retry.BackoffRetryPolicy;
+import com.hipsheep.volleywrapper.network.route.RouteProfile;
+import com.hipsheep.volleywrapper.util.GzipUtils;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link BaseRequest}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class BaseRequestTest {
+
+	private static final String URL = "https://example.com/posts";
+
+	private final Configuration mOriginalConfiguration = VolleyWrapper.getDefaultConfiguration();
+
+
+	@After
+	public void tearDown() {
+		VolleyWrapper.setDefaultConfiguration(mOriginalConfiguration);
+	}
+
+	@Test
+	public void getCacheKey_IgnoresParamOrder() {
+		BaseRequest<Void> request1 = new BaseRequest<>(Request.Method.GET, URL);
+		request1.addQueryParam("userId", 1);
+		request1.addQueryParam("page", 2);
+
+		BaseRequest<Void> request2 = new BaseRequest<>(Request.Method.GET, URL + "?page=2");
+		request2.addQueryParam("userId", 1);
+
+		assertEquals(URL + "?page=2&userId=1", request1.getCacheKey());
+		assertEquals(request1.getCacheKey(), request2.getCacheKey());
+	}
+
+	@Test
+	public void getCacheKey_LeavesOutVolatileParams() {
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL);
+		request.addQueryParam("userId", 1);
+		request.addQueryParam("ts", 1500000000);
+		assertEquals(URL + "?ts=1500000000&userId=1", request.getCacheKey());
+
+		// The key is generated again when anything it depends on changes
+		request.addVolatileQueryParam("ts");
+		assertEquals(URL + "?userId=1", request.getCacheKey());
+
+		request.addQueryParam("page", 2);
+		assertEquals(URL + "?page=2&userId=1", request.getCacheKey());
+	}
+
+	@Test
+	public void getCacheKey_IncludesCacheKeyHeaders() {
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL);
+		request.addHeader("Accept-Language", "en");
+		request.addHeader("X-Request-Id", "1");
+		assertEquals(URL, request.getCacheKey());
+
+		request.addCacheKeyHeader("Accept-Language");
+		assertEquals(URL + "\naccept-language:en", request.getCacheKey());
+
+		request.addHeader("Accept-Language", "fr");
+		assertEquals(URL + "\naccept-language:fr", request.getCacheKey());
+
+		// Other headers don't change the key
+		BaseRequest<Void> otherRequest = new BaseRequest<>(Request.Method.GET, URL);
+		otherRequest.addCacheKeyHeader("Accept-Language");
+		otherRequest.addHeader("Accept-Language", "fr");
+		otherRequest.addHeader("X-Request-Id", "2");
+		assertEquals(request.getCacheKey(), otherRequest.getCacheKey());
+
+		otherRequest.addHeader("Accept-Language", "en");
+		assertNotEquals(request.getCacheKey(), otherRequest.getCacheKey());
+	}
+
+	@Test
+	public void constructor_MatchingRouteProfile_AppliesProfile() throws Exception {
+		RouteProfile routeProfile = new RouteProfile.Builder()
+				.setTimeoutMs(1000)
+				.setMaxRetries(3)
+				.setShouldCache(false)
+				.setHeaders(Collections.singletonMap("Accept", "application/x-ndjson"))
+				.setPriority(Request.Priority.HIGH)
+				.build();
+
+		Configuration configuration = new Configuration.Builder()
+				.setRetryPolicy(new BackoffRetryPolicy(5000, 1, 2, 0, 0))
+				.setShouldCache(true)
+				.setHeaders(Collections.singletonMap("X-Client", "app"))
+				.addRouteProfile("example.com", "/posts", routeProfile)
+				.build();
+		VolleyWrapper.setDefaultConfiguration(configuration);
+
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL + "/1");
+
+		assertSame(routeProfile, request.getRouteProfile());
+
+		RetryPolicy retryPolicy = request.getRetryPolicy();
+		assertTrue(retryPolicy instanceof BackoffRetryPolicy);
+		assertEquals(1000, retryPolicy.getCurrentTimeout());
+		assertEquals(3, ((BackoffRetryPolicy) retryPolicy).getMaxRetries());
+
+		assertFalse(request.shouldCache());
+		assertEquals("application/x-ndjson", request.getHeaders().get("Accept"));
+		assertEquals("app", request.getHeaders().get("X-Client"));
+		assertEquals(Request.Priority.HIGH, request.getPriority());
+
+		// Requests to other routes keep the default values
+		BaseRequest<Void> otherRequest = new BaseRequest<>(Request.Method.GET, "https://example.com/users");
+		assertNull(otherRequest.getRouteProfile());
+		assertTrue(otherRequest.shouldCache());
+		assertEquals(Request.Priority.NORMAL, otherRequest.getPriority());
+
+		// Requests use a snapshot of the default configuration, so profiles added to it aren't used until it's changed
+		configuration.getRouteProfiles().add("example.com", "/users", routeProfile);
+		assertNull(new BaseRequest<Void>(Request.Method.GET, "https://example.com/users").getRouteProfile());
+	}
+
+	@Test
+	public void constructor_DefaultConfigurationChanged_AppliesToNewRequests() {
+		VolleyWrapper.setDefaultConfiguration(new Configuration.Builder().setShouldCache(true).build());
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL);
+
+		VolleyWrapper.getDefaultConfiguration().setShouldCache(false);
+
+		// Requests created before the change keep using the previous configuration
+		assertTrue(request.shouldCache());
+		assertFalse(new BaseRequest<Void>(Request.Method.GET, URL).shouldCache());
+	}
+
+	@Test
+	public void isAcceptGzip_DefaultConfiguration_OnlyAppliesToDecompressingRequests() throws Exception {
+		VolleyWrapper.setDefaultConfiguration(new Configuration.Builder().setAcceptGzip(true).build());
+
+		// Requests that don't decompress their responses would read the compressed bytes
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL);
+		assertFalse(request.isAcceptGzip());
+		assertNull(request.getHeaders().get(GzipUtils.HEADER_ACCEPT_ENCODING));
+
+		GsonRequest<Object> gsonRequest = new GsonRequest<>(Request.Method.GET, URL, Object.class);
+		assertTrue(gsonRequest.isAcceptGzip());
+		assertEquals(GzipUtils.ENCODING_GZIP, gsonRequest.getHeaders().get(GzipUtils.HEADER_ACCEPT_ENCODING));
+
+		request.setAcceptGzip(true);
+		assertEquals(GzipUtils.ENCODING_GZIP, request.getHeaders().get(GzipUtils.HEADER_ACCEPT_ENCODING));
+	}
+
+	@Test
+	public void getBody_JsonObjectParam_WritesItsJson() throws Exception {
+		JSONObject author = new JSONObject();
+		author.put("name", "Franco");
+
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.POST, URL);
+		request.addBodyParam("author", author);
+
+		// The same body the request had when its params were encoded using a JSONObject
+		assertEquals("{\"author\":{\"name\":\"Franco\"}}", new String(request.getBody(), "UTF-8"));
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GsonRequest}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class GsonRequestTest {
+
+	private static final String URL = "https://example.com/posts";
+
+
+	@Test
+	public void parseNetworkResponse_TypeToken_ParsesGenericType() {
+		GsonRequest<List<Post>> request = new GsonRequest<>(Request.Method.GET, URL, new TypeToken<List<Post>>() {});
+
+		Response<List<Post>> response = request.parseNetworkResponse(
+				createResponse("[{\"id\": 1, \"title\": \"First\"}, {\"id\": 2, \"title\": \"Second\"}]"));
+
+		assertTrue(response.isSuccess());
+
+		// The elements are parsed to the type argument of the list, instead of to maps
+		List<Post> posts = response.result;
+		assertEquals(2, posts.size());
+		assertEquals(1, posts.get(0).id);
+		assertEquals("First", posts.get(0).title);
+		assertEquals(2, posts.get(1).id);
+		assertEquals("Second", posts.get(1).title);
+	}
+
+	@Test
+	public void parseNetworkResponse_InvalidJson_ReturnsParseError() {
+		GsonRequest<List<Post>> request = new GsonRequest<>(Request.Method.GET, URL, new TypeToken<List<Post>>() {});
+
+		Response<List<Post>> response = request.parseNetworkResponse(createResponse("{\"id\": 1}"));
+
+		assertFalse(response.isSuccess());
+		assertTrue(response.error instanceof ParseError);
+	}
+
+	private static NetworkResponse createResponse(String json) {
+		return new NetworkResponse(200, json.getBytes(Charset.forName("UTF-8")), Collections.<String, String>emptyMap(),
+				false);
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class Post {
+
+		private int id;
+		private String title;
+
+	}
+
+}
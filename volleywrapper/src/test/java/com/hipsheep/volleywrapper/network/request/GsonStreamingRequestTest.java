@@ -0,0 +1,291 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.Cache;
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.cache.CachePolicy;
+import com.hipsheep.volleywrapper.network.model.StreamingResponseCallback;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GsonStreamingRequest}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class GsonStreamingRequestTest {
+
+	private static final String URL = "https://example.com/posts";
+
+	private static final String POSTS_JSON = "[{\"id\": 1}, {\"id\": 2}, {\"id\": 3}, {\"id\": 4}, {\"id\": 5}]";
+
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+
+	};
+
+
+	@Test
+	public void parseNetworkResponse_DeliversElementsInBatches() {
+		BatchRecorder batchRecorder = new BatchRecorder();
+		GsonStreamingRequest<Post> request = createRequest(batchRecorder);
+		request.setBatchSize(2);
+
+		Response<Integer> response = request.parseNetworkResponse(createResponse(POSTS_JSON));
+
+		assertTrue(response.isSuccess());
+		assertEquals(5, (int) response.result);
+
+		// The last batch has the elements left
+		assertEquals(3, batchRecorder.mBatches.size());
+		assertEquals(2, batchRecorder.mBatches.get(0).size());
+		assertEquals(2, batchRecorder.mBatches.get(1).size());
+		assertEquals(1, batchRecorder.mBatches.get(2).size());
+		assertEquals(1, batchRecorder.mBatches.get(0).get(0).id);
+		assertEquals(5, batchRecorder.mBatches.get(2).get(0).id);
+	}
+
+	@Test
+	public void parseNetworkResponse_ArrayField_ParsesFieldArray() {
+		BatchRecorder batchRecorder = new BatchRecorder();
+		GsonStreamingRequest<Post> request = createRequest(batchRecorder);
+		request.setArrayFieldName("posts");
+
+		Response<Integer> response = request.parseNetworkResponse(createResponse(
+				"{\"count\": 2, \"other\": [{\"id\": 9}], \"posts\": [{\"id\": 1}, {\"id\": 2}], \"next\": null}"));
+
+		assertTrue(response.isSuccess());
+		assertEquals(2, (int) response.result);
+		assertEquals(1, batchRecorder.mBatches.size());
+		assertEquals(1, batchRecorder.mBatches.get(0).get(0).id);
+		assertEquals(2, batchRecorder.mBatches.get(0).get(1).id);
+	}
+
+	@Test
+	public void parseNetworkResponse_MissingArrayField_ReturnsParseError() {
+		BatchRecorder batchRecorder = new BatchRecorder();
+		GsonStreamingRequest<Post> request = createRequest(batchRecorder);
+		request.setArrayFieldName("posts");
+
+		Response<Integer> response = request.parseNetworkResponse(createResponse("{\"count\": 0}"));
+
+		assertFalse(response.isSuccess());
+		assertTrue(response.error instanceof ParseError);
+		assertTrue(batchRecorder.mBatches.isEmpty());
+	}
+
+	@Test
+	public void parseNetworkResponse_NullArray_ReturnsNoElements() {
+		BatchRecorder batchRecorder = new BatchRecorder();
+		GsonStreamingRequest<Post> request = createRequest(batchRecorder);
+		request.setArrayFieldName("posts");
+
+		Response<Integer> response = request.parseNetworkResponse(createResponse("{\"posts\": null}"));
+
+		assertTrue(response.isSuccess());
+		assertEquals(0, (int) response.result);
+		assertTrue(batchRecorder.mBatches.isEmpty());
+	}
+
+	@Test
+	public void parseNetworkResponse_CancelledMidStream_StopsParsing() {
+		final List<List<Post>> batches = new ArrayList<>();
+		final GsonStreamingRequest<Post> request = new GsonStreamingRequest<>(Request.Method.GET, URL, Post.class);
+		request.setDeliveryExecutor(DIRECT_EXECUTOR);
+		request.setBatchSize(2);
+		request.setResponseCallback(new StreamingResponseCallback<Post>() {
+
+			@Override
+			public void onElements(List<Post> elements) {
+				batches.add(elements);
+				request.cancel();
+			}
+
+			@Override
+			public void onSuccess(Integer count) {}
+
+			@Override
+			public void onFailure(VolleyError volleyError) {}
+
+		});
+
+		Response<Integer> response = request.parseNetworkResponse(createResponse(POSTS_JSON));
+
+		// Parsing stops after the batch during which the request was cancelled
+		assertEquals(2, (int) response.result);
+		assertEquals(1, batches.size());
+	}
+
+	private static GsonStreamingRequest<Post> createRequest(BatchRecorder batchRecorder) {
+		GsonStreamingRequest<Post> request = new GsonStreamingRequest<>(Request.Method.GET, URL, Post.class);
+		request.setDeliveryExecutor(DIRECT_EXECUTOR);
+		request.setResponseCallback(batchRecorder);
+
+		return request;
+	}
+
+	@Test
+	public void sendRequest_CachedResponseNeedsRefresh_DeliversElementsOnce() throws Exception {
+		TestNetwork network = new TestNetwork();
+		RequestQueue requestQueue = new RequestQueue(new TestCache(), network, 1, new ExecutorDelivery(DIRECT_EXECUTOR));
+		requestQueue.start();
+
+		try {
+			// The response needs to be refreshed right away, but could be delivered for a minute while that happens
+			CachePolicy cachePolicy = new CachePolicy(0, 60000);
+
+			BatchRecorder batchRecorder = new BatchRecorder();
+			sendRequest(requestQueue, cachePolicy, batchRecorder);
+			assertEquals(1, batchRecorder.mBatches.size());
+
+			// The cached response is refreshed before delivering its elements, so they are only received once
+			Thread.sleep(5);
+			batchRecorder = new BatchRecorder();
+			sendRequest(requestQueue, cachePolicy, batchRecorder);
+
+			assertEquals(2, network.mCallCount.get());
+			assertEquals(1, batchRecorder.mBatches.size());
+			assertEquals(5, batchRecorder.mBatches.get(0).size());
+			assertEquals(Collections.singletonList(5), batchRecorder.mCounts);
+		} finally {
+			requestQueue.stop();
+		}
+	}
+
+	/**
+	 * Sends a request through a queue, and waits for it to finish.
+	 */
+	private static void sendRequest(RequestQueue requestQueue, CachePolicy cachePolicy, BatchRecorder batchRecorder)
+			throws InterruptedException {
+		final GsonStreamingRequest<Post> request = createRequest(batchRecorder);
+		request.setCachePolicy(cachePolicy);
+
+		final CountDownLatch finishedLatch = new CountDownLatch(1);
+		requestQueue.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+
+			@Override
+			public void onRequestFinished(Request<Object> finishedRequest) {
+				if (finishedRequest == (Request<?>) request) {
+					finishedLatch.countDown();
+				}
+			}
+
+		});
+
+		requestQueue.add(request);
+
+		assertTrue(finishedLatch.await(5, TimeUnit.SECONDS));
+	}
+
+	private static NetworkResponse createResponse(String json) {
+		return new NetworkResponse(200, json.getBytes(Charset.forName("UTF-8")), Collections.<String, String>emptyMap(),
+				false);
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class Post {
+
+		private int id;
+
+	}
+
+	private static class BatchRecorder extends StreamingResponseCallback<Post> {
+
+		private final List<List<Post>> mBatches = new ArrayList<>();
+		private final List<Integer> mCounts = new ArrayList<>();
+
+
+		@Override
+		public void onElements(List<Post> elements) {
+			mBatches.add(elements);
+		}
+
+		@Override
+		public void onSuccess(Integer count) {
+			mCounts.add(count);
+		}
+
+		@Override
+		public void onFailure(VolleyError volleyError) {}
+
+	}
+
+	private static class TestNetwork implements Network {
+
+		private final AtomicInteger mCallCount = new AtomicInteger();
+
+
+		@Override
+		public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+			mCallCount.incrementAndGet();
+
+			return createResponse(POSTS_JSON);
+		}
+
+	}
+
+	/**
+	 * Volley cache that keeps its entries in memory.
+	 */
+	private static class TestCache implements Cache {
+
+		private final Map<String, Entry> mEntries = new HashMap<>();
+
+
+		@Override
+		public synchronized Entry get(String key) {
+			return mEntries.get(key);
+		}
+
+		@Override
+		public synchronized void put(String key, Entry entry) {
+			mEntries.put(key, entry);
+		}
+
+		@Override
+		public void initialize() {}
+
+		@Override
+		public synchronized void invalidate(String key, boolean fullExpire) {}
+
+		@Override
+		public synchronized void remove(String key) {
+			mEntries.remove(key);
+		}
+
+		@Override
+		public synchronized void clear() {
+			mEntries.clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,297 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.NoCache;
+import com.hipsheep.volleywrapper.Configuration;
+import com.hipsheep.volleywrapper.VolleyWrapper;
+import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link Prefetcher}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class PrefetcherTest {
+
+	private static final String URL = "https://example.com/posts/";
+
+	/**
+	 * Time to wait for requests that shouldn't be sent, before checking that they weren't.
+	 */
+	private static final long NOT_SENT_WAIT_MS = 100;
+
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+
+	};
+
+	private final Configuration mOriginalConfiguration = VolleyWrapper.getDefaultConfiguration();
+
+	private final TestNetwork mNetwork = new TestNetwork();
+
+	private RequestQueue mRequestQueue;
+	private RequestThrottle mRequestThrottle;
+	private RequestCoalescer mRequestCoalescer;
+
+
+	@Before
+	public void setUp() {
+		VolleyWrapper.setDefaultConfiguration(new Configuration.Builder().setDeliveryExecutor(DIRECT_EXECUTOR).build());
+
+		mRequestQueue = new RequestQueue(new NoCache(), mNetwork, 4, new ExecutorDelivery(DIRECT_EXECUTOR));
+		mRequestQueue.start();
+
+		mRequestThrottle = new RequestThrottle(mRequestQueue);
+		mRequestCoalescer = new RequestCoalescer(mRequestThrottle);
+	}
+
+	@After
+	public void tearDown() {
+		mNetwork.releaseAll();
+		mRequestQueue.stop();
+		VolleyWrapper.setDefaultConfiguration(mOriginalConfiguration);
+	}
+
+	@Test
+	public void prefetch_StartsWhenIdle() throws Exception {
+		Prefetcher prefetcher = new Prefetcher(mRequestThrottle, mRequestCoalescer, 2);
+
+		mRequestCoalescer.add(new BaseRequest<Void>(Request.Method.GET, URL + "foreground"));
+		assertEquals(URL + "foreground", mNetwork.nextCall());
+
+		prefetcher.prefetchUrls(Collections.singletonList(URL + "1"));
+		assertNull(mNetwork.nextCall(NOT_SENT_WAIT_MS));
+
+		// The prefetch is sent once the foreground request finishes
+		mNetwork.release(URL + "foreground");
+		assertEquals(URL + "1", mNetwork.nextCall());
+		assertTrue(mRequestThrottle.isIdle());
+	}
+
+	@Test
+	public void prefetch_LimitsConcurrentPrefetches() throws Exception {
+		Prefetcher prefetcher = new Prefetcher(mRequestThrottle, mRequestCoalescer, 2);
+
+		prefetcher.prefetchUrls(Arrays.asList(URL + "1", URL + "2", URL + "3"));
+
+		// The first two are sent on different dispatchers, so they can reach the network in any order
+		assertEquals(new HashSet<>(Arrays.asList(URL + "1", URL + "2")),
+				new HashSet<>(Arrays.asList(mNetwork.nextCall(), mNetwork.nextCall())));
+		assertNull(mNetwork.nextCall(NOT_SENT_WAIT_MS));
+
+		// Each prefetch that finishes lets the next one start
+		mNetwork.release(URL + "1");
+		assertEquals(URL + "3", mNetwork.nextCall());
+	}
+
+	@Test
+	public void cancel_CancelsGroupPrefetches() throws Exception {
+		Prefetcher prefetcher = new Prefetcher(mRequestThrottle, mRequestCoalescer, 1);
+
+		Prefetcher.Group group = prefetcher.prefetchUrls(Arrays.asList(URL + "1", URL + "2"));
+		Prefetcher.Group otherGroup = prefetcher.prefetchUrls(Collections.singletonList(URL + "3"));
+		assertEquals(URL + "1", mNetwork.nextCall());
+
+		group.cancel();
+
+		assertTrue(group.isCancelled());
+		assertTrue(group.getRequests().get(0).isCanceled());
+		assertFalse(otherGroup.isCancelled());
+
+		// The place of the cancelled prefetch is taken by the one of the other group, and the pending one is never sent
+		assertEquals(URL + "3", mNetwork.nextCall());
+		mNetwork.release(URL + "1");
+		mNetwork.release(URL + "3");
+		assertNull(mNetwork.nextCall(NOT_SENT_WAIT_MS));
+	}
+
+	@Test
+	public void cancel_PrefetchWithCoalescedRequest_KeepsItRunning() throws Exception {
+		Prefetcher prefetcher = new Prefetcher(mRequestThrottle, mRequestCoalescer, 1);
+
+		BaseRequest<Void> prefetch = new BaseRequest<>(Request.Method.GET, URL + "1");
+		CallbackCounter prefetchCallback = new CallbackCounter();
+		prefetch.setResponseCallback(prefetchCallback);
+
+		Prefetcher.Group group = prefetcher.prefetch(Collections.singletonList(prefetch));
+		assertEquals(URL + "1", mNetwork.nextCall());
+
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL + "1");
+		CallbackCounter requestCallback = new CallbackCounter();
+		request.setResponseCallback(requestCallback);
+		mRequestCoalescer.add(request);
+
+		group.cancel();
+
+		// The foreground request waits for the prefetch, so it isn't cancelled (nor sent again)
+		assertTrue(group.isCancelled());
+		assertFalse(prefetch.isCanceled());
+
+		mNetwork.release(URL + "1");
+
+		assertTrue(requestCallback.mLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, requestCallback.mSuccessCount.get());
+		assertNull(mNetwork.nextCall(NOT_SENT_WAIT_MS));
+
+		// Only the callback of the prefetch is dropped
+		assertEquals(0, prefetchCallback.mSuccessCount.get());
+	}
+
+	@Test
+	public void prefetch_FreshParsedResponse_SkipsRequest() throws Exception {
+		Prefetcher prefetcher = new Prefetcher(mRequestThrottle, mRequestCoalescer, 1);
+
+		BaseRequest<String> cachedRequest = new BaseRequest<String>(Request.Method.GET, URL + "1") {
+
+			@Override
+			public String getFreshParsedResponse() {
+				return "cached";
+			}
+
+		};
+		BaseRequest<String> request = new BaseRequest<>(Request.Method.GET, URL + "2");
+
+		prefetcher.prefetch(Arrays.asList(cachedRequest, request));
+
+		assertEquals(URL + "2", mNetwork.nextCall());
+		assertFalse(cachedRequest.isCanceled());
+	}
+
+	@Test
+	public void add_CoalescedToPrefetch_PromotesPrefetch() throws Exception {
+		Prefetcher prefetcher = new Prefetcher(mRequestThrottle, mRequestCoalescer, 1);
+
+		Prefetcher.Group group = prefetcher.prefetchUrls(Collections.singletonList(URL + "1"));
+		assertEquals(URL + "1", mNetwork.nextCall());
+		assertTrue(mRequestThrottle.isIdle());
+
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL + "1");
+		request.setPriority(Request.Priority.HIGH);
+		mRequestCoalescer.add(request);
+
+		// The foreground request waits for the prefetch, so the queues aren't idle until it finishes
+		BaseRequest<?> prefetch = group.getRequests().get(0);
+		assertEquals(Request.Priority.HIGH, prefetch.getPriority());
+		assertFalse(mRequestThrottle.isIdle());
+
+		mNetwork.release(URL + "1");
+
+		long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!mRequestThrottle.isIdle() && System.nanoTime() < deadlineNs) {
+			Thread.sleep(5);
+		}
+
+		assertTrue(mRequestThrottle.isIdle());
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class CallbackCounter extends ResponseCallback<Void> {
+
+		private final CountDownLatch mLatch = new CountDownLatch(1);
+
+		private final AtomicInteger mSuccessCount = new AtomicInteger();
+
+
+		@Override
+		public void onSuccess(Void data) {
+			mSuccessCount.incrementAndGet();
+			mLatch.countDown();
+		}
+
+		@Override
+		public void onFailure(VolleyError volleyError) {
+			mLatch.countDown();
+		}
+
+	}
+
+	/**
+	 * Network that records the URLs of the requests it receives, and blocks each request until its URL is released.
+	 */
+	private static class TestNetwork implements Network {
+
+		private final BlockingQueue<String> mCalls = new LinkedBlockingQueue<>();
+
+		private final ConcurrentMap<String, CountDownLatch> mLatches = new ConcurrentHashMap<>();
+
+		private volatile boolean mReleasedAll;
+
+
+		@Override
+		public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+			mCalls.add(request.getUrl());
+
+			try {
+				if (!mReleasedAll) {
+					getLatch(request.getUrl()).await(5, TimeUnit.SECONDS);
+				}
+			} catch (InterruptedException e) {
+				throw new VolleyError(e);
+			}
+
+			return new NetworkResponse(200, new byte[0], Collections.<String, String>emptyMap(), false);
+		}
+
+		String nextCall() throws InterruptedException {
+			return nextCall(TimeUnit.SECONDS.toMillis(5));
+		}
+
+		String nextCall(long timeoutMs) throws InterruptedException {
+			return mCalls.poll(timeoutMs, TimeUnit.MILLISECONDS);
+		}
+
+		void release(String url) {
+			getLatch(url).countDown();
+		}
+
+		void releaseAll() {
+			mReleasedAll = true;
+
+			for (CountDownLatch latch : mLatches.values()) {
+				latch.countDown();
+			}
+		}
+
+		private CountDownLatch getLatch(String url) {
+			CountDownLatch latch = new CountDownLatch(1);
+			CountDownLatch previousLatch = mLatches.putIfAbsent(url, latch);
+
+			return previousLatch != null ? previousLatch : latch;
+		}
+
+	}
+
+}
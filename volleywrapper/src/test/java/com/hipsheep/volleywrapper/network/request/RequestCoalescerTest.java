@@ -0,0 +1,205 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.Cache;
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.Configuration;
+import com.hipsheep.volleywrapper.VolleyWrapper;
+import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RequestCoalescer}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestCoalescerTest {
+
+	private static final String URL = "https://example.com/posts";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+
+	};
+
+	private final Configuration mOriginalConfiguration = VolleyWrapper.getDefaultConfiguration();
+
+	private RequestQueue mRequestQueue;
+
+
+	@Before
+	public void setUp() {
+		VolleyWrapper.setDefaultConfiguration(new Configuration.Builder().setDeliveryExecutor(DIRECT_EXECUTOR).build());
+
+		mRequestQueue = new RequestQueue(new StaleCache(), new Network() {
+
+			@Override
+			public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+				return new NetworkResponse(200, "fresh".getBytes(UTF_8), Collections.<String, String>emptyMap(), false);
+			}
+
+		}, 1, new ExecutorDelivery(DIRECT_EXECUTOR));
+	}
+
+	@After
+	public void tearDown() {
+		mRequestQueue.stop();
+		VolleyWrapper.setDefaultConfiguration(mOriginalConfiguration);
+	}
+
+	@Test
+	public void add_CachedResponseNeedsRefresh_DeliversBothResponsesAndFinishesCoalescedRequest() throws Exception {
+		RequestThrottle requestThrottle = new RequestThrottle(mRequestQueue);
+		RequestCoalescer requestCoalescer = new RequestCoalescer(requestThrottle);
+
+		final List<Request<?>> finishedRequests = new CopyOnWriteArrayList<>();
+		requestThrottle.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+
+			@Override
+			public void onRequestFinished(Request<Object> request) {
+				finishedRequests.add(request);
+			}
+
+		});
+
+		// Both requests are added before the queue starts, so the second one is coalesced to the first one
+		CallbackRecorder inFlightCallback = new CallbackRecorder();
+		requestCoalescer.add(new StringRequest(inFlightCallback));
+		CallbackRecorder coalescedCallback = new CallbackRecorder();
+		StringRequest coalescedRequest = new StringRequest(coalescedCallback);
+		requestCoalescer.add(coalescedRequest);
+
+		mRequestQueue.start();
+
+		assertTrue(inFlightCallback.await());
+		assertTrue(coalescedCallback.await());
+
+		// The coalesced request receives the stale cached response and then the refreshed one, like the request in flight
+		assertEquals(Arrays.asList("stale", "fresh"), inFlightCallback.mResponses);
+		assertEquals(Arrays.asList("stale", "fresh"), coalescedCallback.mResponses);
+
+		// The request in flight is finished on the dispatcher thread right after its response is delivered, so wait for it
+		long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (finishedRequests.size() < 2 && System.nanoTime() < deadlineNs) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(2, finishedRequests.size());
+		assertTrue(finishedRequests.contains(coalescedRequest));
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class StringRequest extends BaseRequest<String> {
+
+		StringRequest(ResponseCallback<String> responseCallback) {
+			super(Request.Method.GET, URL);
+			setResponseCallback(responseCallback);
+		}
+
+		@Override
+		protected Response<String> parseNetworkResponse(NetworkResponse response) {
+			return createSuccessResponse(response, new String(response.data, UTF_8));
+		}
+
+	}
+
+	/**
+	 * Records the responses delivered, until the final one ({@code "fresh"}) is delivered.
+	 */
+	private static class CallbackRecorder extends ResponseCallback<String> {
+
+		private final CountDownLatch mLatch = new CountDownLatch(1);
+
+		private final List<String> mResponses = new CopyOnWriteArrayList<>();
+
+
+		@Override
+		public void onSuccess(String data) {
+			mResponses.add(data);
+
+			if ("fresh".equals(data)) {
+				mLatch.countDown();
+			}
+		}
+
+		@Override
+		public void onFailure(VolleyError volleyError) {
+			mLatch.countDown();
+		}
+
+		boolean await() throws InterruptedException {
+			return mLatch.await(5, TimeUnit.SECONDS);
+		}
+
+	}
+
+	/**
+	 * {@link Cache} that returns a response that needs to be refreshed for every key.
+	 */
+	private static class StaleCache implements Cache {
+
+		@Override
+		public Entry get(String key) {
+			long now = System.currentTimeMillis();
+
+			Entry entry = new Entry();
+			entry.data = "stale".getBytes(UTF_8);
+			entry.responseHeaders = Collections.emptyMap();
+			entry.softTtl = now - 1;
+			entry.ttl = now + TimeUnit.MINUTES.toMillis(1);
+
+			return entry;
+		}
+
+		@Override
+		public void put(String key, Entry entry) {
+		}
+
+		@Override
+		public void initialize() {
+		}
+
+		@Override
+		public void invalidate(String key, boolean fullExpire) {
+		}
+
+		@Override
+		public void remove(String key) {
+		}
+
+		@Override
+		public void clear() {
+		}
+
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.NoCache;
+import com.hipsheep.volleywrapper.Configuration;
+import com.hipsheep.volleywrapper.VolleyWrapper;
+import com.hipsheep.volleywrapper.network.model.ResponseCallback;
+import com.hipsheep.volleywrapper.network.route.RouteProfile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RequestThrottle}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestThrottleTest {
+
+	private static final String URL = "https://example.com/posts";
+
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+
+	};
+
+	private final Configuration mOriginalConfiguration = VolleyWrapper.getDefaultConfiguration();
+
+	private RequestQueue mRequestQueue;
+
+	/**
+	 * Latch that blocks the responses of the network until it's opened.
+	 */
+	private final CountDownLatch mNetworkLatch = new CountDownLatch(1);
+
+
+	@Before
+	public void setUp() {
+		VolleyWrapper.setDefaultConfiguration(new Configuration.Builder()
+				.setDeliveryExecutor(DIRECT_EXECUTOR)
+				.addRouteProfile("example.com", "/posts", new RouteProfile.Builder().setMaxConcurrentRequests(1).build())
+				.build());
+
+		mRequestQueue = new RequestQueue(new NoCache(), new Network() {
+
+			@Override
+			public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+				try {
+					mNetworkLatch.await();
+				} catch (InterruptedException e) {
+					throw new VolleyError(e);
+				}
+
+				return new NetworkResponse(200, new byte[0], Collections.<String, String>emptyMap(), false);
+			}
+
+		}, 1, new ExecutorDelivery(DIRECT_EXECUTOR));
+		mRequestQueue.start();
+	}
+
+	@After
+	public void tearDown() {
+		mRequestQueue.stop();
+		VolleyWrapper.setDefaultConfiguration(mOriginalConfiguration);
+	}
+
+	@Test
+	public void add_CancelledWhileThrottled_FinishesRequest() throws Exception {
+		RequestThrottle requestThrottle = new RequestThrottle(mRequestQueue);
+		RequestCoalescer requestCoalescer = new RequestCoalescer(requestThrottle);
+
+		CallbackLatch firstCallback = new CallbackLatch();
+		requestCoalescer.add(createRequest(URL + "?page=1", firstCallback));
+
+		// The route allows 1 request in flight, so this one waits on the limiter, and is cancelled while it waits
+		BaseRequest<Void> cancelledRequest = createRequest(URL + "?page=2", new CallbackLatch());
+		requestCoalescer.add(cancelledRequest);
+		cancelledRequest.cancel();
+
+		// An identical request sent later is attached to the cancelled one, and must be sent again once it finishes
+		CallbackLatch identicalCallback = new CallbackLatch();
+		requestCoalescer.add(createRequest(URL + "?page=2", identicalCallback));
+
+		mNetworkLatch.countDown();
+
+		assertTrue(firstCallback.await());
+		assertTrue(identicalCallback.await());
+		assertEquals(1, identicalCallback.mSuccessCount);
+
+		// Requests are finished right after their response is delivered, on the dispatcher thread, so wait for it
+		long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!requestThrottle.isIdle() && System.nanoTime() < deadlineNs) {
+			Thread.sleep(5);
+		}
+
+		assertTrue(requestThrottle.isIdle());
+	}
+
+	private static BaseRequest<Void> createRequest(String url, ResponseCallback<Void> responseCallback) {
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, url);
+		request.setResponseCallback(responseCallback);
+
+		return request;
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class CallbackLatch extends ResponseCallback<Void> {
+
+		private final CountDownLatch mLatch = new CountDownLatch(1);
+
+		private volatile int mSuccessCount;
+
+
+		@Override
+		public void onSuccess(Void data) {
+			mSuccessCount++;
+			mLatch.countDown();
+		}
+
+		@Override
+		public void onFailure(VolleyError volleyError) {
+			mLatch.countDown();
+		}
+
+		boolean await() throws InterruptedException {
+			return mLatch.await(5, TimeUnit.SECONDS);
+		}
+
+	}
+
+}
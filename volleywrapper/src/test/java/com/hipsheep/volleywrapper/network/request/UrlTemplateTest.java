@@ -0,0 +1,61 @@
+package com.hipsheep.volleywrapper.network.request;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link UrlTemplate}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class UrlTemplateTest {
+
+	@Test
+	public void expand_EncodesParams() {
+		UrlTemplate urlTemplate = UrlTemplate.compile("http://example.com/users/{id}/posts/{title}.json");
+
+		assertArrayEquals(new String[] {"id", "title"}, urlTemplate.getParamNames());
+		assertEquals("http://example.com/users/1/posts/a%2Fb%20c.json", urlTemplate.expand(1, "a/b c"));
+	}
+
+	@Test
+	public void expand_ParamUsedTwice() {
+		UrlTemplate urlTemplate = UrlTemplate.compile("/{lang}/docs/{page}?lang={lang}");
+
+		Map<String, Object> params = new HashMap<>();
+		params.put("lang", "es");
+		params.put("page", "índice");
+
+		assertEquals("/es/docs/%C3%ADndice?lang=es", urlTemplate.expand(params));
+		assertEquals("/es/docs/2?lang=es", urlTemplate.expand("es", 2));
+	}
+
+	@Test
+	public void expand_WithoutParams() {
+		String template = "http://example.com/posts";
+
+		assertSame(template, UrlTemplate.compile(template).expand());
+	}
+
+	@Test
+	public void compile_ReusesParsedTemplates() {
+		assertSame(UrlTemplate.compile("/users/{id}"), UrlTemplate.compile("/users/{id}"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void compile_UnclosedParam() {
+		UrlTemplate.compile("/users/{id");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void expand_MissingParam() {
+		UrlTemplate.compile("/users/{id}/posts/{postId}").expand(1);
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link BackoffRetryPolicy}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class BackoffRetryPolicyTest {
+
+	@Test
+	public void retry_GrowsTimeoutUntilMaxRetries() throws Exception {
+		BackoffRetryPolicy retryPolicy = new BackoffRetryPolicy(1000, 2, 1f, 0, 0);
+		VolleyError error = new TimeoutError();
+
+		retryPolicy.retry(error);
+		assertEquals(2000, retryPolicy.getCurrentTimeout());
+
+		retryPolicy.retry(error);
+		assertEquals(4000, retryPolicy.getCurrentTimeout());
+		assertEquals(2, retryPolicy.getCurrentRetryCount());
+
+		try {
+			retryPolicy.retry(error);
+			fail("The policy must stop after the max retries");
+		} catch (VolleyError e) {
+			assertSame(error, e);
+		}
+	}
+
+	@Test
+	public void getDelayMs_CappedExponentialJitter() {
+		BackoffRetryPolicy retryPolicy = new BackoffRetryPolicy(1000, 10, 1f, 100, 500);
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(retryPolicy.getDelayMs(1) <= 100);
+			assertTrue(retryPolicy.getDelayMs(2) <= 200);
+			assertTrue(retryPolicy.getDelayMs(5) <= 500);
+			assertTrue(retryPolicy.getDelayMs(64) <= 500);
+		}
+	}
+
+	@Test
+	public void retry_CapsTotalDelayAtInitialTimeout() throws Exception {
+		// Without the cap, each retry would wait up to a second
+		BackoffRetryPolicy retryPolicy = new BackoffRetryPolicy(50, 5, 0f, 1000, 1000);
+		VolleyError error = new TimeoutError();
+
+		long startNs = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			retryPolicy.retry(error);
+		}
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs) < 500);
+	}
+
+	@Test(expected = CircuitOpenError.class)
+	public void retry_StopsWhenCircuitOpens() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", 1, 60000, 1);
+		circuitBreaker.onFailure();
+
+		BackoffRetryPolicy retryPolicy = new BackoffRetryPolicy().copy();
+		retryPolicy.setCircuitBreaker(circuitBreaker);
+
+		retryPolicy.retry(new TimeoutError());
+	}
+
+}
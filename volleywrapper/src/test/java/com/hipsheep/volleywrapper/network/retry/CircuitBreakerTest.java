@@ -0,0 +1,119 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.NoConnectionError;
+import com.android.volley.ServerError;
+import com.android.volley.TimeoutError;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CircuitBreakerTest {
+
+	@Test
+	public void onFailure_OpensAfterThreshold() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", 2, 60000, 1);
+
+		circuitBreaker.acquire();
+		circuitBreaker.onResult(new TimeoutError());
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+		circuitBreaker.acquire();
+		circuitBreaker.onResult(new TimeoutError());
+		assertTrue(circuitBreaker.isOpen());
+
+		try {
+			circuitBreaker.acquire();
+			fail("Requests must fail while the breaker is open");
+		} catch (CircuitOpenError e) {
+			assertEquals("example.com", e.getHost());
+			assertTrue(e.getRetryAfterMs() > 0);
+		}
+	}
+
+	@Test
+	public void onSuccess_ResetsFailures() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", 2, 60000, 1);
+
+		circuitBreaker.onResult(new TimeoutError());
+		// Client errors mean the host is up
+		circuitBreaker.onResult(new ServerError(createResponse(404)));
+		circuitBreaker.onResult(new ServerError(createResponse(503)));
+
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void onResult_NoConnection_IsNotCounted() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", 1, 0, 1);
+
+		// The device may be offline, which says nothing about the host
+		circuitBreaker.onResult(new NoConnectionError());
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+		circuitBreaker.onFailure();
+		circuitBreaker.acquire();
+		circuitBreaker.onResult(new NoConnectionError());
+
+		// The probe gives back its place without closing or opening the breaker
+		assertSame(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		circuitBreaker.acquire();
+	}
+
+	@Test
+	public void halfOpen_LimitsProbes() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", 1, 0, 1);
+		circuitBreaker.onFailure();
+
+		// The open duration ran out, so one probe is let through
+		circuitBreaker.acquire();
+		assertSame(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+		try {
+			circuitBreaker.acquire();
+			fail("Only one probe can be in flight");
+		} catch (CircuitOpenError e) {
+			assertEquals(0, e.getRetryAfterMs());
+		}
+
+		circuitBreaker.onSuccess();
+		assertSame(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		circuitBreaker.acquire();
+	}
+
+	@Test
+	public void halfOpen_FailedProbeReopens() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker("example.com", 1, 0, 1);
+		circuitBreaker.onFailure();
+
+		circuitBreaker.acquire();
+		circuitBreaker.onFailure();
+
+		assertSame(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.isOpen());
+	}
+
+	@Test
+	public void circuitBreakers_SharedByHost() {
+		CircuitBreakers circuitBreakers = new CircuitBreakers();
+
+		assertSame(circuitBreakers.get("example.com"), circuitBreakers.get("Example.COM"));
+	}
+
+	private static NetworkResponse createResponse(int statusCode) {
+		return new NetworkResponse(statusCode, new byte[0], Collections.<String, String>emptyMap(), false);
+	}
+
+}
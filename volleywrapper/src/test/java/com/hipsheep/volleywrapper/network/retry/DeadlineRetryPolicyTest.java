@@ -0,0 +1,50 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link DeadlineRetryPolicy}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class DeadlineRetryPolicyTest {
+
+	@Test
+	public void timeout_CutToDeadline() {
+		DeadlineRetryPolicy retryPolicy = new DeadlineRetryPolicy(new DefaultRetryPolicy(2500, 1, 1), deadlineIn(1000));
+
+		assertTrue(retryPolicy.getCurrentTimeout() <= 1000);
+	}
+
+	@Test
+	public void retry_FitsBeforeDeadline() throws Exception {
+		DeadlineRetryPolicy retryPolicy = new DeadlineRetryPolicy(new DefaultRetryPolicy(1000, 1, 1), deadlineIn(10000));
+
+		retryPolicy.retry(new TimeoutError());
+
+		assertEquals(1, retryPolicy.getCurrentRetryCount());
+		assertEquals(2000, retryPolicy.getCurrentTimeout());
+	}
+
+	@Test(expected = VolleyError.class)
+	public void retry_DoesntFitBeforeDeadline() throws Exception {
+		DeadlineRetryPolicy retryPolicy = new DeadlineRetryPolicy(new DefaultRetryPolicy(1000, 1, 1), deadlineIn(1500));
+
+		// The next attempt would have a 2 seconds timeout
+		retryPolicy.retry(new TimeoutError());
+	}
+
+	private static long deadlineIn(long timeMs) {
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeMs);
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.hipsheep.volleywrapper.network.retry;
+
+import com.hipsheep.volleywrapper.network.metrics.LatencyHistogram;
+import com.hipsheep.volleywrapper.network.metrics.RequestMetrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link HedgePolicy} and {@link HedgeBudget}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class HedgePolicyTest {
+
+	private static final String ROUTE = "https://example.com/posts";
+
+	@Test
+	public void getDelayMs_Fixed() {
+		assertEquals(300, HedgePolicy.fixedDelay(300).getDelayMs(ROUTE + "?page=1", createMetrics(100)));
+	}
+
+	@Test
+	public void getDelayMs_RoutePercentile() {
+		HedgePolicy hedgePolicy = HedgePolicy.routePercentile(0.95, 500);
+
+		// Not enough samples yet
+		assertEquals(500, hedgePolicy.getDelayMs(ROUTE, createMetrics(10)));
+
+		// Samples from 1 to 100 ms, so p95 is 95 ms
+		assertEquals(95, hedgePolicy.getDelayMs(ROUTE + "?page=1", createMetrics(100)));
+
+		// Routes without samples use the default delay
+		assertEquals(500, hedgePolicy.getDelayMs("https://example.com/users", createMetrics(100)));
+	}
+
+	@Test
+	public void budget_LimitsHedgeRatio() {
+		HedgeBudget hedgeBudget = new HedgeBudget(0.25, 2);
+
+		for (int i = 0; i < 3; i++) {
+			hedgeBudget.onRequest();
+		}
+		assertFalse(hedgeBudget.tryAcquire());
+
+		hedgeBudget.onRequest();
+		assertTrue(hedgeBudget.tryAcquire());
+		assertFalse(hedgeBudget.tryAcquire());
+		assertEquals(1, hedgeBudget.getHedgesInFlight());
+	}
+
+	@Test
+	public void budget_LimitsConcurrentHedges() {
+		HedgeBudget hedgeBudget = new HedgeBudget(1, 1);
+
+		hedgeBudget.onRequest();
+		hedgeBudget.onRequest();
+		assertTrue(hedgeBudget.tryAcquire());
+
+		hedgeBudget.onRequest();
+		assertFalse(hedgeBudget.tryAcquire());
+
+		hedgeBudget.release();
+		assertTrue(hedgeBudget.tryAcquire());
+	}
+
+	/**
+	 * Creates metrics where {@link #ROUTE} has network times from 1 ms to {@code sampleCount} ms.
+	 */
+	private static RequestMetrics createMetrics(int sampleCount) {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= sampleCount; i++) {
+			histogram.record(i);
+		}
+
+		return new RequestMetrics() {
+
+			@Override
+			public LatencyHistogram getNetworkTimeHistogram(String route) {
+				return ROUTE.equals(route) ? histogram : null;
+			}
+
+		};
+	}
+
+}
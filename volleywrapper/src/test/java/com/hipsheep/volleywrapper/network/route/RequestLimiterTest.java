@@ -0,0 +1,158 @@
+package com.hipsheep.volleywrapper.network.route;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RequestLimiter}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RequestLimiterTest {
+
+	@Test
+	public void submit_LimitsConcurrentRequests() {
+		TestRequestLimiter requestLimiter = new TestRequestLimiter(2, 0, 1);
+		CountingTask task = new CountingTask();
+
+		assertTrue(requestLimiter.submit(task));
+		assertTrue(requestLimiter.submit(task));
+		assertFalse(requestLimiter.submit(task));
+		assertFalse(requestLimiter.submit(task));
+
+		assertEquals(2, task.mRunCount);
+		assertEquals(2, requestLimiter.getWaitingCount());
+
+		// Each request that finishes lets one waiting request start
+		requestLimiter.release();
+		assertEquals(3, task.mRunCount);
+		assertEquals(2, requestLimiter.getInFlightCount());
+
+		requestLimiter.release();
+		requestLimiter.release();
+		assertEquals(4, task.mRunCount);
+		assertEquals(1, requestLimiter.getInFlightCount());
+		assertEquals(0, requestLimiter.getWaitingCount());
+	}
+
+	@Test
+	public void submit_LimitsRate() {
+		// 10 requests per second, with bursts of 2
+		TestRequestLimiter requestLimiter = new TestRequestLimiter(0, 10, 2);
+		CountingTask task = new CountingTask();
+
+		assertTrue(requestLimiter.submit(task));
+		assertTrue(requestLimiter.submit(task));
+		assertFalse(requestLimiter.submit(task));
+
+		// The waiting request is checked again when the next token is available
+		assertEquals(1, requestLimiter.mScheduledTasks.size());
+		assertEquals(101, (long) requestLimiter.mScheduledDelays.get(0));
+
+		requestLimiter.mNowNs += TimeUnit.MILLISECONDS.toNanos(100);
+		requestLimiter.mScheduledTasks.remove(0).run();
+
+		assertEquals(3, task.mRunCount);
+		assertEquals(0, requestLimiter.getWaitingCount());
+	}
+
+	@Test
+	public void submit_KeepsOrder() {
+		TestRequestLimiter requestLimiter = new TestRequestLimiter(1, 0, 1);
+		final List<Integer> order = new ArrayList<>();
+
+		for (int i = 0; i < 3; i++) {
+			final int index = i;
+			requestLimiter.submit(new Runnable() {
+				@Override
+				public void run() {
+					order.add(index);
+				}
+			});
+		}
+
+		requestLimiter.release();
+		requestLimiter.release();
+
+		assertEquals(3, order.size());
+		assertEquals(0, (int) order.get(0));
+		assertEquals(1, (int) order.get(1));
+		assertEquals(2, (int) order.get(2));
+	}
+
+	@Test
+	public void release_DoesNotRecurseOnTasksThatReleaseRightAway() {
+		final TestRequestLimiter requestLimiter = new TestRequestLimiter(1, 0, 1);
+		requestLimiter.submit(new CountingTask());
+
+		// Tasks of requests that finish as soon as they start (e.g. cancelled ones) release their place from inside release()
+		final CountingTask countingTask = new CountingTask();
+		for (int i = 0; i < 100000; i++) {
+			requestLimiter.submit(new Runnable() {
+				@Override
+				public void run() {
+					countingTask.run();
+					requestLimiter.release();
+				}
+			});
+		}
+
+		requestLimiter.release();
+
+		assertEquals(100000, countingTask.mRunCount);
+		assertEquals(0, requestLimiter.getInFlightCount());
+		assertEquals(0, requestLimiter.getWaitingCount());
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class CountingTask implements Runnable {
+
+		private int mRunCount;
+
+
+		@Override
+		public void run() {
+			mRunCount++;
+		}
+
+	}
+
+	/**
+	 * Limiter with a fake clock, which records the tasks it schedules instead of running them.
+	 */
+	private static class TestRequestLimiter extends RequestLimiter {
+
+		private long mNowNs;
+
+		private final List<Runnable> mScheduledTasks = new ArrayList<>();
+		private final List<Long> mScheduledDelays = new ArrayList<>();
+
+
+		TestRequestLimiter(int maxConcurrentRequests, double requestsPerSecond, int burst) {
+			super(maxConcurrentRequests, requestsPerSecond, burst);
+		}
+
+		@Override
+		protected void schedule(Runnable task, long delayMs) {
+			mScheduledTasks.add(task);
+			mScheduledDelays.add(delayMs);
+		}
+
+		@Override
+		protected long nanoTime() {
+			return mNowNs;
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.hipsheep.volleywrapper.network.route;
+
+import com.android.volley.RetryPolicy;
+import com.hipsheep.volleywrapper.network.retry.BackoffRetryPolicy;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link RouteProfiles}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class RouteProfilesTest {
+
+	@Test
+	public void find_LongestMatchingPrefix() {
+		RouteProfile hostProfile = new RouteProfile.Builder().build();
+		RouteProfile postsProfile = new RouteProfile.Builder().build();
+		RouteProfile commentsProfile = new RouteProfile.Builder().build();
+
+		RouteProfiles routeProfiles = new RouteProfiles();
+		routeProfiles.add("jsonplaceholder.typicode.com", "/", hostProfile);
+		routeProfiles.add("jsonplaceholder.typicode.com", "/posts", postsProfile);
+		routeProfiles.add("jsonplaceholder.typicode.com", "/posts/*/comments", commentsProfile);
+
+		assertSame(postsProfile, routeProfiles.find("http://jsonplaceholder.typicode.com/posts"));
+		assertSame(postsProfile, routeProfiles.find("http://jsonplaceholder.typicode.com/posts/1?userId=1"));
+		assertSame(commentsProfile, routeProfiles.find("https://jsonplaceholder.typicode.com:443/posts/1/comments/"));
+		assertSame(hostProfile, routeProfiles.find("http://JsonPlaceholder.typicode.com/postsx"));
+		assertSame(hostProfile, routeProfiles.find("http://jsonplaceholder.typicode.com"));
+		assertNull(routeProfiles.find("http://example.com/posts"));
+	}
+
+	@Test
+	public void find_LiteralSegmentBeforeWildcard() {
+		RouteProfile meProfile = new RouteProfile.Builder().build();
+		RouteProfile userProfile = new RouteProfile.Builder().build();
+
+		RouteProfiles routeProfiles = new RouteProfiles();
+		routeProfiles.add("example.com", "/users/me", meProfile);
+		routeProfiles.add("example.com", "/users/*/posts", userProfile);
+
+		assertSame(meProfile, routeProfiles.find("http://example.com/users/me"));
+		// The literal segment doesn't match the rest of the path, so the wildcard is tried
+		assertSame(userProfile, routeProfiles.find("http://example.com/users/me/posts"));
+		assertNull(routeProfiles.find("http://example.com/users/1"));
+	}
+
+	@Test
+	public void find_HostBeforeAnyHost() {
+		RouteProfile anyHostProfile = new RouteProfile.Builder().build();
+		RouteProfile hostProfile = new RouteProfile.Builder().build();
+
+		RouteProfiles routeProfiles = new RouteProfiles();
+		routeProfiles.add(RouteProfiles.ANY_HOST, "/upload", anyHostProfile);
+		routeProfiles.add("example.com", "/posts", hostProfile);
+
+		assertSame(hostProfile, routeProfiles.find("http://user@example.com/posts/1"));
+		assertSame(anyHostProfile, routeProfiles.find("http://example.com/upload"));
+		assertSame(anyHostProfile, routeProfiles.find("http://other.com/upload/1"));
+		assertNull(routeProfiles.find("http://other.com/posts"));
+	}
+
+	@Test
+	public void snapshot_IsNotChangedByOriginal() {
+		RouteProfile postsProfile = new RouteProfile.Builder().build();
+		RouteProfile commentsProfile = new RouteProfile.Builder().build();
+
+		RouteProfiles routeProfiles = new RouteProfiles();
+		routeProfiles.add("example.com", "/posts", postsProfile);
+
+		RouteProfiles snapshot = routeProfiles.snapshot();
+		assertSame(snapshot, snapshot.snapshot());
+
+		// Profiles added to the original after the snapshot is taken (even below a copied node) aren't seen by the snapshot
+		routeProfiles.add("example.com", "/posts/*/comments", commentsProfile);
+		routeProfiles.add("other.com", "/", commentsProfile);
+
+		assertSame(commentsProfile, routeProfiles.find("http://example.com/posts/1/comments"));
+		assertSame(postsProfile, snapshot.find("http://example.com/posts/1/comments"));
+		assertNull(snapshot.find("http://other.com/posts"));
+
+		try {
+			snapshot.add("example.com", "/users", postsProfile);
+			fail("Profiles shouldn't be added to a snapshot");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void getHeaders_OverridesDefaultHeaders() {
+		Map<String, String> defaultHeaders = new HashMap<>();
+		defaultHeaders.put("Accept", "application/json");
+		defaultHeaders.put("X-Client", "app");
+
+		RouteProfile routeProfile = new RouteProfile.Builder()
+				.setHeaders(Collections.singletonMap("Accept", "application/x-ndjson"))
+				.build();
+
+		Map<String, String> headers = routeProfile.getHeaders(defaultHeaders);
+		assertEquals("application/x-ndjson", headers.get("Accept"));
+		assertEquals("app", headers.get("X-Client"));
+
+		// The merged headers are reused while the default headers don't change
+		assertSame(headers, routeProfile.getHeaders(defaultHeaders));
+	}
+
+	@Test
+	public void createRetryPolicy_BackoffPolicy_CopiesPolicy() {
+		RouteProfile routeProfile = new RouteProfile.Builder().setMaxRetries(4).build();
+
+		RetryPolicy retryPolicy = routeProfile.createRetryPolicy(new BackoffRetryPolicy(5000, 1, 2, 0, 0));
+
+		assertTrue(retryPolicy instanceof BackoffRetryPolicy);
+		BackoffRetryPolicy backoffRetryPolicy = (BackoffRetryPolicy) retryPolicy;
+		assertEquals(5000, backoffRetryPolicy.getInitialTimeoutMs());
+		assertEquals(4, backoffRetryPolicy.getMaxRetries());
+		assertEquals(2, backoffRetryPolicy.getBackoffMultiplier(), 0);
+	}
+
+}
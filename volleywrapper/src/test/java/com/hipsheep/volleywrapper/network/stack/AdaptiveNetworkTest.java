@@ -0,0 +1,117 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.request.BaseRequest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link AdaptiveNetwork}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class AdaptiveNetworkTest {
+
+	private static final String URL = "https://example.com/posts";
+
+
+	@Test
+	public void performRequest_WaitingRequests_GoInPriorityOrder() throws Exception {
+		TestNetwork network = new TestNetwork();
+		final AdaptiveNetwork adaptiveNetwork = new AdaptiveNetwork(network, 1, 1);
+
+		// The only active dispatcher is taken by the first request, so the other ones wait for it
+		Thread first = sendRequest(adaptiveNetwork, "first", Request.Priority.NORMAL);
+		awaitWaitingCount(adaptiveNetwork, 0);
+
+		Thread low = sendRequest(adaptiveNetwork, "low", Request.Priority.LOW);
+		awaitWaitingCount(adaptiveNetwork, 1);
+		Thread high = sendRequest(adaptiveNetwork, "high", Request.Priority.HIGH);
+		awaitWaitingCount(adaptiveNetwork, 2);
+
+		network.mLatch.countDown();
+		first.join(5000);
+		low.join(5000);
+		high.join(5000);
+
+		assertEquals(Arrays.asList("first", "high", "low"), network.mTags);
+	}
+
+	private static Thread sendRequest(final AdaptiveNetwork adaptiveNetwork, String tag, Request.Priority priority) {
+		final BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL);
+		request.setTag(tag);
+		request.setPriority(priority);
+
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					adaptiveNetwork.performRequest(request);
+				} catch (VolleyError e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+		});
+		thread.start();
+
+		return thread;
+	}
+
+	/**
+	 * Waits until a request is in flight and the number of requests received as parameter are waiting.
+	 */
+	private static void awaitWaitingCount(AdaptiveNetwork adaptiveNetwork, int waitingCount) throws InterruptedException {
+		long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while ((adaptiveNetwork.getInFlightCount() != 1 || adaptiveNetwork.getWaitingCount() != waitingCount)
+				&& System.nanoTime() < deadlineNs) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(waitingCount, adaptiveNetwork.getWaitingCount());
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Network that records the tags of the requests sent, and blocks the first one until its latch is opened.
+	 */
+	private static class TestNetwork implements Network {
+
+		private final CountDownLatch mLatch = new CountDownLatch(1);
+
+		private final List<Object> mTags = new CopyOnWriteArrayList<>();
+
+
+		@Override
+		public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+			mTags.add(request.getTag());
+
+			try {
+				assertTrue(mLatch.await(5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				throw new VolleyError(e);
+			}
+
+			return new NetworkResponse(200, new byte[0], Collections.<String, String>emptyMap(), false);
+		}
+
+	}
+
+}
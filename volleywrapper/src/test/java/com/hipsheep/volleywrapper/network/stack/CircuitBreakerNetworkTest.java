@@ -0,0 +1,160 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.request.BaseRequest;
+import com.hipsheep.volleywrapper.network.retry.CircuitBreaker;
+import com.hipsheep.volleywrapper.network.retry.CircuitBreakers;
+import com.hipsheep.volleywrapper.network.retry.CircuitOpenError;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link CircuitBreakerNetwork}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class CircuitBreakerNetworkTest {
+
+	private static final String URL = "https://example.com/posts";
+
+	private static final NetworkResponse RESPONSE = new NetworkResponse(200, new byte[0],
+			Collections.<String, String>emptyMap(), false);
+
+
+	@Test
+	public void performRequest_OpenBreaker_FailsWithoutNetwork() throws Exception {
+		TestNetwork network = new TestNetwork();
+		network.mError = new TimeoutError();
+		CircuitBreakers circuitBreakers = new CircuitBreakers(1, 60000, 1);
+		CircuitBreakerNetwork circuitBreakerNetwork = new CircuitBreakerNetwork(network, circuitBreakers);
+
+		try {
+			circuitBreakerNetwork.performRequest(createRequest());
+			fail("The request should fail");
+		} catch (TimeoutError e) {
+			// Expected
+		}
+
+		// The failure opened the breaker, so the next request fails fast
+		try {
+			circuitBreakerNetwork.performRequest(createRequest());
+			fail("The request should fail");
+		} catch (CircuitOpenError e) {
+			assertEquals("example.com", e.getHost());
+		}
+
+		assertEquals(1, network.mCallCount);
+	}
+
+	@Test
+	public void performRequest_ProbeSucceeds_ClosesBreaker() throws Exception {
+		TestNetwork network = new TestNetwork();
+		CircuitBreakers circuitBreakers = new CircuitBreakers(1, 0, 1);
+		CircuitBreaker circuitBreaker = circuitBreakers.get("example.com");
+		circuitBreaker.onFailure();
+
+		CircuitBreakerNetwork circuitBreakerNetwork = new CircuitBreakerNetwork(network, circuitBreakers);
+
+		assertSame(RESPONSE, circuitBreakerNetwork.performRequest(createRequest()));
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void performRequest_ProbeThrowsUnexpectedError_ReleasesProbeOnly() throws Exception {
+		TestNetwork network = new TestNetwork();
+		network.mRuntimeException = new IllegalStateException();
+		CircuitBreakers circuitBreakers = new CircuitBreakers(1, 0, 1);
+		CircuitBreaker circuitBreaker = circuitBreakers.get("example.com");
+		circuitBreaker.onFailure();
+
+		CircuitBreakerNetwork circuitBreakerNetwork = new CircuitBreakerNetwork(network, circuitBreakers);
+
+		try {
+			circuitBreakerNetwork.performRequest(createRequest());
+			fail("The request should fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+
+		// The error says nothing about the host, so the breaker stays half open, with its probe available again
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+		network.mRuntimeException = null;
+		assertSame(RESPONSE, circuitBreakerNetwork.performRequest(createRequest()));
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void performRequest_ProbeInFlight_FailsOtherRequests() throws Exception {
+		CircuitBreakers circuitBreakers = new CircuitBreakers(1, 0, 1);
+		final CircuitBreaker circuitBreaker = circuitBreakers.get("example.com");
+		circuitBreaker.onFailure();
+
+		final CircuitBreakerNetwork[] circuitBreakerNetwork = new CircuitBreakerNetwork[1];
+		final int[] rejectedCount = new int[1];
+
+		// While the probe is in flight, any other request to the host fails fast
+		circuitBreakerNetwork[0] = new CircuitBreakerNetwork(new Network() {
+
+			@Override
+			public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+				try {
+					circuitBreakerNetwork[0].performRequest(createRequest());
+				} catch (CircuitOpenError e) {
+					rejectedCount[0]++;
+				}
+
+				return RESPONSE;
+			}
+
+		}, circuitBreakers);
+
+		assertSame(RESPONSE, circuitBreakerNetwork[0].performRequest(createRequest()));
+		assertEquals(1, rejectedCount[0]);
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	private static BaseRequest<Void> createRequest() {
+		return new BaseRequest<>(Request.Method.GET, URL);
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class TestNetwork implements Network {
+
+		private int mCallCount;
+
+		private VolleyError mError;
+		private RuntimeException mRuntimeException;
+
+
+		@Override
+		public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+			mCallCount++;
+
+			if (mRuntimeException != null) {
+				throw mRuntimeException;
+			}
+
+			if (mError != null) {
+				throw mError;
+			}
+
+			return RESPONSE;
+		}
+
+	}
+
+}
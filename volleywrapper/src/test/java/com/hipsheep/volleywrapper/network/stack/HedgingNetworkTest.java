@@ -0,0 +1,244 @@
+package com.hipsheep.volleywrapper.network.stack;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.NoConnectionError;
+import com.android.volley.Request;
+import com.android.volley.RetryPolicy;
+import com.android.volley.ServerError;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+import com.hipsheep.volleywrapper.network.request.BaseRequest;
+import com.hipsheep.volleywrapper.network.retry.HedgeBudget;
+import com.hipsheep.volleywrapper.network.retry.HedgePolicy;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link HedgingNetwork}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class HedgingNetworkTest {
+
+	private static final String URL = "https://example.com/posts";
+
+	private static final long HEDGE_DELAY_MS = 20;
+
+	private static final NetworkResponse PRIMARY_RESPONSE = createResponse();
+	private static final NetworkResponse HEDGE_RESPONSE = createResponse();
+
+
+	@Test
+	public void performRequest_SlowPrimary_ReturnsHedgeResponse() throws Exception {
+		HedgeBudget hedgeBudget = createHedgeBudget();
+		TestNetwork network = new TestNetwork(PRIMARY_RESPONSE, HEDGE_RESPONSE);
+		HedgingNetwork hedgingNetwork = new HedgingNetwork(network, null, hedgeBudget);
+
+		// The primary only responds after the hedge, whose response is the one returned
+		assertSame(HEDGE_RESPONSE, hedgingNetwork.performRequest(createRequest()));
+		assertEquals(2, network.mCallCount.get());
+
+		// The primary runs on the calling thread (the dispatcher), and it's aborted once the hedge responds
+		assertSame(Thread.currentThread(), network.mPrimaryThread);
+		assertTrue(network.mPrimaryAborted);
+	}
+
+	@Test
+	public void performRequest_FastPrimary_DoesNotHedge() throws Exception {
+		HedgeBudget hedgeBudget = createHedgeBudget();
+		TestNetwork network = new TestNetwork(PRIMARY_RESPONSE, HEDGE_RESPONSE);
+		network.mPrimaryLatch.countDown();
+		HedgingNetwork hedgingNetwork = new HedgingNetwork(network, null, hedgeBudget);
+
+		assertSame(PRIMARY_RESPONSE, hedgingNetwork.performRequest(createRequest()));
+		assertEquals(1, network.mCallCount.get());
+		assertEquals(0, hedgeBudget.getHedgesInFlight());
+	}
+
+	@Test
+	public void performRequest_BothAttemptsFail_ThrowsError() throws Exception {
+		TestNetwork network = new TestNetwork(null, null);
+		network.mPrimaryLatch.countDown();
+		network.mPrimaryDelayMs = 2 * HEDGE_DELAY_MS;
+		HedgingNetwork hedgingNetwork = new HedgingNetwork(network, null, createHedgeBudget());
+
+		try {
+			hedgingNetwork.performRequest(createRequest());
+			fail("The request should fail");
+		} catch (ServerError e) {
+			// Expected
+		}
+
+		assertEquals(2, network.mCallCount.get());
+	}
+
+	@Test
+	public void performRequest_HedgeFinishes_ReleasesBudget() throws Exception {
+		HedgeBudget hedgeBudget = createHedgeBudget();
+		TestNetwork network = new TestNetwork(PRIMARY_RESPONSE, HEDGE_RESPONSE);
+		HedgingNetwork hedgingNetwork = new HedgingNetwork(network, null, hedgeBudget);
+
+		hedgingNetwork.performRequest(createRequest());
+		network.mPrimaryLatch.countDown();
+
+		// The hedge is released after its response is returned, so wait for it
+		long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (hedgeBudget.getHedgesInFlight() > 0 && System.nanoTime() < deadlineNs) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(0, hedgeBudget.getHedgesInFlight());
+	}
+
+	@Test
+	public void performRequest_EmptyBudget_DoesNotHedge() throws Exception {
+		// Each request adds half a hedge to the budget, so the first request can't be hedged
+		TestNetwork network = new TestNetwork(PRIMARY_RESPONSE, HEDGE_RESPONSE);
+		network.mPrimaryDelayMs = 2 * HEDGE_DELAY_MS;
+		network.mPrimaryLatch.countDown();
+		HedgingNetwork hedgingNetwork = new HedgingNetwork(network, null, new HedgeBudget(0.5, 1));
+
+		assertSame(PRIMARY_RESPONSE, hedgingNetwork.performRequest(createRequest()));
+		assertEquals(1, network.mCallCount.get());
+	}
+
+	@Test
+	public void performRequest_HedgeRetries_DoNotChangeRequestRetryPolicy() throws Exception {
+		TestNetwork network = new TestNetwork(PRIMARY_RESPONSE, null);
+		network.mHedgeRetries = true;
+		HedgingNetwork hedgingNetwork = new HedgingNetwork(network, null, createHedgeBudget());
+
+		RetryPolicy retryPolicy = new DefaultRetryPolicy(1000, 1, 1);
+		BaseRequest<Void> request = createRequest();
+		request.setRetryPolicy(retryPolicy);
+
+		// The hedge fails without retrying (which lets the primary respond), and the retry state of the request isn't changed
+		network.mReleasePrimaryOnHedgeFailure = true;
+
+		assertSame(PRIMARY_RESPONSE, hedgingNetwork.performRequest(request));
+		assertEquals(0, retryPolicy.getCurrentRetryCount());
+		assertEquals(1, network.mHedgeRetryErrors.get());
+	}
+
+	private static HedgeBudget createHedgeBudget() {
+		// Each request adds a whole hedge to the budget
+		return new HedgeBudget(1, 1);
+	}
+
+	private static BaseRequest<Void> createRequest() {
+		BaseRequest<Void> request = new BaseRequest<>(Request.Method.GET, URL);
+		request.setHedgePolicy(HedgePolicy.fixedDelay(HEDGE_DELAY_MS));
+
+		return request;
+	}
+
+	private static NetworkResponse createResponse() {
+		return new NetworkResponse(200, new byte[0], Collections.<String, String>emptyMap(), false);
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	/**
+	 * Network whose first call (the primary) waits for a latch (or until it's aborted), and whose second call (the hedge)
+	 * returns right away. Calls without a response fail with a {@link ServerError}.
+	 */
+	private static class TestNetwork implements Network {
+
+		private final NetworkResponse mPrimaryResponse;
+		private final NetworkResponse mHedgeResponse;
+
+		private final AtomicInteger mCallCount = new AtomicInteger();
+
+		private final CountDownLatch mPrimaryLatch = new CountDownLatch(1);
+		private volatile long mPrimaryDelayMs;
+		private volatile Thread mPrimaryThread;
+		private volatile boolean mPrimaryAborted;
+
+		/**
+		 * Whether the hedge asks the retry policy of the request to retry, like {@link com.android.volley.toolbox.BasicNetwork}
+		 * does after a timeout.
+		 */
+		private volatile boolean mHedgeRetries;
+		private volatile boolean mReleasePrimaryOnHedgeFailure;
+		private final AtomicInteger mHedgeRetryErrors = new AtomicInteger();
+
+
+		TestNetwork(NetworkResponse primaryResponse, NetworkResponse hedgeResponse) {
+			mPrimaryResponse = primaryResponse;
+			mHedgeResponse = hedgeResponse;
+		}
+
+		@Override
+		public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+			boolean primary = mCallCount.incrementAndGet() == 1;
+
+			if (primary) {
+				mPrimaryThread = Thread.currentThread();
+
+				// Aborting the primary releases it, like disconnecting a connection blocked on a read
+				AbortSignal.onAbort(new Runnable() {
+
+					@Override
+					public void run() {
+						mPrimaryAborted = true;
+						mPrimaryLatch.countDown();
+					}
+
+				});
+
+				try {
+					assertTrue(mPrimaryLatch.await(5, TimeUnit.SECONDS));
+					Thread.sleep(mPrimaryDelayMs);
+				} catch (InterruptedException e) {
+					throw new VolleyError(e);
+				}
+
+				if (mPrimaryAborted) {
+					throw new NoConnectionError();
+				}
+
+				return respond(mPrimaryResponse);
+			}
+
+			if (mHedgeRetries) {
+				try {
+					request.getRetryPolicy().retry(new TimeoutError());
+				} catch (VolleyError e) {
+					mHedgeRetryErrors.incrementAndGet();
+
+					if (mReleasePrimaryOnHedgeFailure) {
+						mPrimaryLatch.countDown();
+					}
+
+					throw e;
+				}
+			}
+
+			return respond(mHedgeResponse);
+		}
+
+		private static NetworkResponse respond(NetworkResponse networkResponse) throws VolleyError {
+			if (networkResponse == null) {
+				throw new ServerError();
+			}
+
+			return networkResponse;
+		}
+
+	}
+
+}
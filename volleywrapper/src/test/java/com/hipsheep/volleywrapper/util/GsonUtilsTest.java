@@ -0,0 +1,129 @@
+package com.hipsheep.volleywrapper.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.hipsheep.volleywrapper.network.model.ResponseFuture;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GsonUtils}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class GsonUtilsTest {
+
+	private static final Executor INLINE_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+
+	@After
+	public void tearDown() {
+		GsonUtils.setReusableGson(null);
+	}
+
+	@Test
+	public void setReusableGson_ReplacesSharedGson() {
+		Gson gson = new GsonBuilder().serializeNulls().create();
+		GsonUtils.setReusableGson(gson);
+
+		assertSame(gson, GsonUtils.getReusableGson());
+
+		GsonUtils.setReusableGson(null);
+
+		assertNotSame(gson, GsonUtils.getReusableGson());
+		assertSame(GsonUtils.getReusableGson(), GsonUtils.getReusableGson());
+	}
+
+	@Test
+	public void warmUp_BuildsAdapters() throws Exception {
+		CountingAdapterFactory adapterFactory = new CountingAdapterFactory();
+		GsonUtils.setReusableGson(new GsonBuilder().registerTypeAdapterFactory(adapterFactory).create());
+
+		Type listType = new TypeToken<List<Item>>() {}.getType();
+
+		ResponseFuture<Void> future = GsonUtils.warmUp(Arrays.asList(Item[].class, listType), INLINE_EXECUTOR);
+
+		assertTrue(future.isDone());
+		assertNull(future.get());
+
+		// The adapters are taken from the cache of the reusable Gson object, so they aren't built again
+		int createCount = adapterFactory.mCreateCount.get();
+		assertTrue(createCount > 0);
+
+		Gson gson = GsonUtils.getReusableGson();
+		TypeAdapter<?> listAdapter = gson.getAdapter(TypeToken.get(listType));
+		assertSame(listAdapter, gson.getAdapter(TypeToken.get(listType)));
+		assertSame(gson.getAdapter(Item[].class), gson.getAdapter(Item[].class));
+		assertSame(gson.getAdapter(Item.class), gson.getAdapter(Item.class));
+		assertEquals(createCount, adapterFactory.mCreateCount.get());
+	}
+
+	@Test
+	public void warmUp_BackgroundThread() throws Exception {
+		assertNull(GsonUtils.warmUp(Item.class).get(5, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = ExecutionException.class)
+	public void warmUp_InvalidType() throws Exception {
+		// Gson can't build adapters for classes that declare the same field twice
+		GsonUtils.warmUp(Arrays.asList(DuplicateFieldItem.class), INLINE_EXECUTOR).get();
+	}
+
+	/*
+	 * Inner classes, interfaces, enums
+	 */
+
+	private static class Item {
+
+		private int id;
+		private String name;
+
+	}
+
+	private static class DuplicateFieldItem extends Item {
+
+		private String name;
+
+	}
+
+	/**
+	 * Factory that counts how many adapters Gson asks it to create, and leaves them to the default factories.
+	 */
+	private static class CountingAdapterFactory implements TypeAdapterFactory {
+
+		private final AtomicInteger mCreateCount = new AtomicInteger();
+
+
+		@Override
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+			mCreateCount.incrementAndGet();
+
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.hipsheep.volleywrapper.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link GzipUtils}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class GzipUtilsTest {
+
+	private static final Map<String, String> GZIP_HEADERS =
+			Collections.singletonMap(GzipUtils.HEADER_CONTENT_ENCODING, GzipUtils.ENCODING_GZIP);
+
+
+	@Test
+	public void getDecompressedLength_GzipData_ReturnsOriginalLength() throws Exception {
+		byte[] data = new byte[10000];
+		Arrays.fill(data, (byte) 'a');
+
+		byte[] compressedData = GzipUtils.compress(data);
+
+		assertEquals(10000, GzipUtils.getDecompressedLength(compressedData, GZIP_HEADERS));
+		// Data that isn't gzip encoded is returned as it is
+		assertEquals(compressedData.length,
+				GzipUtils.getDecompressedLength(compressedData, Collections.<String, String>emptyMap()));
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.hipsheep.volleywrapper.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link LayeredMap}.
+ *
+ * @author Franco Sabadini (fsabadi@gmail.com)
+ */
+public class LayeredMapTest {
+
+	@Test
+	public void overlayReplacesBase() {
+		Map<String, String> base = new HashMap<>();
+		base.put("Accept", "application/json");
+		base.put("User-Agent", "test");
+
+		LayeredMap<String, String> layeredMap = new LayeredMap<>(base);
+		assertNull(layeredMap.put("Authorization", "token"));
+		assertEquals("test", layeredMap.put("User-Agent", "request"));
+
+		Map<String, String> expected = new HashMap<>();
+		expected.put("Accept", "application/json");
+		expected.put("User-Agent", "request");
+		expected.put("Authorization", "token");
+
+		assertEquals(3, layeredMap.size());
+		assertEquals(expected, new HashMap<>(layeredMap));
+
+		// The base map is shared, so it's never modified
+		assertEquals("test", base.get("User-Agent"));
+		assertEquals(2, base.size());
+	}
+
+	@Test
+	public void nullBase() {
+		LayeredMap<String, String> layeredMap = new LayeredMap<>(null);
+		assertEquals(0, layeredMap.size());
+
+		layeredMap.put("Accept", "application/json");
+		assertEquals("application/json", layeredMap.get("Accept"));
+		assertEquals("application/json", layeredMap.remove("Accept"));
+		assertEquals(0, layeredMap.size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void remove_BaseEntry() {
+		Map<String, String> base = new HashMap<>();
+		base.put("Accept", "application/json");
+
+		new LayeredMap<>(base).remove("Accept");
+	}
+
+}